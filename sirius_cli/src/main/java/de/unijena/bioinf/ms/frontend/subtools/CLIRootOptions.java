@@ -24,6 +24,7 @@ import de.unijena.bioinf.rest.NetUtils;
 import de.unijena.bioinf.jjobs.JJob;
 import de.unijena.bioinf.ms.frontend.core.ApplicationCore;
 import de.unijena.bioinf.ms.frontend.subtools.config.DefaultParameterConfigLoader;
+import de.unijena.bioinf.ms.frontend.workflow.CompoundCostScheduler;
 import de.unijena.bioinf.ms.properties.PropertyManager;
 import de.unijena.bioinf.projectspace.*;
 import org.jetbrains.annotations.NotNull;
@@ -107,6 +108,16 @@ public class CLIRootOptions<I extends Instance, M extends ProjectSpaceManager<I>
 
     private Integer instanceBuffer = null;
 
+    @Option(names = {"--compound-scheduling"}, description = "Order in which buffered compounds are computed. FIFO keeps the input order. LONGEST_FIRST reads the input ahead and starts the compounds with the longest expected SIRIUS computation time first, which shortens the tail of a run where only few cores are busy. Expected times are predicted from precursor m/z, number of MS/MS peaks, candidate adducts and allowed elements and are refined with the timings stored in the project. Valid values: ${COMPLETION-CANDIDATES}", defaultValue = "FIFO", order = 21)
+    public void setCompoundScheduling(CompoundCostScheduler.Mode mode) {
+        PropertyManager.setProperty(CompoundCostScheduler.SCHEDULING_KEY, mode.name());
+    }
+
+    @Option(names = {"--compound-lookahead"}, description = "Number of compounds that are read ahead to be ordered when using LONGEST_FIRST scheduling. Their spectra stay in memory until they are computed. Values smaller 1 read the whole input before starting the computation and read the spectra again when computing.", defaultValue = "1000", order = 22)
+    public void setCompoundLookahead(int lookahead) {
+        PropertyManager.setProperty(CompoundCostScheduler.LOOKAHEAD_KEY, String.valueOf(lookahead));
+    }
+
     @Option(names = {"--workspace"}, description = "Specify sirius workspace location. This is the directory for storing Property files, logs, databases and caches.  This is NOT for the project-space that stores the results! Default is $USER_HOME/.sirius-<MINOR_VERSION>", order = 30)
     public void setWorkspace(File ws) {
         PropertyManager.setProperty("de.unijena.bioinf.sirius.ws.location", ws == null ? null : ws.getAbsolutePath());
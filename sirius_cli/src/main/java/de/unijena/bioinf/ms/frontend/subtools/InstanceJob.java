@@ -44,6 +44,7 @@ import java.util.function.Function;
 public abstract class InstanceJob extends ToolChainJobImpl<Instance> implements ToolChainJob<Instance> {
     //todo store only Id and use Cache in projectspace manage instead -> allows for larger InstanceBuffer sizes.
     protected Instance input = null;
+    private volatile long computationNanos = -1;
 
     public InstanceJob(JobSubmitter submitter) {
         super(submitter);
@@ -77,7 +78,9 @@ public abstract class InstanceJob extends ToolChainJobImpl<Instance> implements
             progressInfo("Start computation...");
             setRecompute(input,true); // enable recompute so that following tools will recompute if results exist.
             checkForInterruption();
+            final long start = System.nanoTime();
             computeAndAnnotateResult(input);
+            computationNanos = System.nanoTime() - start;
             checkForInterruption();
             updateProgress(JobProgressEvent.DEFAULT_MAX- 1, "DONE!");
         } else {
@@ -98,6 +101,14 @@ public abstract class InstanceJob extends ToolChainJobImpl<Instance> implements
         }
     }
 
+    /**
+     * @return wall clock time of the actual computation in nanoseconds or -1 if nothing has been computed
+     * (e.g. because results already existed).
+     */
+    public long getComputationNanos() {
+        return computationNanos;
+    }
+
     @Override
     public String identifier() {
         return super.identifier() + " | " + (input != null ? input.toString() : "<Awaiting Instance>");
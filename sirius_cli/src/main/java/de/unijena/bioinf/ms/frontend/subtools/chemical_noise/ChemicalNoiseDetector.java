@@ -0,0 +1,146 @@
+/*
+ *  This file is part of the SIRIUS Software for analyzing MS and MS/MS data
+ *
+ *  Copyright (C) 2013-2020 Kai Dührkop, Markus Fleischauer, Marcus Ludwig, Martin A. Hoffman, Fleming Kretschmer, Marvin Meusel and Sebastian Böcker,
+ *  Chair of Bioinformatics, Friedrich-Schiller University.
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Affero General Public License
+ *  as published by the Free Software Foundation; either
+ *  version 3 of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License along with SIRIUS.  If not, see <https://www.gnu.org/licenses/agpl-3.0.txt>
+ */
+
+package de.unijena.bioinf.ms.frontend.subtools.chemical_noise;
+
+import de.unijena.bioinf.jjobs.BasicJJob;
+import de.unijena.bioinf.jjobs.JJob;
+import de.unijena.bioinf.jjobs.JobManager;
+import de.unijena.bioinf.jjobs.Partition;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Finds m/z values that occur in too many MS1 spectra (chemical noise) of one or more LC-MS runs.
+ * <p>
+ * The mzML files are streamed twice: once to determine the m/z range and the number of MS1 spectra
+ * and once to count the peaks. Files are processed in parallel, every job counts into its own
+ * {@link MzBins} and the bins are merged at the end.
+ */
+public class ChemicalNoiseDetector {
+    private final double binSize;
+    private final double minRelIntensity;
+    private final double minOccurrenceRate;
+
+    /**
+     * @param binSize           absolute size of the m/z bins
+     * @param minRelIntensity   only count peaks with a relative intensity (to the most intense peak of the spectrum) greater than this value. [0,1]
+     * @param minOccurrenceRate minimum fraction of MS1 spectra a bin has to occur in to be reported. [0,1]
+     */
+    public ChemicalNoiseDetector(double binSize, double minRelIntensity, double minOccurrenceRate) {
+        this.binSize = binSize;
+        this.minRelIntensity = minRelIntensity;
+        this.minOccurrenceRate = minOccurrenceRate;
+    }
+
+    /**
+     * @return center of the m/z bins that are considered chemical noise, in ascending order.
+     * Empty if there are no MS1 spectra.
+     */
+    public double[] getTooFrequentMasses(@NotNull List<Path> mzMLFiles, @NotNull JobManager jobs) {
+        if (mzMLFiles.isEmpty())
+            return new double[0];
+        final Partition<Path> parts = Partition.ofNumber(mzMLFiles, Math.max(1, Math.min(mzMLFiles.size(), jobs.getCPUThreads())));
+
+        //find min and max mz
+        final List<BasicJJob<MzRange>> rangeJobs = parts.stream().map(part -> new BasicJJob<MzRange>(JJob.JobType.CPU) {
+            @Override
+            protected MzRange compute() throws Exception {
+                final MzRange range = new MzRange();
+                for (Path file : part) {
+                    checkForInterruption();
+                    try (MzMLScanReader reader = new MzMLScanReader(file)) {
+                        reader.readSpectra(1, (id, mz, intensities, length) -> range.add(mz, length));
+                    }
+                }
+                return range;
+            }
+        }).collect(Collectors.toList());
+        rangeJobs.forEach(jobs::submitJob);
+        final MzRange range = new MzRange();
+        rangeJobs.stream().map(JJob::takeResult).forEach(range::merge);
+
+        if (range.numberOfMs1 == 0 || range.min > range.max) {
+            LoggerFactory.getLogger(getClass()).error("No MS1 spectra available or all spectra are empty.");
+            return new double[0];
+        }
+
+        //add peak counts to bins, one set of bins per job
+        final List<BasicJJob<MzBins>> countJobs = parts.stream().map(part -> new BasicJJob<MzBins>(JJob.JobType.CPU) {
+            @Override
+            protected MzBins compute() throws Exception {
+                final MzBins bins = new MzBins(range.min, range.max, binSize);
+                for (Path file : part) {
+                    checkForInterruption();
+                    try (MzMLScanReader reader = new MzMLScanReader(file)) {
+                        reader.readSpectra(1, (id, mz, intensities, length) -> addPeaks(bins, mz, intensities, length));
+                    }
+                }
+                return bins;
+            }
+        }).collect(Collectors.toList());
+        countJobs.forEach(jobs::submitJob);
+
+        MzBins bins = null;
+        for (BasicJJob<MzBins> job : countJobs) {
+            final MzBins b = job.takeResult();
+            if (bins == null)
+                bins = b;
+            else
+                bins.merge(b);
+        }
+
+        return bins.getFrequentMasses(minOccurrenceRate * range.numberOfMs1);
+    }
+
+    //todo find better way than relative intensity of current spectrum
+    private void addPeaks(MzBins bins, double[] mz, double[] intensities, int length) {
+        double maxIntensity = 0d;
+        for (int i = 0; i < length; i++)
+            maxIntensity = Math.max(maxIntensity, intensities[i]);
+        for (int i = 0; i < length; i++) {
+            if (intensities[i] / maxIntensity > minRelIntensity)
+                bins.add(mz[i]);
+        }
+    }
+
+    private static class MzRange {
+        private double min = Double.POSITIVE_INFINITY;
+        private double max = Double.NEGATIVE_INFINITY;
+        private int numberOfMs1 = 0;
+
+        private void add(double[] mz, int length) {
+            ++numberOfMs1;
+            for (int i = 0; i < length; i++) {
+                if (mz[i] < min) min = mz[i];
+                if (mz[i] > max) max = mz[i];
+            }
+        }
+
+        private void merge(MzRange other) {
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+            numberOfMs1 += other.numberOfMs1;
+        }
+    }
+}
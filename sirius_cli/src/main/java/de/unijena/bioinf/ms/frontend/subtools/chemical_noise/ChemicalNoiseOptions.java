@@ -0,0 +1,53 @@
+/*
+ *  This file is part of the SIRIUS Software for analyzing MS and MS/MS data
+ *
+ *  Copyright (C) 2013-2020 Kai Dührkop, Markus Fleischauer, Marcus Ludwig, Martin A. Hoffman, Fleming Kretschmer, Marvin Meusel and Sebastian Böcker,
+ *  Chair of Bioinformatics, Friedrich-Schiller University.
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Affero General Public License
+ *  as published by the Free Software Foundation; either
+ *  version 3 of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License along with SIRIUS.  If not, see <https://www.gnu.org/licenses/agpl-3.0.txt>
+ */
+
+package de.unijena.bioinf.ms.frontend.subtools.chemical_noise;
+
+import de.unijena.bioinf.ms.frontend.subtools.Provide;
+import de.unijena.bioinf.ms.frontend.subtools.RootOptions;
+import de.unijena.bioinf.ms.frontend.subtools.StandaloneTool;
+import de.unijena.bioinf.ms.properties.ParameterConfig;
+import picocli.CommandLine;
+
+import java.nio.file.Path;
+
+@CommandLine.Command(name = "chemical-noise", aliases = {"noise"}, description = {"<STANDALONE> Detects m/z values that occur in too many MS1 spectra (chemical noise) of the given LC-MS/MS runs (.mzML).", "Multiple runs are processed in parallel and counted together."},
+        versionProvider = Provide.Versions.class, mixinStandardHelpOptions = true, showDefaultValues = true)
+public class ChemicalNoiseOptions implements StandaloneTool<ChemicalNoiseWorkflow> {
+
+    @CommandLine.Option(names = {"--bin-size-ppm"}, defaultValue = "2",
+            description = {"MS1 peaks are binned into bins of equal size. The absolute bin size is determined with the given ppm at 200Da."})
+    double binSizePPM;
+
+    @CommandLine.Option(names = {"--min-rel-intensity"}, defaultValue = "0.01",
+            description = {"Only count peaks with an intensity relative to the most intense peak of the spectrum greater than this value. [0,1]"})
+    double minRelIntensity;
+
+    @CommandLine.Option(names = {"--min-occurrence"}, defaultValue = "0.2",
+            description = {"Minimum fraction of MS1 spectra a bin has to occur in to be considered as chemical noise. [0,1]"})
+    double minOccurrenceRate;
+
+    @CommandLine.Option(names = {"--output", "-o"}, description = {"File to write the m/z values that are considered chemical noise to. Standard output if not given."})
+    Path out;
+
+    @Override
+    public ChemicalNoiseWorkflow makeWorkflow(RootOptions<?, ?, ?, ?> rootOptions, ParameterConfig config) {
+        return new ChemicalNoiseWorkflow(this, rootOptions.getInput());
+    }
+}
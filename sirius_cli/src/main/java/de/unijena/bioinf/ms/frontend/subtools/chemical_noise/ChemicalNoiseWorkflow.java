@@ -0,0 +1,74 @@
+/*
+ *  This file is part of the SIRIUS Software for analyzing MS and MS/MS data
+ *
+ *  Copyright (C) 2013-2020 Kai Dührkop, Markus Fleischauer, Marcus Ludwig, Martin A. Hoffman, Fleming Kretschmer, Marvin Meusel and Sebastian Böcker,
+ *  Chair of Bioinformatics, Friedrich-Schiller University.
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Affero General Public License
+ *  as published by the Free Software Foundation; either
+ *  version 3 of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License along with SIRIUS.  If not, see <https://www.gnu.org/licenses/agpl-3.0.txt>
+ */
+
+package de.unijena.bioinf.ms.frontend.subtools.chemical_noise;
+
+import de.unijena.bioinf.ChemistryBase.jobs.SiriusJobs;
+import de.unijena.bioinf.ChemistryBase.ms.Deviation;
+import de.unijena.bioinf.ms.frontend.subtools.InputFilesOptions;
+import de.unijena.bioinf.ms.frontend.workflow.Workflow;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class ChemicalNoiseWorkflow implements Workflow {
+    private final ChemicalNoiseOptions options;
+    private final InputFilesOptions input;
+
+    public ChemicalNoiseWorkflow(ChemicalNoiseOptions options, InputFilesOptions input) {
+        this.options = options;
+        this.input = input;
+    }
+
+    @Override
+    public void run() {
+        final List<Path> files = input == null ? List.of() : input.getAllFilesStream()
+                .filter(p -> {
+                    if (p.getFileName().toString().toLowerCase().endsWith(".mzml"))
+                        return true;
+                    LoggerFactory.getLogger(getClass()).warn("Skipping '" + p + "'. Only .mzML files are supported.");
+                    return false;
+                }).distinct().sorted().collect(Collectors.toList());
+        if (files.isEmpty()) {
+            LoggerFactory.getLogger(getClass()).error("No mzML input files given!");
+            return;
+        }
+
+        final double binSize = new Deviation(options.binSizePPM).absoluteFor(200);
+        final double[] frequentMasses = new ChemicalNoiseDetector(binSize, options.minRelIntensity, options.minOccurrenceRate)
+                .getTooFrequentMasses(files, SiriusJobs.getGlobalJobManager());
+
+        try (Writer ow = options.out != null ? Files.newBufferedWriter(options.out) : new OutputStreamWriter(System.out)) {
+            ow.write("mz");
+            ow.write(System.lineSeparator());
+            for (double frequentMass : frequentMasses) {
+                ow.write(String.valueOf(frequentMass));
+                ow.write(System.lineSeparator());
+            }
+        } catch (IOException e) {
+            LoggerFactory.getLogger(getClass()).error("could not write output! Canceling...", e);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ *  This file is part of the SIRIUS Software for analyzing MS and MS/MS data
+ *
+ *  Copyright (C) 2013-2020 Kai Dührkop, Markus Fleischauer, Marcus Ludwig, Martin A. Hoffman, Fleming Kretschmer, Marvin Meusel and Sebastian Böcker,
+ *  Chair of Bioinformatics, Friedrich-Schiller University.
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Affero General Public License
+ *  as published by the Free Software Foundation; either
+ *  version 3 of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License along with SIRIUS.  If not, see <https://www.gnu.org/licenses/agpl-3.0.txt>
+ */
+
+package de.unijena.bioinf.ms.frontend.subtools.chemical_noise;
+
+import gnu.trove.list.array.TDoubleArrayList;
+
+/**
+ * Equally sized m/z bins that count peak occurrences.
+ * Every thread counts into its own instance, the instances are merged at the end.
+ */
+public class MzBins {
+    private final double minValue;
+    private final double maxValue;
+    private final double binSize;
+    private final int[] bins;
+
+    public MzBins(double minValue, double maxValue, double binSize) {
+        this.minValue = minValue;
+        this.maxValue = maxValue;
+        this.binSize = binSize;
+        this.bins = new int[Math.max(1, (int) Math.ceil((maxValue - minValue) / binSize))];
+    }
+
+    public void add(double value) {
+        if (value > maxValue || value < minValue)
+            throw new IllegalArgumentException("Cannot add to bins. Value " + value + " outside of [" + minValue + ", " + maxValue + "]");
+        // the maximum itself falls into the last bin
+        ++bins[Math.min(bins.length - 1, (int) Math.floor((value - minValue) / binSize))];
+    }
+
+    /**
+     * Adds the counts of the given bins, which must have the same layout.
+     */
+    public void merge(MzBins other) {
+        if (other.bins.length != bins.length || other.minValue != minValue || other.binSize != binSize)
+            throw new IllegalArgumentException("Bins do not have the same layout.");
+        for (int i = 0; i < bins.length; i++)
+            bins[i] += other.bins[i];
+    }
+
+    /**
+     * @return center of all bins with a count of at least {@code minCount}
+     */
+    public double[] getFrequentMasses(double minCount) {
+        final TDoubleArrayList frequentMasses = new TDoubleArrayList();
+        for (int i = 0; i < bins.length; i++) {
+            if (bins[i] >= minCount)
+                frequentMasses.add(getMeanBinValue(i));
+        }
+        return frequentMasses.toArray();
+    }
+
+    public double getMeanBinValue(int binPos) {
+        return minValue + binSize * binPos + binSize / 2;
+    }
+
+    public int getCount(int binPos) {
+        return bins[binPos];
+    }
+
+    public int numberOfBins() {
+        return bins.length;
+    }
+
+    public double getMinValue() {
+        return minValue;
+    }
+
+    public double getMaxValue() {
+        return maxValue;
+    }
+
+    public double getBinSize() {
+        return binSize;
+    }
+}
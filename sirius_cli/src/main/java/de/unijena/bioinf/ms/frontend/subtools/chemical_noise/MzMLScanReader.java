@@ -0,0 +1,313 @@
+/*
+ *  This file is part of the SIRIUS Software for analyzing MS and MS/MS data
+ *
+ *  Copyright (C) 2013-2020 Kai Dührkop, Markus Fleischauer, Marcus Ludwig, Martin A. Hoffman, Fleming Kretschmer, Marvin Meusel and Sebastian Böcker,
+ *  Chair of Bioinformatics, Friedrich-Schiller University.
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Affero General Public License
+ *  as published by the Free Software Foundation; either
+ *  version 3 of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License along with SIRIUS.  If not, see <https://www.gnu.org/licenses/agpl-3.0.txt>
+ */
+
+package de.unijena.bioinf.ms.frontend.subtools.chemical_noise;
+
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.LoggerFactory;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Streaming (StAX) reader for the spectra of an mzML file.
+ * <p>
+ * In contrast to the JAXB based jmzml model, only the spectrum that is currently parsed is held in memory.
+ * The binary data arrays are decoded into primitive buffers that are reused for all spectra of the file,
+ * so the memory consumption does not depend on the size of the run.
+ * Spectra with a non-matching ms level are skipped without decoding their binary data.
+ * <p>
+ * Not thread safe, use one reader per thread.
+ */
+public class MzMLScanReader implements Closeable {
+    // cv accessions, see https://github.com/HUPO-PSI/psi-ms-CV
+    private static final String MS_LEVEL = "MS:1000511";
+    private static final String MZ_ARRAY = "MS:1000514";
+    private static final String INTENSITY_ARRAY = "MS:1000515";
+    private static final String FLOAT_64 = "MS:1000523";
+    private static final String FLOAT_32 = "MS:1000521";
+    private static final String INT_64 = "MS:1000522";
+    private static final String INT_32 = "MS:1000519";
+    private static final String ZLIB = "MS:1000574";
+    private static final String NO_COMPRESSION = "MS:1000576";
+
+    @FunctionalInterface
+    public interface ScanConsumer {
+        /**
+         * @param mz          m/z buffer, only the first {@code length} values are valid.
+         *                    Buffers are reused for the next spectrum and must not be stored.
+         * @param intensities intensity buffer, only the first {@code length} values are valid.
+         * @param length      number of peaks
+         */
+        void accept(String spectrumId, double[] mz, double[] intensities, int length);
+    }
+
+    private enum ArrayType {MZ, INTENSITY, OTHER}
+
+    private static final XMLInputFactory FACTORY;
+
+    static {
+        FACTORY = XMLInputFactory.newFactory();
+        FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        FACTORY.setProperty(XMLInputFactory.IS_COALESCING, true);
+    }
+
+    private final Path source;
+    private final InputStream in;
+    private final XMLStreamReader reader;
+
+    // referenceableParamGroup id -> (accession -> value)
+    private final Map<String, Map<String, String>> paramGroups = new HashMap<>();
+
+    private final Inflater inflater = new Inflater();
+    private byte[] inflated = new byte[1 << 16];
+    private double[] mzBuffer = new double[1024], intensityBuffer = new double[1024];
+    private int mzLength, intensityLength;
+
+    // state of the current spectrum and binary data array
+    private int msLevel;
+    private ArrayType arrayType;
+    private int bytesPerValue;
+    private boolean integerValues;
+    private boolean zlib;
+
+    public MzMLScanReader(@NotNull Path mzMLFile) throws IOException {
+        this.source = mzMLFile;
+        this.in = new BufferedInputStream(Files.newInputStream(mzMLFile), 1 << 16);
+        try {
+            this.reader = FACTORY.createXMLStreamReader(in);
+        } catch (XMLStreamException e) {
+            in.close();
+            throw new IOException("Could not open mzML file: " + mzMLFile, e);
+        }
+    }
+
+    /**
+     * Streams over all spectra of the file and calls the consumer for every spectrum with the given ms level.
+     *
+     * @param msLevelFilter ms level of the spectra to report, values smaller than 1 report all spectra.
+     * @return number of spectra that have been reported
+     */
+    public int readSpectra(int msLevelFilter, @NotNull ScanConsumer consumer) throws IOException {
+        int reported = 0;
+        try {
+            String spectrumId = null;
+            String paramGroupId = null;
+            int depth = 0, spectrumDepth = -1, arrayDepth = -1;
+            boolean skipSpectrum = false;
+
+            while (reader.hasNext()) {
+                final int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    depth++;
+                    final String name = reader.getLocalName();
+                    switch (name) {
+                        case "referenceableParamGroup":
+                            paramGroupId = reader.getAttributeValue(null, "id");
+                            paramGroups.put(paramGroupId, new HashMap<>());
+                            break;
+                        case "spectrum":
+                            spectrumId = reader.getAttributeValue(null, "id");
+                            spectrumDepth = depth;
+                            msLevel = -1;
+                            mzLength = -1;
+                            intensityLength = -1;
+                            skipSpectrum = false;
+                            break;
+                        case "binaryDataArray":
+                            if (spectrumDepth > 0) {
+                                arrayDepth = depth;
+                                arrayType = ArrayType.OTHER;
+                                bytesPerValue = 8;
+                                integerValues = false;
+                                zlib = false;
+                            }
+                            break;
+                        case "cvParam":
+                            if (paramGroupId != null) {
+                                paramGroups.get(paramGroupId).put(reader.getAttributeValue(null, "accession"), reader.getAttributeValue(null, "value"));
+                            } else if (depth == spectrumDepth + 1 || depth == arrayDepth + 1) {
+                                applyParam(reader.getAttributeValue(null, "accession"), reader.getAttributeValue(null, "value"), depth == arrayDepth + 1);
+                            }
+                            break;
+                        case "referenceableParamGroupRef":
+                            if (depth == spectrumDepth + 1 || depth == arrayDepth + 1) {
+                                final Map<String, String> group = paramGroups.get(reader.getAttributeValue(null, "ref"));
+                                if (group != null) {
+                                    final boolean inArray = depth == arrayDepth + 1;
+                                    group.forEach((acc, val) -> applyParam(acc, val, inArray));
+                                }
+                            }
+                            break;
+                        case "binaryDataArrayList":
+                            // ms level cv params precede the data arrays, so we can skip decoding of unwanted spectra
+                            skipSpectrum = spectrumDepth > 0 && msLevelFilter > 0 && msLevel != msLevelFilter;
+                            break;
+                        case "binary":
+                            if (arrayDepth > 0 && !skipSpectrum && arrayType != ArrayType.OTHER) {
+                                final String text = reader.getElementText();
+                                depth--; // getElementText consumes the end element
+                                decode(text);
+                            }
+                            break;
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    final String name = reader.getLocalName();
+                    if (depth == arrayDepth && name.equals("binaryDataArray")) {
+                        arrayDepth = -1;
+                    } else if (depth == spectrumDepth && name.equals("spectrum")) {
+                        spectrumDepth = -1;
+                        if (msLevelFilter <= 0 || msLevel == msLevelFilter) {
+                            if (mzLength < 0 || intensityLength < 0) {
+                                LoggerFactory.getLogger(getClass()).warn("Could not parse peak data for spectrum id " + spectrumId + " in " + source);
+                            } else {
+                                consumer.accept(spectrumId, mzBuffer, intensityBuffer, Math.min(mzLength, intensityLength));
+                                reported++;
+                            }
+                        }
+                    } else if (name.equals("referenceableParamGroup")) {
+                        paramGroupId = null;
+                    }
+                    depth--;
+                }
+            }
+            return reported;
+        } catch (XMLStreamException | DataFormatException | IllegalArgumentException e) {
+            throw new IOException("Error when parsing mzML file: " + source, e);
+        }
+    }
+
+    private void applyParam(String accession, String value, boolean binaryDataArrayParam) {
+        if (accession == null)
+            return;
+        if (!binaryDataArrayParam) {
+            if (MS_LEVEL.equals(accession) && value != null)
+                msLevel = Integer.parseInt(value.trim());
+            return;
+        }
+        switch (accession) {
+            case MZ_ARRAY:
+                arrayType = ArrayType.MZ;
+                break;
+            case INTENSITY_ARRAY:
+                arrayType = ArrayType.INTENSITY;
+                break;
+            case FLOAT_64:
+                bytesPerValue = 8;
+                integerValues = false;
+                break;
+            case FLOAT_32:
+                bytesPerValue = 4;
+                integerValues = false;
+                break;
+            case INT_64:
+                bytesPerValue = 8;
+                integerValues = true;
+                break;
+            case INT_32:
+                bytesPerValue = 4;
+                integerValues = true;
+                break;
+            case ZLIB:
+                zlib = true;
+                break;
+            case NO_COMPRESSION:
+                zlib = false;
+                break;
+        }
+    }
+
+    private void decode(String base64) throws DataFormatException {
+        final byte[] raw = Base64.getMimeDecoder().decode(base64);
+        final ByteBuffer bytes;
+        if (zlib) {
+            inflater.reset();
+            inflater.setInput(raw);
+            int length = 0;
+            while (!inflater.finished()) {
+                if (length == inflated.length)
+                    inflated = Arrays.copyOf(inflated, inflated.length * 2);
+                final int n = inflater.inflate(inflated, length, inflated.length - length);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                    throw new DataFormatException("Truncated zlib stream");
+                length += n;
+            }
+            bytes = ByteBuffer.wrap(inflated, 0, length);
+        } else {
+            bytes = ByteBuffer.wrap(raw);
+        }
+        bytes.order(ByteOrder.LITTLE_ENDIAN);
+
+        final int n = bytes.remaining() / bytesPerValue;
+        double[] target = arrayType == ArrayType.MZ ? mzBuffer : intensityBuffer;
+        if (target.length < n) {
+            target = new double[Math.max(n, target.length * 2)];
+            if (arrayType == ArrayType.MZ)
+                mzBuffer = target;
+            else
+                intensityBuffer = target;
+        }
+
+        if (bytesPerValue == 8) {
+            if (integerValues)
+                for (int i = 0; i < n; i++) target[i] = bytes.getLong();
+            else
+                for (int i = 0; i < n; i++) target[i] = bytes.getDouble();
+        } else {
+            if (integerValues)
+                for (int i = 0; i < n; i++) target[i] = bytes.getInt();
+            else
+                for (int i = 0; i < n; i++) target[i] = bytes.getFloat();
+        }
+
+        if (arrayType == ArrayType.MZ)
+            mzLength = n;
+        else
+            intensityLength = n;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            reader.close();
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        } finally {
+            inflater.end();
+            in.close();
+        }
+    }
+}
@@ -19,6 +19,7 @@
 
 package de.unijena.bioinf.ms.frontend.subtools.config;
 
+import de.unijena.bioinf.ChemistryBase.algorithm.scoring.FormulaScore;
 import de.unijena.bioinf.ChemistryBase.jobs.SiriusJobs;
 import de.unijena.bioinf.ChemistryBase.ms.Ms2Experiment;
 import de.unijena.bioinf.ChemistryBase.ms.properties.FinalConfig;
@@ -26,16 +27,25 @@ import de.unijena.bioinf.babelms.ms.InputFileConfig;
 import de.unijena.bioinf.ms.annotations.Ms2ExperimentAnnotation;
 import de.unijena.bioinf.ms.frontend.subtools.InstanceJob;
 import de.unijena.bioinf.ms.properties.ParameterConfig;
+import de.unijena.bioinf.projectspace.ConfigDigest;
 import de.unijena.bioinf.projectspace.FormulaResultRankingScore;
 import de.unijena.bioinf.projectspace.Instance;
 import de.unijena.bioinf.projectspace.ProjectSpaceConfig;
 import de.unijena.bioinf.sirius.scores.SiriusScore;
 import org.apache.commons.configuration2.CombinedConfiguration;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
-import java.util.Optional;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
 
 public class AddConfigsJob extends InstanceJob {
+    // effective configs (without runtime layer) are immutable once built, so compounds with the same config share them
+    private static final int MAX_INTERNED_CONFIGS = 1024;
+    private static final Map<String, ParameterConfig> INTERNED_CONFIGS = new ConcurrentHashMap<>();
+    private static final Map<ParameterConfig, String> COMPUTE_CONFIG_DIGESTS = Collections.synchronizedMap(new WeakHashMap<>());
+
     private final ParameterConfig computeConfig;
 
     public AddConfigsJob(ParameterConfig computeConfig) {
@@ -57,34 +67,24 @@ public class AddConfigsJob extends InstanceJob {
     @Override
     protected void computeAndAnnotateResult(final @NotNull Instance inst) throws Exception {
         final Ms2Experiment exp = inst.getExperiment();
-        final Optional<ProjectSpaceConfig> psConfig = inst.loadConfig();
-
-
-        ParameterConfig baseConfig;
+        final String sourceDigest = ConfigDigests.combine(
+                COMPUTE_CONFIG_DIGESTS.computeIfAbsent(computeConfig, ConfigDigests::digest),
+                exp.getAnnotation(InputFileConfig.class).map(c -> ConfigDigests.digestLocal(c.config)).orElse(null));
 
         checkForInterruption();
 
-        //override defaults
-        // CLI_CONFIG might already exist from previous runs and needs to be updated.
-        baseConfig = psConfig
-                .map(projectSpaceConfig -> {
-                    ParameterConfig conf = projectSpaceConfig.config;
-                    if (!computeConfig.getLocalConfigName().equals(DefaultParameterConfigLoader.CLI_CONFIG_NAME) && computeConfig.containsConfiguration(DefaultParameterConfigLoader.CLI_CONFIG_NAME)) {
-                        conf = conf.newIndependentInstance(DefaultParameterConfigLoader.CLI_CONFIG_NAME);
-                        conf.updateConfig(DefaultParameterConfigLoader.CLI_CONFIG_NAME, ((CombinedConfiguration) computeConfig.getConfigs()).getConfiguration(DefaultParameterConfigLoader.CLI_CONFIG_NAME));
-                    }
-
-                    return conf.newIndependentInstance(computeConfig, true);
-                }).orElse(computeConfig);
-
-        //remove runtime configs from previous analyses
-        baseConfig.getConfigNames().stream().filter(s -> s.startsWith("RUNTIME_CONFIG")).forEach(baseConfig::removeConfig);
-
-        //input file configs are intended to be immutable, we still reload to ensure that it is on top position after CLI config
-        if (exp.hasAnnotation(InputFileConfig.class)) {
-            @NotNull InputFileConfig msConf = exp.getAnnotationOrThrow(InputFileConfig.class);
-            baseConfig.removeConfig(msConf.config.getLocalConfigName());
-            baseConfig = baseConfig.newIndependentInstance(msConf.config, false);
+        // skip rebuilding if the stored config was built from the same configs before
+        ParameterConfig baseConfig = inst.loadCompoundContainer(ConfigDigest.class).getAnnotation(ConfigDigest.class)
+                .filter(d -> d.getSourceDigest().equals(sourceDigest))
+                .map(d -> loadUnchangedConfig(inst, d.getConfigDigest()))
+                .orElse(null);
+        final boolean changed = baseConfig == null;
+
+        if (changed) {
+            baseConfig = buildConfig(inst, exp);
+            final String configDigest = ConfigDigests.digest(baseConfig);
+            baseConfig = intern(configDigest, baseConfig);
+            inst.loadCompoundContainer().setAnnotation(ConfigDigest.class, new ConfigDigest(sourceDigest, configDigest));
         }
 
         checkForInterruption();
@@ -99,6 +99,7 @@ public class AddConfigsJob extends InstanceJob {
 
         checkForInterruption();
 
+        final List<Class<? extends FormulaScore>> rankingScoreTypes = List.copyOf(inst.getID().getRankingScoreTypes());
         final FormulaResultRankingScore it = exp.getAnnotation(FormulaResultRankingScore.class).orElse(FormulaResultRankingScore.AUTO);
         // this value is a commandline parameter that specifies how to handle the ranking score. If auto we decide how to
         // handle, otherwise we set the user defined value
@@ -111,16 +112,74 @@ public class AddConfigsJob extends InstanceJob {
 
         checkForInterruption();
 
-        inst.updateExperiment(); //todo we should optimize this, so that this is not needed anymore
-        inst.updateConfig();
+        if (changed) {
+            // the experiment annotations are filled from the config, so they can only change if the config changes
+            inst.updateExperiment();
+            inst.updateConfig();
+            inst.updateCompound(inst.loadCompoundContainer(), ConfigDigest.class);
+        } else if (!rankingScoreTypes.equals(inst.getID().getRankingScoreTypes())) {
+            inst.updateCompoundID();
+        }
+    }
+
+    private ParameterConfig buildConfig(final @NotNull Instance inst, final @NotNull Ms2Experiment exp) {
+        final Optional<ProjectSpaceConfig> psConfig = inst.loadConfig();
+
+        //override defaults
+        // CLI_CONFIG might already exist from previous runs and needs to be updated.
+        ParameterConfig baseConfig = psConfig
+                .map(projectSpaceConfig -> {
+                    ParameterConfig conf = projectSpaceConfig.config;
+                    if (!computeConfig.getLocalConfigName().equals(DefaultParameterConfigLoader.CLI_CONFIG_NAME) && computeConfig.containsConfiguration(DefaultParameterConfigLoader.CLI_CONFIG_NAME)) {
+                        conf = conf.newIndependentInstance(DefaultParameterConfigLoader.CLI_CONFIG_NAME);
+                        conf.updateConfig(DefaultParameterConfigLoader.CLI_CONFIG_NAME, ((CombinedConfiguration) computeConfig.getConfigs()).getConfiguration(DefaultParameterConfigLoader.CLI_CONFIG_NAME));
+                    }
+
+                    return conf.newIndependentInstance(computeConfig, true);
+                }).orElse(computeConfig);
+
+        //remove runtime configs from previous analyses
+        removeRuntimeConfigs(baseConfig);
+
+        //input file configs are intended to be immutable, we still reload to ensure that it is on top position after CLI config
+        if (exp.hasAnnotation(InputFileConfig.class)) {
+            @NotNull InputFileConfig msConf = exp.getAnnotationOrThrow(InputFileConfig.class);
+            baseConfig.removeConfig(msConf.config.getLocalConfigName());
+            baseConfig = baseConfig.newIndependentInstance(msConf.config, false);
+        }
+        return baseConfig;
+    }
+
+    /**
+     * @return the stored config of the instance if its digest still matches, null otherwise.
+     */
+    @Nullable
+    private static ParameterConfig loadUnchangedConfig(final @NotNull Instance inst, final @NotNull String configDigest) {
+        final ParameterConfig interned = INTERNED_CONFIGS.get(configDigest);
+        if (interned != null)
+            return interned;
+
+        return inst.loadConfig().map(psConfig -> {
+            final ParameterConfig conf = psConfig.config;
+            removeRuntimeConfigs(conf);
+            return configDigest.equals(ConfigDigests.digest(conf)) ? intern(configDigest, conf) : null;
+        }).orElse(null);
+    }
+
+    private static ParameterConfig intern(final @NotNull String configDigest, final @NotNull ParameterConfig config) {
+        if (INTERNED_CONFIGS.size() >= MAX_INTERNED_CONFIGS)
+            INTERNED_CONFIGS.clear();
+        final ParameterConfig interned = INTERNED_CONFIGS.putIfAbsent(configDigest, config);
+        return interned != null ? interned : config;
     }
 
-    private void clearRuntimeConfigs(final ParameterConfig config) {
-        //todo fill me
+    private static void removeRuntimeConfigs(final ParameterConfig config) {
+        config.getConfigNames().stream().filter(s -> s.startsWith(ConfigDigests.RUNTIME_CONFIG_PREFIX)).collect(Collectors.toList())
+                .forEach(config::removeConfig);
     }
 
     @Override
     public String getToolName() {
         return "Config Job";
     }
-}
\ No newline at end of file
+}
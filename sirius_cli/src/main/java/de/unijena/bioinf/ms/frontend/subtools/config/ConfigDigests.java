@@ -0,0 +1,115 @@
+/*
+ *  This file is part of the SIRIUS Software for analyzing MS and MS/MS data
+ *
+ *  Copyright (C) 2013-2020 Kai Dührkop, Markus Fleischauer, Marcus Ludwig, Martin A. Hoffman, Fleming Kretschmer, Marvin Meusel and Sebastian Böcker,
+ *  Chair of Bioinformatics, Friedrich-Schiller University.
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Affero General Public License
+ *  as published by the Free Software Foundation; either
+ *  version 3 of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License along with SIRIUS.  If not, see <https://www.gnu.org/licenses/agpl-3.0.txt>
+ */
+
+package de.unijena.bioinf.ms.frontend.subtools.config;
+
+import de.unijena.bioinf.ms.properties.ParameterConfig;
+import org.apache.commons.configuration2.CombinedConfiguration;
+import org.apache.commons.configuration2.Configuration;
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Content hashes (SHA-256, hex) of {@link ParameterConfig}s. Two configs with the same digest have the same
+ * (non runtime) layers and resolve every key to the same value, so they produce the same annotations.
+ */
+public final class ConfigDigests {
+    public static final String RUNTIME_CONFIG_PREFIX = "RUNTIME_CONFIG";
+
+    private ConfigDigests() {
+    }
+
+    /**
+     * Digest of the effective values of all keys and of the layer names of the given config.
+     * Runtime layers are ignored.
+     */
+    public static String digest(@NotNull ParameterConfig config) {
+        final MessageDigest md = newDigest();
+        config.getConfigNames().stream().filter(s -> !s.startsWith(RUNTIME_CONFIG_PREFIX))
+                .forEach(name -> update(md, "#", name));
+        update(md, config.getConfigKeys(), config::getConfigValue);
+        return toHex(md.digest());
+    }
+
+    /**
+     * Digest of the local (top) layer of the given config only, e.g. the layer of an InputFileConfig.
+     * Falls back to {@link #digest(ParameterConfig)} if the layer is not accessible.
+     */
+    public static String digestLocal(@NotNull ParameterConfig config) {
+        final Configuration local = config.getConfigs() instanceof CombinedConfiguration
+                ? ((CombinedConfiguration) config.getConfigs()).getConfiguration(config.getLocalConfigName())
+                : null;
+        if (local == null)
+            return digest(config);
+
+        final MessageDigest md = newDigest();
+        update(md, "#", config.getLocalConfigName());
+        update(md, local.getKeys(), k -> String.valueOf(local.getProperty(k)));
+        return toHex(md.digest());
+    }
+
+    /**
+     * Digest of the given ordered parts, e.g. to combine the digests of several configs.
+     */
+    public static String combine(String... parts) {
+        final MessageDigest md = newDigest();
+        for (String part : parts)
+            update(md, "+", String.valueOf(part));
+        return toHex(md.digest());
+    }
+
+    private static void update(MessageDigest md, Iterator<String> keys, Function<String, String> values) {
+        final List<String> sorted = new ArrayList<>();
+        keys.forEachRemaining(sorted::add);
+        sorted.sort(String::compareTo);
+        for (String key : sorted)
+            update(md, key, String.valueOf(values.apply(key)));
+    }
+
+    private static void update(MessageDigest md, String key, String value) {
+        md.update(key.getBytes(StandardCharsets.UTF_8));
+        md.update((byte) '=');
+        md.update(value.getBytes(StandardCharsets.UTF_8));
+        md.update((byte) '\n');
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported by this JVM.", e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        final StringBuilder buf = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            buf.append(Character.forDigit((b >> 4) & 0xF, 16));
+            buf.append(Character.forDigit(b & 0xF, 16));
+        }
+        return buf.toString();
+    }
+}
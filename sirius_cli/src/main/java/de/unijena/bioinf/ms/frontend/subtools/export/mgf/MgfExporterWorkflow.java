@@ -32,6 +32,7 @@ import de.unijena.bioinf.ms.frontend.subtools.PreprocessingJob;
 import de.unijena.bioinf.ms.frontend.workflow.Workflow;
 import de.unijena.bioinf.ms.properties.ParameterConfig;
 import de.unijena.bioinf.projectspace.Instance;
+import de.unijena.bioinf.projectspace.PrefetchingInstanceIterator;
 import de.unijena.bioinf.projectspace.ProjectSpaceManager;
 import org.apache.commons.text.translate.CsvTranslators;
 import org.slf4j.LoggerFactory;
@@ -80,8 +81,12 @@ public class MgfExporterWorkflow implements Workflow {
             if (zeroIndex)
                 LoggerFactory.getLogger("Index value 0 found (old project-space format). Using index + 1 as Feature ID to be compatible with GNPS FBMN.");
 
-            try (final BufferedWriter writer = Files.newBufferedWriter(outputPath)) {
-                for (Instance inst : ps) {
+            // the experiments of the following compounds are read on the IO threads while writing
+            try (final BufferedWriter writer = Files.newBufferedWriter(outputPath);
+                 final PrefetchingInstanceIterator<Instance> prefetched = PrefetchingInstanceIterator.ofProject(ps, List.of(Ms2Experiment.class), List.of())) {
+                final Iterator<Instance> it = prefetched != null ? prefetched : ps.iterator();
+                while (it.hasNext()) {
+                    final Instance inst = it.next();
                     try {
                         mgfWriter.write(writer, inst.getExperiment(), String.valueOf(zeroIndex ? inst.getID().getCompoundIndex() + 1 : inst.getID().getCompoundIndex()));
                     } catch (IOException e) {
@@ -112,8 +117,11 @@ public class MgfExporterWorkflow implements Workflow {
         final HashMap<String, QuantInfo> compounds = new HashMap<>();
         final Set<String> sampleNames = new HashSet<>();
 
-        try (BufferedWriter bw = FileUtils.getWriter(path.toFile())) {
-            for (Instance i : ps) {
+        try (BufferedWriter bw = FileUtils.getWriter(path.toFile());
+             final PrefetchingInstanceIterator<Instance> prefetched = PrefetchingInstanceIterator.ofProject(ps, List.of(Ms2Experiment.class, LCMSPeakInformation.class), List.of())) {
+            final Iterator<Instance> it = prefetched != null ? prefetched : ps.iterator();
+            while (it.hasNext()) {
+                final Instance i = it.next();
                 final Ms2Experiment experiment = i.getExperiment();
                 getQuantificationTable(i, experiment).ifPresent(quant -> {
                     for (int j = 0; j < quant.length(); ++j) sampleNames.add(quant.getName(j));
@@ -19,28 +19,19 @@
 
 package de.unijena.bioinf.ms.frontend.subtools.export.tables;
 
-import de.unijena.bioinf.ChemistryBase.fp.*;
 import de.unijena.bioinf.ChemistryBase.jobs.SiriusJobs;
-import de.unijena.bioinf.ChemistryBase.ms.Ms2Experiment;
 import de.unijena.bioinf.ChemistryBase.utils.IOFunctions;
-import de.unijena.bioinf.canopus.CanopusResult;
-import de.unijena.bioinf.fingerid.FingerprintResult;
 import de.unijena.bioinf.jjobs.BasicJJob;
-import de.unijena.bioinf.ms.annotations.DataAnnotation;
 import de.unijena.bioinf.ms.frontend.subtools.PreprocessingJob;
 import de.unijena.bioinf.ms.frontend.subtools.Provide;
 import de.unijena.bioinf.ms.frontend.subtools.RootOptions;
 import de.unijena.bioinf.ms.frontend.subtools.StandaloneTool;
 import de.unijena.bioinf.ms.frontend.workflow.Workflow;
 import de.unijena.bioinf.ms.properties.ParameterConfig;
-import de.unijena.bioinf.ms.rest.model.canopus.CanopusCfData;
-import de.unijena.bioinf.ms.rest.model.canopus.CanopusNpcData;
-import de.unijena.bioinf.ms.rest.model.fingerid.FingerIdData;
-import de.unijena.bioinf.projectspace.FormulaResult;
 import de.unijena.bioinf.projectspace.Instance;
-import de.unijena.bioinf.projectspace.canopus.CanopusCfDataProperty;
-import de.unijena.bioinf.projectspace.canopus.CanopusNpcDataProperty;
-import de.unijena.bioinf.projectspace.fingerid.FingerIdDataProperty;
+import de.unijena.bioinf.projectspace.PrefetchingInstanceIterator;
+import org.apache.commons.lang3.tuple.Pair;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.LoggerFactory;
 import picocli.CommandLine;
 
@@ -49,9 +40,9 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.ArrayList;
+import java.util.ArrayDeque;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Optional;
 import java.util.concurrent.ExecutionException;
 
 @CommandLine.Command(name = "prediction-export", aliases = {"EPR"}, description = "<STANDALONE> Exports predictions from CSI:FingerID and CANOPUS.", versionProvider = Provide.Versions.class, mixinStandardHelpOptions = true, sortOptions = false)
@@ -67,6 +58,9 @@ public class ExportPredictionsOptions implements StandaloneTool<ExportPrediction
         output = Paths.get(outputPath);
     }
 
+    @CommandLine.Option(names = {"--binary"}, description = "Additionally write the predictions as little-endian float32 matrix to '<output>.f32' (row major, N/A as NaN) with row and column names in '<output>.rows.tsv' and '<output>.cols.tsv'.")
+    protected boolean binary;
+
     @CommandLine.ArgGroup(exclusive = false)
     protected PredictionsOptions predictionsOptions;
 
@@ -76,199 +70,76 @@ public class ExportPredictionsOptions implements StandaloneTool<ExportPrediction
     }
 
     public static class ExportPredictionJJob extends BasicJJob<Boolean> {
-        private enum X {
-            CLASSYFIRE, NPC, FP, PUBCHEM, MACCS;
-        }
-
-        private final IOFunctions.IOSupplier<BufferedWriter> outputProvider;
-        private int polarity = 0;
-        private final PredictionsOptions options;
+        private final PredictionsTableWriter tableWriter;
         private final Iterable<? extends Instance> instances;
 
-        Class[] components;
-        MaskedFingerprintVersion[] versions;
-
         public ExportPredictionJJob(PredictionsOptions options, int polarity, Iterable<? extends Instance> inputInstances, IOFunctions.IOSupplier<BufferedWriter> outputProvider) {
+            this(options, polarity, inputInstances, outputProvider, null);
+        }
+
+        public ExportPredictionJJob(PredictionsOptions options, int polarity, Iterable<? extends Instance> inputInstances, IOFunctions.IOSupplier<BufferedWriter> outputProvider, @Nullable Path binaryPrefix) {
             super(JobType.SCHEDULER);
-            this.options = options;
-            this.polarity = polarity;
             this.instances = inputInstances;
-            this.outputProvider = outputProvider;
-
-
-            ArrayList<Class<? extends DataAnnotation>> comps = new ArrayList<>();
-            if (options.classyfire || options.npc) comps.add(CanopusResult.class);
-            if (options.fingerprints || options.pubchem || options.maccs) comps.add(FingerprintResult.class);
-            this.components = comps.toArray(Class[]::new);
-            this.versions = new MaskedFingerprintVersion[X.values().length];
+            this.tableWriter = new PredictionsTableWriter(options, polarity, outputProvider, binaryPrefix);
         }
 
         @Override
         protected Boolean compute() throws Exception {
             updateProgress(0, -1, -1, "Collecting instances for prediction export...");
-            boolean headerWritten = false;
-            List<Instance> filtered = new ArrayList<>();
-            for (Instance inst : instances) {
-                final int pol = inst.getExperiment().getPrecursorIonType().getCharge();
-                if (polarity==0) {
-                    polarity = pol;
-                }
-                if (polarity == pol) {
-                    filtered.add(inst);
-                }
-            }
-            if (filtered.isEmpty()) {
-                updateProgress(0, 1, 1, "No instances to export!");
-                return Boolean.FALSE;
-            }
-
-            try (final BufferedWriter writer = outputProvider.get()) {
-                String message = "Writing " + (polarity < 0 ? "negative" : "positive") + " ion mode data predictions...";
-                int progress = 0;
-                updateProgress(0, filtered.size(), progress, message);
-                for (Instance inst : filtered) {
-
-                    loadVersions(inst, polarity);
-                    if (!headerWritten) {
-                        writeHeader(writer, versions);
-                        writer.newLine();
-                        headerWritten = true;
-                    }
-                    try {
-                        write(writer, inst, inst.getExperiment());
-                    } catch (IOException e) {
-                        throw e;
-                    } catch (Exception e) {
-                        LoggerFactory.getLogger(getClass()).warn("Invalid instance '" + inst.getID() + "'. Skipping this instance!", e);
-                    } finally {
-                        inst.clearCompoundCache();
-                        inst.clearFormulaResultsCache();
-                    }
-                    updateProgress(0, filtered.size(), ++progress, message);
-                }
+            // rows are rendered in parallel but written in iteration order. The window bounds the number of rendered
+            // rows kept in memory.
+            final int window = Math.max(2, 4 * SiriusJobs.getGlobalJobManager().getIOThreads());
+            final ArrayDeque<Pair<Instance, BasicJJob<PredictionsTableWriter.Row>>> inFlight = new ArrayDeque<>(window);
+            int progress = 0;
+            // the compound containers are read ahead on the IO threads, the predictions are read by the render jobs
+            try (tableWriter; PrefetchingInstanceIterator<? extends Instance> prefetched = PrefetchingInstanceIterator.ofProject(instances, List.of(), List.of())) {
+                final Iterator<? extends Instance> it = prefetched != null ? prefetched : instances.iterator();
+                while (it.hasNext()) {
+                    final Instance inst = it.next();
+                    if (!tableWriter.accept(inst))
+                        continue;
+
+                    inFlight.addLast(Pair.of(inst, submitSubJob(new BasicJJob<PredictionsTableWriter.Row>(JobType.IO) {
+                        @Override
+                        protected PredictionsTableWriter.Row compute() {
+                            try {
+                                return tableWriter.render(inst);
+                            } finally {
+                                inst.clearCompoundCache();
+                                inst.clearFormulaResultsCache();
+                            }
+                        }
+                    })));
+                    ++progress;
+                    if (inFlight.size() >= window)
+                        writeNext(inFlight);
+                }
+                while (!inFlight.isEmpty())
+                    writeNext(inFlight);
+
+                if (!tableWriter.isOpen()) {
+                    updateProgress(0, 1, 1, "No instances to export!");
+                    return Boolean.FALSE;
+                }
+                updateProgress(0, progress, progress, message());
             }
             return Boolean.TRUE;
         }
 
-        private void loadVersions(Instance inst, int polarity) {
-            if (versions[X.CLASSYFIRE.ordinal()] == null) {
-                final Optional<CanopusCfDataProperty> ps = inst.getProjectSpaceManager().getProjectSpaceProperty(CanopusCfDataProperty.class);
-                if (ps.isPresent()) {
-                    final CanopusCfData byCharge = ps.get().getByCharge(polarity);
-                    versions[X.CLASSYFIRE.ordinal()] = byCharge.getFingerprintVersion();
-                }
-            }
-            if (versions[X.NPC.ordinal()] == null) {
-                final Optional<CanopusNpcDataProperty> ps = inst.getProjectSpaceManager().getProjectSpaceProperty(CanopusNpcDataProperty.class);
-                if (ps.isPresent()) {
-                    final CanopusNpcData byCharge = ps.get().getByCharge(polarity);
-                    versions[X.NPC.ordinal()] = byCharge.getFingerprintVersion();
-                }
-            }
-            if (versions[X.FP.ordinal()] == null) {
-                final Optional<FingerIdDataProperty> ps = inst.getProjectSpaceManager().getProjectSpaceProperty(FingerIdDataProperty.class);
-                if (ps.isPresent()) {
-                    final FingerIdData byCharge = ps.get().getByCharge(polarity);
-                    versions[X.FP.ordinal()] = byCharge.getFingerprintVersion();
-                    versions[X.PUBCHEM.ordinal()] = versions[X.FP.ordinal()].getIntersection(CdkFingerprintVersion.getComplete().getMaskFor(CdkFingerprintVersion.USED_FINGERPRINTS.PUBCHEM));
-                    versions[X.MACCS.ordinal()] = versions[X.FP.ordinal()].getIntersection(CdkFingerprintVersion.getComplete().getMaskFor(CdkFingerprintVersion.USED_FINGERPRINTS.MACCS));
-                }
-            }
+        private String message() {
+            return "Writing " + (tableWriter.getPolarity() < 0 ? "negative" : "positive") + " ion mode data predictions...";
         }
 
-        private void write(BufferedWriter writer, Instance inst, Ms2Experiment experiment) throws IOException {
-            Optional<FormulaResult> fid = inst.loadTopFormulaResult(components);
-            if (fid.isPresent()) {
-                final FormulaResult formulaResult = fid.get();
-                writer.write(inst.getID().getDirectoryName());
-                writer.write('\t');
-                writer.write(inst.getID().getCompoundName());
-                writer.write('\t');
-                writer.write(formulaResult.getId().getMolecularFormula().toString());
-                writer.write('\t');
-                writer.write(formulaResult.getId().getIonType().toString());
-                if (options.classyfire) {
-                    write(writer, versions[X.CLASSYFIRE.ordinal()], formulaResult.getAnnotation(CanopusResult.class).map(CanopusResult::getCanopusFingerprint));
-                }
-                if (options.npc) {
-                    write(writer, versions[X.NPC.ordinal()], formulaResult.getAnnotation(CanopusResult.class).flatMap(CanopusResult::getNpcFingerprint));
-                }
-                if (options.fingerprints) {
-                    write(writer, versions[X.FP.ordinal()], formulaResult.getAnnotation(FingerprintResult.class).map(x -> x.fingerprint));
-                }
-                if (options.pubchem) {
-                    write(writer, versions[X.PUBCHEM.ordinal()], formulaResult.getAnnotation(FingerprintResult.class).map(x -> versions[X.PUBCHEM.ordinal()].mask(x.fingerprint)));
-                }
-                if (options.maccs) {
-                    write(writer, versions[X.MACCS.ordinal()], formulaResult.getAnnotation(FingerprintResult.class).map(x -> versions[X.MACCS.ordinal()].mask(x.fingerprint)));
-                }
-
-
-                writer.newLine();
-            }
-        }
-
-        private void writeHeader(BufferedWriter writer, MaskedFingerprintVersion[] versions) throws IOException {
-            writer.write("id\tname\tmolecularFormula\tadduct");
-            if (options.classyfire) {
-                final MaskedFingerprintVersion version = versions[X.CLASSYFIRE.ordinal()];
-                for (int absi : version.allowedIndizes()) {
-                    MolecularProperty prop = version.getMolecularProperty(absi);
-                    writer.write('\t');
-                    writer.write("ClassyFire#");
-                    writer.write(((ClassyfireProperty) prop).getName());
-                }
-            }
-
-            if (options.npc) {
-                final MaskedFingerprintVersion version = versions[X.NPC.ordinal()];
-                for (int absi : version.allowedIndizes()) {
-                    MolecularProperty prop = version.getMolecularProperty(absi);
-                    writer.write('\t');
-                    writer.write("NPC#");
-                    writer.write(((NPCFingerprintVersion.NPCProperty) prop).getName());
-                }
-            }
-
-            if (options.fingerprints) {
-                final MaskedFingerprintVersion version = versions[X.FP.ordinal()];
-                for (int absi : version.allowedIndizes()) {
-                    writer.write('\t');
-                    writer.write(String.valueOf(absi));
-                }
-            }
-
-            if (options.pubchem) {
-                final MaskedFingerprintVersion version = versions[X.PUBCHEM.ordinal()];
-                int pubchemOffset = CdkFingerprintVersion.getComplete().getOffsetFor(CdkFingerprintVersion.USED_FINGERPRINTS.PUBCHEM);
-                for (int absi : version.allowedIndizes()) {
-                    writer.write('\t');
-                    writer.write("PubChem#");
-                    writer.write(String.valueOf(absi-pubchemOffset));
-                }
-            }
-            if (options.maccs) {
-                final MaskedFingerprintVersion version = versions[X.MACCS.ordinal()];
-                int pubchemOffset = CdkFingerprintVersion.getComplete().getOffsetFor(CdkFingerprintVersion.USED_FINGERPRINTS.MACCS);
-                for (int absi : version.allowedIndizes()) {
-                    writer.write('\t');
-                    writer.write("MACCS#");
-                    writer.write(String.valueOf(absi-pubchemOffset));
-                }
-            }
-        }
-
-        private void write(BufferedWriter writer, MaskedFingerprintVersion version, Optional<ProbabilityFingerprint> fp) throws IOException {
-            if (fp.isPresent()) {
-                for (FPIter x : fp.get()) {
-                    writer.write('\t');
-                    writer.write(options.float2string(x.getProbability()));
-                }
-            } else {
-                for (int i = 0; i < version.size(); ++i) {
-                    writer.write("\tN/A");
-                }
+        private void writeNext(ArrayDeque<Pair<Instance, BasicJJob<PredictionsTableWriter.Row>>> inFlight) throws IOException {
+            final Pair<Instance, BasicJJob<PredictionsTableWriter.Row>> next = inFlight.removeFirst();
+            try {
+                tableWriter.write(next.getRight().awaitResult());
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException)
+                    throw (IOException) e.getCause();
+                LoggerFactory.getLogger(getClass()).warn("Invalid instance '" + next.getLeft().getID() + "'. Skipping this instance!", e.getCause());
             }
+            updateProgress(0, -1, tableWriter.getNumberOfRows(), message());
         }
     }
 
@@ -287,7 +158,8 @@ public class ExportPredictionsOptions implements StandaloneTool<ExportPrediction
             try {
                 final Iterable<Instance> ps = SiriusJobs.getGlobalJobManager().submitJob(job).awaitResult();
                 try {
-                    SiriusJobs.getGlobalJobManager().submitJob(new ExportPredictionJJob(options.predictionsOptions, options.polarity, ps, () -> Files.newBufferedWriter(options.output))).awaitResult();
+                    SiriusJobs.getGlobalJobManager().submitJob(new ExportPredictionJJob(options.predictionsOptions, options.polarity, ps, () -> Files.newBufferedWriter(options.output),
+                            options.binary ? options.output : null)).awaitResult();
                 } catch (ExecutionException e) {
                     LoggerFactory.getLogger(getClass()).error("Error when writing the table file to: " + options.output.toString(), e);
                 }
@@ -0,0 +1,115 @@
+/*
+ *  This file is part of the SIRIUS Software for analyzing MS and MS/MS data
+ *
+ *  Copyright (C) 2013-2020 Kai Dührkop, Markus Fleischauer, Marcus Ludwig, Martin A. Hoffman, Fleming Kretschmer, Marvin Meusel and Sebastian Böcker,
+ *  Chair of Bioinformatics, Friedrich-Schiller University.
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Affero General Public License
+ *  as published by the Free Software Foundation; either
+ *  version 3 of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License along with SIRIUS.  If not, see <https://www.gnu.org/licenses/agpl-3.0.txt>
+ */
+
+package de.unijena.bioinf.ms.frontend.subtools.export.tables;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.text.DecimalFormat;
+
+/**
+ * Thread safe and fast replacement for {@link DecimalFormat} with pattern "0" or "0.###..." (fixed maximum number of
+ * fraction digits, trailing zeros removed). Produces the same output as the {@link DecimalFormat}: values that need
+ * more than 15 significant digits, values that are too close to a rounding tie to be decided in double precision, as
+ * well as negative or non-finite values, are delegated to a per thread copy of the {@link DecimalFormat}.
+ */
+public class FixedPrecisionFormatter {
+    private static final double[] POW10 = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15};
+    private static final double TIE_EPSILON = 1e-6;
+    // integer and fraction digits together must not exceed 15 significant digits, which a double always represents
+    private static final double MAX_FAST_SCALED = 1e15;
+
+    @Nullable
+    private final DecimalFormat decimalFormat;
+    private final ThreadLocal<DecimalFormat> fallback;
+    private final int digits;
+    private final char decimalSeparator;
+
+    /**
+     * @param digits maximum number of fraction digits. Negative values mean full length double values
+     *               ({@link String#valueOf(double)}).
+     */
+    public FixedPrecisionFormatter(int digits) {
+        this.digits = digits;
+        if (digits == 0) {
+            decimalFormat = new DecimalFormat("0");
+        } else if (digits > 0) {
+            decimalFormat = new DecimalFormat("0." + "#".repeat(digits));
+        } else {
+            decimalFormat = null;
+        }
+        this.fallback = decimalFormat == null ? null : ThreadLocal.withInitial(() -> (DecimalFormat) decimalFormat.clone());
+        this.decimalSeparator = decimalFormat == null ? '.' : decimalFormat.getDecimalFormatSymbols().getDecimalSeparator();
+    }
+
+    public String format(double value) {
+        if (decimalFormat == null)
+            return String.valueOf(value);
+        final StringBuilder buf = new StringBuilder(digits + 4);
+        append(buf, value);
+        return buf.toString();
+    }
+
+    public String format(float value) {
+        if (decimalFormat == null)
+            return String.valueOf(value);
+        return format((double) value);
+    }
+
+    public void append(StringBuilder buf, double value) {
+        if (decimalFormat == null) {
+            buf.append(value);
+            return;
+        }
+        if (!(value >= 0d) || digits >= POW10.length || Double.doubleToRawLongBits(value) < 0) {
+            buf.append(fallback.get().format(value));
+            return;
+        }
+
+        final double scaled = value * POW10[digits];
+        if (!(scaled < MAX_FAST_SCALED)) {
+            buf.append(fallback.get().format(value));
+            return;
+        }
+        final double floor = Math.floor(scaled);
+        final double frac = scaled - floor;
+        // the scaled value is off by up to one ulp from the exact product and from the decimal digits DecimalFormat rounds
+        if (Math.abs(frac - 0.5d) < Math.max(TIE_EPSILON, 2 * Math.ulp(scaled))) {
+            // rounding decision needs the exact binary value
+            buf.append(fallback.get().format(value));
+            return;
+        }
+        final long rounded = (long) floor + (frac > 0.5d ? 1 : 0);
+        final long pow = (long) POW10[digits];
+        buf.append(rounded / pow);
+        long fraction = rounded % pow;
+        if (fraction == 0)
+            return;
+        int numberOfDigits = digits;
+        while (fraction % 10 == 0) {
+            fraction /= 10;
+            --numberOfDigits;
+        }
+        buf.append(decimalSeparator);
+        final String f = Long.toString(fraction);
+        for (int i = f.length(); i < numberOfDigits; ++i)
+            buf.append('0');
+        buf.append(f);
+    }
+}
@@ -22,31 +22,14 @@ package de.unijena.bioinf.ms.frontend.subtools.export.tables;
 
 import picocli.CommandLine;
 
-import java.text.DecimalFormat;
-
 public class PredictionsOptions {
 
-    protected DecimalFormat decimalFormat = null;
+    protected FixedPrecisionFormatter formatter = new FixedPrecisionFormatter(-1);
 
     @CommandLine.Option(names = {"--digits","--precision","-p"},
             description = {"Specify number of digits used for printing floating point values. -1 -> full length Double value."}, defaultValue="-1")
     protected void setDigits(int digits) {
-        if (digits == 0) {
-            decimalFormat = new DecimalFormat("0");
-        } else if (digits > 0) {
-            decimalFormat = new DecimalFormat("0." + "#".repeat(digits));
-        } else {
-            decimalFormat = null;
-        }
-    }
-
-    protected String float2string(double value) {
-        if (decimalFormat==null) return String.valueOf(value);
-        else return decimalFormat.format(value);
-    }
-    protected String float2string(float value) {
-        if (decimalFormat==null) return String.valueOf(value);
-        else return decimalFormat.format(value);
+        formatter = new FixedPrecisionFormatter(digits);
     }
 
     @CommandLine.Option(names = {"--classyfire"}, description = "Output predicted  classyfire probabilities by CANOPUS.")
@@ -0,0 +1,340 @@
+/*
+ *  This file is part of the SIRIUS Software for analyzing MS and MS/MS data
+ *
+ *  Copyright (C) 2013-2020 Kai Dührkop, Markus Fleischauer, Marcus Ludwig, Martin A. Hoffman, Fleming Kretschmer, Marvin Meusel and Sebastian Böcker,
+ *  Chair of Bioinformatics, Friedrich-Schiller University.
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Affero General Public License
+ *  as published by the Free Software Foundation; either
+ *  version 3 of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License along with SIRIUS.  If not, see <https://www.gnu.org/licenses/agpl-3.0.txt>
+ */
+
+package de.unijena.bioinf.ms.frontend.subtools.export.tables;
+
+import de.unijena.bioinf.ChemistryBase.chem.PrecursorIonType;
+import de.unijena.bioinf.ChemistryBase.fp.*;
+import de.unijena.bioinf.ChemistryBase.ms.Ms2Experiment;
+import de.unijena.bioinf.ChemistryBase.utils.IOFunctions;
+import de.unijena.bioinf.canopus.CanopusResult;
+import de.unijena.bioinf.fingerid.FingerprintResult;
+import de.unijena.bioinf.ms.annotations.DataAnnotation;
+import de.unijena.bioinf.ms.rest.model.canopus.CanopusCfData;
+import de.unijena.bioinf.ms.rest.model.canopus.CanopusNpcData;
+import de.unijena.bioinf.ms.rest.model.fingerid.FingerIdData;
+import de.unijena.bioinf.projectspace.CompoundContainer;
+import de.unijena.bioinf.projectspace.CompoundContainerId;
+import de.unijena.bioinf.projectspace.FormulaResult;
+import de.unijena.bioinf.projectspace.Instance;
+import de.unijena.bioinf.projectspace.ProjectSpaceManager;
+import de.unijena.bioinf.projectspace.canopus.CanopusCfDataProperty;
+import de.unijena.bioinf.projectspace.canopus.CanopusNpcDataProperty;
+import de.unijena.bioinf.projectspace.fingerid.FingerIdDataProperty;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Writes the predictions table of one polarity.
+ * <p>
+ * Rows are rendered by {@link #render(Instance)}, which is thread safe and intended to be called from worker
+ * threads. The other methods are synchronized, so instances may be accepted and rows written from any thread, but
+ * rendered rows have to be passed to {@link #write(Row)} in the order they should appear in the output.
+ * The output file is created lazily when the first instance of the requested polarity is accepted. Optionally, the
+ * probabilities are additionally written as little-endian float32 matrix (row major) with a row and a column index
+ * file, which can be read directly by numpy or R.
+ */
+public class PredictionsTableWriter implements Closeable {
+    private enum X {
+        CLASSYFIRE, NPC, FP, PUBCHEM, MACCS;
+    }
+
+    private final PredictionsOptions options;
+    private final IOFunctions.IOSupplier<BufferedWriter> outputProvider;
+    @Nullable
+    private final Path binaryPrefix;
+    private int polarity;
+
+    private final Class<? extends DataAnnotation>[] components;
+    private final MaskedFingerprintVersion[] versions = new MaskedFingerprintVersion[X.values().length];
+
+    private BufferedWriter writer = null;
+    private OutputStream binaryWriter = null;
+    private BufferedWriter binaryRowWriter = null;
+    private int numberOfColumns = 0;
+    private int rows = 0;
+
+    /**
+     * @param polarity     polarity of the instances to write. 0 means that the polarity of the first instance is used.
+     * @param binaryPrefix if not null, additionally write a binary float32 matrix to '[prefix].f32' with index files
+     *                     '[prefix].rows.tsv' and '[prefix].cols.tsv'.
+     */
+    @SuppressWarnings("unchecked")
+    public PredictionsTableWriter(@NotNull PredictionsOptions options, int polarity, @NotNull IOFunctions.IOSupplier<BufferedWriter> outputProvider, @Nullable Path binaryPrefix) {
+        this.options = options;
+        this.polarity = polarity;
+        this.outputProvider = outputProvider;
+        this.binaryPrefix = binaryPrefix;
+
+        ArrayList<Class<? extends DataAnnotation>> comps = new ArrayList<>();
+        if (options.classyfire || options.npc) comps.add(CanopusResult.class);
+        if (options.fingerprints || options.pubchem || options.maccs) comps.add(FingerprintResult.class);
+        this.components = comps.toArray(Class[]::new);
+    }
+
+    public Class<? extends DataAnnotation>[] getComponents() {
+        return components;
+    }
+
+    public synchronized int getPolarity() {
+        return polarity;
+    }
+
+    public synchronized boolean isOpen() {
+        return writer != null;
+    }
+
+    /**
+     * Decides from the compound id (without loading the experiment if possible) whether the instance belongs to the
+     * polarity of this table. Opens the output when the first instance is accepted. Synchronized, so it may be called
+     * concurrently and in any order. If no polarity was given, the first accepted instance decides it, so callers that
+     * accept concurrently should fix the polarity to get a deterministic table.
+     */
+    public boolean accept(@NotNull Instance inst) throws IOException {
+        return accept(charge(inst), inst.getProjectSpaceManager());
+    }
+
+    /**
+     * Same as {@link #accept(Instance)} for a compound with the given charge.
+     *
+     * @param project project to load the fingerprint versions from. May be null if no predictions are requested.
+     */
+    public synchronized boolean accept(int charge, @Nullable ProjectSpaceManager<?> project) throws IOException {
+        if (polarity == 0)
+            polarity = charge;
+        if (polarity != charge)
+            return false;
+        if (writer == null) {
+            loadVersions(project, polarity);
+            final List<String> columns = columnNames();
+            numberOfColumns = columns.size();
+            writer = outputProvider.get();
+            writer.write("id\tname\tmolecularFormula\tadduct");
+            for (String column : columns) {
+                writer.write('\t');
+                writer.write(column);
+            }
+            writer.newLine();
+
+            if (binaryPrefix != null) {
+                if (binaryPrefix.getParent() != null)
+                    Files.createDirectories(binaryPrefix.getParent());
+                try (BufferedWriter colWriter = Files.newBufferedWriter(binaryPrefix.resolveSibling(binaryPrefix.getFileName() + ".cols.tsv"))) {
+                    for (String column : columns) {
+                        colWriter.write(column);
+                        colWriter.newLine();
+                    }
+                }
+                binaryRowWriter = Files.newBufferedWriter(binaryPrefix.resolveSibling(binaryPrefix.getFileName() + ".rows.tsv"));
+                binaryRowWriter.write("id\tname\tmolecularFormula\tadduct");
+                binaryRowWriter.newLine();
+                binaryWriter = new BufferedOutputStream(Files.newOutputStream(binaryPrefix.resolveSibling(binaryPrefix.getFileName() + ".f32")));
+            }
+        }
+        return true;
+    }
+
+    public static int charge(@NotNull Instance inst) {
+        return inst.getID().getIonType().map(PrecursorIonType::getCharge)
+                .orElseGet(() -> inst.getExperiment().getPrecursorIonType().getCharge());
+    }
+
+    public static int charge(@NotNull CompoundContainer compound) {
+        return compound.getId().getIonType().map(PrecursorIonType::getCharge)
+                .orElseGet(() -> compound.getAnnotationOrThrow(Ms2Experiment.class).getPrecursorIonType().getCharge());
+    }
+
+    /**
+     * Renders the row of the given instance. Thread safe.
+     *
+     * @return rendered row, the row is empty if the instance has no formula result.
+     */
+    public Row render(@NotNull Instance inst) {
+        return render(inst, inst.loadTopFormulaResult(components).orElse(null));
+    }
+
+    /**
+     * Renders the row of the given instance from an already loaded top formula result. Thread safe.
+     */
+    public Row render(@NotNull Instance inst, @Nullable FormulaResult formulaResult) {
+        return render(inst.getID(), formulaResult);
+    }
+
+    /**
+     * Renders the row of the given compound from an already loaded top formula result. Thread safe.
+     */
+    public Row render(@NotNull CompoundContainerId id, @Nullable FormulaResult formulaResult) {
+        if (formulaResult == null)
+            return Row.EMPTY;
+        final StringBuilder buf = new StringBuilder(64 + 12 * numberOfColumns);
+        buf.append(id.getDirectoryName()).append('\t')
+                .append(id.getCompoundName()).append('\t')
+                .append(formulaResult.getId().getMolecularFormula().toString()).append('\t')
+                .append(formulaResult.getId().getIonType().toString());
+        final String rowId = buf.toString();
+        final float[] values = binaryPrefix != null ? new float[numberOfColumns] : null;
+        final int[] offset = new int[]{0};
+
+        if (options.classyfire)
+            append(buf, values, offset, versions[X.CLASSYFIRE.ordinal()], formulaResult.getAnnotation(CanopusResult.class).map(CanopusResult::getCanopusFingerprint));
+        if (options.npc)
+            append(buf, values, offset, versions[X.NPC.ordinal()], formulaResult.getAnnotation(CanopusResult.class).flatMap(CanopusResult::getNpcFingerprint));
+        if (options.fingerprints)
+            append(buf, values, offset, versions[X.FP.ordinal()], formulaResult.getAnnotation(FingerprintResult.class).map(x -> x.fingerprint));
+        if (options.pubchem)
+            append(buf, values, offset, versions[X.PUBCHEM.ordinal()], formulaResult.getAnnotation(FingerprintResult.class).map(x -> versions[X.PUBCHEM.ordinal()].mask(x.fingerprint)));
+        if (options.maccs)
+            append(buf, values, offset, versions[X.MACCS.ordinal()], formulaResult.getAnnotation(FingerprintResult.class).map(x -> versions[X.MACCS.ordinal()].mask(x.fingerprint)));
+
+        return new Row(buf.toString(), rowId, values);
+    }
+
+    private void append(StringBuilder buf, @Nullable float[] values, int[] offset, MaskedFingerprintVersion version, Optional<ProbabilityFingerprint> fp) {
+        if (fp.isPresent()) {
+            for (FPIter x : fp.get()) {
+                buf.append('\t');
+                options.formatter.append(buf, x.getProbability());
+                if (values != null)
+                    values[offset[0]++] = (float) x.getProbability();
+            }
+        } else {
+            for (int i = 0; i < version.size(); ++i) {
+                buf.append("\tN/A");
+                if (values != null)
+                    values[offset[0]++] = Float.NaN;
+            }
+        }
+    }
+
+    /**
+     * Writes a rendered row. Synchronized, but rows have to be passed in output order.
+     */
+    public synchronized void write(@NotNull Row row) throws IOException {
+        if (row.line == null)
+            return;
+        writer.write(row.line);
+        writer.newLine();
+        if (binaryWriter != null) {
+            binaryRowWriter.write(row.rowId);
+            binaryRowWriter.newLine();
+            final ByteBuffer buffer = ByteBuffer.allocate(row.values.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.asFloatBuffer().put(row.values);
+            binaryWriter.write(buffer.array());
+        }
+        ++rows;
+    }
+
+    public synchronized int getNumberOfRows() {
+        return rows;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try (Closeable w = writer; Closeable b = binaryWriter; Closeable r = binaryRowWriter) {
+            if (binaryPrefix != null && writer != null)
+                Files.writeString(binaryPrefix.resolveSibling(binaryPrefix.getFileName() + ".shape"),
+                        rows + "\t" + numberOfColumns + System.lineSeparator(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private List<String> columnNames() {
+        final List<String> columns = new ArrayList<>();
+        if (options.classyfire) {
+            final MaskedFingerprintVersion version = versions[X.CLASSYFIRE.ordinal()];
+            for (int absi : version.allowedIndizes())
+                columns.add("ClassyFire#" + ((ClassyfireProperty) version.getMolecularProperty(absi)).getName());
+        }
+        if (options.npc) {
+            final MaskedFingerprintVersion version = versions[X.NPC.ordinal()];
+            for (int absi : version.allowedIndizes())
+                columns.add("NPC#" + ((NPCFingerprintVersion.NPCProperty) version.getMolecularProperty(absi)).getName());
+        }
+        if (options.fingerprints) {
+            final MaskedFingerprintVersion version = versions[X.FP.ordinal()];
+            for (int absi : version.allowedIndizes())
+                columns.add(String.valueOf(absi));
+        }
+        if (options.pubchem) {
+            final MaskedFingerprintVersion version = versions[X.PUBCHEM.ordinal()];
+            int pubchemOffset = CdkFingerprintVersion.getComplete().getOffsetFor(CdkFingerprintVersion.USED_FINGERPRINTS.PUBCHEM);
+            for (int absi : version.allowedIndizes())
+                columns.add("PubChem#" + (absi - pubchemOffset));
+        }
+        if (options.maccs) {
+            final MaskedFingerprintVersion version = versions[X.MACCS.ordinal()];
+            int maccsOffset = CdkFingerprintVersion.getComplete().getOffsetFor(CdkFingerprintVersion.USED_FINGERPRINTS.MACCS);
+            for (int absi : version.allowedIndizes())
+                columns.add("MACCS#" + (absi - maccsOffset));
+        }
+        return columns;
+    }
+
+    private void loadVersions(@Nullable ProjectSpaceManager<?> project, int polarity) {
+        if (project == null)
+            return;
+        if (options.classyfire && versions[X.CLASSYFIRE.ordinal()] == null) {
+            final Optional<CanopusCfDataProperty> ps = project.getProjectSpaceProperty(CanopusCfDataProperty.class);
+            if (ps.isPresent()) {
+                final CanopusCfData byCharge = ps.get().getByCharge(polarity);
+                versions[X.CLASSYFIRE.ordinal()] = byCharge.getFingerprintVersion();
+            }
+        }
+        if (options.npc && versions[X.NPC.ordinal()] == null) {
+            final Optional<CanopusNpcDataProperty> ps = project.getProjectSpaceProperty(CanopusNpcDataProperty.class);
+            if (ps.isPresent()) {
+                final CanopusNpcData byCharge = ps.get().getByCharge(polarity);
+                versions[X.NPC.ordinal()] = byCharge.getFingerprintVersion();
+            }
+        }
+        if ((options.fingerprints || options.pubchem || options.maccs) && versions[X.FP.ordinal()] == null) {
+            final Optional<FingerIdDataProperty> ps = project.getProjectSpaceProperty(FingerIdDataProperty.class);
+            if (ps.isPresent()) {
+                final FingerIdData byCharge = ps.get().getByCharge(polarity);
+                versions[X.FP.ordinal()] = byCharge.getFingerprintVersion();
+                versions[X.PUBCHEM.ordinal()] = versions[X.FP.ordinal()].getIntersection(CdkFingerprintVersion.getComplete().getMaskFor(CdkFingerprintVersion.USED_FINGERPRINTS.PUBCHEM));
+                versions[X.MACCS.ordinal()] = versions[X.FP.ordinal()].getIntersection(CdkFingerprintVersion.getComplete().getMaskFor(CdkFingerprintVersion.USED_FINGERPRINTS.MACCS));
+            }
+        }
+    }
+
+    public static class Row {
+        private static final Row EMPTY = new Row(null, null, null);
+
+        @Nullable
+        private final String line;
+        private final String rowId;
+        private final float[] values;
+
+        private Row(@Nullable String line, String rowId, float[] values) {
+            this.line = line;
+            this.rowId = rowId;
+            this.values = values;
+        }
+    }
+}
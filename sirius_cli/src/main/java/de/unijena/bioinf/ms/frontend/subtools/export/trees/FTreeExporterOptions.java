@@ -55,6 +55,12 @@ public class FTreeExporterOptions implements StandaloneTool<FTreeExporterWorkflo
     }
     protected Path output = null;
 
+    @CommandLine.Option(names = {"--archive"}, description = "Write all trees into a single zip archive (including an index.tsv) instead of one file per tree. Recommended when exporting many trees.")
+    public void setArchive(File archiveFile) {
+        archive = archiveFile.toPath();
+    }
+    protected Path archive = null;
+
 
     @Override
     public FTreeExporterWorkflow makeWorkflow(RootOptions<?, ?, ?, ?> rootOptions, ParameterConfig config) {
@@ -24,20 +24,33 @@ import de.unijena.bioinf.ChemistryBase.jobs.SiriusJobs;
 import de.unijena.bioinf.ChemistryBase.ms.ft.FTree;
 import de.unijena.bioinf.babelms.dot.FTDotWriter;
 import de.unijena.bioinf.babelms.json.FTJsonWriter;
+import de.unijena.bioinf.jjobs.BasicJJob;
+import de.unijena.bioinf.jjobs.JJob;
+import de.unijena.bioinf.jjobs.JobManager;
 import de.unijena.bioinf.ms.frontend.subtools.PreprocessingJob;
 import de.unijena.bioinf.ms.frontend.workflow.Workflow;
 import de.unijena.bioinf.ms.properties.ParameterConfig;
 import de.unijena.bioinf.projectspace.Instance;
+import de.unijena.bioinf.projectspace.PrefetchingInstanceIterator;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.ExecutionException;
 import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 /**
  * Standalone-Tool to export spectra to mgf format.
@@ -58,50 +71,133 @@ public class FTreeExporterWorkflow implements Workflow {
         final Path outputPath = options.output;
         try {
             final Iterable<Instance> ps = SiriusJobs.getGlobalJobManager().submitJob(ppj).awaitResult();
-            if (Files.notExists(outputPath))
-                Files.createDirectories(outputPath);
-            if (!Files.isDirectory(outputPath))
-                throw new IOException("The output path needs to be a directory.");
-
-            FTDotWriter dotWriter = new FTDotWriter();
-            FTJsonWriter jsonWriter = new FTJsonWriter();
-            for (Instance inst : ps) {
-                try {
-                    List<NamedFTree> trees =  options.exportAllTrees
-                            ? inst.loadFormulaResults(FTree.class).stream().map(SScored::getCandidate).map(res ->  res.getAnnotation(FTree.class).map(t -> NamedFTree.of(t, res.getId().fileName())))
-                                .filter(Optional::isPresent).map(Optional::get).collect(Collectors.toList())
-                            : inst.loadTopFormulaResult(FTree.class).flatMap(res ->  res.getAnnotation(FTree.class).map(t -> NamedFTree.of(t, res.getId().fileName()))).map(List::of).orElse(List.of());
+            final boolean archive = options.archive != null;
+            if (archive) {
+                if (options.archive.getParent() != null)
+                    Files.createDirectories(options.archive.getParent());
+            } else {
+                if (Files.notExists(outputPath))
+                    Files.createDirectories(outputPath);
+                if (!Files.isDirectory(outputPath))
+                    throw new IOException("The output path needs to be a directory.");
+            }
+
+            final JobManager jobs = SiriusJobs.getGlobalJobManager();
+            // bounds the number of instances that are loaded/rendered at the same time
+            final int window = Math.max(2, 2 * jobs.getCPUThreads());
+            final ArrayDeque<BasicJJob<List<RenderedTree>>> inFlight = new ArrayDeque<>(window);
+            // compounds (and all trees, if requested) are read ahead on the IO threads
+            try (ZipOutputStream zip = archive ? new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(options.archive))) : null;
+                 PrefetchingInstanceIterator<Instance> prefetched = PrefetchingInstanceIterator.ofProject(ps, List.of(),
+                         options.exportAllTrees ? List.of(FTree.class) : List.of())) {
+                final StringBuilder index = new StringBuilder("file\tid\tformulaResult\tformat\n");
+                final Iterator<Instance> it = prefetched != null ? prefetched : ps.iterator();
+                while (it.hasNext()) {
+                    final Instance inst = it.next();
+                    inFlight.add(jobs.submitJob(renderJob(inst, archive ? null : outputPath)));
+                    if (inFlight.size() >= window)
+                        addToArchive(zip, index, inFlight.poll().takeResult());
+                }
+                while (!inFlight.isEmpty())
+                    addToArchive(zip, index, inFlight.poll().takeResult());
 
-                    if (trees.isEmpty())
-                        continue;
+                if (zip != null) {
+                    zip.putNextEntry(new ZipEntry("index.tsv"));
+                    zip.write(index.toString().getBytes(StandardCharsets.UTF_8));
+                    zip.closeEntry();
+                }
+            }
+        } catch (ExecutionException e) {
+            LoggerFactory.getLogger(getClass()).error("Error when reading input project!", e);
+        } catch (IOException e) {
+            LoggerFactory.getLogger(getClass()).error("Error when writing tree output file to: " + (options.archive != null ? options.archive : outputPath), e);
+        }
+    }
 
+    private static void addToArchive(@Nullable ZipOutputStream zip, StringBuilder index, List<RenderedTree> trees) throws IOException {
+        if (zip == null)
+            return;
+        for (RenderedTree tree : trees) {
+            zip.putNextEntry(new ZipEntry(tree.fileName));
+            zip.write(tree.content);
+            zip.closeEntry();
+            index.append(tree.fileName).append('\t').append(tree.id).append('\t')
+                    .append(tree.formulaResult).append('\t').append(tree.format).append('\n');
+        }
+    }
+
+    private final ThreadLocal<FTDotWriter> dotWriters = ThreadLocal.withInitial(FTDotWriter::new);
+    private final ThreadLocal<FTJsonWriter> jsonWriters = ThreadLocal.withInitial(FTJsonWriter::new);
+    private final ThreadLocal<StringWriter> buffers = ThreadLocal.withInitial(() -> new StringWriter(1 << 16));
+
+    /**
+     * Loads the trees of the given instance and renders them into per thread buffers.
+     *
+     * @param outputDir if not null, the rendered trees are written as files into this directory and nothing is returned.
+     */
+    private BasicJJob<List<RenderedTree>> renderJob(Instance inst, @Nullable Path outputDir) {
+        return new BasicJJob<>(JJob.JobType.IO) {
+            @Override
+            protected List<RenderedTree> compute() {
+                final List<RenderedTree> rendered = new ArrayList<>();
+                try {
+                    List<NamedFTree> trees = options.exportAllTrees
+                            ? inst.loadFormulaResults(FTree.class).stream().map(SScored::getCandidate).map(res -> res.getAnnotation(FTree.class).map(t -> NamedFTree.of(t, res.getId().fileName())))
+                            .filter(Optional::isPresent).map(Optional::get).collect(Collectors.toList())
+                            : inst.loadTopFormulaResult(FTree.class).flatMap(res -> res.getAnnotation(FTree.class).map(t -> NamedFTree.of(t, res.getId().fileName()))).map(List::of).orElse(List.of());
 
                     for (NamedFTree nTree : trees) {
-                        if (options.exportJson){
-                            try (final BufferedWriter writer = Files.newBufferedWriter(outputPath.resolve(inst.getID().getDirectoryName() + "_" + nTree.name + ".json"))) {
-                                jsonWriter.writeTree(writer, nTree.tree);
-                            }
-                        }
-
-                        if (options.exportDot) {
-                            try (final BufferedWriter writer = Files.newBufferedWriter(outputPath.resolve(inst.getID().getDirectoryName() + "_" + nTree.name + ".dot"))) {
-                                dotWriter.writeTree(writer, nTree.tree);
-                            }
-                        }
+                        if (options.exportJson)
+                            rendered.add(render(inst, nTree, "json", w -> jsonWriters.get().writeTree(w, nTree.tree)));
+                        if (options.exportDot)
+                            rendered.add(render(inst, nTree, "dot", w -> dotWriters.get().writeTree(w, nTree.tree)));
                     }
 
+                    if (outputDir != null) {
+                        for (RenderedTree tree : rendered)
+                            Files.write(outputDir.resolve(tree.fileName), tree.content);
+                        return List.of();
+                    }
+                    return rendered;
                 } catch (Exception e) {
-                    LoggerFactory.getLogger(getClass()).warn("Invalid instance '" + inst.getID() + "'. Skipping this instance!", e);
+                    LoggerFactory.getLogger(FTreeExporterWorkflow.class).warn("Invalid instance '" + inst.getID() + "'. Skipping this instance!", e);
+                    return List.of();
                 } finally {
                     inst.clearCompoundCache();
                     inst.clearFormulaResultsCache();
                 }
-
             }
-        } catch (ExecutionException e) {
-            LoggerFactory.getLogger(getClass()).error("Error when reading input project!", e);
-        } catch (IOException e) {
-            LoggerFactory.getLogger(getClass()).error("Error when writing tree output file to: " + outputPath.toString(), e);
+        };
+    }
+
+    private RenderedTree render(Instance inst, NamedFTree nTree, String format, TreeRenderer treeWriter) throws IOException {
+        final StringWriter buffer = buffers.get();
+        buffer.getBuffer().setLength(0);
+        try (BufferedWriter writer = new BufferedWriter(buffer)) {
+            treeWriter.write(writer);
+        }
+        return new RenderedTree(inst.getID().getDirectoryName() + "_" + nTree.name + "." + format,
+                inst.getID().getDirectoryName(), nTree.name, format, buffer.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    @FunctionalInterface
+    private interface TreeRenderer {
+        void write(BufferedWriter writer) throws IOException;
+    }
+
+    private static class RenderedTree {
+        private final String fileName;
+        private final String id;
+        private final String formulaResult;
+        private final String format;
+        private final byte[] content;
+
+        private RenderedTree(String fileName, String id, String formulaResult, String format, byte[] content) {
+            this.fileName = fileName;
+            this.id = id;
+            this.formulaResult = formulaResult;
+            this.format = format;
+            this.content = content;
         }
     }
 
@@ -103,6 +103,8 @@ public class FingerblastOptions implements ToolChainOptions<FingerblastSubToolJo
             } else if (inst.getID().getConfidenceScore().isPresent()) {
                 inst.getID().setConfidenceScore(null);
                 inst.updateCompoundID();
+            } else {
+                inst.updateRankIndex();
             }
         };
     }
@@ -0,0 +1,162 @@
+/*
+ *  This file is part of the SIRIUS Software for analyzing MS and MS/MS data
+ *
+ *  Copyright (C) 2013-2020 Kai Dührkop, Markus Fleischauer, Marcus Ludwig, Martin A. Hoffman, Fleming Kretschmer, Marvin Meusel and Sebastian Böcker,
+ *  Chair of Bioinformatics, Friedrich-Schiller University.
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Affero General Public License
+ *  as published by the Free Software Foundation; either
+ *  version 3 of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License along with SIRIUS.  If not, see <https://www.gnu.org/licenses/agpl-3.0.txt>
+ */
+
+package de.unijena.bioinf.ms.frontend.subtools.lcms_align;
+
+import de.unijena.bioinf.ChemistryBase.ms.utils.SimpleSpectrum;
+import de.unijena.bioinf.lcms.SpectrumStorage;
+import de.unijena.bioinf.model.lcms.Scan;
+import gnu.trove.map.hash.TIntLongHashMap;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Disk backed {@link SpectrumStorage} that streams scans into a local binary file while a run is parsed.
+ * Each scan is stored as one record: m/z values and intensities as double columns, so scans read back are
+ * identical to the ones kept by the in-memory storage.
+ * <p>
+ * Records are appended during parsing. After {@link #backOnDisc()} the file is memory mapped and scans are
+ * decoded lazily on access, so heap usage does not grow with the amount of scan data. The storage owns a temp file
+ * and has to be closed once the scans are no longer needed.
+ */
+public class DiskSpectrumStorage implements SpectrumStorage, Closeable {
+    private static final long SEGMENT_SIZE = 1L << 30;
+
+    private final Path file;
+    private final FileChannel channel;
+    // scan index -> (offset << 24 | peak count)
+    private final TIntLongHashMap index = new TIntLongHashMap();
+    private long position = 0;
+    @Nullable
+    private List<MappedByteBuffer> segments = null;
+
+    public DiskSpectrumStorage() throws IOException {
+        this(null);
+    }
+
+    public DiskSpectrumStorage(@Nullable File tempDir) throws IOException {
+        this.file = tempDir == null
+                ? Files.createTempFile("sirius-lcms-", ".scans")
+                : Files.createTempFile(tempDir.toPath(), "sirius-lcms-", ".scans");
+        this.file.toFile().deleteOnExit();
+        this.channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    @Override
+    public synchronized void add(Scan scan, SimpleSpectrum spectrum) {
+        final int n = spectrum.size();
+        if (n >= (1 << 24))
+            throw new IllegalArgumentException("Scan '" + scan.getIndex() + "' has too many peaks to be stored: " + n);
+        final ByteBuffer buffer = ByteBuffer.allocate(n * 2 * Double.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < n; ++i) buffer.putDouble(spectrum.getMzAt(i));
+        for (int i = 0; i < n; ++i) buffer.putDouble(spectrum.getIntensityAt(i));
+        buffer.flip();
+        try {
+            long pos = position;
+            while (buffer.hasRemaining())
+                pos += channel.write(buffer, pos);
+            index.put(scan.getIndex(), (position << 24) | n);
+            position = pos;
+            segments = null;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write scan '" + scan.getIndex() + "' to '" + file + "'.", e);
+        }
+    }
+
+    @Override
+    public SimpleSpectrum getScan(Scan scan) {
+        final long entry;
+        synchronized (this) {
+            if (!index.containsKey(scan.getIndex()))
+                return null;
+            entry = index.get(scan.getIndex());
+        }
+        final long offset = entry >>> 24;
+        final int n = (int) (entry & 0xFFFFFF);
+        final ByteBuffer buffer = read(offset, n * 2 * Double.BYTES);
+        final double[] mz = new double[n], intensities = new double[n];
+        for (int i = 0; i < n; ++i) mz[i] = buffer.getDouble();
+        for (int i = 0; i < n; ++i) intensities[i] = buffer.getDouble();
+        return new SimpleSpectrum(mz, intensities);
+    }
+
+    private ByteBuffer read(long offset, int length) {
+        final List<MappedByteBuffer> segs = segments;
+        if (segs != null) {
+            final int seg = (int) (offset / SEGMENT_SIZE);
+            final int local = (int) (offset % SEGMENT_SIZE);
+            if (local + length <= segs.get(seg).capacity())
+                return segs.get(seg).duplicate().position(local).limit(local + length).slice().order(ByteOrder.LITTLE_ENDIAN);
+        }
+        // not mapped yet or record spans two segments
+        try {
+            final ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+            long pos = offset;
+            while (buffer.hasRemaining()) {
+                final int r = channel.read(buffer, pos);
+                if (r < 0) throw new IOException("Unexpected end of file.");
+                pos += r;
+            }
+            return buffer.flip();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read scan data from '" + file + "'.", e);
+        }
+    }
+
+    /**
+     * Finish writing and memory map the stored scans for lazy access.
+     */
+    public synchronized void backOnDisc() {
+        try {
+            channel.force(false);
+            final List<MappedByteBuffer> segs = new ArrayList<>();
+            for (long start = 0; start < position; start += SEGMENT_SIZE)
+                segs.add(channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(SEGMENT_SIZE, position - start)));
+            segments = segs;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not map scan storage '" + file + "'.", e);
+        }
+    }
+
+    /**
+     * Nothing is buffered in memory, exists for lifecycle compatibility with the in-memory storage.
+     */
+    public void dropBuffer() {
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        segments = null;
+        channel.close();
+        Files.deleteIfExists(file);
+    }
+}
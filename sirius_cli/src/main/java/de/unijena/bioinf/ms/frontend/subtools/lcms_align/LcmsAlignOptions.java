@@ -42,6 +42,9 @@ public class LcmsAlignOptions implements PreprocessingTool<LcmsAlignSubToolJob>
 
     protected Optional<LCMSWorkflow> workflow = Optional.empty();
 
+    @CommandLine.Option(names = "--disk-storage", description = "Stream scans of the LC/MS runs into a local binary file instead of keeping them in memory. Reduces memory consumption for large studies.")
+    protected boolean diskStorage = false;
+
     public Optional<LCMSWorkflow> getWorkflow() {
         return workflow;
     }
@@ -36,6 +36,7 @@ import de.unijena.bioinf.io.lcms.LCMSParsing;
 import de.unijena.bioinf.jjobs.BasicJJob;
 import de.unijena.bioinf.jjobs.JJob;
 import de.unijena.bioinf.jjobs.JobManager;
+import de.unijena.bioinf.jjobs.Partition;
 import de.unijena.bioinf.lcms.*;
 import de.unijena.bioinf.lcms.align.Aligner;
 import de.unijena.bioinf.lcms.align.Aligner2;
@@ -53,6 +54,7 @@ import de.unijena.bioinf.networks.serialization.ConnectionTable;
 import de.unijena.bioinf.projectspace.*;
 import gnu.trove.map.hash.TObjectFloatHashMap;
 import org.apache.commons.math3.distribution.RealDistribution;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
@@ -60,7 +62,9 @@ import java.io.IOException;
 import java.nio.file.Path;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 public class LcmsAlignSubToolJob extends PreprocessingJob<ProjectSpaceManager<?>> {
     protected final InputFilesOptions input;
@@ -68,6 +72,8 @@ public class LcmsAlignSubToolJob extends PreprocessingJob<ProjectSpaceManager<?>
     protected final ProjectSpaceManager<?> space;
     protected final LcmsAlignOptions options;
     protected final List<CompoundContainerId> importedCompounds = new ArrayList<>();
+    // disk storages are read until the features are imported and have to be closed when the job is done
+    private final List<DiskSpectrumStorage> diskStorages = new ArrayList<>();
 
     public LcmsAlignSubToolJob(InputFilesOptions input, ProjectSpaceManager<?> space, ParameterConfig config, LcmsAlignOptions options) {
         super();
@@ -80,18 +86,29 @@ public class LcmsAlignSubToolJob extends PreprocessingJob<ProjectSpaceManager<?>
     @Override
     protected ProjectSpaceManager<?> compute() throws Exception {
         importedCompounds.clear();
-        final ArrayList<BasicJJob<?>> jobs = new ArrayList<>();
-        final LCMSProccessingInstance i = new LCMSProccessingInstance();
+        try {
+            final Optional<LCMSWorkflow> workflow = options.getWorkflow();
+            if (workflow.isPresent()) {
+                return computeWorkflow(workflow.get());
+            }
+            LoggerFactory.getLogger(LcmsAlignSubToolJob.class).warn("No workflow specified. Use 'default' workflow: mixed-mode with alignment.");
 
-        final Optional<LCMSWorkflow> workflow = options.getWorkflow();
-        if (workflow.isPresent()) {
-            return computeWorkflow(workflow.get());
-        }
-        LoggerFactory.getLogger(LcmsAlignSubToolJob.class).warn("No workflow specified. Use 'default' workflow: mixed-mode with alignment.");
 
+            //i.setDetectableIonTypes(PropertyManager.DEFAULTS.createInstanceWithDefaults(AdductSettings.class).getDetectable());
+            final List<Path> files = input.msInput.msParserfiles.keySet().stream().sorted().collect(Collectors.toList());
+            MultipleSources sourcelocation = MultipleSources.leastCommonAncestor(input.getAllFilesStream().map(Path::toFile).toArray(File[]::new));
+            return alignAllRuns(files, sourcelocation);
+        } finally {
+            closeStorages();
+        }
+    }
 
-        //i.setDetectableIonTypes(PropertyManager.DEFAULTS.createInstanceWithDefaults(AdductSettings.class).getDetectable());
-        final List<Path> files = input.msInput.msParserfiles.keySet().stream().sorted().collect(Collectors.toList());
+    /**
+     * Detects features in all given runs, aligns them all-against-all and imports the aligned features.
+     */
+    ProjectSpaceManager<?> alignAllRuns(List<Path> files, MultipleSources sourcelocation) {
+        final ArrayList<BasicJJob<?>> jobs = new ArrayList<>();
+        final LCMSProccessingInstance i = new LCMSProccessingInstance();
         updateProgress(0, files.size(), 1, "Parse LC/MS runs");
         AtomicInteger counter = new AtomicInteger(0);
         for (Path f : files) {
@@ -99,12 +116,7 @@ public class LcmsAlignSubToolJob extends PreprocessingJob<ProjectSpaceManager<?>
                 @Override
                 protected Object compute() {
                     try {
-                        MemoryFileStorage storage = new MemoryFileStorage();
-                        final LCMSRun parse = LCMSParsing.parseRun(f.toFile(), storage);
-                        final ProcessedSample sample = i.addSample(parse, storage);
-                        i.detectFeatures(sample);
-                        storage.backOnDisc();
-                        storage.dropBuffer();
+                        detectFeatures(i, f.toFile());
                         final int c = counter.incrementAndGet();
                         LcmsAlignSubToolJob.this.updateProgress(0, files.size(), c, "Parse LC/MS runs");
                     } catch (Throwable e) {
@@ -119,7 +131,6 @@ public class LcmsAlignSubToolJob extends PreprocessingJob<ProjectSpaceManager<?>
                 }
             }));
         }
-        MultipleSources sourcelocation = MultipleSources.leastCommonAncestor(input.getAllFilesStream().map(Path::toFile).toArray(File[]::new));
         for (BasicJJob<?> j : jobs) j.takeResult();
         i.getMs2Storage().backOnDisc();
         i.getMs2Storage().dropBuffer();
@@ -148,7 +159,40 @@ public class LcmsAlignSubToolJob extends PreprocessingJob<ProjectSpaceManager<?>
     }
 
     private ProjectSpaceManager<?> computeMixedWorkflow(MixedWorkflow lcmsWorkflow) {
-        return null;
+        return computeMixedWorkflow(lcmsWorkflow.getPooledFiles(), lcmsWorkflow.getFiles());
+    }
+
+    /**
+     * Detects and aligns features in the pooled runs, imports them and remaps them into the individual runs.
+     */
+    ProjectSpaceManager<?> computeMixedWorkflow(String[] pooled, String[] files) {
+        final LCMSProccessingInstance instance = new LCMSProccessingInstance();
+        final JobManager jm = SiriusJobs.getGlobalJobManager();
+        // detect features on the pooled runs only, these are the only runs we have to align all-against-all
+        updateProgress(0, pooled.length, 0, "Parse pooled LC/MS runs");
+        final AtomicInteger counter = new AtomicInteger(0);
+        final List<ProcessedSample> pooledSamples = Arrays.stream(pooled)
+                .map(filename -> jm.submitJob(detectFeaturesJob(instance, filename, () ->
+                        updateProgress(0, pooled.length, counter.incrementAndGet(), "Parse pooled LC/MS runs"))))
+                .collect(Collectors.toList()).stream().map(JJob::takeResult).collect(Collectors.toList());
+        instance.getMs2Storage().backOnDisc();
+        instance.getMs2Storage().dropBuffer();
+
+        if (pooledSamples.isEmpty()) {
+            LoggerFactory.getLogger(LcmsAlignSubToolJob.class).error("No pooled input data available to be aligned.");
+            return space;
+        }
+
+        Cluster alignment = instance.alignAndGapFilling(this);
+        updateProgress(0, 2, 0, "Assign adducts.");
+        instance.detectAdductsWithGibbsSampling(alignment);
+        updateProgress(0, 2, 1, "Merge features.");
+        alignment = alignment.deleteDuplicateRows();
+        final MultipleSources sourcelocation = MultipleSources.leastCommonAncestor(Arrays.stream(pooled).map(File::new).toArray(File[]::new));
+        importIntoProjectSpace(instance, alignment, sourcelocation);
+
+        // remap the features of the pooled runs into the individual runs
+        return remapIntoRuns(files, new HashSet<>(importedCompounds));
     }
 
     private ProjectSpaceManager<?> computePooledWorkflow(PooledMs2Workflow lcmsWorkflow) {
@@ -178,11 +222,23 @@ public class LcmsAlignSubToolJob extends PreprocessingJob<ProjectSpaceManager<?>
 
 
     private ProjectSpaceManager<?> computeRemappingWorkflow(RemappingWorkflow lcmsWorkflow) {
+        return remapIntoRuns(lcmsWorkflow.getFiles(), null);
+    }
+
+    /**
+     * Remap the LC/MS features of the compounds in the project space into the given runs.
+     *
+     * @param files   runs to remap the features into
+     * @param include compounds to remap, all compounds of the project space if null
+     */
+    private ProjectSpaceManager<?> remapIntoRuns(String[] files, @Nullable Set<CompoundContainerId> include) {
         final LCMSProccessingInstance instance = new LCMSProccessingInstance();
         // read all files
         final JobManager jm = SiriusJobs.getGlobalJobManager();
-        final ProcessedSample[] ms1Samples = Arrays.stream(lcmsWorkflow.getFiles()).map(filename->jm.submitJob(processRunJob(instance,filename))).collect(Collectors.toList()).stream().map(JJob::takeResult).toArray(ProcessedSample[]::new);
-        final Iterator<CompoundContainer> compoundContainerIterator = space.projectSpace().compoundIterator(LCMSPeakInformation.class, Ms2Experiment.class);
+        final ProcessedSample[] ms1Samples = Arrays.stream(files).map(filename->jm.submitJob(processRunJob(instance,filename))).collect(Collectors.toList()).stream().map(JJob::takeResult).toArray(ProcessedSample[]::new);
+        final Iterator<CompoundContainer> compoundContainerIterator = include == null
+                ? space.projectSpace().compoundIterator(LCMSPeakInformation.class, Ms2Experiment.class)
+                : space.projectSpace().filteredCompoundIterator(include::contains, null, LCMSPeakInformation.class, Ms2Experiment.class);
         final List<Ms2Experiment> exps = new ArrayList<>();
         final List<LCMSPeakInformation> peaks = new ArrayList<>();
         final List<CompoundContainerId> ids = new ArrayList<>();
@@ -194,120 +250,185 @@ public class LcmsAlignSubToolJob extends PreprocessingJob<ProjectSpaceManager<?>
             ids.add(next.getId());
         }
         LCMSPeakInformation[] replaced = Ms1Remapping.remapMS1(instance, ms1Samples, peaks.toArray(LCMSPeakInformation[]::new), exps.toArray(Ms2Experiment[]::new), true);
-        for (int i=0; i < ids.size(); ++i) {
-            final CompoundContainerId compoundContainerId = ids.get(i);
-            final CompoundContainer compound;
-            try {
-                compound = space.projectSpace().getCompound(compoundContainerId, Ms2Experiment.class, LCMSPeakInformation.class);
-                compound.setAnnotation(LCMSPeakInformation.class, replaced[i]);
-                space.projectSpace().updateCompound(compound, LCMSPeakInformation.class);
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-        }
+
+        final List<BasicJJob<Boolean>> writeJobs = Partition.ofNumber(IntStream.range(0, ids.size()).boxed().collect(Collectors.toList()), Math.max(1, jm.getIOThreads()))
+                .stream().map(idxs -> new BasicJJob<Boolean>(JJob.JobType.IO) {
+                    @Override
+                    protected Boolean compute() {
+                        for (int i : idxs) {
+                            try {
+                                final CompoundContainer compound = space.projectSpace().getCompound(ids.get(i), LCMSPeakInformation.class);
+                                compound.setAnnotation(LCMSPeakInformation.class, replaced[i]);
+                                space.projectSpace().updateCompound(compound, LCMSPeakInformation.class);
+                            } catch (IOException e) {
+                                LoggerFactory.getLogger(LcmsAlignSubToolJob.class).error("Could not write remapped peak information of '" + ids.get(i) + "'.", e);
+                            }
+                        }
+                        return true;
+                    }
+                }).collect(Collectors.toList());
+        writeJobs.forEach(jm::submitJob);
+        writeJobs.forEach(JJob::takeResult);
         return space;
     }
 
     private ProjectSpaceManager<?> importIntoProjectSpace(LCMSProccessingInstance i, Cluster alignment, MultipleSources sourcelocation) {
         final ConsensusFeature[] consensusFeatures = i.makeConsensusFeatures(alignment);
         logInfo(consensusFeatures.length + "Feature left after merging.");
+        final JobManager jm = SiriusJobs.getGlobalJobManager();
 
+        // build experiments and peak information in parallel (CPU bound)
+        updateProgress(0, consensusFeatures.length, 0, "Prepare features.");
+        final Ms2Experiment[] experiments = new Ms2Experiment[consensusFeatures.length];
+        final LCMSPeakInformation[] peakInformation = new LCMSPeakInformation[consensusFeatures.length];
+        final AtomicInteger prepared = new AtomicInteger(0);
+        final List<BasicJJob<Boolean>> prepareJobs = Partition.ofNumber(IntStream.range(0, consensusFeatures.length).boxed().collect(Collectors.toList()), 2 * jm.getCPUThreads())
+                .stream().map(idxs -> new BasicJJob<Boolean>(JJob.JobType.CPU) {
+                    @Override
+                    protected Boolean compute() {
+                        for (int K : idxs) {
+                            final ConsensusFeature feature = consensusFeatures[K];
+                            final Ms2Experiment experiment = feature.toMs2Experiment();
+                            if (!isInvalidExp(experiment)) {
+                                final LCMSPeakInformation lcmsPeakInformation = feature.getLCMSPeakInformation();
+                                setPeakQuality(experiment, lcmsPeakInformation);
+                                // set name to common prefix
+                                // kaidu: this is super slow, so we just ignore the filename
+                                experiment.setAnnotation(SpectrumFileSource.class, new SpectrumFileSource(sourcelocation.value));
+                                materializeProperties(experiment);
+                                peakInformation[K] = lcmsPeakInformation;
+                            }
+                            experiments[K] = experiment;
+                            LcmsAlignSubToolJob.this.updateProgress(0, consensusFeatures.length, prepared.incrementAndGet(), "Prepare features.");
+                        }
+                        return true;
+                    }
+                }).collect(Collectors.toList());
+        prepareJobs.forEach(jm::submitJob);
+        prepareJobs.forEach(JJob::takeResult);
+
+        // allocate unique ids sequentially to keep directory names deterministic
         int totalFeatures = 0, goodFeatures = 0;
-        //save
-        updateProgress(0, consensusFeatures.length, 0, "Write project space.");
-        int progress=0;
-        final HashMap<ConsensusFeature, CompoundContainerId> feature2compoundId = new HashMap<>();
-        for (int K=0; K  < consensusFeatures.length; ++K) {
-            final ConsensusFeature feature = consensusFeatures[K];
-            final Ms2Experiment experiment = feature.toMs2Experiment();
-            if (isInvalidExp(experiment)){
+        final List<Integer> valid = new ArrayList<>(consensusFeatures.length);
+        final List<Ms2Experiment> validExperiments = new ArrayList<>(consensusFeatures.length);
+        for (int K = 0; K < consensusFeatures.length; ++K) {
+            final Ms2Experiment experiment = experiments[K];
+            if (peakInformation[K] == null) {
                 LoggerFactory.getLogger(getClass()).warn("Skipping invalid experiment '" + experiment.getName() + "'.");
                 continue;
             }
-            final LCMSPeakInformation lcmsPeakInformation = feature.getLCMSPeakInformation();
-            // set quality flags
-            {
-                // just look at the top 5 most intensive samples
-                List<Integer> indizes = new ArrayList<>();
-                for (int k=0; k < lcmsPeakInformation.length(); ++k) {
-                    if (lcmsPeakInformation.getTracesFor(k).isPresent()) indizes.add(k);
-                }
-                indizes.sort(Comparator.comparingDouble(lcmsPeakInformation::getIntensityOf));
-                Collections.reverse(indizes);
-                boolean badPeakShape = true;
-                for (int k=0; k < Math.min(indizes.size(),5); ++k) {
-                    final CoelutingTraceSet traceSet = lcmsPeakInformation.getTracesFor(k).get();
-                    LCMSCompoundSummary summary = new LCMSCompoundSummary(traceSet, traceSet.getIonTrace(), experiment);
-                    if (summary.peakQuality.ordinal() > LCMSCompoundSummary.Quality.LOW.ordinal()) {
-                        badPeakShape = false;
-                        break;
-                    }
-                }
-                if (badPeakShape) {
-                    experiment.setAnnotation(CompoundQuality.class, experiment.getAnnotation(CompoundQuality.class).orElse(new CompoundQuality()).updateQuality(CompoundQuality.CompoundQualityFlag.BadPeakShape));
-                }
-            }
             ++totalFeatures;
-            if (experiment.getAnnotation(CompoundQuality.class, CompoundQuality::new).isNotBadQuality()) {
+            if (experiment.getAnnotation(CompoundQuality.class, CompoundQuality::new).isNotBadQuality())
                 ++goodFeatures;
-            }
-            // set name to common prefix
-            // kaidu: this is super slow, so we just ignore the filename
-            experiment.setAnnotation(SpectrumFileSource.class, new SpectrumFileSource(sourcelocation.value));
+            valid.add(K);
+            validExperiments.add(experiment);
+        }
+        final List<CompoundContainerId> ids = allocateCompoundIds(space, validExperiments);
+        importedCompounds.addAll(ids);
 
-            materializeProperties(experiment);
+        // build connection tables, they need the final directory names
+        final LinkedHashMap<ConsensusFeature, CompoundContainerId> feature2compound = new LinkedHashMap<>(ids.size());
+        for (int k = 0; k < ids.size(); ++k)
+            feature2compound.put(consensusFeatures[valid.get(k)], ids.get(k));
+        final Map<String, ConnectionTable> connectionTables = makeConnectionTables(feature2compound).stream()
+                .collect(Collectors.toMap(t -> t.id, t -> t));
 
-            final Instance compound = space.newCompoundWithUniqueId(experiment);
-            importedCompounds.add(compound.getID());
-            final CompoundContainer compoundContainer = compound.loadCompoundContainer(LCMSPeakInformation.class);
-            compoundContainer.setAnnotation(LCMSPeakInformation.class, lcmsPeakInformation);
-            compound.updateCompound(compoundContainer,LCMSPeakInformation.class);
+        // write experiment, peak information and connection table with one update per compound on the IO pool
+        updateProgress(0, ids.size(), 0, "Write project space.");
+        final AtomicInteger written = new AtomicInteger(0);
+        writeCompounds(space, ids, (k, compound) -> {
+            compound.setAnnotation(Ms2Experiment.class, validExperiments.get(k));
+            compound.setAnnotation(LCMSPeakInformation.class, peakInformation[valid.get(k)]);
+            final ConnectionTable table = connectionTables.get(compound.getId().getDirectoryName());
+            if (table != null)
+                compound.setAnnotation(ConnectionTable.class, table);
+            updateProgress(0, ids.size(), written.incrementAndGet(), "Write project space.");
+        });
 
-            feature2compoundId.put(feature, compound.getID());
-            updateProgress(0, consensusFeatures.length, ++progress, "Write project space.");
-        }
-        // add connection tables
-        {
-            final MolecularNetwork.NetworkBuilder network = new MolecularNetwork.NetworkBuilder();
-            for (CompoundContainerId id : feature2compoundId.values()) {
-                network.addNode(id.getDirectoryName(), id.getIonMass().orElse(0d));
-            }
-            final TObjectFloatHashMap<CompoundContainerId> others = new TObjectFloatHashMap<>(5, 0.75f, 0f);
-            for (Map.Entry<ConsensusFeature, CompoundContainerId> entry : feature2compoundId.entrySet()) {
-                final NetworkNode left = network.getNode(entry.getValue().getDirectoryName());
-                others.clear();
-                for (IonConnection<ConsensusFeature> connection : entry.getKey().getConnections()) {
-                    final CompoundContainerId other = feature2compoundId.get(connection.getRight());
-                    if (other!=null && connection.getType()== IonConnection.ConnectionType.IN_SOURCE_OR_ADDUCT) {
-                        float prev = others.get(other);
-                        others.put(other, Math.max(prev, connection.getWeight()));
-                    }
-                }
-                others.forEachEntry((key,weight)->{
-                    final NetworkNode right = network.getNode(key.getDirectoryName());
-                    if (left.getVertexId() < right.getVertexId()) {
-                        network.addEdge(left.getVertexId(),right.getVertexId(), new Correlation(weight));
+        logInfo(goodFeatures + " of " + totalFeatures + " imported features are of good quality.");
+        return space;
+    }
+
+    /**
+     * Allocates the ids of new compounds for the given experiments one after another, so that the directory names are
+     * the same as when creating the compounds with {@link ProjectSpaceManager#newCompoundWithUniqueId(Ms2Experiment)}.
+     */
+    static List<CompoundContainerId> allocateCompoundIds(ProjectSpaceManager<?> space, List<Ms2Experiment> experiments) {
+        final List<CompoundContainerId> ids = new ArrayList<>(experiments.size());
+        for (Ms2Experiment experiment : experiments)
+            ids.add(space.newUniqueCompoundId(experiment));
+        return ids;
+    }
+
+    /**
+     * Writes the given compounds in parallel on the IO threads. Every compound is written with a single update of
+     * all components that are set by the given consumer (which gets the index of the compound in the id list).
+     */
+    static void writeCompounds(ProjectSpaceManager<?> space, List<CompoundContainerId> ids, BiConsumer<Integer, CompoundContainer> setComponents) {
+        final JobManager jm = SiriusJobs.getGlobalJobManager();
+        final List<BasicJJob<Boolean>> writeJobs = Partition.ofNumber(IntStream.range(0, ids.size()).boxed().collect(Collectors.toList()), Math.max(1, jm.getIOThreads()))
+                .stream().map(idxs -> new BasicJJob<Boolean>(JJob.JobType.IO) {
+                    @Override
+                    protected Boolean compute() throws IOException {
+                        for (int k : idxs) {
+                            final CompoundContainer compound = space.projectSpace().getCompound(ids.get(k));
+                            setComponents.accept(k, compound);
+                            space.projectSpace().updateCompound(compound, compound.annotations().keySet().toArray(Class[]::new));
+                        }
+                        return true;
                     }
-                    return true;
-                });
+                }).collect(Collectors.toList());
+        writeJobs.forEach(jm::submitJob);
+        writeJobs.forEach(JJob::takeResult);
+    }
 
+    private static void setPeakQuality(Ms2Experiment experiment, LCMSPeakInformation lcmsPeakInformation) {
+        // just look at the top 5 most intensive samples
+        List<Integer> indizes = new ArrayList<>();
+        for (int k = 0; k < lcmsPeakInformation.length(); ++k) {
+            if (lcmsPeakInformation.getTracesFor(k).isPresent()) indizes.add(k);
+        }
+        indizes.sort(Comparator.comparingDouble(lcmsPeakInformation::getIntensityOf));
+        Collections.reverse(indizes);
+        boolean badPeakShape = true;
+        for (int k = 0; k < Math.min(indizes.size(), 5); ++k) {
+            final CoelutingTraceSet traceSet = lcmsPeakInformation.getTracesFor(k).get();
+            LCMSCompoundSummary summary = new LCMSCompoundSummary(traceSet, traceSet.getIonTrace(), experiment);
+            if (summary.peakQuality.ordinal() > LCMSCompoundSummary.Quality.LOW.ordinal()) {
+                badPeakShape = false;
+                break;
             }
-            final MolecularNetwork M = network.done(true);
-            final ConnectionTable[] connectionTables = M.toConnectionTables();
-            for (ConnectionTable t : connectionTables) {
-                final SiriusProjectSpace ps = space.projectSpace();
-                ps.findCompound(t.id).ifPresent(x->{
-                    try {
-                        final CompoundContainer c = ps.getCompound(x);
-                        c.setAnnotation(ConnectionTable.class, t);
-                        ps.updateCompound(c, ConnectionTable.class);
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                    }
-                });
+        }
+        if (badPeakShape) {
+            experiment.setAnnotation(CompoundQuality.class, experiment.getAnnotation(CompoundQuality.class).orElse(new CompoundQuality()).updateQuality(CompoundQuality.CompoundQualityFlag.BadPeakShape));
+        }
+    }
+
+    private static List<ConnectionTable> makeConnectionTables(Map<ConsensusFeature, CompoundContainerId> feature2compoundId) {
+        final MolecularNetwork.NetworkBuilder network = new MolecularNetwork.NetworkBuilder();
+        for (CompoundContainerId id : feature2compoundId.values()) {
+            network.addNode(id.getDirectoryName(), id.getIonMass().orElse(0d));
+        }
+        final TObjectFloatHashMap<CompoundContainerId> others = new TObjectFloatHashMap<>(5, 0.75f, 0f);
+        for (Map.Entry<ConsensusFeature, CompoundContainerId> entry : feature2compoundId.entrySet()) {
+            final NetworkNode left = network.getNode(entry.getValue().getDirectoryName());
+            others.clear();
+            for (IonConnection<ConsensusFeature> connection : entry.getKey().getConnections()) {
+                final CompoundContainerId other = feature2compoundId.get(connection.getRight());
+                if (other != null && connection.getType() == IonConnection.ConnectionType.IN_SOURCE_OR_ADDUCT) {
+                    float prev = others.get(other);
+                    others.put(other, Math.max(prev, connection.getWeight()));
+                }
             }
+            others.forEachEntry((key, weight) -> {
+                final NetworkNode right = network.getNode(key.getDirectoryName());
+                if (left.getVertexId() < right.getVertexId()) {
+                    network.addEdge(left.getVertexId(), right.getVertexId(), new Correlation(weight));
+                }
+                return true;
+            });
         }
-        return space;
+        return Arrays.asList(network.done(true).toConnectionTables());
     }
 
     private BasicJJob<ProcessedSample> processRunJob(LCMSProccessingInstance instance, String filename) {
@@ -315,14 +436,13 @@ public class LcmsAlignSubToolJob extends PreprocessingJob<ProjectSpaceManager<?>
             @Override
             protected ProcessedSample compute() throws Exception {
                 try {
-                    final MemoryFileStorage storage = new MemoryFileStorage();
+                    final SpectrumStorage storage = newStorage();
                     System.out.println("parse file " + filename);
                     LCMSRun run = LCMSParsing.parseRun(new File(filename), storage);
                     System.out.println("Start processing");
                     final ProcessedSample pr = instance.addSample(run, storage, false);
                     System.out.println("Finish processing");
-                    storage.backOnDisc();
-                    storage.dropBuffer();
+                    releaseBuffer(storage);
                     return pr;
                 } catch (IOException | InvalidInputData e) {
                     LoggerFactory.getLogger(LcmsAlignSubToolJob.class).error(e.getMessage(),e);
@@ -332,6 +452,69 @@ public class LcmsAlignSubToolJob extends PreprocessingJob<ProjectSpaceManager<?>
         };
     }
 
+    private BasicJJob<ProcessedSample> detectFeaturesJob(LCMSProccessingInstance instance, String filename, Runnable onDone) {
+        return new BasicJJob<>() {
+            @Override
+            protected ProcessedSample compute() throws Exception {
+                try {
+                    final ProcessedSample sample = detectFeatures(instance, new File(filename));
+                    onDone.run();
+                    return sample;
+                } catch (IOException | InvalidInputData e) {
+                    LoggerFactory.getLogger(LcmsAlignSubToolJob.class).error("Error while parsing file '" + filename + "': " + e.getMessage(), e);
+                    throw new RuntimeException("Stop processing");
+                }
+            }
+        };
+    }
+
+    /**
+     * Parses the given run, adds it as sample to the given instance and detects its features.
+     */
+    private ProcessedSample detectFeatures(LCMSProccessingInstance instance, File file) throws IOException, InvalidInputData {
+        final SpectrumStorage storage = newStorage();
+        final LCMSRun run = LCMSParsing.parseRun(file, storage);
+        final ProcessedSample sample = instance.addSample(run, storage);
+        instance.detectFeatures(sample);
+        releaseBuffer(storage);
+        return sample;
+    }
+
+    private SpectrumStorage newStorage() throws IOException {
+        if (!options.diskStorage)
+            return new MemoryFileStorage();
+        final DiskSpectrumStorage storage = new DiskSpectrumStorage();
+        synchronized (diskStorages) {
+            diskStorages.add(storage);
+        }
+        return storage;
+    }
+
+    /**
+     * Closes all disk storages created by this job and deletes their temp files.
+     */
+    void closeStorages() {
+        synchronized (diskStorages) {
+            for (DiskSpectrumStorage storage : diskStorages) {
+                try {
+                    storage.close();
+                } catch (IOException e) {
+                    LoggerFactory.getLogger(LcmsAlignSubToolJob.class).warn("Could not delete scan storage: " + e.getMessage());
+                }
+            }
+            diskStorages.clear();
+        }
+    }
+
+    private static void releaseBuffer(SpectrumStorage storage) {
+        if (storage instanceof DiskSpectrumStorage) {
+            ((DiskSpectrumStorage) storage).backOnDisc();
+        } else if (storage instanceof MemoryFileStorage) {
+            ((MemoryFileStorage) storage).backOnDisc();
+            ((MemoryFileStorage) storage).dropBuffer();
+        }
+    }
+
     protected void materializeProperties(Ms2Experiment experiment) {
         // TODO: @Markus: what can we do if config is null??
         if (config==null)  {
@@ -0,0 +1,158 @@
+/*
+ *  This file is part of the SIRIUS Software for analyzing MS and MS/MS data
+ *
+ *  Copyright (C) 2013-2020 Kai Dührkop, Markus Fleischauer, Marcus Ludwig, Martin A. Hoffman, Fleming Kretschmer, Marvin Meusel and Sebastian Böcker,
+ *  Chair of Bioinformatics, Friedrich-Schiller University.
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Affero General Public License
+ *  as published by the Free Software Foundation; either
+ *  version 3 of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License along with SIRIUS.  If not, see <https://www.gnu.org/licenses/agpl-3.0.txt>
+ */
+
+package de.unijena.bioinf.ms.frontend.subtools.projectspace;
+
+import de.unijena.bioinf.ChemistryBase.ms.Deviation;
+import de.unijena.bioinf.jjobs.BasicJJob;
+import de.unijena.bioinf.jjobs.JJob;
+import de.unijena.bioinf.jjobs.JobManager;
+import gnu.trove.list.array.TIntArrayList;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Finds clusters of near-duplicate features (compounds) by sweeping a m/z tolerance window over the features sorted
+ * by m/z. Only pairs within the m/z window and within the retention time window are tested with the (expensive)
+ * similarity predicate. Clusters are the connected components of the resulting pair graph.
+ */
+public final class CompoundClustering {
+    private CompoundClustering() {
+    }
+
+    @FunctionalInterface
+    public interface PairPredicate {
+        boolean test(int left, int right) throws Exception;
+    }
+
+    /**
+     * All pairs (i,j) with i < j that are within the given m/z and retention time window.
+     * The m/z window is determined by the deviation of the larger mass.
+     *
+     * @param mz        m/z values of the features
+     * @param rt        retention times of the features
+     * @param dev       allowed mass deviation
+     * @param maxRtDiff features with an absolute retention time difference smaller than this value are paired
+     * @param jobs      job manager to parallelize the sweep
+     * @return pairs of feature indices, each pair as two consecutive values
+     */
+    public static TIntArrayList candidatePairs(double[] mz, double[] rt, Deviation dev, double maxRtDiff, @NotNull JobManager jobs) {
+        final int[] order = IntStream.range(0, mz.length).boxed()
+                .sorted(Comparator.comparingDouble(i -> mz[i])).mapToInt(Integer::intValue).toArray();
+        final List<BasicJJob<TIntArrayList>> segments = new ArrayList<>();
+        for (int[] seg : segments(order.length, 2 * jobs.getCPUThreads())) {
+            segments.add(jobs.submitJob(new BasicJJob<>(JJob.JobType.CPU) {
+                @Override
+                protected TIntArrayList compute() {
+                    final TIntArrayList pairs = new TIntArrayList();
+                    for (int a = seg[0]; a < seg[1]; ++a) {
+                        final int i = order[a];
+                        for (int b = a + 1; b < order.length; ++b) {
+                            final int j = order[b];
+                            if (mz[j] - mz[i] > dev.absoluteFor(mz[j]))
+                                break;
+                            if (Math.abs(rt[i] - rt[j]) < maxRtDiff) {
+                                pairs.add(Math.min(i, j));
+                                pairs.add(Math.max(i, j));
+                            }
+                        }
+                    }
+                    return pairs;
+                }
+            }));
+        }
+        final TIntArrayList pairs = new TIntArrayList();
+        segments.forEach(j -> pairs.addAll(j.takeResult()));
+        return pairs;
+    }
+
+    /**
+     * Keep only the candidate pairs that fulfill the given predicate. The predicate is evaluated in parallel.
+     */
+    public static TIntArrayList filterPairs(TIntArrayList pairs, PairPredicate predicate, @NotNull JobManager jobs) {
+        final int numberOfPairs = pairs.size() / 2;
+        final List<BasicJJob<TIntArrayList>> segments = new ArrayList<>();
+        for (int[] seg : segments(numberOfPairs, 2 * jobs.getCPUThreads())) {
+            segments.add(jobs.submitJob(new BasicJJob<>(JJob.JobType.CPU) {
+                @Override
+                protected TIntArrayList compute() throws Exception {
+                    final TIntArrayList accepted = new TIntArrayList();
+                    for (int p = seg[0]; p < seg[1]; ++p) {
+                        final int i = pairs.get(2 * p), j = pairs.get(2 * p + 1);
+                        if (predicate.test(i, j)) {
+                            accepted.add(i);
+                            accepted.add(j);
+                        }
+                    }
+                    return accepted;
+                }
+            }));
+        }
+        final TIntArrayList accepted = new TIntArrayList();
+        segments.forEach(j -> accepted.addAll(j.takeResult()));
+        return accepted;
+    }
+
+    /**
+     * Connected components of the pair graph via union-find.
+     *
+     * @return clusters with more than one feature, each sorted by feature index. Clusters are sorted by their
+     * smallest feature index.
+     */
+    public static List<int[]> components(int numberOfFeatures, TIntArrayList pairs) {
+        final int[] parent = IntStream.range(0, numberOfFeatures).toArray();
+        for (int p = 0; p < pairs.size(); p += 2) {
+            final int a = find(parent, pairs.get(p)), b = find(parent, pairs.get(p + 1));
+            if (a != b)
+                parent[Math.max(a, b)] = Math.min(a, b);
+        }
+        final TIntArrayList[] members = new TIntArrayList[numberOfFeatures];
+        for (int i = 0; i < numberOfFeatures; ++i) {
+            final int root = find(parent, i);
+            if (members[root] == null)
+                members[root] = new TIntArrayList();
+            members[root].add(i);
+        }
+        final List<int[]> clusters = new ArrayList<>();
+        for (TIntArrayList m : members)
+            if (m != null && m.size() > 1)
+                clusters.add(m.toArray());
+        return clusters;
+    }
+
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    private static List<int[]> segments(int size, int numberOfSegments) {
+        final int step = Math.max(1, (int) Math.ceil(size / (double) Math.max(1, numberOfSegments)));
+        final List<int[]> segs = new ArrayList<>();
+        for (int from = 0; from < size; from += step)
+            segs.add(new int[]{from, Math.min(size, from + step)});
+        return segs;
+    }
+}
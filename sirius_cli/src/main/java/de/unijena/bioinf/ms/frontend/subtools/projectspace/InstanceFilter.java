@@ -0,0 +1,122 @@
+/*
+ *  This file is part of the SIRIUS Software for analyzing MS and MS/MS data
+ *
+ *  Copyright (C) 2013-2020 Kai Dührkop, Markus Fleischauer, Marcus Ludwig, Martin A. Hoffman, Fleming Kretschmer, Marvin Meusel and Sebastian Böcker,
+ *  Chair of Bioinformatics, Friedrich-Schiller University.
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Affero General Public License
+ *  as published by the Free Software Foundation; either
+ *  version 3 of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License along with SIRIUS.  If not, see <https://www.gnu.org/licenses/agpl-3.0.txt>
+ */
+
+package de.unijena.bioinf.ms.frontend.subtools.projectspace;
+
+import de.unijena.bioinf.ChemistryBase.algorithm.scoring.FormulaScore;
+import de.unijena.bioinf.ChemistryBase.jobs.SiriusJobs;
+import de.unijena.bioinf.jjobs.BasicJJob;
+import de.unijena.bioinf.jjobs.JJob;
+import de.unijena.bioinf.jjobs.JobManager;
+import de.unijena.bioinf.jjobs.Partition;
+import de.unijena.bioinf.ms.annotations.DataAnnotation;
+import de.unijena.bioinf.projectspace.CompoundContainerId;
+import de.unijena.bioinf.projectspace.FormulaResult;
+import de.unijena.bioinf.projectspace.Instance;
+import de.unijena.bioinf.projectspace.ProjectSpaceManager;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * IO intense filter on instance level that declares which formula result components it needs.
+ * Only these components are loaded when the filter is evaluated, and they are removed from the
+ * instance caches afterwards, so filtering large projects does not keep results in memory.
+ */
+public class InstanceFilter implements Predicate<Instance> {
+    @NotNull
+    private final Set<Class<? extends DataAnnotation>> formulaResultComponents;
+    @NotNull
+    private final Predicate<Instance> predicate;
+
+    @SafeVarargs
+    public InstanceFilter(@NotNull Predicate<Instance> predicate, Class<? extends DataAnnotation>... formulaResultComponents) {
+        this(predicate, new LinkedHashSet<>(Arrays.asList(formulaResultComponents)));
+    }
+
+    private InstanceFilter(@NotNull Predicate<Instance> predicate, @NotNull Set<Class<? extends DataAnnotation>> formulaResultComponents) {
+        this.predicate = predicate;
+        this.formulaResultComponents = formulaResultComponents;
+    }
+
+    /**
+     * Filter that only needs the scores of the top formula result ranked by the given score types.
+     */
+    public static InstanceFilter onTopFormulaResult(List<Class<? extends FormulaScore>> rankingScoreTypes, Predicate<FormulaResult> predicate) {
+        return new InstanceFilter(inst -> inst.loadTopFormulaResult(rankingScoreTypes).map(predicate::test).orElse(false));
+    }
+
+    @SafeVarargs
+    public static InstanceFilter onAnyFormulaResult(Predicate<FormulaResult> predicate, Class<? extends DataAnnotation>... formulaResultComponents) {
+        return new InstanceFilter(inst -> inst.loadFormulaResults(formulaResultComponents).stream()
+                .anyMatch(res -> predicate.test(res.getCandidate())), formulaResultComponents);
+    }
+
+    @Override
+    public boolean test(Instance instance) {
+        return predicate.test(instance);
+    }
+
+    @NotNull
+    @Override
+    public InstanceFilter and(@NotNull Predicate<? super Instance> other) {
+        final Set<Class<? extends DataAnnotation>> comps = new LinkedHashSet<>(formulaResultComponents);
+        if (other instanceof InstanceFilter)
+            comps.addAll(((InstanceFilter) other).formulaResultComponents);
+        return new InstanceFilter(predicate.and(other), comps);
+    }
+
+    /**
+     * Evaluates this filter for the given compounds in parallel on the IO pool.
+     * Compounds that cannot be evaluated are skipped.
+     *
+     * @return the compounds that pass the filter, in input order
+     */
+    public List<CompoundContainerId> filter(@NotNull ProjectSpaceManager<?> space, @NotNull List<CompoundContainerId> cids) {
+        final JobManager jobs = SiriusJobs.getGlobalJobManager();
+        final Class<? extends DataAnnotation>[] comps = formulaResultComponents.toArray(Class[]::new);
+        final List<BasicJJob<List<CompoundContainerId>>> filterJobs = Partition.ofNumber(cids, Math.max(1, 2 * jobs.getIOThreads()))
+                .stream().map(part -> new BasicJJob<List<CompoundContainerId>>(JJob.JobType.IO) {
+                    @Override
+                    protected List<CompoundContainerId> compute() {
+                        final List<CompoundContainerId> passed = new ArrayList<>(part.size());
+                        for (CompoundContainerId cid : part) {
+                            final Instance inst = space.getInstanceFromCompound(cid);
+                            try {
+                                // load the union of all required components in one pass
+                                if (comps.length > 0)
+                                    inst.loadFormulaResults(comps);
+                                if (test(inst))
+                                    passed.add(cid);
+                            } catch (Exception e) {
+                                LoggerFactory.getLogger(InstanceFilter.class).warn("Could not evaluate filter for instance '" + cid + "'. Skipping this instance!", e);
+                            } finally {
+                                inst.clearFormulaResultsCache();
+                            }
+                        }
+                        return passed;
+                    }
+                }).collect(Collectors.toList());
+        filterJobs.forEach(jobs::submitJob);
+        return filterJobs.stream().map(JJob::takeResult).flatMap(List::stream).collect(Collectors.toList());
+    }
+}
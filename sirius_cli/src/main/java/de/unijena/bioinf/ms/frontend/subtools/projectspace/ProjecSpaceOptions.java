@@ -19,7 +19,6 @@
 
 package de.unijena.bioinf.ms.frontend.subtools.projectspace;
 
-import de.unijena.bioinf.ChemistryBase.algorithm.scoring.SScored;
 import de.unijena.bioinf.ChemistryBase.ms.Ms2Experiment;
 import de.unijena.bioinf.ChemistryBase.ms.ft.FTree;
 import de.unijena.bioinf.fingerid.ConfidenceScore;
@@ -30,13 +29,11 @@ import de.unijena.bioinf.ms.frontend.subtools.StandaloneTool;
 import de.unijena.bioinf.ms.properties.ParameterConfig;
 import de.unijena.bioinf.projectspace.CompoundContainerId;
 import de.unijena.bioinf.projectspace.FormulaScoring;
-import de.unijena.bioinf.projectspace.Instance;
 import de.unijena.bioinf.sirius.FTreeMetricsHelper;
 import org.jetbrains.annotations.Nullable;
 import picocli.CommandLine;
 
 import java.util.List;
-import java.util.Optional;
 import java.util.Set;
 import java.util.function.Predicate;
 import java.util.regex.Matcher;
@@ -150,35 +147,35 @@ public class ProjecSpaceOptions implements StandaloneTool<ProjectSpaceWorkflow>
     @CommandLine.Option(names = {"--keep-by-confidence", "--kc"},
             description = {"Keep all compounds that have a valid confidence score greater or equal than the given minimum confidence."})
     private void makeKeepConfidenceFilter(double minConfidence) {
-        keepConfidenceFilter = (inst) -> inst.loadTopFormulaResult(List.of(ConfidenceScore.class))
-                .flatMap(f -> f.getAnnotation(FormulaScoring.class)).flatMap(it -> it.getAnnotation(ConfidenceScore.class))
-                .map(s -> !s.isNa() && s.score() >= minConfidence).orElse(false);
+        keepConfidenceFilter = InstanceFilter.onTopFormulaResult(List.of(ConfidenceScore.class), f -> f.getAnnotation(FormulaScoring.class)
+                .flatMap(it -> it.getAnnotation(ConfidenceScore.class))
+                .map(s -> !s.isNa() && s.score() >= minConfidence).orElse(false));
     }
 
-    Predicate<Instance> keepConfidenceFilter = null;
+    InstanceFilter keepConfidenceFilter = null;
 
 
     @CommandLine.Option(names = {"--keep-by-tree-size", "--kts"},
             description = {"Keep all compounds that have at least one fragmentation tree with number of fragments (including precursor) greater or equal than the given minimum."})
     private void makeKeepTreeSizeFilter(double minTreeSize) {
-        keepTreeSizeFilter = (inst) -> inst.loadFormulaResults(FTree.class).stream().map(SScored::getCandidate).map(res ->  res.getAnnotation(FTree.class))
-                .filter(Optional::isPresent).map(Optional::get).mapToDouble(FTree::numberOfVertices).anyMatch(n->n>=minTreeSize);
+        keepTreeSizeFilter = InstanceFilter.onAnyFormulaResult(res -> res.getAnnotation(FTree.class)
+                .map(FTree::numberOfVertices).map(n -> n >= minTreeSize).orElse(false), FTree.class);
     }
 
-    Predicate<Instance> keepTreeSizeFilter = null;
+    InstanceFilter keepTreeSizeFilter = null;
 
     @CommandLine.Option(names = {"--keep-by-explained-intensity", "--kei"},
             description = {"Keep all compounds that have at least one fragmentation tree that explains at least a minimum total intensity of the spectrum. Value between 0 to 1."})
     private void makeKeepExplainedIntensityFilter(double minIntensityRatio) {
-        keepExplainedIntensityFilter = (inst) -> inst.loadFormulaResults(FTree.class).stream().map(SScored::getCandidate).map(res ->  res.getAnnotation(FTree.class))
-                .filter(Optional::isPresent).map(Optional::get).mapToDouble(FTreeMetricsHelper::getExplainedIntensityRatio).anyMatch(r->r>=minIntensityRatio);
+        keepExplainedIntensityFilter = InstanceFilter.onAnyFormulaResult(res -> res.getAnnotation(FTree.class)
+                .map(FTreeMetricsHelper::getExplainedIntensityRatio).map(r -> r >= minIntensityRatio).orElse(false), FTree.class);
     }
 
-    Predicate<Instance> keepExplainedIntensityFilter = null;
+    InstanceFilter keepExplainedIntensityFilter = null;
 
     @Nullable
-    public Predicate<Instance> getCombinedInstanceilter() {
-        Predicate<Instance> it = null; //null to skip filtering
+    public InstanceFilter getCombinedInstanceilter() {
+        InstanceFilter it = null; //null to skip filtering
         // combine
         if (keepConfidenceFilter != null)
             it = it == null ? keepConfidenceFilter : it.and(keepConfidenceFilter);
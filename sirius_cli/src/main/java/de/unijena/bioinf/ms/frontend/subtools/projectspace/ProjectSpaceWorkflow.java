@@ -40,6 +40,8 @@ import de.unijena.bionf.spectral_alignment.CosineQuerySpectrum;
 import de.unijena.bionf.spectral_alignment.CosineQueryUtils;
 import de.unijena.bionf.spectral_alignment.IntensityWeightedSpectralAlignment;
 import de.unijena.bionf.spectral_alignment.SpectralSimilarity;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.set.hash.TIntHashSet;
 import org.jetbrains.annotations.Nullable;
 import org.slf4j.LoggerFactory;
 
@@ -105,11 +107,9 @@ public class ProjectSpaceWorkflow implements Workflow, ProgressSupport {
                     source.projectSpace().filteredIterator(cidFilter).forEachRemaining(cids::add);
 
                     // do io intense filtering
-                    @Nullable Predicate<Instance> instFilter = projecSpaceOptions.getCombinedInstanceilter();
-                    if (instFilter != null) {
-                        final ProjectSpaceManager<?> finalSource = source;
-                        cids.removeIf(id -> instFilter.test(finalSource.getInstanceFromCompound(id)));
-                    }
+                    @Nullable InstanceFilter instFilter = projecSpaceOptions.getCombinedInstanceilter();
+                    if (instFilter != null)
+                        cids = instFilter.filter(source, cids);
 
                     switch (splitOpts.order) {
                         case SHUFFLE:
@@ -196,6 +196,7 @@ public class ProjectSpaceWorkflow implements Workflow, ProgressSupport {
                                     }
                                 }
                             });
+                            instance.updateRankIndex();
                         });
                     }
 
@@ -221,105 +222,80 @@ public class ProjectSpaceWorkflow implements Workflow, ProgressSupport {
         int topK = Optional.ofNullable(projecSpaceOptions.mergeCompoundsTopK).orElse(1);
         double cosine = Optional.ofNullable(projecSpaceOptions.mergeCompoundsCosine).orElse(0.9);
         long rtDiff = Optional.ofNullable(projecSpaceOptions.mergeCompoundsRtDiff).orElse(60L);
-        // group compounds by m/z
+        final JobManager jobs = SiriusJobs.getGlobalJobManager();
         final Deviation dev = new Deviation(10);
         final CosineQueryUtils Q = new CosineQueryUtils(new IntensityWeightedSpectralAlignment(dev));
-        final HashMap<Integer, List<Instance>> grouped = new HashMap<>();
-        for (Instance instance : space) {
-            final double ionMass = instance.getID().getIonMass().orElseGet(() -> instance.getExperiment().getIonMass());
-            instance.getID().setIonMass(ionMass);
-            grouped.computeIfAbsent((int) Math.round(ionMass), (x) -> new ArrayList<>()).add(instance);
-        }
-        final List<BasicJJob<Object>> jobs = new ArrayList<>();
-        for (List<Instance> group : grouped.values()) {
-            jobs.add(SiriusJobs.getGlobalJobManager().submitJob(new BasicJJob<Object>() {
-                @Override
-                protected Object compute() throws Exception {
-                    final ArrayList<HashSet<Instance>> buckets = new ArrayList<>();
-                    int[] assignments = new int[group.size()];
-                    Arrays.fill(assignments, -1);
-                    int K = 0;
-                    for (int i = 0; i < group.size(); ++i) {
-                        final Instance left = group.get(i);
-                        final double lm = left.getID().getIonMass().get();
-                        Long rtLeft = null;
-                        CosineQuerySpectrum leftExp = null;
-                        for (int j = i + 1; j < group.size(); ++j) {
-                            if (assignments[j] >= 0 && assignments[i] >= 0)
-                                continue;
-                            final Instance right = group.get(j);
-                            final double rm = right.getID().getIonMass().get();
-                            final double mzDiff = Math.abs(lm - rm);
-                            Long rtRight = null;
-                            CosineQuerySpectrum rightExp = null;
-                            if (mzDiff <= dev.absoluteFor(Math.max(lm, rm))) {
-                                if (rtLeft == null) {
-                                    rtLeft = left.getID().getRt().map(RetentionTime::getRetentionTimeInSeconds).orElseGet(() -> left.getExperiment().getAnnotation(RetentionTime.class).map(RetentionTime::getRetentionTimeInSeconds).orElse(0d)).longValue();
-                                }
-                                rtRight = right.getID().getRt().map(RetentionTime::getRetentionTimeInSeconds).orElseGet(() -> left.getExperiment().getAnnotation(RetentionTime.class).map(RetentionTime::getRetentionTimeInSeconds).orElse(0d)).longValue();
-                                if (Math.abs(rtLeft - rtRight) < rtDiff) {
-                                    if (leftExp == null) {
-                                        leftExp = Q.createQueryWithIntensityTransformationNoLoss(Spectrums.from(new Ms2Preprocessor().preprocess(left.getExperiment()).getMergedPeaks()), lm, true);
-                                    }
-                                    rightExp = Q.createQueryWithIntensityTransformationNoLoss(Spectrums.from(new Ms2Preprocessor().preprocess(right.getExperiment()).getMergedPeaks()), rm, true);
-                                    final SpectralSimilarity spectralSimilarity = Q.cosineProduct(leftExp, rightExp);
-                                    if (spectralSimilarity.similarity >= cosine && spectralSimilarity.shardPeaks >= Math.min(6, Math.min(leftExp.size(), rightExp.size()))) {
-                                        // merge both compounds
-                                        int color = assignments[i];
-                                        if (color < 0) color = assignments[j];
-                                        if (color < 0) color = K++;
-                                        while (buckets.size() <= color) buckets.add(new HashSet<>());
-                                        buckets.get(color).add(left);
-                                        buckets.get(color).add(right);
-                                        assignments[i] = color;
-                                        assignments[j] = color;
-                                    }
-                                }
-                            }
-                        }
-                    }
 
-                    // pick for each bucket the top k compounds
-                    HashSet<Instance> toDelete = new HashSet<>();
-                    for (HashSet<Instance> bucket : buckets) {
-                        if (bucket.size() <= topK)
-                            continue;
-                        final ArrayList<Instance> maydel = new ArrayList<>(bucket);
-                        maydel.sort(Comparator.comparingDouble(
-                                x -> -(x.loadCompoundContainer(LCMSPeakInformation.class).getAnnotation(LCMSPeakInformation.class).map(y -> Arrays.stream(y.getQuantificationTable().getAsVector()).max().orElse(0d)).orElse(0d)))
-                        );
-                        for (int k = topK; k < maydel.size(); ++k) {
-                            toDelete.add(maydel.get(k));
-                        }
-                    }
+        final List<Instance> instances = new ArrayList<>(space.size());
+        space.forEach(instances::add);
+        final double[] mz = new double[instances.size()];
+        final double[] rt = new double[instances.size()];
+        for (int i = 0; i < instances.size(); ++i) {
+            final Instance instance = instances.get(i);
+            mz[i] = instance.getID().getIonMass().orElseGet(() -> instance.getExperiment().getIonMass());
+            instance.getID().setIonMass(mz[i]);
+            rt[i] = instance.getID().getRt().map(RetentionTime::getRetentionTimeInSeconds).orElseGet(() -> instance.getExperiment().getAnnotation(RetentionTime.class).map(RetentionTime::getRetentionTimeInSeconds).orElse(0d)).longValue();
+        }
 
-                    for (Instance i : toDelete) {
-                        try {
-                            space.projectSpace().deleteCompound(i.getID());
-                            LoggerFactory.getLogger(getClass()).error("Deleting: " + i.getID().getDirectoryName());
-                        } catch (IOException e) {
-                            LoggerFactory.getLogger(getClass()).error("Could not delete Instance with ID: " + i.getID().getDirectoryName());
-                        }
-                    }
-                    return null;
+        // sweep m/z and rt window, only these pairs need a spectral comparison
+        final TIntArrayList candidates = CompoundClustering.candidatePairs(mz, rt, dev, rtDiff, jobs);
+
+        // preprocess each query spectrum exactly once. NOTE: the query spectra of all features that are part of any
+        // candidate pair are held in memory at once (a few KB per feature) until the pairs are filtered, and reading
+        // them caches the experiment of these instances. For very large projects this is the peak memory of merging.
+        final CosineQuerySpectrum[] queries = new CosineQuerySpectrum[instances.size()];
+        final TIntHashSet toPreprocess = new TIntHashSet(candidates);
+        final List<BasicJJob<CosineQuerySpectrum>> queryJobs = new ArrayList<>();
+        final int[] queryIdx = toPreprocess.toArray();
+        for (int i : queryIdx) {
+            queryJobs.add(jobs.submitJob(new BasicJJob<>(JJob.JobType.CPU) {
+                @Override
+                protected CosineQuerySpectrum compute() {
+                    return Q.createQueryWithIntensityTransformationNoLoss(Spectrums.from(new Ms2Preprocessor().preprocess(instances.get(i).getExperiment()).getMergedPeaks()), mz[i], true);
                 }
             }));
         }
-        jobs.forEach(JJob::takeResult);
+        for (int k = 0; k < queryIdx.length; ++k)
+            queries[queryIdx[k]] = queryJobs.get(k).takeResult();
+
+        final TIntArrayList merged = CompoundClustering.filterPairs(candidates, (i, j) -> {
+            final SpectralSimilarity spectralSimilarity = Q.cosineProduct(queries[i], queries[j]);
+            return spectralSimilarity.similarity >= cosine && spectralSimilarity.shardPeaks >= Math.min(6, Math.min(queries[i].size(), queries[j].size()));
+        }, jobs);
+
+        // pick for each cluster the top k compounds
+        final List<Instance> toDelete = new ArrayList<>();
+        for (int[] cluster : CompoundClustering.components(instances.size(), merged)) {
+            if (cluster.length <= topK)
+                continue;
+            final ArrayList<Instance> maydel = Arrays.stream(cluster).mapToObj(instances::get).collect(Collectors.toCollection(ArrayList::new));
+            maydel.sort(Comparator.comparingDouble(
+                    x -> -(x.loadCompoundContainer(LCMSPeakInformation.class).getAnnotation(LCMSPeakInformation.class).map(y -> Arrays.stream(y.getQuantificationTable().getAsVector()).max().orElse(0d)).orElse(0d)))
+            );
+            toDelete.addAll(maydel.subList(topK, maydel.size()));
+        }
+
+        for (Instance i : toDelete) {
+            try {
+                space.projectSpace().deleteCompound(i.getID());
+                LoggerFactory.getLogger(getClass()).error("Deleting: " + i.getID().getDirectoryName());
+            } catch (IOException e) {
+                LoggerFactory.getLogger(getClass()).error("Could not delete Instance with ID: " + i.getID().getDirectoryName());
+            }
+        }
     }
 
     private void filterOnInstanceLevel(ProjectSpaceManager<?> outputProject, ProjecSpaceOptions projecSpaceOptions) {
-        final Predicate<Instance> pred = projecSpaceOptions.getCombinedInstanceilter();
-        if (pred == null)
+        final InstanceFilter filter = projecSpaceOptions.getCombinedInstanceilter();
+        if (filter == null)
             return;
 
         LoggerFactory.getLogger(getClass()).info("Filtering with IO intense instance filters... '" + outputProject.projectSpace().getLocation().toString());
 
-        List<CompoundContainerId> cidsToDelete = new ArrayList<>();
-        outputProject.iterator().forEachRemaining(inst -> {
-            if (!pred.test(inst))
-                cidsToDelete.add(inst.getID());
-        });
+        final List<CompoundContainerId> cids = new ArrayList<>(outputProject.size());
+        outputProject.projectSpace().forEach(cids::add);
+        final Set<CompoundContainerId> keep = new HashSet<>(filter.filter(outputProject, cids));
+        final List<CompoundContainerId> cidsToDelete = cids.stream().filter(id -> !keep.contains(id)).collect(Collectors.toList());
 
         for (CompoundContainerId id : cidsToDelete) {
             try {
@@ -0,0 +1,254 @@
+/*
+ *  This file is part of the SIRIUS Software for analyzing MS and MS/MS data
+ *
+ *  Copyright (C) 2013-2020 Kai Dührkop, Markus Fleischauer, Marcus Ludwig, Martin A. Hoffman, Fleming Kretschmer, Marvin Meusel and Sebastian Böcker,
+ *  Chair of Bioinformatics, Friedrich-Schiller University.
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Affero General Public License
+ *  as published by the Free Software Foundation; either
+ *  version 3 of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License along with SIRIUS.  If not, see <https://www.gnu.org/licenses/agpl-3.0.txt>
+ */
+
+package de.unijena.bioinf.ms.frontend.subtools.quality;
+
+import de.unijena.bioinf.ChemistryBase.ms.Deviation;
+import de.unijena.bioinf.ChemistryBase.ms.Ms2Experiment;
+import de.unijena.bioinf.ChemistryBase.ms.Peak;
+import de.unijena.bioinf.ChemistryBase.ms.Spectrum;
+import de.unijena.bioinf.ChemistryBase.ms.ft.FTree;
+import de.unijena.bioinf.ChemistryBase.ms.ft.TreeStatistics;
+import de.unijena.bioinf.ChemistryBase.ms.lcms.CoelutingTraceSet;
+import de.unijena.bioinf.ChemistryBase.ms.lcms.LCMSPeakInformation;
+import de.unijena.bioinf.lcms.LCMSCompoundSummary;
+import de.unijena.bioinf.projectspace.SpectralQuality;
+import gnu.trove.list.array.TDoubleArrayList;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * Spectral quality checks of a single compound, ported from the dataset wide quality annotators of
+ * {@code CompoundQualityUtils} (sirius_utils). All checks only depend on the data of the compound itself,
+ * so compounds can be assessed independently and in parallel. The only dataset wide value of the original
+ * implementation, the median noise intensity, has to be given as parameter. It is either fixed by the user or
+ * estimated from the noise intensities of all MS/MS spectra of the dataset (see {@link #ms2NoiseIntensities} and
+ * {@link #median}), like the original preprocessor did.
+ * <p>
+ * Thread safe.
+ */
+public class SpectralQualityAssessor {
+    public static final Deviation FIND_MS1_PEAK_DEVIATION = new Deviation(100, 0.005);
+    public static final int MIN_NUMBER_OF_PEAKS = 5;
+    private static final double ISOTOPE_DISTANCE = 1.00335;
+
+    private final double medianNoiseIntensity;
+    private final double isolationWindowWidth;
+    private final double isolationWindowShift;
+
+    private double minRelMs1Intensity = 0.01;
+    private double max2ndMostIntenseRatio = 0.33;
+    private double maxSummedIntensitiesRatio = 1.0;
+    private double minExplainedIntensity = 0.5;
+    private int minExplainedPeaks = 5;
+
+    /**
+     * @param medianNoiseIntensity MS/MS peaks below this intensity do not count as peaks. Values &lt;= 0 count all peaks.
+     * @param isolationWindowWidth width of the precursor isolation window used for the chimeric check. Values &lt;= 0 disable the check.
+     * @param isolationWindowShift shift of the isolation window center relative to the precursor m/z.
+     */
+    public SpectralQualityAssessor(double medianNoiseIntensity, double isolationWindowWidth, double isolationWindowShift) {
+        this.medianNoiseIntensity = medianNoiseIntensity;
+        this.isolationWindowWidth = isolationWindowWidth;
+        this.isolationWindowShift = isolationWindowShift;
+    }
+
+    public SpectralQuality assess(@NotNull Ms2Experiment experiment, @Nullable List<FTree> trees, @Nullable LCMSPeakInformation lcms) {
+        final EnumSet<SpectralQuality.Flag> flags = assessSpectra(experiment);
+        if (trees != null && !trees.isEmpty() && isPoorlyExplained(trees))
+            flags.add(SpectralQuality.Flag.PoorlyExplained);
+        return new SpectralQuality(flags, lcms == null ? null : peakShapeQualities(lcms));
+    }
+
+    public EnumSet<SpectralQuality.Flag> assessSpectra(@NotNull Ms2Experiment experiment) {
+        final EnumSet<SpectralQuality.Flag> flags = EnumSet.noneOf(SpectralQuality.Flag.class);
+        final double precursorMz = experiment.getIonMass();
+
+        // MS1 checks are done on the merged MS1 if available, otherwise on the spectrum with the most intense precursor peak
+        final List<Spectrum<? extends Peak>> ms1 = new ArrayList<>();
+        if (experiment.getMergedMs1Spectrum() != null && experiment.getMergedMs1Spectrum().size() > 0)
+            ms1.add(experiment.getMergedMs1Spectrum());
+        else if (experiment.getMs1Spectra() != null)
+            ms1.addAll(experiment.getMs1Spectra());
+
+        Spectrum<? extends Peak> best = null;
+        int bestIdx = -1;
+        for (Spectrum<? extends Peak> s : ms1) {
+            final int idx = mostIntenseWithin(s, precursorMz, FIND_MS1_PEAK_DEVIATION);
+            if (idx >= 0 && (best == null || s.getIntensityAt(idx) > best.getIntensityAt(bestIdx))) {
+                best = s;
+                bestIdx = idx;
+            }
+        }
+
+        if (best == null) {
+            flags.add(SpectralQuality.Flag.NoMS1Peak);
+        } else {
+            final double precursorIntensity = best.getIntensityAt(bestIdx);
+            if (precursorIntensity < minRelMs1Intensity * maxIntensity(best))
+                flags.add(SpectralQuality.Flag.LowIntensity);
+            if (isolationWindowWidth > 0 && isChimeric(best, precursorMz, precursorIntensity, charge(experiment)))
+                flags.add(SpectralQuality.Flag.Chimeric);
+        }
+
+        if (maxNumberOfMs2Peaks(experiment) < MIN_NUMBER_OF_PEAKS)
+            flags.add(SpectralQuality.Flag.FewPeaks);
+
+        return flags;
+    }
+
+    public boolean isPoorlyExplained(@NotNull List<FTree> trees) {
+        boolean explainsIntensity = false, explainsPeaks = false;
+        for (FTree tree : trees) {
+            explainsIntensity |= tree.getAnnotation(TreeStatistics.class).map(TreeStatistics::getExplainedIntensity).orElse(0d) > minExplainedIntensity;
+            explainsPeaks |= tree.numberOfVertices() >= minExplainedPeaks;
+        }
+        return !explainsIntensity || !explainsPeaks;
+    }
+
+    /**
+     * Noise intensity of each non empty MS/MS spectrum of the given compound, which is the lower quartile of its
+     * peak intensities.
+     */
+    public static double[] ms2NoiseIntensities(@NotNull Ms2Experiment experiment) {
+        if (experiment.getMs2Spectra() == null)
+            return new double[0];
+        final TDoubleArrayList noise = new TDoubleArrayList(experiment.getMs2Spectra().size());
+        for (Spectrum<? extends Peak> s : experiment.getMs2Spectra()) {
+            if (s.size() == 0)
+                continue;
+            final double[] intensities = new double[s.size()];
+            for (int i = 0; i < intensities.length; i++)
+                intensities[i] = s.getIntensityAt(i);
+            Arrays.sort(intensities);
+            noise.add(intensities[(intensities.length - 1) / 4]);
+        }
+        return noise.toArray();
+    }
+
+    /**
+     * @return median of the given values, 0 if there are none, so that all peaks count.
+     */
+    public static double median(@NotNull double[] values) {
+        if (values.length == 0)
+            return 0d;
+        final double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        final int mid = sorted.length / 2;
+        return sorted.length % 2 == 1 ? sorted[mid] : (sorted[mid - 1] + sorted[mid]) / 2d;
+    }
+
+    public static Set<LCMSCompoundSummary.Quality> peakShapeQualities(@NotNull LCMSPeakInformation lcms) {
+        final EnumSet<LCMSCompoundSummary.Quality> qualities = EnumSet.noneOf(LCMSCompoundSummary.Quality.class);
+        for (int k = 0; k < lcms.length(); ++k) {
+            final Optional<CoelutingTraceSet> tracesFor = lcms.getTracesFor(k);
+            if (tracesFor.isPresent()) {
+                final CoelutingTraceSet traceSet = tracesFor.get();
+                qualities.add(LCMSCompoundSummary.checkPeakQuality(traceSet, traceSet.getIonTrace()));
+            }
+        }
+        return qualities;
+    }
+
+    private boolean isChimeric(Spectrum<? extends Peak> ms1, double precursorMz, double precursorIntensity, int charge) {
+        final double center = precursorMz + isolationWindowShift;
+        final double left = center - isolationWindowWidth / 2d, right = center + isolationWindowWidth / 2d;
+        double secondMostIntense = 0d, summed = 0d;
+        for (int i = 0; i < ms1.size(); i++) {
+            final double mz = ms1.getMzAt(i);
+            if (mz < left || mz > right || isPrecursorIsotope(mz, precursorMz, charge))
+                continue;
+            final double intensity = ms1.getIntensityAt(i);
+            secondMostIntense = Math.max(secondMostIntense, intensity);
+            summed += intensity;
+        }
+        return secondMostIntense > max2ndMostIntenseRatio * precursorIntensity
+                || summed > maxSummedIntensitiesRatio * precursorIntensity;
+    }
+
+    private static boolean isPrecursorIsotope(double mz, double precursorMz, int charge) {
+        for (int k = 0; k <= 3; k++) {
+            if (FIND_MS1_PEAK_DEVIATION.inErrorWindow(precursorMz + k * ISOTOPE_DISTANCE / charge, mz))
+                return true;
+        }
+        return false;
+    }
+
+    private int maxNumberOfMs2Peaks(Ms2Experiment experiment) {
+        if (experiment.getMs2Spectra() == null)
+            return 0;
+        int max = 0;
+        for (Spectrum<? extends Peak> s : experiment.getMs2Spectra()) {
+            int n = 0;
+            for (int i = 0; i < s.size(); i++)
+                if (s.getIntensityAt(i) > medianNoiseIntensity)
+                    ++n;
+            max = Math.max(max, n);
+        }
+        return max;
+    }
+
+    private static int mostIntenseWithin(Spectrum<? extends Peak> s, double mz, Deviation dev) {
+        int idx = -1;
+        for (int i = 0; i < s.size(); i++) {
+            if (dev.inErrorWindow(mz, s.getMzAt(i)) && (idx < 0 || s.getIntensityAt(i) > s.getIntensityAt(idx)))
+                idx = i;
+        }
+        return idx;
+    }
+
+    private static double maxIntensity(Spectrum<? extends Peak> s) {
+        double max = 0d;
+        for (int i = 0; i < s.size(); i++)
+            max = Math.max(max, s.getIntensityAt(i));
+        return max;
+    }
+
+    private static int charge(Ms2Experiment experiment) {
+        final int charge = experiment.getPrecursorIonType() == null ? 1 : Math.abs(experiment.getPrecursorIonType().getCharge());
+        return Math.max(1, charge);
+    }
+
+    public SpectralQualityAssessor setMinRelMs1Intensity(double minRelMs1Intensity) {
+        this.minRelMs1Intensity = minRelMs1Intensity;
+        return this;
+    }
+
+    public SpectralQualityAssessor setMax2ndMostIntenseRatio(double max2ndMostIntenseRatio) {
+        this.max2ndMostIntenseRatio = max2ndMostIntenseRatio;
+        return this;
+    }
+
+    public SpectralQualityAssessor setMaxSummedIntensitiesRatio(double maxSummedIntensitiesRatio) {
+        this.maxSummedIntensitiesRatio = maxSummedIntensitiesRatio;
+        return this;
+    }
+
+    public SpectralQualityAssessor setMinExplainedIntensity(double minExplainedIntensity) {
+        this.minExplainedIntensity = minExplainedIntensity;
+        return this;
+    }
+
+    public SpectralQualityAssessor setMinExplainedPeaks(int minExplainedPeaks) {
+        this.minExplainedPeaks = minExplainedPeaks;
+        return this;
+    }
+}
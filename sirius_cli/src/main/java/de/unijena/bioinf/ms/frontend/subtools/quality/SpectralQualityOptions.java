@@ -0,0 +1,203 @@
+/*
+ *  This file is part of the SIRIUS Software for analyzing MS and MS/MS data
+ *
+ *  Copyright (C) 2013-2020 Kai Dührkop, Markus Fleischauer, Marcus Ludwig, Martin A. Hoffman, Fleming Kretschmer, Marvin Meusel and Sebastian Böcker,
+ *  Chair of Bioinformatics, Friedrich-Schiller University.
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Affero General Public License
+ *  as published by the Free Software Foundation; either
+ *  version 3 of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License along with SIRIUS.  If not, see <https://www.gnu.org/licenses/agpl-3.0.txt>
+ */
+
+package de.unijena.bioinf.ms.frontend.subtools.quality;
+
+import de.unijena.bioinf.ChemistryBase.algorithm.scoring.SScored;
+import de.unijena.bioinf.ChemistryBase.jobs.SiriusJobs;
+import de.unijena.bioinf.ChemistryBase.ms.ft.FTree;
+import de.unijena.bioinf.ChemistryBase.ms.lcms.LCMSPeakInformation;
+import de.unijena.bioinf.jjobs.BasicJJob;
+import de.unijena.bioinf.ms.frontend.subtools.PreprocessingJob;
+import de.unijena.bioinf.ms.frontend.subtools.Provide;
+import de.unijena.bioinf.ms.frontend.subtools.RootOptions;
+import de.unijena.bioinf.ms.frontend.subtools.StandaloneTool;
+import de.unijena.bioinf.ms.frontend.workflow.Workflow;
+import de.unijena.bioinf.ms.properties.ParameterConfig;
+import de.unijena.bioinf.projectspace.CompoundContainer;
+import de.unijena.bioinf.projectspace.Instance;
+import de.unijena.bioinf.projectspace.ProjectSpaceManager;
+import de.unijena.bioinf.projectspace.SpectralQuality;
+import de.unijena.bioinf.projectspace.SpectralQualityProperty;
+import gnu.trove.list.array.TDoubleArrayList;
+import org.apache.commons.lang3.tuple.Pair;
+import org.slf4j.LoggerFactory;
+import picocli.CommandLine;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@CommandLine.Command(name = "spectral-quality", aliases = {"quality"}, description = {"<STANDALONE> Assesses the spectral quality of all compounds in the project-space (no MS1 peak, few peaks, low intensity, chimeric, poorly explained, LC-MS peak shape).", "Compounds are assessed in parallel and the results are stored as compound annotation in the project-space."},
+        versionProvider = Provide.Versions.class, mixinStandardHelpOptions = true, showDefaultValues = true)
+public class SpectralQualityOptions implements StandaloneTool<SpectralQualityOptions.SpectralQualityWorkflow> {
+
+    @CommandLine.Option(names = {"--median-noise"}, defaultValue = "0",
+            description = {"Median noise intensity of the MS/MS spectra. Peaks below this intensity do not count for the few peaks check. If not set (<= 0) it is estimated from all MS/MS spectra of the project."})
+    protected double medianNoiseIntensity;
+
+    @CommandLine.Option(names = {"--isolation-window-width"}, defaultValue = "0",
+            description = {"Width of the precursor isolation window in Da. Needed for the chimeric check, which is disabled for values <= 0."})
+    protected double isolationWindowWidth;
+
+    @CommandLine.Option(names = {"--isolation-window-shift"}, defaultValue = "0",
+            description = {"Shift of the isolation window center relative to the precursor m/z in Da."})
+    protected double isolationWindowShift;
+
+    @Override
+    public SpectralQualityWorkflow makeWorkflow(RootOptions<?, ?, ?, ?> rootOptions, ParameterConfig config) {
+        return new SpectralQualityWorkflow((PreprocessingJob<? extends Iterable<Instance>>) rootOptions.makeDefaultPreprocessingJob(), this);
+    }
+
+    /**
+     * Assesses the instances in parallel CPU jobs and stores the result of each instance as {@link SpectralQuality}
+     * compound component right after its assessment. If no median noise intensity is given, it is estimated from the
+     * MS/MS spectra of all instances in a first (also parallel) pass. Finally the used settings are stored as
+     * {@link SpectralQualityProperty}. Returns the number of instances with good quality.
+     */
+    public static class SpectralQualityJJob extends BasicJJob<Integer> {
+        private final double medianNoiseIntensity;
+        private final double isolationWindowWidth;
+        private final double isolationWindowShift;
+        private final Iterable<? extends Instance> instances;
+
+        /**
+         * @param medianNoiseIntensity fixed median noise intensity, values &lt;= 0 estimate it from the given instances.
+         */
+        public SpectralQualityJJob(double medianNoiseIntensity, double isolationWindowWidth, double isolationWindowShift, Iterable<? extends Instance> instances) {
+            super(JobType.SCHEDULER);
+            this.medianNoiseIntensity = medianNoiseIntensity;
+            this.isolationWindowWidth = isolationWindowWidth;
+            this.isolationWindowShift = isolationWindowShift;
+            this.instances = instances;
+        }
+
+        @Override
+        protected Integer compute() throws Exception {
+            double noise = medianNoiseIntensity;
+            if (noise <= 0) {
+                final TDoubleArrayList noiseIntensities = new TDoubleArrayList();
+                forEachInParallel(inst -> SpectralQualityAssessor.ms2NoiseIntensities(inst.getExperiment()),
+                        (inst, values) -> noiseIntensities.add(values), "Estimating median noise intensity...");
+                noise = SpectralQualityAssessor.median(noiseIntensities.toArray());
+                LoggerFactory.getLogger(getClass()).info("Estimated median MS/MS noise intensity: " + noise);
+            }
+
+            final SpectralQualityAssessor assessor = new SpectralQualityAssessor(noise, isolationWindowWidth, isolationWindowShift);
+            final int[] counts = new int[2]; // assessed, good
+            final ProjectSpaceManager<?>[] project = new ProjectSpaceManager<?>[1];
+            forEachInParallel(inst -> assessAndStore(assessor, inst), (inst, quality) -> {
+                project[0] = inst.getProjectSpaceManager();
+                ++counts[0];
+                if (quality.isGoodQuality())
+                    ++counts[1];
+            }, "Assessing spectral quality...");
+
+            if (project[0] != null)
+                project[0].setProjectSpaceProperty(SpectralQualityProperty.class,
+                        new SpectralQualityProperty(noise, isolationWindowWidth, isolationWindowShift));
+            LoggerFactory.getLogger(getClass()).info(counts[1] + " of " + counts[0] + " compounds have good spectral quality.");
+            return counts[1];
+        }
+
+        /**
+         * Runs the given task for all instances in CPU jobs and passes the results in iteration order to the consumer
+         * (in this thread). Instances whose task fails are skipped with a warning.
+         */
+        private <T> void forEachInParallel(Function<Instance, T> task, BiConsumer<Instance, T> consumer, String message) throws InterruptedException {
+            updateProgress(0, -1, -1, message);
+            // the window bounds the number of instances (and their spectra) loaded at the same time
+            final int window = Math.max(2, 4 * SiriusJobs.getGlobalJobManager().getCPUThreads());
+            final ArrayDeque<Pair<Instance, BasicJJob<T>>> inFlight = new ArrayDeque<>(window);
+            int submitted = 0, done = 0;
+            for (Instance inst : instances) {
+                checkForInterruption();
+                inFlight.addLast(Pair.of(inst, submitSubJob(new BasicJJob<T>(JobType.CPU) {
+                    @Override
+                    protected T compute() {
+                        try {
+                            return task.apply(inst);
+                        } finally {
+                            inst.clearCompoundCache();
+                            inst.clearFormulaResultsCache();
+                        }
+                    }
+                })));
+                ++submitted;
+                if (inFlight.size() >= window) {
+                    awaitNext(inFlight, consumer);
+                    updateProgress(0, submitted, ++done, message);
+                }
+            }
+            while (!inFlight.isEmpty()) {
+                awaitNext(inFlight, consumer);
+                updateProgress(0, submitted, ++done, message);
+            }
+        }
+
+        private <T> void awaitNext(ArrayDeque<Pair<Instance, BasicJJob<T>>> inFlight, BiConsumer<Instance, T> consumer) {
+            final Pair<Instance, BasicJJob<T>> next = inFlight.removeFirst();
+            try {
+                consumer.accept(next.getLeft(), next.getRight().awaitResult());
+            } catch (ExecutionException e) {
+                LoggerFactory.getLogger(getClass()).warn("Could not assess spectral quality of instance '" + next.getLeft().getID() + "'. Skipping this instance!", e.getCause());
+            }
+        }
+    }
+
+    static SpectralQuality assessAndStore(SpectralQualityAssessor assessor, Instance inst) {
+        final List<FTree> trees = inst.loadFormulaResults(FTree.class).stream().map(SScored::getCandidate)
+                .map(r -> r.getAnnotation(FTree.class)).flatMap(Optional::stream).collect(Collectors.toList());
+        final CompoundContainer container = inst.loadCompoundContainer(LCMSPeakInformation.class, SpectralQuality.class);
+        final SpectralQuality quality = assessor.assess(inst.getExperiment(), trees,
+                container.getAnnotation(LCMSPeakInformation.class).orElse(null));
+        container.setAnnotation(SpectralQuality.class, quality);
+        inst.updateCompound(container, SpectralQuality.class);
+        return quality;
+    }
+
+    public static class SpectralQualityWorkflow implements Workflow {
+        private final PreprocessingJob<? extends Iterable<Instance>> job;
+        private final SpectralQualityOptions options;
+
+        public SpectralQualityWorkflow(PreprocessingJob<? extends Iterable<Instance>> job, SpectralQualityOptions options) {
+            this.job = job;
+            this.options = options;
+        }
+
+        @Override
+        public void run() {
+            try {
+                final Iterable<Instance> ps = SiriusJobs.getGlobalJobManager().submitJob(job).awaitResult();
+                try {
+                    SiriusJobs.getGlobalJobManager().submitJob(new SpectralQualityJJob(options.medianNoiseIntensity,
+                            options.isolationWindowWidth, options.isolationWindowShift, ps)).awaitResult();
+                } catch (ExecutionException e) {
+                    LoggerFactory.getLogger(getClass()).error("Error when assessing spectral quality!", e);
+                }
+            } catch (ExecutionException e) {
+                LoggerFactory.getLogger(getClass()).error("Error when reading input project!", e);
+            }
+        }
+    }
+}
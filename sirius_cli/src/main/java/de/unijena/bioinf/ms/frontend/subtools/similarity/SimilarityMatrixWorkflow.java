@@ -82,6 +82,8 @@ public class SimilarityMatrixWorkflow implements Workflow {
 
     private final static List<Class<? extends FormulaScore>> rankSores =
             List.of(TopCSIScore.class, ZodiacScore.class, SiriusScore.class);
+    // number of library trees one ftblast job aligns a query tree against
+    private static final int FTBLAST_BLOCK_SIZE = 256;
     protected final SimilarityMatrixOptions options;
     protected ProjectSpaceManager<?> ps;
     protected final ParameterConfig config;
@@ -261,29 +263,41 @@ public class SimilarityMatrixWorkflow implements Workflow {
         Collections.addAll(libTrees, trees);
 
         final double[][] M = new double[trees.length][trees.length];
+        final double[][] C = ftblastScores(trees, libTrees);
+        Jobs.submitJob(MatrixUtils.parallelizeSymmetricMatrixComputation(M, (i,j)->Pearson.pearson(C[i],C[j]))).takeResult();
+        writeMatrix("ftblast", M, xs.stream().map(x->x.getID().getCompoundName()).toArray(String[]::new), options.digits);
+    }
+
+    /**
+     * Normalized alignment scores of each tree against each library tree. One job scores one query tree against a
+     * block of library trees, self alignment scores are computed once per tree.
+     */
+    static double[][] ftblastScores(FTree[] trees, List<FTree> libTrees) {
+        final JobManager Jobs = SiriusJobs.getGlobalJobManager();
         final double[][] C = new double[trees.length][libTrees.size()];
         final StandardScoring standardScoring = new StandardScoring(true);
-        final ArrayList<BasicJJob<Double>> jobs = new ArrayList<>();
+        final double[] selfScores = Arrays.stream(trees).mapToDouble(t -> standardScoring.selfAlignScore(t.getRoot())).toArray();
+        final double[] libSelfScores = libTrees.stream().mapToDouble(t -> standardScoring.selfAlignScore(t.getRoot())).toArray();
+
+        final ArrayList<BasicJJob<Boolean>> jobs = new ArrayList<>();
         for (int i = 0; i < trees.length; ++i) {
             final int I = i;
-            final double selfScore = standardScoring.selfAlignScore(trees[i].getRoot());
-            for (int j = 0; j < libTrees.size(); ++j) {
-                final int J = j;
-                jobs.add(Jobs.submitJob(new BasicJJob<Double>() {
+            for (int blockStart = 0; blockStart < libTrees.size(); blockStart += FTBLAST_BLOCK_SIZE) {
+                final int from = blockStart, to = Math.min(libTrees.size(), blockStart + FTBLAST_BLOCK_SIZE);
+                jobs.add(Jobs.submitJob(new BasicJJob<Boolean>(JJob.JobType.CPU) {
                     @Override
-                    protected Double compute() throws Exception {
-                        final double score = new DPMultiJoin<>(standardScoring, 2, trees[I].getRoot(),libTrees.get(J).getRoot(),trees[I].treeAdapter()).compute();
-                        C[I][J] = score / Math.sqrt(Math.min(selfScore, standardScoring.selfAlignScore(libTrees.get(J).getRoot())));
-                        return C[I][J];
+                    protected Boolean compute() throws Exception {
+                        for (int J = from; J < to; ++J) {
+                            final double score = new DPMultiJoin<>(standardScoring, 2, trees[I].getRoot(), libTrees.get(J).getRoot(), trees[I].treeAdapter()).compute();
+                            C[I][J] = score / Math.sqrt(Math.min(selfScores[I], libSelfScores[J]));
+                        }
+                        return true;
                     }
                 }));
             }
         }
         jobs.forEach(BasicJJob::takeResult);
-        jobs.clear();
-
-        Jobs.submitJob(MatrixUtils.parallelizeSymmetricMatrixComputation(M, (i,j)->Pearson.pearson(C[i],C[j]))).takeResult();
-        writeMatrix("ftblast", M, xs.stream().map(x->x.getID().getCompoundName()).toArray(String[]::new), options.digits);
+        return C;
     }
 
     private void align(List<Instance> xs, FTree[] trees) {
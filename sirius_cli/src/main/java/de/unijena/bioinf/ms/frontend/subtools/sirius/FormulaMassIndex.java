@@ -0,0 +1,404 @@
+/*
+ *  This file is part of the SIRIUS Software for analyzing MS and MS/MS data
+ *
+ *  Copyright (C) 2013-2020 Kai Dührkop, Markus Fleischauer, Marcus Ludwig, Martin A. Hoffman, Fleming Kretschmer, Marvin Meusel and Sebastian Böcker,
+ *  Chair of Bioinformatics, Friedrich-Schiller University.
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Affero General Public License
+ *  as published by the Free Software Foundation; either
+ *  version 3 of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License along with SIRIUS.  If not, see <https://www.gnu.org/licenses/agpl-3.0.txt>
+ */
+
+package de.unijena.bioinf.ms.frontend.subtools.sirius;
+
+import de.unijena.bioinf.ChemistryBase.chem.FormulaConstraints;
+import de.unijena.bioinf.ChemistryBase.chem.MolecularFormula;
+import de.unijena.bioinf.ChemistryBase.chem.PrecursorIonType;
+import de.unijena.bioinf.ChemistryBase.jobs.SiriusJobs;
+import de.unijena.bioinf.ChemistryBase.ms.Deviation;
+import de.unijena.bioinf.ChemistryBase.ms.MS1MassDeviation;
+import de.unijena.bioinf.ChemistryBase.ms.Ms2Experiment;
+import de.unijena.bioinf.ChemistryBase.ms.MutableMs2Experiment;
+import de.unijena.bioinf.ChemistryBase.ms.ft.model.Whiteset;
+import de.unijena.bioinf.chemdb.SearchableDatabases;
+import de.unijena.bioinf.chemdb.custom.CustomDataSources;
+import de.unijena.bioinf.chemdb.custom.CustomDatabase;
+import de.unijena.bioinf.fingerid.FormulaWhiteListJob;
+import de.unijena.bioinf.ms.frontend.core.ApplicationCore;
+import de.unijena.bioinf.ms.frontend.core.Workspace;
+import de.unijena.bioinf.ms.properties.PropertyManager;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Local index of all database formulas of a (database set, alphabet) combination sorted by neutral mass.
+ * <p>
+ * Replaces the per compound database query of {@link FormulaWhiteListJob}: the neutral mass range is split into
+ * segments of {@link #SEGMENT_WIDTH} Da. A segment is fetched once (with the same filters as the per compound job),
+ * stored as sorted, memory mapped file in the workspace and shared by all compounds of all following runs.
+ * Whitelist queries are binary searches in the mapped segments. Since the index is local it also works offline
+ * once it has been built, e.g. for custom databases.
+ * <p>
+ * The index key contains the version, size and modification time of all searched custom databases, so rebuilding or
+ * re-importing a custom database results in a fresh index. Segments of remote databases are rebuilt when they are
+ * older than {@link #MAX_AGE_KEY} days, so that updates are picked up eventually. Deleting the index directory is
+ * always safe.
+ * <p>
+ * At most {@link #MAX_OPEN_KEY} indices are kept open; the least recently used one is closed, which releases its
+ * mapped segments.
+ */
+public class FormulaMassIndex {
+    public static final String ENABLED_KEY = "de.unijena.bioinf.sirius.formulaIndex";
+    public static final String MAX_AGE_KEY = "de.unijena.bioinf.sirius.formulaIndex.maxAgeDays";
+    public static final String MAX_OPEN_KEY = "de.unijena.bioinf.sirius.formulaIndex.maxOpen";
+    static final double SEGMENT_WIDTH = 10d;
+    private static final int MAGIC = 0x464d4958; // FMIX
+    private static final int VERSION = 1;
+    private static final LinkedHashMap<String, FormulaMassIndex> INDICES = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, FormulaMassIndex> eldest) {
+            if (size() <= Math.max(1, PropertyManager.getInteger(MAX_OPEN_KEY, null, 4)))
+                return false;
+            eldest.getValue().close();
+            return true;
+        }
+    };
+
+    public static boolean isEnabled() {
+        return Boolean.parseBoolean(PropertyManager.getProperty(ENABLED_KEY, null, "true"));
+    }
+
+    /**
+     * Index that produces the same formulas as a {@link FormulaWhiteListJob} on the given databases.
+     */
+    public static FormulaMassIndex forSearch(@NotNull List<CustomDataSources.Source> dbs, @NotNull FormulaConstraints constraints, boolean onlyOrganic) {
+        final String key = dbs.stream().map(FormulaMassIndex::databaseKey).sorted().collect(Collectors.joining(","))
+                + "|" + constraints + "|" + (onlyOrganic ? "organic" : "all");
+        synchronized (INDICES) {
+            return INDICES.computeIfAbsent(key, k -> new FormulaMassIndex(
+                    Workspace.WORKSPACE.resolve("formula_index").resolve(hash(k)), k,
+                    new WhiteListJobSource(List.copyOf(dbs), constraints, onlyOrganic),
+                    Duration.ofDays(PropertyManager.getInteger(MAX_AGE_KEY, null, 30))));
+        }
+    }
+
+    /**
+     * Closes all open indices. They stay usable but have to map their segments again.
+     */
+    public static void closeAll() {
+        synchronized (INDICES) {
+            INDICES.values().forEach(FormulaMassIndex::close);
+            INDICES.clear();
+        }
+    }
+
+    /**
+     * Identifies the content of a database: the name for remote databases (covered by the max age) and additionally
+     * version, statistics and modification time of the storage for custom databases.
+     */
+    static String databaseKey(@NotNull CustomDataSources.Source db) {
+        if (!db.isCustomSource())
+            return db.name();
+        final Optional<CustomDatabase<?>> custom = SearchableDatabases.getCustomDatabase(db.name());
+        if (custom.isEmpty())
+            return db.name();
+        final CustomDatabase<?> c = custom.get();
+        return db.name() + "@" + c.storageLocation() + ";v" + c.getDatabaseVersion()
+                + ";f" + c.getSettings().getStatistics().getFormulas() + ";c" + c.getSettings().getStatistics().getCompounds()
+                + ";m" + lastModified(c.storageLocation());
+    }
+
+    /**
+     * @return latest modification time of the given file or of the files directly in the given directory,
+     * 0 if it is not a local path
+     */
+    static long lastModified(String location) {
+        try {
+            final Path path = Path.of(location);
+            if (!Files.isDirectory(path))
+                return Files.exists(path) ? Files.getLastModifiedTime(path).toMillis() : 0;
+            long max = Files.getLastModifiedTime(path).toMillis();
+            try (Stream<Path> files = Files.list(path)) {
+                for (Path f : (Iterable<Path>) files::iterator)
+                    max = Math.max(max, Files.getLastModifiedTime(f).toMillis());
+            }
+            return max;
+        } catch (IOException | InvalidPathException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Loads all formulas with a neutral mass in [from, to). Must apply all filters of the index key.
+     */
+    @FunctionalInterface
+    interface FormulaSource {
+        Collection<MolecularFormula> load(double from, double to) throws Exception;
+    }
+
+    private final Path location;
+    private final FormulaSource source;
+    private final Duration maxAge;
+    private final Map<Integer, Segment> segments = new ConcurrentHashMap<>();
+    private final Map<Integer, Object> segmentLocks = new ConcurrentHashMap<>();
+
+    FormulaMassIndex(@NotNull Path location, @NotNull String key, @NotNull FormulaSource source, @NotNull Duration maxAge) {
+        this.location = location;
+        this.source = source;
+        this.maxAge = maxAge;
+        try {
+            Files.createDirectories(location);
+            final Path keyFile = location.resolve("key.txt");
+            if (!Files.exists(keyFile))
+                Files.writeString(keyFile, key);
+        } catch (IOException e) {
+            LoggerFactory.getLogger(getClass()).warn("Could not create formula index directory '" + location + "'.", e);
+        }
+    }
+
+    /**
+     * Whitelist for the given compound: all indexed formulas whose neutral mass matches the precursor mass for one
+     * of the possible ion types within the allowed MS1 mass deviation.
+     */
+    public Whiteset whitelist(@NotNull Ms2Experiment exp) throws Exception {
+        final Deviation dev = exp.getAnnotationOrDefault(MS1MassDeviation.class).allowedMassDeviation;
+        final double abs = dev.absoluteFor(exp.getIonMass());
+        final Set<MolecularFormula> formulas = new HashSet<>();
+        for (PrecursorIonType ionType : ionTypes(exp)) {
+            final double neutral = ionType.precursorMassToNeutralMass(exp.getIonMass());
+            formulas.addAll(lookup(neutral - abs, neutral + abs));
+        }
+        return Whiteset.ofNeutralizedFormulas(formulas);
+    }
+
+    static Collection<PrecursorIonType> ionTypes(Ms2Experiment exp) {
+        if (exp.getPrecursorIonType() != null && !exp.getPrecursorIonType().isIonizationUnknown())
+            return List.of(exp.getPrecursorIonType());
+        final List<PrecursorIonType> ionTypes = new ArrayList<>();
+        exp.getPossibleAdductsOrFallback().forEach(ionTypes::add);
+        return ionTypes;
+    }
+
+    /**
+     * @return all indexed formulas with neutral mass in [min, max]
+     */
+    public List<MolecularFormula> lookup(double min, double max) throws Exception {
+        final List<MolecularFormula> result = new ArrayList<>();
+        final int last = segmentIndex(max);
+        for (int s = Math.max(0, segmentIndex(min)); s <= last; s++)
+            segment(s).lookup(min, max, result);
+        return result;
+    }
+
+    private static int segmentIndex(double mass) {
+        return (int) Math.floor(mass / SEGMENT_WIDTH);
+    }
+
+    private Segment segment(int index) throws Exception {
+        final Segment cached = segments.get(index);
+        if (cached != null)
+            return cached;
+        synchronized (segmentLocks.computeIfAbsent(index, i -> new Object())) {
+            Segment segment = segments.get(index);
+            if (segment == null) {
+                final Path file = location.resolve("segment_" + index + ".bin");
+                segment = isUpToDate(file) ? Segment.map(file) : null;
+                if (segment == null)
+                    segment = Segment.build(file, source.load(index * SEGMENT_WIDTH, (index + 1) * SEGMENT_WIDTH), index * SEGMENT_WIDTH, (index + 1) * SEGMENT_WIDTH);
+                segments.put(index, segment);
+            }
+            return segment;
+        }
+    }
+
+    /**
+     * Drops all mapped segments, so that the mappings are released once no lookup uses them anymore.
+     * Following lookups map the segments again.
+     */
+    void close() {
+        segments.clear();
+    }
+
+    int numberOfOpenSegments() {
+        return segments.size();
+    }
+
+    private boolean isUpToDate(Path file) {
+        try {
+            if (!Files.isRegularFile(file))
+                return false;
+            final FileTime modified = Files.getLastModifiedTime(file);
+            return modified.toInstant().plus(maxAge).isAfter(Instant.now());
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static String hash(String key) {
+        try {
+            final byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            final StringBuilder buf = new StringBuilder();
+            for (int i = 0; i < 8; i++)
+                buf.append(String.format("%02x", digest[i]));
+            return buf.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Sorted formulas of one mass segment. File layout: magic, version, count, count neutral masses (double),
+     * count + 1 offsets (int) into the UTF-8 encoded formula strings that follow.
+     */
+    static final class Segment {
+        private final ByteBuffer buffer;
+        private final int count;
+        private final int offsetsStart;
+        private final int stringsStart;
+
+        private Segment(ByteBuffer buffer) throws IOException {
+            this.buffer = buffer;
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION)
+                throw new IOException("Unknown formula index format.");
+            this.count = buffer.getInt(8);
+            this.offsetsStart = 12 + 8 * count;
+            this.stringsStart = offsetsStart + 4 * (count + 1);
+        }
+
+        static Segment map(Path file) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                return new Segment(buffer);
+            } catch (IOException e) {
+                LoggerFactory.getLogger(FormulaMassIndex.class).warn("Could not read formula index segment '" + file + "'. Rebuilding it.", e);
+                return null;
+            }
+        }
+
+        static Segment build(Path file, Collection<MolecularFormula> formulas, double from, double to) throws IOException {
+            final List<MolecularFormula> sorted = formulas.stream().distinct()
+                    .filter(f -> f.getMass() >= from && f.getMass() < to)
+                    .sorted(Comparator.comparingDouble(MolecularFormula::getMass).thenComparing(MolecularFormula::toString))
+                    .collect(Collectors.toList());
+            final byte[][] strings = new byte[sorted.size()][];
+            int stringBytes = 0;
+            for (int i = 0; i < strings.length; i++) {
+                strings[i] = sorted.get(i).toString().getBytes(StandardCharsets.UTF_8);
+                stringBytes += strings[i].length;
+            }
+
+            final ByteBuffer buffer = ByteBuffer.allocate(12 + 12 * sorted.size() + 4 + stringBytes);
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(sorted.size());
+            for (MolecularFormula f : sorted)
+                buffer.putDouble(f.getMass());
+            int offset = 0;
+            for (byte[] s : strings) {
+                buffer.putInt(offset);
+                offset += s.length;
+            }
+            buffer.putInt(offset);
+            for (byte[] s : strings)
+                buffer.put(s);
+            buffer.flip();
+
+            try {
+                final Path tmp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+                Files.write(tmp, buffer.array());
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                final Segment mapped = map(file);
+                if (mapped != null)
+                    return mapped;
+            } catch (IOException e) {
+                LoggerFactory.getLogger(FormulaMassIndex.class).warn("Could not store formula index segment '" + file + "'. Keeping it in memory only.", e);
+            }
+            return new Segment(buffer);
+        }
+
+        int size() {
+            return count;
+        }
+
+        double mass(int i) {
+            return buffer.getDouble(12 + 8 * i);
+        }
+
+        MolecularFormula formula(int i) {
+            final int start = buffer.getInt(offsetsStart + 4 * i), end = buffer.getInt(offsetsStart + 4 * (i + 1));
+            final byte[] bytes = new byte[end - start];
+            for (int k = 0; k < bytes.length; k++)
+                bytes[k] = buffer.get(stringsStart + start + k);
+            return MolecularFormula.parseOrThrow(new String(bytes, StandardCharsets.UTF_8));
+        }
+
+        void lookup(double min, double max, List<MolecularFormula> result) {
+            // first index with mass >= min
+            int lo = 0, hi = count;
+            while (lo < hi) {
+                final int mid = (lo + hi) >>> 1;
+                if (mass(mid) < min)
+                    lo = mid + 1;
+                else
+                    hi = mid;
+            }
+            for (int i = lo; i < count && mass(i) <= max; i++)
+                result.add(formula(i));
+        }
+    }
+
+    /**
+     * Fetches a segment with the regular {@link FormulaWhiteListJob} using a pseudo compound whose mass window
+     * spans the whole segment, so that all database and filter specific behaviour stays the same.
+     */
+    private static class WhiteListJobSource implements FormulaSource {
+        private final List<CustomDataSources.Source> dbs;
+        private final FormulaConstraints constraints;
+        private final boolean onlyOrganic;
+
+        WhiteListJobSource(List<CustomDataSources.Source> dbs, FormulaConstraints constraints, boolean onlyOrganic) {
+            this.dbs = dbs;
+            this.constraints = constraints;
+            this.onlyOrganic = onlyOrganic;
+        }
+
+        @Override
+        public Collection<MolecularFormula> load(double from, double to) throws Exception {
+            final PrecursorIonType ionType = PrecursorIonType.getPrecursorIonType("[M+H]+");
+            final double halfWidth = (to - from) / 2d;
+            final Deviation window = new Deviation(0, halfWidth + 1e-3);
+
+            final MutableMs2Experiment exp = new MutableMs2Experiment();
+            exp.setPrecursorIonType(ionType);
+            exp.setIonMass(ionType.neutralMassToPrecursorMass(from + halfWidth));
+            exp.setAnnotation(MS1MassDeviation.class, new MS1MassDeviation(window, window, window));
+            exp.setAnnotation(FormulaConstraints.class, constraints);
+
+            return SiriusJobs.getGlobalJobManager().submitJob(
+                    new FormulaWhiteListJob(ApplicationCore.WEB_API.getChemDB(), dbs, exp, onlyOrganic, false)
+            ).awaitResult().getNeutralFormulas();
+        }
+    }
+}
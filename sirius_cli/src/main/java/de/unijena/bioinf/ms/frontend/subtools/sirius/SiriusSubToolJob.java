@@ -19,6 +19,7 @@
 
 package de.unijena.bioinf.ms.frontend.subtools.sirius;
 
+import de.unijena.bioinf.ChemistryBase.chem.FormulaConstraints;
 import de.unijena.bioinf.ChemistryBase.ms.DetectedAdducts;
 import de.unijena.bioinf.ChemistryBase.ms.Ms2Experiment;
 import de.unijena.bioinf.ChemistryBase.ms.ft.model.CandidateFormulas;
@@ -69,9 +70,14 @@ public class SiriusSubToolJob extends InstanceJob {
             // create WhiteSet from DB if necessary
             //todo do we really want to restrict to organic even if the db is user selected
             final Optional<FormulaSearchDB> searchDB = exp.getAnnotation(FormulaSearchDB.class);
-            if (searchDB.isPresent() && searchDB.get().containsDBs())
-                wSet = submitSubJob(new FormulaWhiteListJob(ApplicationCore.WEB_API.getChemDB(), searchDB.get().searchDBs, exp, true, false))
-                        .awaitResult();
+            if (searchDB.isPresent() && searchDB.get().containsDBs()) {
+                if (FormulaMassIndex.isEnabled())
+                    wSet = FormulaMassIndex.forSearch(searchDB.get().searchDBs, exp.getAnnotationOrDefault(FormulaConstraints.class), true)
+                            .whitelist(exp);
+                else
+                    wSet = submitSubJob(new FormulaWhiteListJob(ApplicationCore.WEB_API.getChemDB(), searchDB.get().searchDBs, exp, true, false))
+                            .awaitResult();
+            }
 
             checkForInterruption();
 
@@ -48,6 +48,12 @@ public class SummaryOptions implements PostprocessingTool<SummarySubToolJob>, St
         this.compress = compress;
     }
 
+    int topK = -1;
+    @CommandLine.Option(names = {"--top-k-summary"}, description = "Write only the top k formula candidates and the top k structure candidates per formula candidate to the compound summaries. All candidates are written per default.")
+    public void setTopK(int topK) {
+        this.topK = topK < 1 ? -1 : topK;
+    }
+
     @CommandLine.ArgGroup(exclusive = false, heading = "Include Predictions Table")
     @Nullable
     protected PredictionsOptions predictionsOptions;
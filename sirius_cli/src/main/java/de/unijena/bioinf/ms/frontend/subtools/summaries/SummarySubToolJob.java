@@ -27,13 +27,14 @@ import de.unijena.bioinf.jjobs.JobProgressEventListener;
 import de.unijena.bioinf.ms.frontend.subtools.CLIRootOptions;
 import de.unijena.bioinf.ms.frontend.subtools.PostprocessingJob;
 import de.unijena.bioinf.ms.frontend.subtools.RootOptions;
-import de.unijena.bioinf.ms.frontend.subtools.export.tables.ExportPredictionsOptions;
 import de.unijena.bioinf.ms.frontend.workflow.Workflow;
 import de.unijena.bioinf.ms.properties.ParameterConfig;
 import de.unijena.bioinf.projectspace.CompoundContainerId;
 import de.unijena.bioinf.projectspace.Instance;
 import de.unijena.bioinf.projectspace.ProjectSpaceManager;
 import de.unijena.bioinf.projectspace.SiriusProjectSpace;
+import de.unijena.bioinf.projectspace.Summarizer;
+import de.unijena.bioinf.projectspace.summaries.PredictionsSummaryWriter;
 import de.unijena.bioinf.projectspace.summaries.SummaryLocations;
 import org.apache.commons.lang3.time.StopWatch;
 import org.slf4j.Logger;
@@ -42,6 +43,7 @@ import org.slf4j.LoggerFactory;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -88,36 +90,45 @@ public class SummarySubToolJob extends PostprocessingJob<Boolean> implements Wor
                 ids = idsTMP;
             }
 
-            SiriusProjectSpace.SummarizerJob job = project.projectSpace().makeSummarizerJob(options.location, options.compress, ids, ProjectSpaceManager.defaultSummarizer());
-            job.addJobProgressListener(listener);
-            SiriusJobs.getGlobalJobManager().submitJob(job).awaitResult();
-            job.removePropertyChangeListener(listener);
-
-            if (options.isAnyPredictionOptionSet()) { // this includes options.predictionsOptions null check
-                Path root = options.compress
-                        ? FileUtils.asZipFSPath(options.location, false, true, ZipCompressionMethod.DEFLATED)
-                        : options.location;
-                try {
-                    LOG.info("Writing positive ion mode predictions table...");
-                    ExportPredictionsOptions.ExportPredictionJJob posJob = new ExportPredictionsOptions.ExportPredictionJJob(
-                            options.predictionsOptions, 1, compounds,
-                            () -> Files.newBufferedWriter(root.resolve(SummaryLocations.PREDICTIONS)));
-                    posJob.addJobProgressListener(listener);
-                    SiriusJobs.getGlobalJobManager().submitJob(posJob).awaitResult();
-                    posJob.removePropertyChangeListener(listener);
-
-                    LOG.info("Writing negative ion mode predictions table...");
-                    ExportPredictionsOptions.ExportPredictionJJob negJob = new ExportPredictionsOptions.ExportPredictionJJob(
-                            options.predictionsOptions, -1, compounds,
-                            () -> Files.newBufferedWriter(root.resolve(SummaryLocations.PREDICTIONS_NEG)));
-                    negJob.addJobProgressListener(listener);
-                    SiriusJobs.getGlobalJobManager().submitJob(negJob).awaitResult();
-                    negJob.removePropertyChangeListener(listener);
-                }finally {
-                    //close and write zip file
-                    if (!root.getFileSystem().equals(FileSystems.getDefault()))
-                        root.getFileSystem().close();
+            // prediction tables are written during the same traversal as the other summaries. They are written to
+            // temporary files first, since the summary location might be a zip file that is written by the summarizer job.
+            final List<Summarizer> summarizers = new ArrayList<>(List.of(ProjectSpaceManager.defaultSummarizer(project, options.topK)));
+            final Path predictionsTmp = options.isAnyPredictionOptionSet() // this includes options.predictionsOptions null check
+                    ? Files.createTempDirectory("sirius-predictions") : null;
+            try {
+                if (predictionsTmp != null) {
+                    // without explicit ids, the rows are written in the iteration order of the project
+                    summarizers.add(new PredictionsSummaryWriter(options.predictionsOptions, 1, project, ids,
+                            () -> Files.newBufferedWriter(predictionsTmp.resolve(SummaryLocations.PREDICTIONS))));
+                    summarizers.add(new PredictionsSummaryWriter(options.predictionsOptions, -1, project, ids,
+                            () -> Files.newBufferedWriter(predictionsTmp.resolve(SummaryLocations.PREDICTIONS_NEG))));
                 }
+
+                SiriusProjectSpace.SummarizerJob job = project.projectSpace().makeSummarizerJob(options.location, options.compress, ids, summarizers.toArray(Summarizer[]::new));
+                job.addJobProgressListener(listener);
+                SiriusJobs.getGlobalJobManager().submitJob(job).awaitResult();
+                job.removePropertyChangeListener(listener);
+
+                if (predictionsTmp != null) {
+                    Path root = options.compress
+                            ? FileUtils.asZipFSPath(options.location, false, true, ZipCompressionMethod.DEFLATED)
+                            : options.location;
+                    try {
+                        LOG.info("Copying ion mode predictions tables to summary location...");
+                        for (String name : List.of(SummaryLocations.PREDICTIONS, SummaryLocations.PREDICTIONS_NEG)) {
+                            final Path table = predictionsTmp.resolve(name);
+                            if (Files.exists(table))
+                                Files.copy(table, root.resolve(name), StandardCopyOption.REPLACE_EXISTING);
+                        }
+                    } finally {
+                        //close and write zip file
+                        if (!root.getFileSystem().equals(FileSystems.getDefault()))
+                            root.getFileSystem().close();
+                    }
+                }
+            } finally {
+                if (predictionsTmp != null)
+                    FileUtils.deleteRecursively(predictionsTmp);
             }
 
             w.stop();
@@ -176,6 +176,8 @@ public class ZodiacOptions implements ToolChainOptions<ZodiacSubToolJob, DataSet
             if (inst.getExperiment().getAnnotation(FormulaResultRankingScore.class).orElse(FormulaResultRankingScore.AUTO).isAuto()) {
                 inst.getID().getRankingScoreTypes().remove(ZodiacScore.class);
                 inst.updateCompoundID();
+            } else {
+                inst.updateRankIndex();
             }
         };
     }
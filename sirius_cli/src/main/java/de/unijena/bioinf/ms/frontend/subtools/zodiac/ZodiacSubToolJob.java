@@ -24,6 +24,7 @@ import de.unijena.bioinf.ChemistryBase.algorithm.scoring.SScored;
 import de.unijena.bioinf.ChemistryBase.chem.Ionization;
 import de.unijena.bioinf.ChemistryBase.chem.MolecularFormula;
 import de.unijena.bioinf.ChemistryBase.chem.PrecursorIonType;
+import de.unijena.bioinf.ChemistryBase.jobs.SiriusJobs;
 import de.unijena.bioinf.ChemistryBase.ms.CompoundQuality;
 import de.unijena.bioinf.ChemistryBase.ms.Ms2Experiment;
 import de.unijena.bioinf.ChemistryBase.ms.ft.FTree;
@@ -39,7 +40,10 @@ import de.unijena.bioinf.GibbsSampling.model.distributions.ScoreProbabilityDistr
 import de.unijena.bioinf.GibbsSampling.model.scorer.CommonFragmentAndLossScorer;
 import de.unijena.bioinf.GibbsSampling.model.scorer.CommonFragmentAndLossScorerNoiseIntensityWeighted;
 import de.unijena.bioinf.GibbsSampling.properties.*;
+import de.unijena.bioinf.jjobs.BasicJJob;
+import de.unijena.bioinf.jjobs.JJob;
 import de.unijena.bioinf.jjobs.JobSubmitter;
+import de.unijena.bioinf.jjobs.Partition;
 import de.unijena.bioinf.ms.frontend.subtools.DataSetJob;
 import de.unijena.bioinf.ms.frontend.utils.PicoUtils;
 import de.unijena.bioinf.projectspace.FormulaScoring;
@@ -54,7 +58,9 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 public class ZodiacSubToolJob extends DataSetJob {
     //todo This job needs to be cleaned! ;-)
@@ -83,74 +89,19 @@ public class ZodiacSubToolJob extends DataSetJob {
     @Override
     protected void computeAndAnnotateResult(@NotNull List<Instance> instances) throws Exception {
         logInfo("START ZODIAC JOB");
-        final Map<Ms2Experiment, List<FormulaResult>> input = instances.stream()
-                .distinct().collect(Collectors.toMap(
-                        Instance::getExperiment,
-                        in -> in.loadFormulaResults(List.of(SiriusScore.class), FormulaScoring.class, FTree.class).stream().map(SScored::getCandidate).collect(Collectors.toList())
-                ));
+        instances = instances.stream().distinct().collect(Collectors.toList());
+        if (instances.isEmpty()) return;
 
-        //remove instances from input which don't have a single FTree
-        instances = instances.stream().filter(i -> !input.get(i.getExperiment()).isEmpty()).collect(Collectors.toList());
-        input.keySet().retainAll(instances.stream().map(Instance::getExperiment).collect(Collectors.toList()));
-
-
-//        if (instances.stream().anyMatch(it -> isRecompute(it) || (input.containsKey(it.getExperiment()) && !input.get(it.getExperiment()).get(0).getAnnotationOrThrow(FormulaScoring.class).hasAnnotation(ZodiacScore.class)))) {
-//            System.out.println("I am ZODIAC and run " + instances.size() + " instances: ");
-
-        Map<Ms2Experiment, List<FTree>> ms2ExperimentToTreeCandidates = input.keySet().stream().collect(Collectors.toMap(k -> k, k -> input.get(k).stream().map(r -> r.getAnnotationOrThrow(FTree.class)).collect(Collectors.toList())));
         Ms2Experiment settings = instances.get(0).getExperiment();
 
         // TODO: we might want to do that for SIRIUS
         checkForInterruption();
-        updateProgress(Math.round(.02 * maxProgress), "Use caching of formulas.");
-
-        {
-            HashMap<MolecularFormula, MolecularFormula> formulaMap = new HashMap<>();
-            for (List<FTree> trees : ms2ExperimentToTreeCandidates.values()) {
-                for (FTree tree : trees) {
-                    for (Fragment f : tree) {
-                        formulaMap.putIfAbsent(f.getFormula(), f.getFormula());
-                        f.setFormula(formulaMap.get(f.getFormula()), f.getIonization());
-                    }
-                    for (Loss l : tree.losses()) {
-                        formulaMap.putIfAbsent(l.getFormula(), l.getFormula());
-                        l.setFormula(formulaMap.get(l.getFormula()));
-                    }
-                }
-            }
-        }
-//        logInfo();
-        checkForInterruption();
-        updateProgress(Math.round(.03 * maxProgress), "Caching done.");
+        updateProgress(Math.round(.02 * maxProgress), "Load trees, use caching of formulas and evaluate tree quality.");
 
-        maxCandidatesAt300 = settings.getAnnotationOrThrow(ZodiacNumberOfConsideredCandidatesAt300Mz.class).value;
-        maxCandidatesAt800 = settings.getAnnotationOrThrow(ZodiacNumberOfConsideredCandidatesAt800Mz.class).value;
-        forcedCandidatesPerIonizationRatio = settings.getAnnotationOrThrow(ZodiacRatioOfConsideredCandidatesPerIonization.class).value;
-
-        //annotate compound quality at limit number of candidates
-        logInfo("TREES LOADED.");
-        TreeQualityEvaluator treeQualityEvaluator = new TreeQualityEvaluator(0.8, 5);
-        for (Map.Entry<Ms2Experiment, List<FTree>> ms2ExperimentListEntry : ms2ExperimentToTreeCandidates.entrySet()) {
-            checkForInterruption();
-            Ms2Experiment experiment = ms2ExperimentListEntry.getKey();
-            List<FTree> treeCandidates = ms2ExperimentListEntry.getValue();
-            boolean isPoorlyExplained = submitSubJob(treeQualityEvaluator.makeIsAllCandidatesPoorlyExplainSpectrumJob(treeCandidates)).awaitResult();
-            if (isPoorlyExplained) {
-                //update if poorly explained
-                CompoundQuality quality = experiment.getAnnotationOrNull(CompoundQuality.class);
-                if (quality == null) {
-                    quality = new CompoundQuality(CompoundQuality.CompoundQualityFlag.PoorlyExplained);
-                } else if (quality.isNot(CompoundQuality.CompoundQualityFlag.PoorlyExplained)) {
-                    quality = quality.updateQuality(CompoundQuality.CompoundQualityFlag.PoorlyExplained);
-                    experiment.removeAnnotation(CompoundQuality.class);
-                }
-                //todo what do we want todo if annotation is present? override or not?
-                experiment.setAnnotation(CompoundQuality.class, quality);
-            }
-            //limit number of candidates
-            treeCandidates = applyMaxCandidateThreshold(experiment, treeCandidates);
-            ms2ExperimentListEntry.setValue(treeCandidates);
-        }
+        final ZodiacInput prepared = prepareInput(instances);
+        final Map<Ms2Experiment, List<FormulaResult>> input = prepared.formulaResults;
+        final Map<Ms2Experiment, List<FTree>> ms2ExperimentToTreeCandidates = prepared.treeCandidates;
+        instances = prepared.instances;
 
         updateProgress(Math.round(.04 * maxProgress));
 
@@ -231,35 +182,19 @@ public class ZodiacSubToolJob extends DataSetJob {
 
         updateProgress(Math.round(.9 * maxProgress));
 
-        //add score and set new Ranking score
-        instances.forEach(inst -> {
-            try {
-//                System.out.println(inst.getID().getDirectoryName());
-                final Map<FTree, ZodiacScore> sTress = scoreResults.get(inst.getExperiment());
-                final List<FormulaResult> formulaResults = input.get(inst.getExperiment());
-                if (formulaResults == null || sTress == null) {
-                    //this instance was not processed by ZODIAC
-                    return;
-                }
-                formulaResults.forEach(fr -> {
-                    FormulaScoring scoring = fr.getAnnotationOrThrow(FormulaScoring.class);
-                    scoring.setAnnotation(ZodiacScore.class,
-                            sTress.getOrDefault(fr.getAnnotationOrThrow(FTree.class), FormulaScore.NA(ZodiacScore.class))
-                    );
-
-                    inst.updateFormulaResult(fr, FormulaScoring.class);
-//                    System.out.println(fr.getId().getFormula().toString() + sTress.get(fr.getAnnotationOrThrow(FTree.class)));
-                });
-
-                // set zodiac as ranking score
-                if (inst.getExperiment().getAnnotation(FormulaResultRankingScore.class).orElse(FormulaResultRankingScore.AUTO).isAuto()) {
-                    inst.getID().setRankingScoreTypes(ZodiacScore.class, SiriusScore.class);
-                    inst.updateCompoundID();
-                }
-            } catch (Throwable e) {
-                logError("Error when retrieving Zodiac Results for instance: " + inst.getID().getDirectoryName(), e);
-            }
-        });
+        //add score and set new Ranking score, writing is parallelized over a bounded number of IO jobs
+        final List<Instance> toWrite = instances;
+        final List<BasicJJob<Boolean>> writeJobs = Partition.ofNumber(toWrite, Math.max(1, SiriusJobs.getGlobalJobManager().getIOThreads()))
+                .stream().map(part -> new BasicJJob<Boolean>(JobType.IO) {
+                    @Override
+                    protected Boolean compute() {
+                        part.forEach(inst -> writeZodiacScores(inst, scoreResults.get(inst.getExperiment()), input.get(inst.getExperiment())));
+                        return true;
+                    }
+                }).collect(Collectors.toList());
+        writeJobs.forEach(this::submitSubJob);
+        for (BasicJJob<Boolean> job : writeJobs)
+            job.awaitResult();
 
         //todo if this are non temporary fields, they have to be implemented as project-space entities
         try { //ensure that summary does not crash job
@@ -278,7 +213,124 @@ public class ZodiacSubToolJob extends DataSetJob {
 //        }
     }
 
-    private List<FTree> applyMaxCandidateThreshold(Ms2Experiment experiment, List<FTree> trees) {
+    static class ZodiacInput {
+        final List<Instance> instances = new ArrayList<>();
+        final Map<Ms2Experiment, List<FormulaResult>> formulaResults = new LinkedHashMap<>();
+        final Map<Ms2Experiment, List<FTree>> treeCandidates = new LinkedHashMap<>();
+    }
+
+    /**
+     * Loads the trees of all instances in parallel and interns their formulas, then annotates the compound quality
+     * and limits the number of candidates. Instances without a single tree are dropped, the maps keep instance order.
+     */
+    ZodiacInput prepareInput(List<Instance> instances) throws Exception {
+        final Ms2Experiment settings = instances.get(0).getExperiment();
+        maxCandidatesAt300 = settings.getAnnotationOrThrow(ZodiacNumberOfConsideredCandidatesAt300Mz.class).value;
+        maxCandidatesAt800 = settings.getAnnotationOrThrow(ZodiacNumberOfConsideredCandidatesAt800Mz.class).value;
+        forcedCandidatesPerIonizationRatio = settings.getAnnotationOrThrow(ZodiacRatioOfConsideredCandidatesPerIonization.class).value;
+
+        final ConcurrentHashMap<MolecularFormula, MolecularFormula> formulaMap = new ConcurrentHashMap<>();
+        final List<List<FormulaResult>> formulaResults = new ArrayList<>(Collections.nCopies(instances.size(), null));
+        final List<BasicJJob<Boolean>> loadJobs = Partition.ofNumber(IntStream.range(0, instances.size()).boxed().collect(Collectors.toList()), 2 * SiriusJobs.getCPUThreads())
+                .stream().map(idxs -> new BasicJJob<Boolean>(JobType.CPU) {
+                    @Override
+                    protected Boolean compute() throws Exception {
+                        for (int i : idxs) {
+                            checkForInterruption();
+                            formulaResults.set(i, loadTrees(instances.get(i), formulaMap));
+                        }
+                        return true;
+                    }
+                }).collect(Collectors.toList());
+        loadJobs.forEach(this::submitSubJob);
+        for (BasicJJob<Boolean> job : loadJobs)
+            job.awaitResult();
+        logInfo("TREES LOADED.");
+
+        //annotate compound quality at limit number of candidates
+        final ZodiacInput input = new ZodiacInput();
+        final List<JJob<Boolean>> qualityJobs = new ArrayList<>(instances.size());
+        for (int i = 0; i < instances.size(); ++i) {
+            if (formulaResults.get(i).isEmpty())
+                continue;
+            final Instance inst = instances.get(i);
+            final List<FTree> treeCandidates = formulaResults.get(i).stream().map(r -> r.getAnnotationOrThrow(FTree.class)).collect(Collectors.toList());
+            input.instances.add(inst);
+            input.formulaResults.put(inst.getExperiment(), formulaResults.get(i));
+            input.treeCandidates.put(inst.getExperiment(), treeCandidates);
+            qualityJobs.add(submitSubJob(new TreeQualityEvaluator(0.8, 5).makeIsAllCandidatesPoorlyExplainSpectrumJob(treeCandidates)));
+        }
+
+        final Iterator<JJob<Boolean>> qualityResults = qualityJobs.iterator();
+        for (Map.Entry<Ms2Experiment, List<FTree>> ms2ExperimentListEntry : input.treeCandidates.entrySet()) {
+            checkForInterruption();
+            Ms2Experiment experiment = ms2ExperimentListEntry.getKey();
+            boolean isPoorlyExplained = qualityResults.next().awaitResult();
+            if (isPoorlyExplained) {
+                //update if poorly explained
+                CompoundQuality quality = experiment.getAnnotationOrNull(CompoundQuality.class);
+                if (quality == null) {
+                    quality = new CompoundQuality(CompoundQuality.CompoundQualityFlag.PoorlyExplained);
+                } else if (quality.isNot(CompoundQuality.CompoundQualityFlag.PoorlyExplained)) {
+                    quality = quality.updateQuality(CompoundQuality.CompoundQualityFlag.PoorlyExplained);
+                    experiment.removeAnnotation(CompoundQuality.class);
+                }
+                //todo what do we want todo if annotation is present? override or not?
+                experiment.setAnnotation(CompoundQuality.class, quality);
+            }
+            //limit number of candidates
+            ms2ExperimentListEntry.setValue(applyMaxCandidateThreshold(experiment, ms2ExperimentListEntry.getValue()));
+        }
+        return input;
+    }
+
+    /**
+     * Loads the formula results with trees of the given instance and interns the formulas of the trees.
+     * Is thread safe as long as different instances are processed.
+     */
+    private static List<FormulaResult> loadTrees(Instance inst, ConcurrentHashMap<MolecularFormula, MolecularFormula> formulaMap) {
+        final List<FormulaResult> formulaResults = inst.loadFormulaResults(List.of(SiriusScore.class), FormulaScoring.class, FTree.class)
+                .stream().map(SScored::getCandidate).collect(Collectors.toList());
+        for (FormulaResult r : formulaResults) {
+            final FTree tree = r.getAnnotationOrThrow(FTree.class);
+            for (Fragment f : tree)
+                f.setFormula(intern(formulaMap, f.getFormula()), f.getIonization());
+            for (Loss l : tree.losses())
+                l.setFormula(intern(formulaMap, l.getFormula()));
+        }
+        return formulaResults;
+    }
+
+    private static MolecularFormula intern(ConcurrentHashMap<MolecularFormula, MolecularFormula> formulaMap, MolecularFormula formula) {
+        final MolecularFormula cached = formulaMap.putIfAbsent(formula, formula);
+        return cached != null ? cached : formula;
+    }
+
+    private void writeZodiacScores(Instance inst, Map<FTree, ZodiacScore> sTress, List<FormulaResult> formulaResults) {
+        try {
+            if (formulaResults == null || sTress == null) {
+                //this instance was not processed by ZODIAC
+                return;
+            }
+            formulaResults.forEach(fr -> {
+                FormulaScoring scoring = fr.getAnnotationOrThrow(FormulaScoring.class);
+                scoring.setAnnotation(ZodiacScore.class,
+                        sTress.getOrDefault(fr.getAnnotationOrThrow(FTree.class), FormulaScore.NA(ZodiacScore.class))
+                );
+            });
+            inst.updateFormulaScorings(formulaResults);
+
+            // set zodiac as ranking score
+            if (inst.getExperiment().getAnnotation(FormulaResultRankingScore.class).orElse(FormulaResultRankingScore.AUTO).isAuto()) {
+                inst.getID().setRankingScoreTypes(ZodiacScore.class, SiriusScore.class);
+                inst.updateCompoundID();
+            }
+        } catch (Throwable e) {
+            logError("Error when retrieving Zodiac Results for instance: " + inst.getID().getDirectoryName(), e);
+        }
+    }
+
+    List<FTree> applyMaxCandidateThreshold(Ms2Experiment experiment, List<FTree> trees) {
         int numCandidates = numberOfCandidates(experiment.getIonMass());
         if (numCandidates < 0 || numCandidates >= trees.size()) return trees;
 
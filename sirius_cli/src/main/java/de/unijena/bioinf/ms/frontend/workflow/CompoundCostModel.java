@@ -0,0 +1,173 @@
+/*
+ *  This file is part of the SIRIUS Software for analyzing MS and MS/MS data
+ *
+ *  Copyright (C) 2013-2020 Kai Dührkop, Markus Fleischauer, Marcus Ludwig, Martin A. Hoffman, Fleming Kretschmer, Marvin Meusel and Sebastian Böcker,
+ *  Chair of Bioinformatics, Friedrich-Schiller University.
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Affero General Public License
+ *  as published by the Free Software Foundation; either
+ *  version 3 of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License along with SIRIUS.  If not, see <https://www.gnu.org/licenses/agpl-3.0.txt>
+ */
+
+package de.unijena.bioinf.ms.frontend.workflow;
+
+import de.unijena.bioinf.ChemistryBase.chem.FormulaConstraints;
+import de.unijena.bioinf.ChemistryBase.ms.Ms2Experiment;
+import de.unijena.bioinf.ChemistryBase.ms.PossibleAdducts;
+import de.unijena.bioinf.ChemistryBase.ms.Spectrum;
+import de.unijena.bioinf.ChemistryBase.ms.ft.model.FormulaSettings;
+import de.unijena.bioinf.ms.properties.PropertyManager;
+import de.unijena.bioinf.projectspace.CompoundTimings;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Predicts the SIRIUS computation time of a compound from features that are available right after import
+ * (precursor m/z, number of MS/MS peaks, number of candidate adducts and number of allowed elements).
+ * <p>
+ * The model is a linear regression on the logarithm of the computation time. It is fitted by regularized least
+ * squares towards a hand-made prior, so that it gives a sensible (monotone in m/z) ordering before any timing has
+ * been observed and becomes data driven after some compounds have been computed. Observations can be added at any
+ * time (online refinement); the normal equations are accumulated and the coefficients are solved lazily.
+ * <p>
+ * Thread safe.
+ */
+public class CompoundCostModel {
+    static final int NUM_FEATURES = 6;
+    /**
+     * log(seconds) ~ intercept + m/z/1000 + (m/z/1000)^2 + log(1 + #MS/MS peaks) + #adducts + #elements
+     */
+    private static final double[] PRIOR = {-1d, 2d, 2d, 0.3, 0.3, 0.2};
+    /**
+     * weight of the prior in number of pseudo observations
+     */
+    private static final double PRIOR_WEIGHT = 4d;
+    private static final int DEFAULT_ADDUCTS = 3;
+    private static int defaultElements = -1;
+
+    private final double[][] xtx = new double[NUM_FEATURES][NUM_FEATURES];
+    private final double[] xty = new double[NUM_FEATURES];
+    private double[] coefficients = null;
+    private int numberOfObservations = 0;
+
+    public CompoundCostModel() {
+        for (int i = 0; i < NUM_FEATURES; i++) {
+            xtx[i][i] = PRIOR_WEIGHT;
+            xty[i] = PRIOR_WEIGHT * PRIOR[i];
+        }
+    }
+
+    public CompoundCostModel(@NotNull CompoundTimings timings) {
+        this();
+        timings.getObservations().values().forEach(this::observe);
+    }
+
+    public synchronized int getNumberOfObservations() {
+        return numberOfObservations;
+    }
+
+    public void observe(@NotNull CompoundTimings.Observation o) {
+        observe(o.precursorMz, o.ms2Peaks, o.adducts, o.elements, o.seconds);
+    }
+
+    public synchronized void observe(double precursorMz, int ms2Peaks, int adducts, int elements, double seconds) {
+        if (!(seconds > 0) || Double.isInfinite(seconds) || Double.isNaN(precursorMz))
+            return;
+        final double[] x = features(precursorMz, ms2Peaks, adducts, elements);
+        final double y = Math.log(seconds);
+        for (int i = 0; i < NUM_FEATURES; i++) {
+            for (int j = 0; j < NUM_FEATURES; j++)
+                xtx[i][j] += x[i] * x[j];
+            xty[i] += x[i] * y;
+        }
+        numberOfObservations++;
+        coefficients = null;
+    }
+
+    public double predictSeconds(@NotNull CompoundTimings.Observation o) {
+        return predictSeconds(o.precursorMz, o.ms2Peaks, o.adducts, o.elements);
+    }
+
+    public double predictSeconds(double precursorMz, int ms2Peaks, int adducts, int elements) {
+        final double[] beta = coefficients();
+        final double[] x = features(precursorMz, ms2Peaks, adducts, elements);
+        double log = 0;
+        for (int i = 0; i < NUM_FEATURES; i++)
+            log += beta[i] * x[i];
+        return Math.exp(log);
+    }
+
+    synchronized double[] coefficients() {
+        if (coefficients == null)
+            coefficients = solve(xtx, xty);
+        return coefficients;
+    }
+
+    static double[] features(double precursorMz, int ms2Peaks, int adducts, int elements) {
+        final double mz = Double.isNaN(precursorMz) ? 0d : precursorMz / 1000d;
+        return new double[]{1d, mz, mz * mz, Math.log1p(Math.max(0, ms2Peaks)), Math.max(1, adducts), Math.max(0, elements)};
+    }
+
+    /**
+     * Extracts the features of the given experiment. Values that are not annotated at import time fall back to
+     * the defaults of the current configuration. The computation time is set to NaN.
+     */
+    public static CompoundTimings.Observation extractFeatures(@NotNull Ms2Experiment exp) {
+        final int peaks = exp.getMs2Spectra().stream().mapToInt(Spectrum::size).sum();
+        final int adducts = exp.getPrecursorIonType() != null && !exp.getPrecursorIonType().isIonizationUnknown()
+                ? 1 : exp.getAnnotation(PossibleAdducts.class).map(PossibleAdducts::size).orElse(DEFAULT_ADDUCTS);
+        final int elements = exp.getAnnotation(FormulaConstraints.class)
+                .map(c -> c.getChemicalAlphabet().getElements().size()).orElseGet(CompoundCostModel::defaultElements);
+        return new CompoundTimings.Observation(exp.getIonMass(), peaks, adducts, elements, Double.NaN);
+    }
+
+    private static synchronized int defaultElements() {
+        if (defaultElements < 0) {
+            final FormulaSettings settings = PropertyManager.DEFAULTS.createInstanceWithDefaults(FormulaSettings.class);
+            defaultElements = settings.getEnforcedAlphabet().getChemicalAlphabet().getElements().size()
+                    + settings.getAutoDetectionElements().size();
+        }
+        return defaultElements;
+    }
+
+    /**
+     * Gaussian elimination with partial pivoting on a copy of the (positive definite) normal equations.
+     */
+    private static double[] solve(double[][] a, double[] b) {
+        final int n = b.length;
+        final double[][] m = new double[n][n + 1];
+        for (int i = 0; i < n; i++) {
+            System.arraycopy(a[i], 0, m[i], 0, n);
+            m[i][n] = b[i];
+        }
+        for (int col = 0; col < n; col++) {
+            int pivot = col;
+            for (int row = col + 1; row < n; row++)
+                if (Math.abs(m[row][col]) > Math.abs(m[pivot][col]))
+                    pivot = row;
+            final double[] tmp = m[col];
+            m[col] = m[pivot];
+            m[pivot] = tmp;
+            for (int row = col + 1; row < n; row++) {
+                final double f = m[row][col] / m[col][col];
+                for (int k = col; k <= n; k++)
+                    m[row][k] -= f * m[col][k];
+            }
+        }
+        final double[] x = new double[n];
+        for (int row = n - 1; row >= 0; row--) {
+            double s = m[row][n];
+            for (int k = row + 1; k < n; k++)
+                s -= m[row][k] * x[k];
+            x[row] = s / m[row][row];
+        }
+        return x;
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ *  This file is part of the SIRIUS Software for analyzing MS and MS/MS data
+ *
+ *  Copyright (C) 2013-2020 Kai Dührkop, Markus Fleischauer, Marcus Ludwig, Martin A. Hoffman, Fleming Kretschmer, Marvin Meusel and Sebastian Böcker,
+ *  Chair of Bioinformatics, Friedrich-Schiller University.
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Affero General Public License
+ *  as published by the Free Software Foundation; either
+ *  version 3 of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License along with SIRIUS.  If not, see <https://www.gnu.org/licenses/agpl-3.0.txt>
+ */
+
+package de.unijena.bioinf.ms.frontend.workflow;
+
+import de.unijena.bioinf.ms.properties.PropertyManager;
+import de.unijena.bioinf.projectspace.CompoundContainerId;
+import de.unijena.bioinf.projectspace.CompoundTimings;
+import de.unijena.bioinf.projectspace.Instance;
+import de.unijena.bioinf.projectspace.ProjectSpaceManager;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Orders the instances of an {@link SimpleInstanceBuffer} by their expected SIRIUS computation time
+ * (longest expected first) and records the observed computation times to refine the {@link CompoundCostModel}.
+ * <p>
+ * Observed timings are stored per project as {@link CompoundTimings} so that later runs on the same project start
+ * with a fitted model. Compounds that have already been timed are ordered by their observed time instead of the
+ * prediction. The timings are written once per run by {@link #persist()}, since every write rewrites all timings of
+ * the project.
+ */
+public class CompoundCostScheduler {
+    public static final String SCHEDULING_KEY = "de.unijena.bioinf.sirius.instanceBuffer.scheduling";
+    public static final String LOOKAHEAD_KEY = "de.unijena.bioinf.sirius.instanceBuffer.lookahead";
+    public static final int DEFAULT_LOOKAHEAD = 1000;
+
+    public enum Mode {FIFO, LONGEST_FIRST}
+
+    public static Mode configuredMode() {
+        final String value = PropertyManager.getProperty(SCHEDULING_KEY, null, Mode.FIFO.name());
+        try {
+            return Mode.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            LoggerFactory.getLogger(CompoundCostScheduler.class).warn("Unknown scheduling mode '" + value + "'. Falling back to " + Mode.FIFO + ".");
+            return Mode.FIFO;
+        }
+    }
+
+    private final int lookahead;
+    private final Map<ProjectSpaceManager<?>, ProjectTimings> projects = Collections.synchronizedMap(new IdentityHashMap<>());
+    private final Map<CompoundContainerId, CompoundTimings.Observation> scheduled = new ConcurrentHashMap<>();
+
+    /**
+     * @param lookahead number of instances that are read ahead of the buffer to be ordered. Their experiments are
+     *                  kept in memory until they are computed. Values smaller 1 read the whole input before the first
+     *                  instance is submitted and keep only the extracted features.
+     */
+    public CompoundCostScheduler(int lookahead) {
+        this.lookahead = lookahead;
+    }
+
+    public CompoundCostScheduler() {
+        this(PropertyManager.getInteger(LOOKAHEAD_KEY, null, DEFAULT_LOOKAHEAD));
+    }
+
+    public Iterator<Instance> schedule(@NotNull Iterator<? extends Instance> instances) {
+        return new CostOrderedIterator<>(instances, this::expectedSeconds, lookahead);
+    }
+
+    double expectedSeconds(@NotNull Instance inst) {
+        final ProjectTimings project = projectTimings(inst.getProjectSpaceManager());
+        final CompoundTimings.Observation known = project.observed.get(inst.getID().getDirectoryName());
+        if (known != null) {
+            scheduled.put(inst.getID(), known);
+            return known.seconds;
+        }
+
+        final CompoundTimings.Observation features = CompoundCostModel.extractFeatures(inst.getExperiment());
+        // the experiment stays cached for the computation, so it is read only once. The lookahead bounds the number
+        // of cached experiments, only if the whole input is read ahead they are dropped and read again later.
+        if (lookahead < 1)
+            inst.clearCompoundCache();
+        scheduled.put(inst.getID(), features);
+        return project.model.predictSeconds(features);
+    }
+
+    /**
+     * Records the observed SIRIUS computation time of a scheduled instance.
+     */
+    public void record(@NotNull Instance inst, long nanos) {
+        final CompoundTimings.Observation features = scheduled.remove(inst.getID());
+        if (features == null || nanos <= 0)
+            return;
+        final double seconds = nanos / 1e9;
+        final ProjectTimings project = projectTimings(inst.getProjectSpaceManager());
+        project.model.observe(features.precursorMz, features.ms2Peaks, features.adducts, features.elements, seconds);
+        synchronized (project) {
+            project.observed.put(inst.getID().getDirectoryName(),
+                    new CompoundTimings.Observation(features.precursorMz, features.ms2Peaks, features.adducts, features.elements, seconds));
+            project.unsaved = true;
+        }
+    }
+
+    /**
+     * Releases a scheduled instance whose computation is finished, whether it has been recorded or not (e.g. because
+     * SIRIUS did not run for it or its jobs failed).
+     */
+    public void release(@NotNull Instance inst) {
+        scheduled.remove(inst.getID());
+    }
+
+    int numberOfScheduled() {
+        return scheduled.size();
+    }
+
+    /**
+     * Writes all timings that have not been stored yet to their projects. Should be called once at the end of a run.
+     */
+    public void persist() {
+        final List<Map.Entry<ProjectSpaceManager<?>, ProjectTimings>> entries;
+        synchronized (projects) {
+            entries = new ArrayList<>(projects.entrySet());
+        }
+        entries.forEach(e -> persist(e.getKey(), e.getValue()));
+    }
+
+    private void persist(ProjectSpaceManager<?> space, ProjectTimings project) {
+        final CompoundTimings timings;
+        synchronized (project) {
+            if (!project.unsaved)
+                return;
+            timings = new CompoundTimings(project.observed);
+            project.unsaved = false;
+        }
+        try {
+            space.setProjectSpaceProperty(CompoundTimings.class, timings);
+        } catch (RuntimeException e) {
+            LoggerFactory.getLogger(getClass()).warn("Could not store compound timings. Scheduling of later runs will be based on predictions only.", e);
+        }
+    }
+
+    private ProjectTimings projectTimings(ProjectSpaceManager<?> space) {
+        synchronized (projects) {
+            return projects.computeIfAbsent(space, s ->
+                    new ProjectTimings(s.getProjectSpaceProperty(CompoundTimings.class).orElseGet(CompoundTimings::new)));
+        }
+    }
+
+    private static class ProjectTimings {
+        final CompoundCostModel model;
+        final Map<String, CompoundTimings.Observation> observed;
+        boolean unsaved = false;
+
+        ProjectTimings(CompoundTimings stored) {
+            this.model = new CompoundCostModel(stored);
+            this.observed = new ConcurrentHashMap<>(stored.getObservations());
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ *  This file is part of the SIRIUS Software for analyzing MS and MS/MS data
+ *
+ *  Copyright (C) 2013-2020 Kai Dührkop, Markus Fleischauer, Marcus Ludwig, Martin A. Hoffman, Fleming Kretschmer, Marvin Meusel and Sebastian Böcker,
+ *  Chair of Bioinformatics, Friedrich-Schiller University.
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Affero General Public License
+ *  as published by the Free Software Foundation; either
+ *  version 3 of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License along with SIRIUS.  If not, see <https://www.gnu.org/licenses/agpl-3.0.txt>
+ */
+
+package de.unijena.bioinf.ms.frontend.workflow;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Reads up to {@code window} elements ahead of the wrapped iterator and always returns the element with the
+ * highest expected cost first (longest job first). Ties are returned in input order.
+ * With an unbounded window this is the classical LPT list schedule, with smaller windows it only reorders locally.
+ */
+class CostOrderedIterator<T> implements Iterator<T> {
+    private final Iterator<? extends T> source;
+    private final ToDoubleFunction<? super T> expectedCost;
+    private final int window;
+    private final PriorityQueue<Entry<T>> queue;
+    private long index = 0;
+
+    CostOrderedIterator(@NotNull Iterator<? extends T> source, @NotNull ToDoubleFunction<? super T> expectedCost, int window) {
+        this.source = source;
+        this.expectedCost = expectedCost;
+        this.window = window < 1 ? Integer.MAX_VALUE : window;
+        this.queue = new PriorityQueue<>(Comparator.<Entry<T>>comparingDouble(e -> -e.cost).thenComparingLong(e -> e.index));
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !queue.isEmpty() || source.hasNext();
+    }
+
+    @Override
+    public T next() {
+        while (queue.size() < window && source.hasNext()) {
+            final T item = source.next();
+            queue.add(new Entry<>(item, expectedCost.applyAsDouble(item), index++));
+        }
+        final Entry<T> e = queue.poll();
+        if (e == null)
+            throw new NoSuchElementException();
+        return e.item;
+    }
+
+    private static final class Entry<T> {
+        final T item;
+        final double cost;
+        final long index;
+
+        Entry(T item, double cost, long index) {
+            this.item = item;
+            this.cost = Double.isNaN(cost) ? 0d : cost;
+            this.index = index;
+        }
+    }
+}
@@ -23,6 +23,7 @@ import de.unijena.bioinf.ChemistryBase.jobs.SiriusJobs;
 import de.unijena.bioinf.jjobs.*;
 import de.unijena.bioinf.ms.frontend.subtools.DataSetJob;
 import de.unijena.bioinf.ms.frontend.subtools.InstanceJob;
+import de.unijena.bioinf.ms.frontend.subtools.sirius.SiriusSubToolJob;
 import de.unijena.bioinf.projectspace.CompoundContainerId;
 import de.unijena.bioinf.projectspace.Instance;
 import org.apache.commons.lang3.time.StopWatch;
@@ -44,6 +45,8 @@ public class SimpleInstanceBuffer implements InstanceBuffer, JobSubmitter {
     private final List<InstanceJob.Factory<?>> tasks;
     private final DataSetJob dependJob;
     protected final JobSubmitter jobSubmitter;
+    @Nullable
+    private final CompoundCostScheduler scheduler;
 
     private final Set<InstanceJobCollectorJob> runningInstances = Collections.newSetFromMap(new ConcurrentHashMap<>());
 
@@ -58,9 +61,18 @@ public class SimpleInstanceBuffer implements InstanceBuffer, JobSubmitter {
     AtomicInteger instanceComputed = null;
 
     public SimpleInstanceBuffer(int bufferSize, @NotNull Iterator<? extends Instance> instances, @NotNull List<InstanceJob.Factory<?>> tasks, @Nullable DataSetJob.Factory<?> dependJobFactory, @NotNull JobProgressMerger progressSupport, JobSubmitter jobSubmitter) {
+        this(bufferSize, instances, tasks, dependJobFactory, progressSupport, jobSubmitter, null);
+    }
+
+    /**
+     * @param scheduler if given, instances are submitted in the order of their expected computation time
+     *                  (longest first) instead of input order and computation times are recorded.
+     */
+    public SimpleInstanceBuffer(int bufferSize, @NotNull Iterator<? extends Instance> instances, @NotNull List<InstanceJob.Factory<?>> tasks, @Nullable DataSetJob.Factory<?> dependJobFactory, @NotNull JobProgressMerger progressSupport, JobSubmitter jobSubmitter, @Nullable CompoundCostScheduler scheduler) {
         this.bufferSize = bufferSize < 1 ? Integer.MAX_VALUE : bufferSize;
         this.jobSubmitter = jobSubmitter;
-        this.instances = instances;
+        this.scheduler = scheduler;
+        this.instances = scheduler == null ? instances : scheduler.schedule(instances);
         this.tasks = tasks;
         this.progressSupport = progressSupport;
         this.dependJob = dependJobFactory == null ? null : dependJobFactory.makeJob(this);
@@ -154,6 +166,9 @@ public class SimpleInstanceBuffer implements InstanceBuffer, JobSubmitter {
             }
         });
 
+        if (scheduler != null)
+            scheduler.persist();
+
         System.out.println("########################################");
         System.out.println("## Computed " + instanceComputed.get() + " instances in " + w + "(" + String.format("%,.2f", (instanceComputed.get() / (w.getTime() / 1000d / 60d))) + " instances/minute).");
         System.out.println("########################################");
@@ -215,6 +230,8 @@ public class SimpleInstanceBuffer implements InstanceBuffer, JobSubmitter {
             } finally {
                 lock.unlock();
             }
+            if (scheduler != null)
+                scheduler.release(instance);
 
             toWaitOnCleanUp.forEach(j -> {
                 try {
@@ -242,6 +259,12 @@ public class SimpleInstanceBuffer implements InstanceBuffer, JobSubmitter {
 
         @Override
         protected CompoundContainerId compute() {
+            if (scheduler != null)
+                toWaitOnCleanUp.stream().filter(j -> j instanceof SiriusSubToolJob)
+                        .mapToLong(j -> ((SiriusSubToolJob) j).getComputationNanos())
+                        .filter(nanos -> nanos > 0).findFirst()
+                        .ifPresent(nanos -> scheduler.record(instance, nanos));
+
             //cleanup is not really needed for CLI but for everything on top that might keep instances alive.
             if (invalidate) {//todo we should change our project space model so that spectra are independent from config stuff
                 instance.clearFormulaResultsCache();
@@ -260,7 +283,8 @@ public class SimpleInstanceBuffer implements InstanceBuffer, JobSubmitter {
     public static class Factory implements InstanceBufferFactory<SimpleInstanceBuffer> {
         @Override
         public SimpleInstanceBuffer create(int bufferSize, @NotNull Iterator<? extends Instance> instances, @NotNull List<InstanceJob.Factory<?>> tasks, @Nullable DataSetJob.Factory<?> dependJobFactory, @NotNull JobProgressMerger progressSupport) {
-            return new SimpleInstanceBuffer(bufferSize, instances, tasks, dependJobFactory, progressSupport, SiriusJobs.getGlobalJobManager());
+            return new SimpleInstanceBuffer(bufferSize, instances, tasks, dependJobFactory, progressSupport, SiriusJobs.getGlobalJobManager(),
+                    CompoundCostScheduler.configuredMode() == CompoundCostScheduler.Mode.LONGEST_FIRST ? new CompoundCostScheduler() : null);
         }
     }
 }
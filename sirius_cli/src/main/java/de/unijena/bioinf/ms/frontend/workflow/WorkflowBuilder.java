@@ -23,6 +23,7 @@ import com.google.common.collect.Streams;
 import de.unijena.bioinf.ms.frontend.DefaultParameter;
 import de.unijena.bioinf.ms.frontend.subtools.*;
 import de.unijena.bioinf.ms.frontend.subtools.canopus.CanopusOptions;
+import de.unijena.bioinf.ms.frontend.subtools.chemical_noise.ChemicalNoiseOptions;
 import de.unijena.bioinf.ms.frontend.subtools.config.DefaultParameterConfigLoader;
 import de.unijena.bioinf.ms.frontend.subtools.custom_db.CustomDBOptions;
 import de.unijena.bioinf.ms.frontend.subtools.decomp.DecompOptions;
@@ -35,6 +36,7 @@ import de.unijena.bioinf.ms.frontend.subtools.lcms_align.LcmsAlignOptions;
 import de.unijena.bioinf.ms.frontend.subtools.login.LoginOptions;
 import de.unijena.bioinf.ms.frontend.subtools.passatutto.PassatuttoOptions;
 import de.unijena.bioinf.ms.frontend.subtools.projectspace.ProjecSpaceOptions;
+import de.unijena.bioinf.ms.frontend.subtools.quality.SpectralQualityOptions;
 import de.unijena.bioinf.ms.frontend.subtools.settings.SettingsOptions;
 import de.unijena.bioinf.ms.frontend.subtools.similarity.SimilarityMatrixOptions;
 import de.unijena.bioinf.ms.frontend.subtools.sirius.SiriusOptions;
@@ -93,6 +95,8 @@ public class WorkflowBuilder<R extends RootOptions<?, ?, ?, ?>> {
     public final ProjecSpaceOptions projectSpaceOptions; // this is also singleton
     public final SimilarityMatrixOptions similarityMatrixOptions;
     public final DecompOptions decompOptions;
+    public final ChemicalNoiseOptions chemicalNoiseOptions;
+    public final SpectralQualityOptions spectralQualityOptions;
     public final LoginOptions loginOptions;
     public final SettingsOptions settingsOptions;
 
@@ -134,6 +138,8 @@ public class WorkflowBuilder<R extends RootOptions<?, ?, ?, ?>> {
         projectSpaceOptions = new ProjecSpaceOptions();
         similarityMatrixOptions = new SimilarityMatrixOptions();
         decompOptions = new DecompOptions();
+        chemicalNoiseOptions = new ChemicalNoiseOptions();
+        spectralQualityOptions = new SpectralQualityOptions();
         mgfExporterOptions = new MgfExporterOptions();
         ftreeExporterOptions = new FTreeExporterOptions();
         summaryOptions = new SummaryOptions();
@@ -167,7 +173,7 @@ public class WorkflowBuilder<R extends RootOptions<?, ?, ?, ?>> {
 
     protected Object[] standaloneTools() {
         return Streams.concat(
-                Stream.of(projectSpaceOptions, customDBOptions, similarityMatrixOptions, decompOptions, mgfExporterOptions, ftreeExporterOptions, exportPredictions),
+                Stream.of(projectSpaceOptions, customDBOptions, similarityMatrixOptions, decompOptions, chemicalNoiseOptions, spectralQualityOptions, mgfExporterOptions, ftreeExporterOptions, exportPredictions),
                 additionalTools.stream(), Stream.of(loginOptions, settingsOptions, autocompleteOptions)
         ).toArray(Object[]::new);
 
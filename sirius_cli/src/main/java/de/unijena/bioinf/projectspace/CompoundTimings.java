@@ -0,0 +1,118 @@
+/*
+ *  This file is part of the SIRIUS Software for analyzing MS and MS/MS data
+ *
+ *  Copyright (C) 2013-2020 Kai Dührkop, Markus Fleischauer, Marcus Ludwig, Martin A. Hoffman, Fleming Kretschmer, Marvin Meusel and Sebastian Böcker,
+ *  Chair of Bioinformatics, Friedrich-Schiller University.
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Affero General Public License
+ *  as published by the Free Software Foundation; either
+ *  version 3 of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License along with SIRIUS.  If not, see <https://www.gnu.org/licenses/agpl-3.0.txt>
+ */
+
+package de.unijena.bioinf.projectspace;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Observed computation times of compounds of a project together with the cheap features they have been
+ * predicted from (see {@link de.unijena.bioinf.ms.frontend.workflow.CompoundCostModel}).
+ * Keyed by the directory name of the compound, so that recomputing a compound replaces its old timing.
+ */
+public final class CompoundTimings implements ProjectSpaceProperty {
+    private final LinkedHashMap<String, Observation> observations;
+
+    public CompoundTimings() {
+        this(Collections.emptyMap());
+    }
+
+    public CompoundTimings(@NotNull Map<String, Observation> observations) {
+        this.observations = new LinkedHashMap<>(observations);
+    }
+
+    public Map<String, Observation> getObservations() {
+        return Collections.unmodifiableMap(observations);
+    }
+
+    public int size() {
+        return observations.size();
+    }
+
+    public static final class Observation {
+        public final double precursorMz;
+        public final int ms2Peaks;
+        public final int adducts;
+        public final int elements;
+        public final double seconds;
+
+        public Observation(double precursorMz, int ms2Peaks, int adducts, int elements, double seconds) {
+            this.precursorMz = precursorMz;
+            this.ms2Peaks = ms2Peaks;
+            this.adducts = adducts;
+            this.elements = elements;
+            this.seconds = seconds;
+        }
+    }
+
+    public static class Serializer implements ComponentSerializer<ProjectSpaceContainerId, ProjectSpaceContainer<ProjectSpaceContainerId>, CompoundTimings> {
+        public static final String TIMINGS = ".compound_timings.tsv";
+        private static final String HEADER = "compound\tprecursorMz\tms2Peaks\tadducts\telements\tseconds";
+
+        @Override
+        public @Nullable CompoundTimings read(ProjectReader reader, ProjectSpaceContainerId id, ProjectSpaceContainer<ProjectSpaceContainerId> container) throws IOException {
+            if (!reader.exists(TIMINGS))
+                return null;
+            return reader.textFile(TIMINGS, Serializer::read);
+        }
+
+        static CompoundTimings read(BufferedReader br) throws IOException {
+            final LinkedHashMap<String, Observation> observations = new LinkedHashMap<>();
+            String line;
+            while ((line = br.readLine()) != null) {
+                if (line.isBlank() || line.startsWith("compound\t"))
+                    continue;
+                final String[] cols = line.split("\t");
+                if (cols.length < 6)
+                    continue;
+                try {
+                    observations.put(cols[0], new Observation(Double.parseDouble(cols[1]), Integer.parseInt(cols[2]),
+                            Integer.parseInt(cols[3]), Integer.parseInt(cols[4]), Double.parseDouble(cols[5])));
+                } catch (NumberFormatException e) {
+                    // a broken line only costs us one training example
+                }
+            }
+            return new CompoundTimings(observations);
+        }
+
+        @Override
+        public void write(ProjectWriter writer, ProjectSpaceContainerId id, ProjectSpaceContainer<ProjectSpaceContainerId> container, Optional<CompoundTimings> optTimings) throws IOException {
+            final CompoundTimings timings = optTimings.orElseThrow(() -> new IllegalArgumentException("Could not find CompoundTimings to write."));
+            writer.textFile(TIMINGS, w -> {
+                w.write(HEADER);
+                w.newLine();
+                for (Map.Entry<String, Observation> e : timings.observations.entrySet()) {
+                    final Observation o = e.getValue();
+                    w.write(e.getKey() + "\t" + o.precursorMz + "\t" + o.ms2Peaks + "\t" + o.adducts + "\t" + o.elements + "\t" + o.seconds);
+                    w.newLine();
+                }
+            });
+        }
+
+        @Override
+        public void delete(ProjectWriter writer, ProjectSpaceContainerId id) throws IOException {
+            writer.deleteIfExists(TIMINGS);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ *  This file is part of the SIRIUS Software for analyzing MS and MS/MS data
+ *
+ *  Copyright (C) 2013-2020 Kai Dührkop, Markus Fleischauer, Marcus Ludwig, Martin A. Hoffman, Fleming Kretschmer, Marvin Meusel and Sebastian Böcker,
+ *  Chair of Bioinformatics, Friedrich-Schiller University.
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Affero General Public License
+ *  as published by the Free Software Foundation; either
+ *  version 3 of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License along with SIRIUS.  If not, see <https://www.gnu.org/licenses/agpl-3.0.txt>
+ */
+
+package de.unijena.bioinf.projectspace;
+
+import de.unijena.bioinf.ms.annotations.DataAnnotation;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Digests of the {@link ProjectSpaceConfig} of a compound and of the configs it was built from.
+ * Allows to detect that rebuilding the config of a compound would not change anything, without parsing
+ * and layering the stored config again.
+ */
+public final class ConfigDigest implements DataAnnotation {
+    /**
+     * digest of the configs the stored config was built from (compute config and input file config)
+     */
+    @NotNull
+    private final String sourceDigest;
+    /**
+     * digest of the stored (effective) config without runtime layers
+     */
+    @NotNull
+    private final String configDigest;
+
+    public ConfigDigest(@NotNull String sourceDigest, @NotNull String configDigest) {
+        this.sourceDigest = sourceDigest;
+        this.configDigest = configDigest;
+    }
+
+    @NotNull
+    public String getSourceDigest() {
+        return sourceDigest;
+    }
+
+    @NotNull
+    public String getConfigDigest() {
+        return configDigest;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ConfigDigest)) return false;
+        final ConfigDigest that = (ConfigDigest) o;
+        return sourceDigest.equals(that.sourceDigest) && configDigest.equals(that.configDigest);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * sourceDigest.hashCode() + configDigest.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "ConfigDigest{source=" + sourceDigest + ", config=" + configDigest + '}';
+    }
+}
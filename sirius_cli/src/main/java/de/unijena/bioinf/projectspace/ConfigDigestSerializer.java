@@ -0,0 +1,75 @@
+/*
+ *  This file is part of the SIRIUS Software for analyzing MS and MS/MS data
+ *
+ *  Copyright (C) 2013-2020 Kai Dührkop, Markus Fleischauer, Marcus Ludwig, Martin A. Hoffman, Fleming Kretschmer, Marvin Meusel and Sebastian Böcker,
+ *  Chair of Bioinformatics, Friedrich-Schiller University.
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Affero General Public License
+ *  as published by the Free Software Foundation; either
+ *  version 3 of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License along with SIRIUS.  If not, see <https://www.gnu.org/licenses/agpl-3.0.txt>
+ */
+
+package de.unijena.bioinf.projectspace;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.Optional;
+
+/**
+ * Stores {@link ConfigDigest} as a tiny key-value text file in the compound directory.
+ */
+public class ConfigDigestSerializer implements ComponentSerializer<CompoundContainerId, CompoundContainer, ConfigDigest> {
+    public static final String CONFIG_DIGEST = "config_digest.info";
+    private static final String SOURCE = "source";
+    private static final String CONFIG = "config";
+
+    @Override
+    public @Nullable ConfigDigest read(ProjectReader reader, CompoundContainerId id, CompoundContainer container) throws IOException {
+        if (!reader.exists(CONFIG_DIGEST))
+            return null;
+        return reader.textFile(CONFIG_DIGEST, ConfigDigestSerializer::read);
+    }
+
+    static @Nullable ConfigDigest read(BufferedReader br) throws IOException {
+        String source = null, config = null;
+        String line;
+        while ((line = br.readLine()) != null) {
+            final int sep = line.indexOf('\t');
+            if (sep < 0)
+                continue;
+            final String key = line.substring(0, sep);
+            if (SOURCE.equals(key))
+                source = line.substring(sep + 1).trim();
+            else if (CONFIG.equals(key))
+                config = line.substring(sep + 1).trim();
+        }
+        // incomplete digests are treated as missing, which just forces a rebuild of the config
+        return source == null || config == null ? null : new ConfigDigest(source, config);
+    }
+
+    @Override
+    public void write(ProjectWriter writer, CompoundContainerId id, CompoundContainer container, Optional<ConfigDigest> optDigest) throws IOException {
+        final ConfigDigest digest = optDigest.orElseThrow(() -> new IllegalArgumentException("Could not find ConfigDigest to write for compound: " + id));
+        writer.textFile(CONFIG_DIGEST, w -> {
+            w.write(SOURCE + "\t" + digest.getSourceDigest());
+            w.newLine();
+            w.write(CONFIG + "\t" + digest.getConfigDigest());
+            w.newLine();
+        });
+    }
+
+    @Override
+    public void delete(ProjectWriter writer, CompoundContainerId id) throws IOException {
+        writer.deleteIfExists(CONFIG_DIGEST);
+    }
+}
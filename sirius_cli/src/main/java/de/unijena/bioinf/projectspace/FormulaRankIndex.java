@@ -0,0 +1,110 @@
+/*
+ *  This file is part of the SIRIUS Software for analyzing MS and MS/MS data
+ *
+ *  Copyright (C) 2013-2020 Kai Dührkop, Markus Fleischauer, Marcus Ludwig, Martin A. Hoffman, Fleming Kretschmer, Marvin Meusel and Sebastian Böcker,
+ *  Chair of Bioinformatics, Friedrich-Schiller University.
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Affero General Public License
+ *  as published by the Free Software Foundation; either
+ *  version 3 of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License along with SIRIUS.  If not, see <https://www.gnu.org/licenses/agpl-3.0.txt>
+ */
+
+package de.unijena.bioinf.projectspace;
+
+import de.unijena.bioinf.ChemistryBase.algorithm.scoring.FormulaScore;
+import de.unijena.bioinf.ms.annotations.DataAnnotation;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Per compound index of the formula results (by file name of their {@link FormulaResultId}) ordered by a list of
+ * ranking score types. Allows to load the top-k results of a compound directly, without loading the
+ * {@link FormulaScoring} of every result and re-ranking them.
+ * <p>
+ * An entry is only valid as long as it covers exactly the current formula results of the compound, so adding or
+ * removing results makes it stale implicitly. The index is built when scores or ranking score types are written and
+ * is never written by read operations (see {@link Instance}), which fall back to ranking in memory.
+ */
+public final class FormulaRankIndex implements DataAnnotation {
+    public static final FormulaRankIndex EMPTY = new FormulaRankIndex(Map.of());
+
+    /**
+     * ranking key (see {@link #key(List)}) -> file names of the formula results, best first
+     */
+    @NotNull
+    private final Map<String, List<String>> rankings;
+
+    FormulaRankIndex(@NotNull Map<String, List<String>> rankings) {
+        this.rankings = Collections.unmodifiableMap(new LinkedHashMap<>(rankings));
+    }
+
+    public static String key(@NotNull List<Class<? extends FormulaScore>> rankingScoreTypes) {
+        return rankingScoreTypes.stream().map(Class::getSimpleName).collect(Collectors.joining(","));
+    }
+
+    public boolean isEmpty() {
+        return rankings.isEmpty();
+    }
+
+    @NotNull
+    Map<String, List<String>> getRankings() {
+        return rankings;
+    }
+
+    /**
+     * @param rankingScoreTypes ranking the result ids should be ordered by
+     * @param results           current formula results of the compound
+     * @return ordered result ids, or empty if there is no entry for the ranking or it does not match the given results.
+     */
+    public Optional<List<FormulaResultId>> getRanking(@NotNull List<Class<? extends FormulaScore>> rankingScoreTypes, @NotNull Collection<FormulaResultId> results) {
+        final List<String> ranking = rankings.get(key(rankingScoreTypes));
+        if (ranking == null || ranking.size() != results.size())
+            return Optional.empty();
+        final Map<String, FormulaResultId> byName = new HashMap<>(results.size());
+        results.forEach(id -> byName.put(id.fileName(), id));
+        final List<FormulaResultId> ids = new ArrayList<>(ranking.size());
+        for (String name : ranking) {
+            final FormulaResultId id = byName.get(name);
+            if (id == null)
+                return Optional.empty();
+            ids.add(id);
+        }
+        return Optional.of(ids);
+    }
+
+    /**
+     * @return a copy of this index with the given ranking added (or replaced)
+     */
+    public FormulaRankIndex withRanking(@NotNull List<Class<? extends FormulaScore>> rankingScoreTypes, @NotNull List<FormulaResultId> ranked) {
+        final Map<String, List<String>> nu = new LinkedHashMap<>(rankings);
+        nu.put(key(rankingScoreTypes), ranked.stream().map(FormulaResultId::fileName).collect(Collectors.toUnmodifiableList()));
+        return new FormulaRankIndex(nu);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof FormulaRankIndex)) return false;
+        return rankings.equals(((FormulaRankIndex) o).rankings);
+    }
+
+    @Override
+    public int hashCode() {
+        return rankings.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "FormulaRankIndex" + rankings;
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ *  This file is part of the SIRIUS Software for analyzing MS and MS/MS data
+ *
+ *  Copyright (C) 2013-2020 Kai Dührkop, Markus Fleischauer, Marcus Ludwig, Martin A. Hoffman, Fleming Kretschmer, Marvin Meusel and Sebastian Böcker,
+ *  Chair of Bioinformatics, Friedrich-Schiller University.
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Affero General Public License
+ *  as published by the Free Software Foundation; either
+ *  version 3 of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License along with SIRIUS.  If not, see <https://www.gnu.org/licenses/agpl-3.0.txt>
+ */
+
+package de.unijena.bioinf.projectspace;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Stores {@link FormulaRankIndex} as a small tab separated text file in the compound directory. One line per
+ * ranking: the ranking key followed by the file names of the formula results, best first.
+ * An empty index is stored by deleting the file.
+ */
+public class FormulaRankIndexSerializer implements ComponentSerializer<CompoundContainerId, CompoundContainer, FormulaRankIndex> {
+    public static final String RANK_INDEX = "formula_rank_index.tsv";
+
+    @Override
+    public FormulaRankIndex read(ProjectReader reader, CompoundContainerId id, CompoundContainer container) throws IOException {
+        // a missing index is returned as empty index, so that it is cached and not looked up again
+        if (!reader.exists(RANK_INDEX))
+            return FormulaRankIndex.EMPTY;
+        return reader.textFile(RANK_INDEX, FormulaRankIndexSerializer::read);
+    }
+
+    static FormulaRankIndex read(BufferedReader br) throws IOException {
+        final Map<String, List<String>> rankings = new LinkedHashMap<>();
+        String line;
+        while ((line = br.readLine()) != null) {
+            if (line.isBlank())
+                continue;
+            final String[] cols = line.split("\t");
+            rankings.put(cols[0], List.of(Arrays.copyOfRange(cols, 1, cols.length)));
+        }
+        return rankings.isEmpty() ? FormulaRankIndex.EMPTY : new FormulaRankIndex(rankings);
+    }
+
+    @Override
+    public void write(ProjectWriter writer, CompoundContainerId id, CompoundContainer container, Optional<FormulaRankIndex> optIndex) throws IOException {
+        final FormulaRankIndex index = optIndex.orElse(FormulaRankIndex.EMPTY);
+        if (index.isEmpty()) {
+            writer.deleteIfExists(RANK_INDEX);
+            return;
+        }
+        writer.textFile(RANK_INDEX, w -> {
+            for (Map.Entry<String, List<String>> e : index.getRankings().entrySet()) {
+                w.write(e.getKey());
+                for (String name : e.getValue()) {
+                    w.write('\t');
+                    w.write(name);
+                }
+                w.newLine();
+            }
+        });
+    }
+
+    @Override
+    public void delete(ProjectWriter writer, CompoundContainerId id) throws IOException {
+        writer.deleteIfExists(RANK_INDEX);
+    }
+}
@@ -0,0 +1,262 @@
+/*
+ *  This file is part of the SIRIUS Software for analyzing MS and MS/MS data
+ *
+ *  Copyright (C) 2013-2020 Kai Dührkop, Markus Fleischauer, Marcus Ludwig, Martin A. Hoffman, Fleming Kretschmer, Marvin Meusel and Sebastian Böcker,
+ *  Chair of Bioinformatics, Friedrich-Schiller University.
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Affero General Public License
+ *  as published by the Free Software Foundation; either
+ *  version 3 of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License along with SIRIUS.  If not, see <https://www.gnu.org/licenses/agpl-3.0.txt>
+ */
+
+package de.unijena.bioinf.projectspace;
+
+import de.unijena.bioinf.ChemistryBase.algorithm.scoring.FormulaScore;
+import de.unijena.bioinf.ChemistryBase.algorithm.scoring.SScored;
+import de.unijena.bioinf.fingerid.blast.FBCandidateFingerprints;
+import de.unijena.bioinf.fingerid.blast.FBCandidates;
+import de.unijena.bioinf.ms.annotations.DataAnnotation;
+import de.unijena.bioinf.projectspace.canopus.CanopusLocations;
+import de.unijena.bioinf.projectspace.fingerid.FBCandidateNumber;
+import de.unijena.bioinf.projectspace.fingerid.FingerIdLocations;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Subset of the data of a formula result that should be read instead of whole components, e.g. only the top-k
+ * structure candidates, the number of structure candidates or single probabilities of a fingerprint or a CANOPUS
+ * prediction. Projected reads stop as soon as the requested rows are read and do not parse anything else.
+ * <p>
+ * Projected structure candidates are returned as (shortened) {@link FBCandidates} and {@link FBCandidateFingerprints}
+ * components, counts and probabilities as {@link Values} annotation of the formula result.
+ * See {@link Instance#loadFormulaResults(List, FormulaResultProjection, Class[])}.
+ */
+public final class FormulaResultProjection {
+    public static final FormulaResultProjection NONE = new FormulaResultProjection(-1, false, Map.of());
+
+    /**
+     * Probability vectors that can be projected to single entries. Stored with one probability per line.
+     */
+    public enum Vector {
+        FINGERPRINT(FingerIdLocations.FINGERPRINTS::relFilePath),
+        CANOPUS_CF(CanopusLocations.CF::relFilePath),
+        CANOPUS_NPC(CanopusLocations.NPC::relFilePath);
+
+        final Function<FormulaResultId, String> relFilePath;
+
+        Vector(Function<FormulaResultId, String> relFilePath) {
+            this.relFilePath = relFilePath;
+        }
+    }
+
+    private final int topStructures;
+    private final boolean countStructures;
+    private final Map<Vector, int[]> probabilities;
+
+    private FormulaResultProjection(int topStructures, boolean countStructures, Map<Vector, int[]> probabilities) {
+        this.topStructures = topStructures;
+        this.countStructures = countStructures;
+        this.probabilities = probabilities;
+    }
+
+    /**
+     * Read only the k best structure candidates (and their fingerprints) if {@link FBCandidates} or
+     * {@link FBCandidateFingerprints} are requested.
+     */
+    public FormulaResultProjection withTopStructures(int k) {
+        if (k < 0)
+            throw new IllegalArgumentException("Number of structure candidates must not be negative: " + k);
+        return new FormulaResultProjection(k, countStructures, probabilities);
+    }
+
+    /**
+     * Count the structure candidates without parsing them, see {@link Values#getNumberOfStructures()}.
+     */
+    public FormulaResultProjection withStructureCount() {
+        return new FormulaResultProjection(topStructures, true, probabilities);
+    }
+
+    /**
+     * Read only the probabilities at the given indices of the given vector, see {@link Values#getProbabilities(Vector)}.
+     */
+    public FormulaResultProjection withProbabilities(@NotNull Vector vector, int... indices) {
+        final EnumMap<Vector, int[]> nu = new EnumMap<>(Vector.class);
+        nu.putAll(probabilities);
+        nu.put(vector, indices.clone());
+        return new FormulaResultProjection(topStructures, countStructures, Collections.unmodifiableMap(nu));
+    }
+
+    public boolean isNone() {
+        return topStructures < 0 && !countStructures && probabilities.isEmpty();
+    }
+
+    /**
+     * @return true if the given component is read projected and must therefore not be taken from or put into the
+     * formula result cache.
+     */
+    boolean projects(Class<? extends DataAnnotation> component) {
+        return topStructures >= 0 && (FBCandidates.class.equals(component) || FBCandidateFingerprints.class.equals(component));
+    }
+
+    /**
+     * The structure candidate serializers read only the top k candidates if the id is annotated with the candidate
+     * number. Ids are shared by all users of a formula result, so the limit is passed on a private copy of the id.
+     */
+    FormulaResultId readId(FormulaResultId id) {
+        final FormulaResultId copy = new FormulaResultId(id.getParentId(), id.getPrecursorFormula(), id.getIonType());
+        copy.setAnnotation(FBCandidateNumber.class, new FBCandidateNumber(topStructures));
+        return copy;
+    }
+
+    boolean hasValues() {
+        return countStructures || !probabilities.isEmpty();
+    }
+
+    /**
+     * Reads the given formula results (of one compound) with the requested components. Components that are already
+     * annotated are kept, projected components and values are read as described by this projection.
+     * Results are copied, the given results and their ids are not modified.
+     *
+     * @return copies of the given results in the same order
+     */
+    @SafeVarargs
+    public final List<FormulaResult> read(@NotNull SiriusProjectSpace space, @NotNull List<FormulaResult> results, Class<? extends DataAnnotation>... components) throws IOException {
+        final List<FormulaResult> copies = new ArrayList<>(results.size());
+        for (FormulaResult r : results) {
+            final FormulaResult copy = new FormulaResult(r.getId());
+            r.annotations().forEach(copy::setAnnotation);
+            final Class[] missing = Arrays.stream(components).filter(c -> !projects(c) && !r.hasAnnotation(c)).distinct().toArray(Class[]::new);
+            if (missing.length > 0)
+                space.getFormulaResult(r.getId(), missing).annotations().forEach(copy::setAnnotation);
+            final Class[] projected = Arrays.stream(components).filter(this::projects).distinct().toArray(Class[]::new);
+            if (projected.length > 0)
+                space.getFormulaResult(readId(r.getId()), projected).annotations().forEach(copy::setAnnotation);
+            copies.add(copy);
+        }
+
+        if (hasValues() && !copies.isEmpty()) {
+            final ProjectReader reader = space.ioProvider.newReader(space::getProjectSpaceProperty);
+            reader.inDirectory(copies.get(0).getId().getParentId().getDirectoryName(), () -> {
+                for (FormulaResult copy : copies)
+                    copy.setAnnotation(Values.class, readValues(reader, copy.getId()));
+                return null;
+            });
+        }
+        return copies;
+    }
+
+    /**
+     * Same as {@link #read(SiriusProjectSpace, List, Class[])} for ranked results, the scores are kept.
+     */
+    @SafeVarargs
+    public final List<SScored<FormulaResult, ? extends FormulaScore>> readRanked(@NotNull SiriusProjectSpace space, @NotNull List<? extends SScored<FormulaResult, ? extends FormulaScore>> ranked, Class<? extends DataAnnotation>... components) throws IOException {
+        final List<FormulaResult> copies = read(space, ranked.stream().map(SScored::getCandidate).collect(Collectors.toList()), components);
+        final List<SScored<FormulaResult, ? extends FormulaScore>> out = new ArrayList<>(ranked.size());
+        for (int i = 0; i < ranked.size(); i++)
+            out.add(new SScored<>(copies.get(i), ranked.get(i).getScoreObject()));
+        return out;
+    }
+
+    /**
+     * Reads the projected values of the given result. Has to be called within the directory of its compound.
+     */
+    Values readValues(ProjectReader reader, FormulaResultId id) throws IOException {
+        int count = -1;
+        if (countStructures) {
+            final String path = FingerIdLocations.FINGERBLAST.relFilePath(id);
+            count = reader.exists(path) ? reader.textFile(path, FormulaResultProjection::countRows) : 0;
+        }
+        final EnumMap<Vector, double[]> probs = new EnumMap<>(Vector.class);
+        for (Map.Entry<Vector, int[]> e : probabilities.entrySet()) {
+            final String path = e.getKey().relFilePath.apply(id);
+            if (reader.exists(path))
+                probs.put(e.getKey(), reader.textFile(path, br -> readProbabilities(br, e.getValue())));
+        }
+        return new Values(count, probs);
+    }
+
+    /**
+     * @return number of rows of a table with header, empty lines are ignored.
+     */
+    static int countRows(BufferedReader br) throws IOException {
+        if (br.readLine() == null)
+            return 0;
+        int rows = 0;
+        String line;
+        while ((line = br.readLine()) != null)
+            if (!line.isBlank())
+                rows++;
+        return rows;
+    }
+
+    /**
+     * Reads the probabilities at the given indices of a vector stored with one value per line. Stops after the
+     * largest requested index, missing values are NaN.
+     */
+    static double[] readProbabilities(BufferedReader br, int[] indices) throws IOException {
+        final double[] values = new double[indices.length];
+        Arrays.fill(values, Double.NaN);
+        if (indices.length == 0)
+            return values;
+
+        final int[] order = Arrays.copyOf(indices, indices.length);
+        Arrays.sort(order);
+        final int max = order[order.length - 1];
+        final Map<Integer, Double> read = new HashMap<>(indices.length);
+        int next = 0, lineNumber = 0;
+        String line;
+        while (lineNumber <= max && (line = br.readLine()) != null) {
+            while (next < order.length && order[next] < lineNumber)
+                next++;
+            if (next < order.length && order[next] == lineNumber) {
+                final int sep = line.indexOf('\t');
+                read.put(lineNumber, Double.parseDouble((sep < 0 ? line : line.substring(0, sep)).trim()));
+            }
+            lineNumber++;
+        }
+        for (int i = 0; i < indices.length; i++)
+            values[i] = read.getOrDefault(indices[i], Double.NaN);
+        return values;
+    }
+
+    /**
+     * Projected values of a formula result.
+     */
+    public static final class Values implements DataAnnotation {
+        private final int numberOfStructures;
+        private final Map<Vector, double[]> probabilities;
+
+        Values(int numberOfStructures, Map<Vector, double[]> probabilities) {
+            this.numberOfStructures = numberOfStructures;
+            this.probabilities = probabilities;
+        }
+
+        /**
+         * @return number of structure candidates or empty if not requested.
+         */
+        public OptionalInt getNumberOfStructures() {
+            return numberOfStructures < 0 ? OptionalInt.empty() : OptionalInt.of(numberOfStructures);
+        }
+
+        /**
+         * @return probabilities in the order of the requested indices (NaN if not available) or empty if there is no
+         * such vector for this result.
+         */
+        public Optional<double[]> getProbabilities(@NotNull Vector vector) {
+            return Optional.ofNullable(probabilities.get(vector)).map(double[]::clone);
+        }
+    }
+}
@@ -132,20 +132,79 @@ public class Instance {
 
     @SafeVarargs
     public final synchronized Optional<FormulaResult> loadTopFormulaResult(Class<? extends DataAnnotation>... components) {
-        return getTop(loadFormulaResults(), components);
+        return loadTopFormulaResult(getID().getRankingScoreTypes(), components);
     }
 
     @SafeVarargs
     public final synchronized Optional<FormulaResult> loadTopFormulaResult(List<Class<? extends FormulaScore>> rankingScoreTypes, Class<? extends DataAnnotation>... components) {
-        return getTop(loadFormulaResults(rankingScoreTypes), components);
+        final List<FormulaResultId> ranked = loadRanking(rankingScoreTypes);
+        return ranked.isEmpty() ? Optional.empty() : loadFormulaResult(ranked.get(0), components);
     }
 
+    /**
+     * @return the k best FormulaResults ranked by the given RankingScore, only the given components are loaded.
+     */
     @SafeVarargs
-    private Optional<FormulaResult> getTop(List<? extends SScored<FormulaResult, ? extends FormulaScore>> sScoreds, Class<? extends DataAnnotation>... components) {
-        if (sScoreds.isEmpty()) return Optional.empty();
-        else {
-            FormulaResult candidate = sScoreds.get(0).getCandidate();
-            return loadFormulaResult(candidate.getId(), components);
+    public final synchronized List<FormulaResult> loadTopFormulaResults(int k, List<Class<? extends FormulaScore>> rankingScoreTypes, Class<? extends DataAnnotation>... components) {
+        return loadRanking(rankingScoreTypes).stream().limit(k)
+                .map(id -> loadFormulaResult(id, components)).flatMap(Optional::stream)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Ordered result ids from the {@link FormulaRankIndex} of this compound. If the index has no valid entry for the
+     * given ranking, the results are ranked in memory. Never writes to the project-space, the index is built when
+     * the ranking of the compound is written (see {@link #updateRankIndex()}).
+     */
+    private List<FormulaResultId> loadRanking(List<Class<? extends FormulaScore>> rankingScoreTypes) {
+        final FormulaRankIndex index = loadCompoundContainer(FormulaRankIndex.class).getAnnotation(FormulaRankIndex.class).orElse(FormulaRankIndex.EMPTY);
+        final Optional<List<FormulaResultId>> indexed = index.getRanking(rankingScoreTypes, compoundCache.getResultsRO().values());
+        if (indexed.isPresent())
+            return indexed.get();
+
+        return loadFormulaResults(rankingScoreTypes).stream()
+                .map(s -> s.getCandidate().getId()).collect(Collectors.toList());
+    }
+
+    /**
+     * Has to be called before the scores of formula results are written and before formula results are added or
+     * deleted. Results that are recomputed get the same ids again, so the ids checked by the index itself are not
+     * sufficient. Only writes if there is an index.
+     */
+    protected final void invalidateRankIndex() throws IOException {
+        final boolean indexed = loadCompoundContainer(FormulaRankIndex.class).getAnnotation(FormulaRankIndex.class)
+                .map(i -> !i.isEmpty()).orElse(false);
+        if (indexed) {
+            compoundCache.setAnnotation(FormulaRankIndex.class, FormulaRankIndex.EMPTY);
+            projectSpace().updateCompound(compoundCache, FormulaRankIndex.class);
+        }
+    }
+
+    /**
+     * Stores the ranking of the current ranking score types as {@link FormulaRankIndex}, if there is no valid entry.
+     * Called by {@link #updateCompoundID()}. Jobs that change scores without updating the compound id call it once
+     * per compound after all results have been written.
+     */
+    public synchronized void updateRankIndex() {
+        try {
+            final FormulaRankIndex index = loadCompoundContainer(FormulaRankIndex.class).getAnnotation(FormulaRankIndex.class).orElse(FormulaRankIndex.EMPTY);
+            final List<Class<? extends FormulaScore>> rankingScoreTypes = getID().getRankingScoreTypes();
+            if (rankingScoreTypes != null && index.getRanking(rankingScoreTypes, compoundCache.getResultsRO().values()).isPresent())
+                return;
+            final FormulaRankIndex nu;
+            if (rankingScoreTypes == null || rankingScoreTypes.isEmpty() || compoundCache.getResultsRO().isEmpty()) {
+                nu = FormulaRankIndex.EMPTY;
+            } else {
+                final List<FormulaResultId> ranked = loadFormulaResults(rankingScoreTypes, FormulaScoring.class).stream()
+                        .map(s -> s.getCandidate().getId()).collect(Collectors.toList());
+                nu = FormulaRankIndex.EMPTY.withRanking(rankingScoreTypes, ranked);
+            }
+            if (!nu.equals(index)) {
+                compoundCache.setAnnotation(FormulaRankIndex.class, nu);
+                projectSpace().updateCompound(compoundCache, FormulaRankIndex.class);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
         }
     }
 
@@ -185,6 +244,43 @@ public class Instance {
         }
     }
 
+    /**
+     * Loads the given FormulaResult with only the requested subset of its components, see {@link FormulaResultProjection}.
+     * Projected components are added to a copy of the cached result and are never cached, so that later full
+     * reads are not affected.
+     */
+    @SafeVarargs
+    public final synchronized Optional<FormulaResult> loadFormulaResult(FormulaResultId fid, @NotNull FormulaResultProjection projection, Class<? extends DataAnnotation>... components) {
+        if (projection.isNone())
+            return loadFormulaResult(fid, components);
+        try {
+            final Optional<FormulaResult> cached = loadFormulaResult(fid, unprojected(projection, components));
+            return cached.isEmpty() ? cached : Optional.of(projection.read(projectSpace(), List.of(cached.get()), components).get(0));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @return Sorted List of FormulaResults scored by the given RankingScore with only the requested subset of their
+     * components, see {@link #loadFormulaResult(FormulaResultId, FormulaResultProjection, Class[])}
+     */
+    @SafeVarargs
+    public final synchronized List<? extends SScored<FormulaResult, ? extends FormulaScore>> loadFormulaResults(List<Class<? extends FormulaScore>> rankingScoreTypes, @NotNull FormulaResultProjection projection, Class<? extends DataAnnotation>... components) {
+        if (projection.isNone())
+            return loadFormulaResults(rankingScoreTypes, components);
+        try {
+            return projection.readRanked(projectSpace(), loadFormulaResults(rankingScoreTypes, unprojected(projection, components)), components);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @SafeVarargs
+    private Class<? extends DataAnnotation>[] unprojected(FormulaResultProjection projection, Class<? extends DataAnnotation>... components) {
+        return Arrays.stream(components).filter(c -> !projection.projects(c)).toArray(Class[]::new);
+    }
+
     //write to projectSpace
     @SafeVarargs
     public final synchronized void updateCompound(CompoundContainer container, Class<? extends DataAnnotation>... components) {
@@ -206,12 +302,45 @@ public class Instance {
             //refresh cache to actual object state?
             final FormulaResult rs = formulaResultCache.get(result.getId());
             updateAnnotations(rs, result, components);
+            // the index is rebuilt once per compound, see updateRankIndex()
+            if (Arrays.asList(components).contains(FormulaScoring.class))
+                invalidateRankIndex();
             projectSpace().updateFormulaResult(rs, components);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
+    /**
+     * Score-only update path: persists just the {@link FormulaScoring} of the given formula results via the project-space
+     * update API (one score file write per result). Compared to calling {@link #updateFormulaResult} per result, the
+     * compound container is loaded and the {@link FormulaRankIndex} is invalidated and rebuilt only once per compound.
+     * Cached results are refreshed the same way as {@link #updateFormulaResult} does it, so rankings computed afterwards
+     * are identical.
+     *
+     * @param results formula results (of this compound) whose {@link FormulaScoring} should be persisted
+     */
+    public synchronized void updateFormulaScorings(@NotNull Collection<FormulaResult> results) {
+        if (results.isEmpty())
+            return;
+        try {
+            loadCompoundContainer();
+            invalidateRankIndex();
+            for (FormulaResult result : results) {
+                if (!formulaResultCache.containsKey(result.getId())) {
+                    formulaResultCache.put(result.getId(), result);
+                    compoundCache.results.put(result.getId().fileName(), result.getId());
+                }
+                final FormulaResult rs = formulaResultCache.get(result.getId());
+                updateAnnotations(rs, result, FormulaScoring.class);
+                projectSpace().updateFormulaResult(rs, FormulaScoring.class);
+            }
+            updateRankIndex();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     public synchronized void updateExperiment() {
         updateCompound(compoundCache, Ms2Experiment.class);
     }
@@ -224,6 +353,8 @@ public class Instance {
     public synchronized void updateCompoundID() {
         try {
             projectSpace().updateCompoundContainerID(compoundCache.getId());
+            // the ranking score types are part of the id
+            updateRankIndex();
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -244,6 +375,8 @@ public class Instance {
             formulaResultCache.forEach((k, v) -> List.of(components).forEach(v::removeAnnotation));
             //remove components from ALL formula results on disc
             try {
+                if (List.of(components).contains(FormulaScoring.class))
+                    invalidateRankIndex();
                 projectSpace().deleteFromAllFormulaResults(compoundCache, components);
             } catch (IOException e) {
                 LoggerFactory.getLogger(getClass()).error("Error when deleting results from '" + getID() + "'.");
@@ -253,6 +386,7 @@ public class Instance {
 
     public synchronized void deleteFormulaResults() {
         try {
+            invalidateRankIndex();
             clearFormulaResultsCache();
             projectSpace().deleteAllFormulaResults(loadCompoundContainer());
         } catch (IOException e) {
@@ -278,6 +412,11 @@ public class Instance {
 
         rid.retainAll(new HashSet<>(ridToRemove));
 
+        try {
+            invalidateRankIndex();
+        } catch (IOException e) {
+            LoggerFactory.getLogger(getClass()).error("Error when invalidating formula rank index of '" + getID() + "'.");
+        }
         clearFormulaResultsCache();
 
         rid.forEach(v -> {
@@ -329,6 +468,11 @@ public class Instance {
     }
 
     public synchronized Optional<FormulaResult> newFormulaResultWithUniqueId(FTree tree) {
+        try {
+            invalidateRankIndex();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
         Optional<FormulaResult> frOpt = projectSpace().newFormulaResultWithUniqueId(compoundCache, tree);
         frOpt.ifPresent(fr -> formulaResultCache.put(fr.getId(), fr));
         return frOpt;
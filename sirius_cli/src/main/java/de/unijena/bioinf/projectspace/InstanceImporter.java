@@ -323,7 +323,7 @@ public class InstanceImporter {
                                     || (s.removeAnnotation(ConfidenceScore.class) != null)).orElse(false))
                             .collect(Collectors.toList());
 
-                    l.forEach(r -> inst.updateFormulaResult(r, FormulaScoring.class));
+                    inst.updateFormulaScorings(l);
                     LoggerFactory.getLogger(InstanceImporter.class).info("Updating Compound score of '" + id + "' DONE!");
                 }
 
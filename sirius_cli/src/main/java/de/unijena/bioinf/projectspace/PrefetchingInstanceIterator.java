@@ -0,0 +1,231 @@
+/*
+ *  This file is part of the SIRIUS Software for analyzing MS and MS/MS data
+ *
+ *  Copyright (C) 2013-2020 Kai Dührkop, Markus Fleischauer, Marcus Ludwig, Martin A. Hoffman, Fleming Kretschmer, Marvin Meusel and Sebastian Böcker,
+ *  Chair of Bioinformatics, Friedrich-Schiller University.
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Affero General Public License
+ *  as published by the Free Software Foundation; either
+ *  version 3 of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License along with SIRIUS.  If not, see <https://www.gnu.org/licenses/agpl-3.0.txt>
+ */
+
+package de.unijena.bioinf.projectspace;
+
+import de.unijena.bioinf.ChemistryBase.jobs.SiriusJobs;
+import de.unijena.bioinf.ChemistryBase.ms.Ms2Experiment;
+import de.unijena.bioinf.ChemistryBase.ms.Spectrum;
+import de.unijena.bioinf.ChemistryBase.ms.ft.FTree;
+import de.unijena.bioinf.jjobs.BasicJJob;
+import de.unijena.bioinf.jjobs.JobManager;
+import de.unijena.bioinf.ms.annotations.DataAnnotation;
+import de.unijena.bioinf.ms.properties.PropertyManager;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToLongFunction;
+
+/**
+ * Iterates instances in the order of the given compound ids while up to {@code readAhead} of the following compounds
+ * are loaded on the IO threads, together with the requested compound and formula result components.
+ * <p>
+ * Loaded but not yet consumed instances are kept within a byte budget: new compounds are only scheduled as long as
+ * the weight of the buffered instances plus the expected weight of the pending ones fits into the budget. Weights
+ * are estimated by the given weigher, the expected weight of a pending instance is the average of the loaded ones.
+ * At least one compound is always in flight, so the budget can be exceeded by a single oversized instance.
+ * <p>
+ * The iterator has to be consumed from a single thread. Close it if it is not consumed completely, to cancel
+ * pending reads.
+ */
+public class PrefetchingInstanceIterator<I extends Instance> implements Iterator<I>, Closeable {
+    public static final String READ_AHEAD_KEY = "de.unijena.bioinf.sirius.project.prefetch.compounds";
+    public static final String BYTE_BUDGET_KEY = "de.unijena.bioinf.sirius.project.prefetch.megabytes";
+
+    private final ProjectSpaceManager<I> space;
+    private final Iterator<CompoundContainerId> ids;
+    private final int readAhead;
+    private final long byteBudget;
+    private final ToLongFunction<? super I> weigher;
+    private final Class<? extends DataAnnotation>[] compoundComponents;
+    private final Class<? extends DataAnnotation>[] resultComponents;
+    private final JobManager jobManager;
+
+    private final ArrayDeque<LoadJob> inFlight;
+    // weight of loaded but not yet consumed instances
+    private final AtomicLong bufferedBytes = new AtomicLong();
+    private final AtomicLong peakBufferedBytes = new AtomicLong();
+    private final AtomicLong loadedBytes = new AtomicLong();
+    private final AtomicLong loadedInstances = new AtomicLong();
+    private boolean closed = false;
+
+    public PrefetchingInstanceIterator(@NotNull ProjectSpaceManager<I> space, @NotNull Iterator<CompoundContainerId> ids,
+                                       int readAhead, long byteBudget, @NotNull ToLongFunction<? super I> weigher,
+                                       @NotNull Class<? extends DataAnnotation>[] compoundComponents,
+                                       @NotNull Class<? extends DataAnnotation>[] resultComponents) {
+        if (readAhead < 1)
+            throw new IllegalArgumentException("Read ahead must be at least one compound: " + readAhead);
+        if (byteBudget < 0)
+            throw new IllegalArgumentException("Byte budget must not be negative: " + byteBudget);
+        this.space = space;
+        this.ids = ids;
+        this.readAhead = readAhead;
+        this.byteBudget = byteBudget;
+        this.weigher = weigher;
+        this.compoundComponents = compoundComponents.clone();
+        this.resultComponents = resultComponents.clone();
+        this.jobManager = SiriusJobs.getGlobalJobManager();
+        this.inFlight = new ArrayDeque<>(readAhead);
+        fill();
+    }
+
+    /**
+     * @return prefetching iterator (see {@link ProjectSpaceManager#prefetchingIterator(List, List)}) if the given
+     * instances are a project, null otherwise, e.g. for preprocessed instance lists.
+     */
+    @SuppressWarnings("unchecked")
+    @Nullable
+    public static <I extends Instance> PrefetchingInstanceIterator<I> ofProject(@NotNull Iterable<I> instances,
+                                                                               @NotNull List<Class<? extends DataAnnotation>> compoundComponents,
+                                                                               @NotNull List<Class<? extends DataAnnotation>> resultComponents) {
+        if (instances instanceof ProjectSpaceManager)
+            return ((ProjectSpaceManager<I>) instances).prefetchingIterator(compoundComponents, resultComponents);
+        return null;
+    }
+
+    /**
+     * @return default number of compounds to read ahead, four per IO thread.
+     */
+    public static int defaultReadAhead() {
+        return Math.max(2, PropertyManager.getInteger(READ_AHEAD_KEY, null,
+                4 * Math.max(1, SiriusJobs.getGlobalJobManager().getIOThreads())));
+    }
+
+    /**
+     * @return default byte budget for loaded but not yet consumed instances, 64 MB.
+     */
+    public static long defaultByteBudget() {
+        return PropertyManager.getInteger(BYTE_BUDGET_KEY, null, 64) * 1024L * 1024L;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !inFlight.isEmpty() || (!closed && ids.hasNext());
+    }
+
+    @Override
+    public I next() {
+        fill();
+        if (inFlight.isEmpty())
+            throw new NoSuchElementException();
+        final LoadJob job = inFlight.removeFirst();
+        try {
+            final I instance = job.awaitResult();
+            bufferedBytes.addAndGet(-job.bytes);
+            return instance;
+        } catch (ExecutionException e) {
+            bufferedBytes.addAndGet(-job.bytes);
+            throw new RuntimeException("Could not read compound '" + job.id.getDirectoryName() + "' from Project Space.", e.getCause());
+        } finally {
+            fill();
+        }
+    }
+
+    private void fill() {
+        while (!closed && inFlight.size() < readAhead && ids.hasNext()) {
+            if (!inFlight.isEmpty()) {
+                final long loaded = loadedInstances.get();
+                if (loaded == 0)
+                    return; // no weight known yet, wait for the first instance
+                final long expected = loadedBytes.get() / loaded;
+                final long pending = inFlight.stream().filter(j -> !j.isFinished()).count();
+                if (bufferedBytes.get() + (pending + 1) * expected > byteBudget)
+                    return;
+            }
+            final CompoundContainerId id = ids.next();
+            if (id == null)
+                continue;
+            final LoadJob job = new LoadJob(id);
+            jobManager.submitJob(job);
+            inFlight.addLast(job);
+        }
+    }
+
+    /**
+     * @return highest weight of loaded but not yet consumed instances that was reached so far.
+     */
+    long getPeakBufferedBytes() {
+        return peakBufferedBytes.get();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        inFlight.forEach(LoadJob::cancel);
+        inFlight.clear();
+        bufferedBytes.set(0);
+    }
+
+    /**
+     * Rough estimate of the heap used by the cached components of an instance: peaks of the input spectra, fragments
+     * of cached trees, plus a constant per formula result.
+     */
+    public static long estimateBytes(@NotNull Instance instance) {
+        synchronized (instance) {
+            long bytes = 1024;
+            final CompoundContainer container = instance.loadCompoundContainer();
+            bytes += container.getResultsRO().size() * 256L;
+            final Ms2Experiment exp = container.getAnnotation(Ms2Experiment.class).orElse(null);
+            if (exp != null) {
+                bytes += exp.getMs1Spectra().stream().mapToLong(PrefetchingInstanceIterator::spectrumBytes).sum();
+                bytes += exp.getMs2Spectra().stream().mapToLong(PrefetchingInstanceIterator::spectrumBytes).sum();
+                if (exp.getMergedMs1Spectrum() != null)
+                    bytes += spectrumBytes(exp.getMergedMs1Spectrum());
+            }
+            for (FormulaResult r : instance.formulaResultCache.values()) {
+                bytes += 512;
+                bytes += r.getAnnotation(FTree.class).map(t -> 256L * t.numberOfVertices()).orElse(0L);
+            }
+            return bytes;
+        }
+    }
+
+    private static long spectrumBytes(Spectrum<?> spectrum) {
+        return 64 + 16L * spectrum.size();
+    }
+
+    private final class LoadJob extends BasicJJob<I> {
+        private final CompoundContainerId id;
+        private volatile long bytes = 0;
+
+        private LoadJob(CompoundContainerId id) {
+            super(JobType.IO);
+            this.id = id;
+        }
+
+        @Override
+        protected I compute() {
+            final I instance = space.getInstanceFromCompound(id, compoundComponents);
+            if (resultComponents.length > 0)
+                instance.loadFormulaResults(resultComponents);
+            bytes = Math.max(0, weigher.applyAsLong(instance));
+            loadedBytes.addAndGet(bytes);
+            loadedInstances.incrementAndGet();
+            peakBufferedBytes.accumulateAndGet(bufferedBytes.addAndGet(bytes), Math::max);
+            return instance;
+        }
+    }
+}
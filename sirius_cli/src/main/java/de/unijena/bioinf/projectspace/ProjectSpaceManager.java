@@ -87,9 +87,12 @@ public class ProjectSpaceManager<I extends Instance> implements IterableWithSize
         //configure ProjectSpaceProperties
         config.defineProjectSpaceProperty(FilenameFormatter.PSProperty.class, new FilenameFormatter.PSPropertySerializer());
         config.defineProjectSpaceProperty(CompressionFormat.class, new CompressionFormat.Serializer());
+        config.defineProjectSpaceProperty(CompoundTimings.class, new CompoundTimings.Serializer());
         //configure compound container
         config.registerContainer(CompoundContainer.class, new CompoundContainerSerializer());
         config.registerComponent(CompoundContainer.class, ProjectSpaceConfig.class, new ProjectSpaceConfigSerializer());
+        config.registerComponent(CompoundContainer.class, ConfigDigest.class, new ConfigDigestSerializer());
+        config.registerComponent(CompoundContainer.class, FormulaRankIndex.class, new FormulaRankIndexSerializer());
         config.registerComponent(CompoundContainer.class, Ms2Experiment.class, new MsExperimentSerializer());
         //configure formula result
         config.registerContainer(FormulaResult.class, new FormulaResultSerializer());
@@ -109,6 +112,8 @@ public class ProjectSpaceManager<I extends Instance> implements IterableWithSize
 
         config.registerComponent(CompoundContainer.class, ConnectionTable.class, new ConnectionTableSerializer());
         config.registerComponent(CompoundContainer.class, LCMSPeakInformation.class, new LCMSPeakSerializer());
+        config.defineProjectSpaceProperty(SpectralQualityProperty.class, new SpectralQualityProperty.Serializer());
+        config.registerComponent(CompoundContainer.class, SpectralQuality.class, new SpectralQualitySerializer());
 
         return config;
     };
@@ -146,6 +151,17 @@ public class ProjectSpaceManager<I extends Instance> implements IterableWithSize
         return instFac.create(container, this);
     }
 
+    /**
+     * Allocates the id of a new compound for the given experiment, named like {@link #newCompoundWithUniqueId(Ms2Experiment)}
+     * does it, without writing the experiment. Allows to allocate ids in a deterministic order and write the compound
+     * data later, e.g. in parallel.
+     */
+    @NotNull
+    public CompoundContainerId newUniqueCompoundId(Ms2Experiment inputExperiment) {
+        final String name = nameFormatter.apply(inputExperiment);
+        return projectSpace().newUniqueCompoundId(name, (idx) -> namingScheme.apply(idx, name), inputExperiment).orElseThrow(() -> new RuntimeException("Could not create an project space ID for the Instance"));
+    }
+
     public Predicate<CompoundContainerId> getCompoundIdFilter() {
         return compoundIdFilter;
     }
@@ -255,6 +271,36 @@ public class ProjectSpaceManager<I extends Instance> implements IterableWithSize
         };
     }
 
+    /**
+     * Iterates the compounds of this project (respecting the compound id filter) in the order of {@link #iterator()}
+     * while the following compounds and the given components are read ahead on the IO threads.
+     * See {@link PrefetchingInstanceIterator}.
+     *
+     * @param compoundComponents components of the compound to load
+     * @param resultComponents   components of all formula results to load, none if empty
+     */
+    public PrefetchingInstanceIterator<I> prefetchingIterator(@NotNull List<Class<? extends DataAnnotation>> compoundComponents, @NotNull List<Class<? extends DataAnnotation>> resultComponents) {
+        return prefetchingIterator(PrefetchingInstanceIterator.defaultReadAhead(), PrefetchingInstanceIterator.defaultByteBudget(), compoundComponents, resultComponents);
+    }
+
+    public PrefetchingInstanceIterator<I> prefetchingIterator(int readAhead, long byteBudget, @NotNull List<Class<? extends DataAnnotation>> compoundComponents, @NotNull List<Class<? extends DataAnnotation>> resultComponents) {
+        final Iterator<CompoundContainerId> ids = compoundIdFilter != null ? space.filteredIterator(compoundIdFilter) : space.iterator();
+        return new PrefetchingInstanceIterator<>(this, ids, readAhead, byteBudget, PrefetchingInstanceIterator::estimateBytes,
+                (Class<? extends DataAnnotation>[]) compoundComponents.toArray(Class[]::new),
+                (Class<? extends DataAnnotation>[]) resultComponents.toArray(Class[]::new));
+    }
+
+    /**
+     * Ids of the compounds of this project (respecting the compound id filter) in the order of {@link #iterator()}.
+     * Lists the ids that are held in memory, nothing is read from disk.
+     */
+    public List<CompoundContainerId> compoundIds() {
+        final Iterator<CompoundContainerId> it = compoundIdFilter != null ? space.filteredIterator(compoundIdFilter) : space.iterator();
+        final List<CompoundContainerId> ids = new ArrayList<>(space.size());
+        it.forEachRemaining(ids::add);
+        return ids;
+    }
+
     public int size() {
         return space.size();
     }
@@ -363,6 +409,22 @@ public class ProjectSpaceManager<I extends Instance> implements IterableWithSize
         };
     }
 
+    /**
+     * Default summarizers that read the large components (trees, structure candidates, CANOPUS results) themselves
+     * from the given project, only for the results they write, see {@link FormulaResultProjection}.
+     *
+     * @param topK number of formula results and of structure candidates per formula result written to the compound
+     *             summaries, negative for all.
+     */
+    public static Summarizer[] defaultSummarizer(@NotNull ProjectSpaceManager<?> project, int topK) {
+        return new Summarizer[]{
+                new FormulaSummaryWriter(project, topK),
+                new StructureSummaryWriter(project, topK),
+                new CanopusSummaryWriter(project),
+                new MztabMExporter(project)
+        };
+    }
+
     public static List<Class<? extends FormulaScore>> scorePriorities() {
         final LinkedList<Class<? extends FormulaScore>> list = new LinkedList<>();
         list.add(ConfidenceScore.class);
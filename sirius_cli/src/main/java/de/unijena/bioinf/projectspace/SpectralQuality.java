@@ -0,0 +1,93 @@
+/*
+ *  This file is part of the SIRIUS Software for analyzing MS and MS/MS data
+ *
+ *  Copyright (C) 2013-2020 Kai Dührkop, Markus Fleischauer, Marcus Ludwig, Martin A. Hoffman, Fleming Kretschmer, Marvin Meusel and Sebastian Böcker,
+ *  Chair of Bioinformatics, Friedrich-Schiller University.
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Affero General Public License
+ *  as published by the Free Software Foundation; either
+ *  version 3 of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License along with SIRIUS.  If not, see <https://www.gnu.org/licenses/agpl-3.0.txt>
+ */
+
+package de.unijena.bioinf.projectspace;
+
+import de.unijena.bioinf.lcms.LCMSCompoundSummary;
+import de.unijena.bioinf.ms.annotations.DataAnnotation;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Result of the spectral quality assessment of a compound. Stored as a small separate component,
+ * so that quality filters do not need to load spectra or LC-MS traces.
+ */
+public final class SpectralQuality implements DataAnnotation {
+
+    public enum Flag {
+        NoMS1Peak, FewPeaks, LowIntensity, Chimeric, PoorlyExplained
+    }
+
+    @NotNull
+    private final Set<Flag> flags;
+    // null if the compound has no LC-MS peak information
+    @Nullable
+    private final Set<LCMSCompoundSummary.Quality> peakShapeQualities;
+
+    public SpectralQuality(@NotNull Set<Flag> flags, @Nullable Set<LCMSCompoundSummary.Quality> peakShapeQualities) {
+        this.flags = Collections.unmodifiableSet(flags.isEmpty() ? EnumSet.noneOf(Flag.class) : EnumSet.copyOf(flags));
+        this.peakShapeQualities = peakShapeQualities == null ? null : Collections.unmodifiableSet(
+                peakShapeQualities.isEmpty() ? EnumSet.noneOf(LCMSCompoundSummary.Quality.class) : EnumSet.copyOf(peakShapeQualities));
+    }
+
+    @NotNull
+    public Set<Flag> getFlags() {
+        return flags;
+    }
+
+    public boolean is(Flag flag) {
+        return flags.contains(flag);
+    }
+
+    public boolean isGoodQuality() {
+        return flags.isEmpty();
+    }
+
+    /**
+     * @return peak shape quality of every feature (trace set) of the compound, empty Optional if the
+     * compound has no LC-MS peak information.
+     */
+    public Optional<Set<LCMSCompoundSummary.Quality>> getPeakShapeQualities() {
+        return Optional.ofNullable(peakShapeQualities);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof SpectralQuality)) return false;
+        final SpectralQuality that = (SpectralQuality) o;
+        return flags.equals(that.flags) && Objects.equals(peakShapeQualities, that.peakShapeQualities);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * flags.hashCode() + (peakShapeQualities == null ? 0 : peakShapeQualities.hashCode());
+    }
+
+    @Override
+    public String toString() {
+        return "SpectralQuality{flags=" + flags + ", peakShapes=" + peakShapeQualities + '}';
+    }
+}
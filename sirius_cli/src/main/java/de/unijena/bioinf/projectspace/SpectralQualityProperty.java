@@ -0,0 +1,102 @@
+/*
+ *  This file is part of the SIRIUS Software for analyzing MS and MS/MS data
+ *
+ *  Copyright (C) 2013-2020 Kai Dührkop, Markus Fleischauer, Marcus Ludwig, Martin A. Hoffman, Fleming Kretschmer, Marvin Meusel and Sebastian Böcker,
+ *  Chair of Bioinformatics, Friedrich-Schiller University.
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Affero General Public License
+ *  as published by the Free Software Foundation; either
+ *  version 3 of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License along with SIRIUS.  If not, see <https://www.gnu.org/licenses/agpl-3.0.txt>
+ */
+
+package de.unijena.bioinf.projectspace;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.Optional;
+
+/**
+ * Marks a project whose compounds have been assessed by the spectral quality tool and records the settings that
+ * have been used. Quality filters only load the {@link SpectralQuality} components if this property is present.
+ */
+public final class SpectralQualityProperty implements ProjectSpaceProperty {
+    // fixed by the user or estimated from the dataset
+    public final double medianNoiseIntensity;
+    public final double isolationWindowWidth;
+    public final double isolationWindowShift;
+
+    public SpectralQualityProperty(double medianNoiseIntensity, double isolationWindowWidth, double isolationWindowShift) {
+        this.medianNoiseIntensity = medianNoiseIntensity;
+        this.isolationWindowWidth = isolationWindowWidth;
+        this.isolationWindowShift = isolationWindowShift;
+    }
+
+    public static class Serializer implements ComponentSerializer<ProjectSpaceContainerId, ProjectSpaceContainer<ProjectSpaceContainerId>, SpectralQualityProperty> {
+        public static final String SETTINGS = ".spectral_quality.info";
+        private static final String NOISE = "medianNoiseIntensity";
+        private static final String WIDTH = "isolationWindowWidth";
+        private static final String SHIFT = "isolationWindowShift";
+
+        @Override
+        public @Nullable SpectralQualityProperty read(ProjectReader reader, ProjectSpaceContainerId id, ProjectSpaceContainer<ProjectSpaceContainerId> container) throws IOException {
+            if (!reader.exists(SETTINGS))
+                return null;
+            return reader.textFile(SETTINGS, Serializer::read);
+        }
+
+        static SpectralQualityProperty read(BufferedReader br) throws IOException {
+            double noise = Double.NaN, width = Double.NaN, shift = Double.NaN;
+            String line;
+            while ((line = br.readLine()) != null) {
+                final String[] kv = line.split("\t");
+                if (kv.length < 2)
+                    continue;
+                try {
+                    final double value = Double.parseDouble(kv[1].trim());
+                    switch (kv[0]) {
+                        case NOISE:
+                            noise = value;
+                            break;
+                        case WIDTH:
+                            width = value;
+                            break;
+                        case SHIFT:
+                            shift = value;
+                            break;
+                    }
+                } catch (NumberFormatException e) {
+                    // unknown settings stay NaN, the marker itself is what matters
+                }
+            }
+            return new SpectralQualityProperty(noise, width, shift);
+        }
+
+        @Override
+        public void write(ProjectWriter writer, ProjectSpaceContainerId id, ProjectSpaceContainer<ProjectSpaceContainerId> container, Optional<SpectralQualityProperty> optProperty) throws IOException {
+            final SpectralQualityProperty property = optProperty.orElseThrow(() -> new IllegalArgumentException("Could not find SpectralQualityProperty to write."));
+            writer.textFile(SETTINGS, w -> {
+                w.write(NOISE + "\t" + property.medianNoiseIntensity);
+                w.newLine();
+                w.write(WIDTH + "\t" + property.isolationWindowWidth);
+                w.newLine();
+                w.write(SHIFT + "\t" + property.isolationWindowShift);
+                w.newLine();
+            });
+        }
+
+        @Override
+        public void delete(ProjectWriter writer, ProjectSpaceContainerId id) throws IOException {
+            writer.deleteIfExists(SETTINGS);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ *  This file is part of the SIRIUS Software for analyzing MS and MS/MS data
+ *
+ *  Copyright (C) 2013-2020 Kai Dührkop, Markus Fleischauer, Marcus Ludwig, Martin A. Hoffman, Fleming Kretschmer, Marvin Meusel and Sebastian Böcker,
+ *  Chair of Bioinformatics, Friedrich-Schiller University.
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Affero General Public License
+ *  as published by the Free Software Foundation; either
+ *  version 3 of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License along with SIRIUS.  If not, see <https://www.gnu.org/licenses/agpl-3.0.txt>
+ */
+
+package de.unijena.bioinf.projectspace;
+
+import de.unijena.bioinf.lcms.LCMSCompoundSummary;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Stores {@link SpectralQuality} as a tiny key-value text file in the compound directory.
+ */
+public class SpectralQualitySerializer implements ComponentSerializer<CompoundContainerId, CompoundContainer, SpectralQuality> {
+    public static final String SPECTRAL_QUALITY = "spectral_quality.info";
+    private static final String FLAGS = "flags";
+    private static final String PEAK_SHAPES = "peakShapes";
+
+    @Override
+    public @Nullable SpectralQuality read(ProjectReader reader, CompoundContainerId id, CompoundContainer container) throws IOException {
+        if (!reader.exists(SPECTRAL_QUALITY))
+            return null;
+        return reader.textFile(SPECTRAL_QUALITY, SpectralQualitySerializer::read);
+    }
+
+    static SpectralQuality read(BufferedReader br) throws IOException {
+        final Set<SpectralQuality.Flag> flags = EnumSet.noneOf(SpectralQuality.Flag.class);
+        Set<LCMSCompoundSummary.Quality> peakShapes = null;
+        String line;
+        while ((line = br.readLine()) != null) {
+            final int sep = line.indexOf('\t');
+            if (sep < 0)
+                continue;
+            final String key = line.substring(0, sep);
+            final String[] values = line.substring(sep + 1).trim().split(",");
+            if (FLAGS.equals(key)) {
+                for (String v : values)
+                    if (!v.isBlank())
+                        flags.add(SpectralQuality.Flag.valueOf(v.trim()));
+            } else if (PEAK_SHAPES.equals(key)) {
+                peakShapes = EnumSet.noneOf(LCMSCompoundSummary.Quality.class);
+                for (String v : values)
+                    if (!v.isBlank())
+                        peakShapes.add(LCMSCompoundSummary.Quality.valueOf(v.trim()));
+            }
+        }
+        return new SpectralQuality(flags, peakShapes);
+    }
+
+    @Override
+    public void write(ProjectWriter writer, CompoundContainerId id, CompoundContainer container, Optional<SpectralQuality> optQuality) throws IOException {
+        final SpectralQuality quality = optQuality.orElseThrow(() -> new IllegalArgumentException("Could not find SpectralQuality to write for compound: " + id));
+        writer.textFile(SPECTRAL_QUALITY, w -> {
+            w.write(FLAGS + "\t" + quality.getFlags().stream().map(Enum::name).collect(Collectors.joining(",")));
+            w.newLine();
+            if (quality.getPeakShapeQualities().isPresent()) {
+                w.write(PEAK_SHAPES + "\t" + quality.getPeakShapeQualities().get().stream().map(Enum::name).collect(Collectors.joining(",")));
+                w.newLine();
+            }
+        });
+    }
+
+    @Override
+    public void delete(ProjectWriter writer, CompoundContainerId id) throws IOException {
+        writer.deleteIfExists(SPECTRAL_QUALITY);
+    }
+}
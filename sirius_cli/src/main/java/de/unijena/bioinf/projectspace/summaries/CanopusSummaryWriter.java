@@ -32,6 +32,7 @@ import de.unijena.bioinf.projectspace.*;
 import de.unijena.bioinf.sirius.scores.SiriusScore;
 import de.unijena.bioinf.util.Iterators;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
@@ -129,45 +130,82 @@ public class CanopusSummaryWriter implements Summarizer {
     private final List<CanopusSummaryRow> rowsBySiriusScore = new ArrayList<>();
     private final List<CanopusSummaryRow> rowsByCSIScore = new ArrayList<>();
     private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    @Nullable
+    private final ProjectSpaceManager<?> project;
+
+    public CanopusSummaryWriter() {
+        this(null);
+    }
+
+    /**
+     * @param project if given, the summary traversal reads only the scores and the {@link CanopusResult} is read
+     *                for the top hits only, instead of for every formula result.
+     */
+    public CanopusSummaryWriter(@Nullable ProjectSpaceManager<?> project) {
+        this.project = project;
+    }
 
     @Override
     public List<Class<? extends DataAnnotation>> requiredFormulaResultAnnotations() {
-        return List.of(CanopusResult.class);
+        return project == null ? List.of(CanopusResult.class) : List.of(FormulaScoring.class);
     }
 
     @Override
     public void addWriteCompoundSummary(ProjectWriter writer, @NotNull CompoundContainer exp, List<? extends SScored<FormulaResult, ? extends FormulaScore>> results) throws IOException {
         if (!results.isEmpty()) {
-            addToRows(rowsBySiriusScore, FormulaScoring.reRankBy(results, List.of(SiriusScore.class), true));
-            addToRows(rowsByCSIScore, FormulaScoring.reRankBy(results, List.of(TopCSIScore.class), true));
+            final List<SScored<FormulaResult, ? extends FormulaScore>> bySirius = topHits(FormulaScoring.reRankBy(results, List.of(SiriusScore.class), true));
+            final List<SScored<FormulaResult, ? extends FormulaScore>> byCSI = topHits(FormulaScoring.reRankBy(results, List.of(TopCSIScore.class), true));
+            final Map<FormulaResultId, CanopusResult> canopusResults = loadCanopusResults(bySirius, byCSI);
+            addToRows(rowsBySiriusScore, bySirius, canopusResults);
+            addToRows(rowsByCSIScore, byCSI, canopusResults);
         }
 
     }
 
-    private void addToRows(List<CanopusSummaryRow> rows, List<? extends SScored<FormulaResult, ? extends FormulaScore>> results) {
-        // sometimes we have multiple results with same score (adducts!). In this case, we list all of them in
-        // a separate summary file
+    /**
+     * sometimes we have multiple results with same score (adducts!). In this case, we list all of them in
+     * a separate summary file
+     */
+    private static List<SScored<FormulaResult, ? extends FormulaScore>> topHits(List<SScored<FormulaResult, ? extends FormulaScore>> results) {
         int i = 0;
         SScored<FormulaResult, ? extends FormulaScore> hit;
+        do {
+            hit = results.get(i);
+            ++i;
+        } while (i < results.size() && results.get(i).getScoreObject().compareTo(hit.getScoreObject()) >= 0);
+        return results.subList(0, i);
+    }
+
+    @SafeVarargs
+    private Map<FormulaResultId, CanopusResult> loadCanopusResults(List<SScored<FormulaResult, ? extends FormulaScore>>... hits) throws IOException {
+        final Map<FormulaResultId, FormulaResult> toLoad = new LinkedHashMap<>();
+        for (List<SScored<FormulaResult, ? extends FormulaScore>> h : hits)
+            h.forEach(s -> toLoad.putIfAbsent(s.getCandidate().getId(), s.getCandidate()));
+
+        final List<FormulaResult> loaded = project == null ? new ArrayList<>(toLoad.values())
+                : FormulaResultProjection.NONE.read(project.projectSpace(), new ArrayList<>(toLoad.values()), CanopusResult.class);
+        final Map<FormulaResultId, CanopusResult> canopusResults = new HashMap<>();
+        loaded.forEach(r -> r.getAnnotation(CanopusResult.class).ifPresent(cr -> canopusResults.put(r.getId(), cr)));
+        return canopusResults;
+    }
+
+    private void addToRows(List<CanopusSummaryRow> rows, List<SScored<FormulaResult, ? extends FormulaScore>> hits, Map<FormulaResultId, CanopusResult> canopusResults) {
         ArrayList<ProbabilityFingerprint> cfFingerprints = new ArrayList<>();
         ArrayList<ProbabilityFingerprint> npcFingerprints = new ArrayList<>();
         ArrayList<MolecularFormula> formulas = new ArrayList<>(), preForms = new ArrayList<>();
         ArrayList<PrecursorIonType> ionTypes = new ArrayList<>();
-        FormulaResultId id;
-        do {
-            hit = results.get(i);
+        FormulaResultId id = null;
+        for (SScored<FormulaResult, ? extends FormulaScore> hit : hits) {
             id = hit.getCandidate().getId();
-            final Optional<CanopusResult> cr = hit.getCandidate().getAnnotation(CanopusResult.class);
-            final var cid = id;
-            cr.ifPresent(canopusResult -> {
+            final CanopusResult canopusResult = canopusResults.get(id);
+            if (canopusResult != null) {
                 cfFingerprints.add(canopusResult.getCanopusFingerprint());
                 npcFingerprints.add(canopusResult.getNpcFingerprint().orElseThrow());
-                formulas.add(cid.getMolecularFormula());
-                ionTypes.add(cid.getIonType());
-                preForms.add(cid.getPrecursorFormula());
-            });
-            ++i;
-        } while (i < results.size() && results.get(i).getScoreObject().compareTo(hit.getScoreObject()) >= 0);
+                formulas.add(id.getMolecularFormula());
+                ionTypes.add(id.getIonType());
+                preForms.add(id.getPrecursorFormula());
+            }
+        }
         if (cfFingerprints.size() > 0) {
             lock.writeLock().lock();
             try {
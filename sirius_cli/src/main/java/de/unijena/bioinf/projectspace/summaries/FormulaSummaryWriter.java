@@ -38,6 +38,7 @@ import de.unijena.bioinf.sirius.scores.IsotopeScore;
 import de.unijena.bioinf.sirius.scores.SiriusScore;
 import de.unijena.bioinf.sirius.scores.TreeScore;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
 import java.io.Writer;
@@ -59,9 +60,33 @@ public class FormulaSummaryWriter implements Summarizer {
     final LinkedHashMap<Class<? extends FormulaScore>, String> globalTypes = new LinkedHashMap<>();
     final Set<ResultEntry> globalResults = new HashSet<>();
     final Set<ResultEntry> globalResultsAllAdducts = new HashSet<>();
+    @Nullable
+    private final ProjectSpaceManager<?> project;
+    private final int topK;
+
+    public FormulaSummaryWriter() {
+        this(null, -1);
+    }
+
+    /**
+     * @param project if given (and topK is set), the summary traversal reads only the scores and the trees are read
+     *                for the written formula results only.
+     * @param topK    number of formula results per compound written to the compound summaries, negative for all.
+     *                The top results of the project-wide summaries are always included.
+     */
+    public FormulaSummaryWriter(@Nullable ProjectSpaceManager<?> project, int topK) {
+        this.project = project;
+        this.topK = topK;
+    }
+
+    private boolean projected() {
+        return project != null && topK >= 0;
+    }
 
     @Override
     public List<Class<? extends DataAnnotation>> requiredFormulaResultAnnotations() {
+        if (projected())
+            return List.of(FormulaScoring.class);
         return Arrays.asList(
                 FormulaScoring.class,
                 FTree.class
@@ -74,36 +99,45 @@ public class FormulaSummaryWriter implements Summarizer {
         if (formulaResults == null || formulaResults.isEmpty())
             return;
 
-        List<SScored<FormulaResult, ? extends FormulaScore>> results = FormulaScoring.reRankBy(formulaResults, RANKING_SCORES, true);
-        List<SScored<FormulaResult, ? extends FormulaScore>> topResultWithAdducts = extractAllTopScoringResults(results, RANKING_SCORES_SELECTING_TOP1);
-
+        final List<SScored<FormulaResult, ? extends FormulaScore>> results = FormulaScoring.reRankBy(formulaResults, RANKING_SCORES, true);
         if (results.isEmpty())
             return;
 
+        final int numberOfWritten = topK < 0 ? results.size() : Math.min(topK, results.size());
+        // trees of the written results and of all top scoring results for the project-wide summaries
+        final List<SScored<FormulaResult, ? extends FormulaScore>> loaded = projected()
+                ? FormulaResultProjection.NONE.readRanked(project.projectSpace(), results.subList(0, Math.max(numberOfWritten,
+                extractAllTopScoringResults(results, RANKING_SCORES_SELECTING_TOP1).size())), FTree.class)
+                : results;
+        final List<SScored<FormulaResult, ? extends FormulaScore>> written = loaded.subList(0, numberOfWritten);
+        List<SScored<FormulaResult, ? extends FormulaScore>> topResultWithAdducts = extractAllTopScoringResults(loaded, RANKING_SCORES_SELECTING_TOP1);
+
         writer.inDirectory(exp.getId().getDirectoryName(), () -> {
             writer.textFile(SummaryLocations.FORMULA_CANDIDATES, w -> {
                 LinkedHashMap<Class<? extends FormulaScore>, String> types = new LinkedHashMap<>();
 
                 final AtomicBoolean first = new AtomicBoolean(true);
 
-                results.forEach(r -> r.getCandidate().getAnnotation(FormulaScoring.class)
-                        .ifPresent(s -> {
-                            if (first.getAndSet(false)) {
-                                FormulaResult bestResult = topResultWithAdducts.size()>1 ? resolveIonizationOnly(r.getCandidate()) : r.getCandidate();
-                                withLock(() -> this.globalResults.add(ResultEntry.of(bestResult, exp)));
+                for (int i = 0; i < results.size(); i++) {
+                    final FormulaResult candidate = i < loaded.size() ? loaded.get(i).getCandidate() : results.get(i).getCandidate();
+                    candidate.getAnnotation(FormulaScoring.class).ifPresent(s -> {
+                        if (first.getAndSet(false)) {
+                            FormulaResult bestResult = topResultWithAdducts.size()>1 ? resolveIonizationOnly(candidate) : candidate;
+                            withLock(() -> this.globalResults.add(ResultEntry.of(bestResult, exp)));
+                        }
+                        s.annotations().forEach((key, value) -> {
+                            if (value != null && !value.isNa()) {
+                                types.putIfAbsent(value.getClass(), value.name());
+                                withLock(() -> this.globalTypes.putIfAbsent(value.getClass(), value.name()));
                             }
-                            s.annotations().forEach((key, value) -> {
-                                if (value != null && !value.isNa()) {
-                                    types.putIfAbsent(value.getClass(), value.name());
-                                    withLock(() -> this.globalTypes.putIfAbsent(value.getClass(), value.name()));
-                                }
-                            });
-                        }));
+                        });
+                    });
+                }
 
                 //writing stuff
                 types.remove(TopCSIScore.class);
                 types.remove(ConfidenceScore.class);
-                writeCSV(w, types, results.stream().map(s -> new SScored<>(ResultEntry.of(s.getCandidate(),exp),s.getScoreObject())).collect(Collectors.toList()), false);
+                writeCSV(w, types, written.stream().map(s -> new SScored<>(ResultEntry.of(s.getCandidate(),exp),s.getScoreObject())).collect(Collectors.toList()), false);
             });
 
             return true;
@@ -0,0 +1,67 @@
+/*
+ *  This file is part of the SIRIUS Software for analyzing MS and MS/MS data
+ *
+ *  Copyright (C) 2013-2020 Kai Dührkop, Markus Fleischauer, Marcus Ludwig, Martin A. Hoffman, Fleming Kretschmer, Marvin Meusel and Sebastian Böcker,
+ *  Chair of Bioinformatics, Friedrich-Schiller University.
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Affero General Public License
+ *  as published by the Free Software Foundation; either
+ *  version 3 of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License along with SIRIUS.  If not, see <https://www.gnu.org/licenses/agpl-3.0.txt>
+ */
+
+package de.unijena.bioinf.projectspace.summaries;
+
+import de.unijena.bioinf.ChemistryBase.utils.IOFunctions;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Restores the order of items that are produced concurrently and out of order.
+ * Items are passed to the consumer as soon as all items with a smaller index have been passed.
+ * Thread safe, the consumer is only called by one thread at a time.
+ */
+final class OrderedWriter<T> {
+    private final IOFunctions.IOConsumer<T> consumer;
+    private final Map<Integer, T> pending = new HashMap<>();
+    private int next = 0;
+
+    OrderedWriter(IOFunctions.IOConsumer<T> consumer) {
+        this.consumer = consumer;
+    }
+
+    synchronized void write(int index, T item) throws IOException {
+        if (index < next || pending.putIfAbsent(index, item) != null)
+            throw new IllegalArgumentException("Item with index " + index + " has already been written.");
+        T nextItem;
+        while ((nextItem = pending.remove(next)) != null) {
+            ++next;
+            consumer.accept(nextItem);
+        }
+    }
+
+    /**
+     * Writes all pending items in order, even if some items before them are missing.
+     */
+    synchronized void flush() throws IOException {
+        for (Map.Entry<Integer, T> e : new TreeMap<>(pending).entrySet()) {
+            consumer.accept(e.getValue());
+            next = e.getKey() + 1;
+        }
+        pending.clear();
+    }
+
+    synchronized int getNumberOfPendingItems() {
+        return pending.size();
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ *  This file is part of the SIRIUS Software for analyzing MS and MS/MS data
+ *
+ *  Copyright (C) 2013-2020 Kai Dührkop, Markus Fleischauer, Marcus Ludwig, Martin A. Hoffman, Fleming Kretschmer, Marvin Meusel and Sebastian Böcker,
+ *  Chair of Bioinformatics, Friedrich-Schiller University.
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Affero General Public License
+ *  as published by the Free Software Foundation; either
+ *  version 3 of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License along with SIRIUS.  If not, see <https://www.gnu.org/licenses/agpl-3.0.txt>
+ */
+
+package de.unijena.bioinf.projectspace.summaries;
+
+import de.unijena.bioinf.ChemistryBase.algorithm.scoring.FormulaScore;
+import de.unijena.bioinf.ChemistryBase.algorithm.scoring.SScored;
+import de.unijena.bioinf.ChemistryBase.utils.IOFunctions;
+import de.unijena.bioinf.ms.annotations.DataAnnotation;
+import de.unijena.bioinf.ms.frontend.subtools.export.tables.PredictionsOptions;
+import de.unijena.bioinf.ms.frontend.subtools.export.tables.PredictionsTableWriter;
+import de.unijena.bioinf.projectspace.*;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Writes the predictions table of one polarity as part of the project-space summary, so the project does not have to
+ * be traversed again for the predictions. Compounds may be summarized concurrently and in any order, the rows are
+ * written in the given compound order (the iteration order of the project per default), which gives the same table as
+ * {@link de.unijena.bioinf.ms.frontend.subtools.export.tables.ExportPredictionsOptions.ExportPredictionJJob}.
+ * <p>
+ * If a project is given, the summary traversal reads only the scores and the predictions are read for the top hit
+ * of each compound only.
+ * <p>
+ * The table is written to the given output and not via the {@link ProjectWriter} of the summary.
+ */
+public class PredictionsSummaryWriter implements Summarizer {
+    private final PredictionsTableWriter tableWriter;
+    @Nullable
+    private final ProjectSpaceManager<?> project;
+    @Nullable
+    private List<CompoundContainerId> compoundOrderList;
+    private Map<String, Integer> compoundOrder;
+    private final OrderedWriter<PredictionsTableWriter.Row> rows;
+
+    /**
+     * @param compoundOrder compounds in the order their rows should be written. Other compounds are ignored.
+     *                      If null, the order of the given project is used, which is looked up with the first compound.
+     */
+    public PredictionsSummaryWriter(@NotNull PredictionsOptions options, int polarity, @Nullable ProjectSpaceManager<?> project,
+                                    @Nullable List<CompoundContainerId> compoundOrder, @NotNull IOFunctions.IOSupplier<BufferedWriter> outputProvider) {
+        if (compoundOrder == null && project == null)
+            throw new IllegalArgumentException("Either a compound order or a project is needed.");
+        this.tableWriter = new PredictionsTableWriter(options, polarity, outputProvider, null);
+        this.project = project;
+        this.compoundOrderList = compoundOrder;
+        this.rows = new OrderedWriter<>(tableWriter::write);
+    }
+
+    private synchronized Integer indexOf(CompoundContainerId id) {
+        if (compoundOrder == null) {
+            final List<CompoundContainerId> order = compoundOrderList != null ? compoundOrderList : project.compoundIds();
+            compoundOrder = new HashMap<>(order.size());
+            for (CompoundContainerId cid : order)
+                compoundOrder.putIfAbsent(cid.getDirectoryName(), compoundOrder.size());
+            compoundOrderList = null;
+        }
+        return compoundOrder.get(id.getDirectoryName());
+    }
+
+    @Override
+    public List<Class<? extends DataAnnotation>> requiredFormulaResultAnnotations() {
+        if (project != null)
+            return List.of(FormulaScoring.class);
+        final List<Class<? extends DataAnnotation>> comps = new ArrayList<>(Arrays.asList(tableWriter.getComponents()));
+        comps.add(FormulaScoring.class);
+        return comps;
+    }
+
+    @Override
+    public void addWriteCompoundSummary(ProjectWriter writer, @NotNull CompoundContainer compound, List<? extends SScored<FormulaResult, ? extends FormulaScore>> formulaResults) throws IOException {
+        final Integer index = indexOf(compound.getId());
+        if (index == null) {
+            LoggerFactory.getLogger(getClass()).debug("Compound '" + compound.getId() + "' is not part of the predictions table. Skipping.");
+            return;
+        }
+
+        final boolean accepted = tableWriter.accept(PredictionsTableWriter.charge(compound), project);
+
+        FormulaResult top = null;
+        if (accepted && formulaResults != null && !formulaResults.isEmpty()) {
+            // same ranking as Instance.loadTopFormulaResult
+            final List<SScored<FormulaResult, ? extends FormulaScore>> ranked =
+                    FormulaScoring.reRankBy(formulaResults, compound.getId().getRankingScoreTypes(), true);
+            if (!ranked.isEmpty())
+                top = ranked.get(0).getCandidate();
+            if (top != null && project != null)
+                top = FormulaResultProjection.NONE.read(project.projectSpace(), List.of(top), tableWriter.getComponents()).get(0);
+        }
+        rows.write(index, tableWriter.render(compound.getId(), top));
+    }
+
+    @Override
+    public void writeProjectSpaceSummary(ProjectWriter writer) throws IOException {
+        rows.flush();
+        tableWriter.close();
+    }
+
+    public int getNumberOfRows() {
+        return tableWriter.getNumberOfRows();
+    }
+}
@@ -34,6 +34,7 @@ import de.unijena.bioinf.projectspace.*;
 import de.unijena.bioinf.sirius.scores.SiriusScore;
 import gnu.trove.map.hash.TIntIntHashMap;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.BufferedWriter;
 import java.io.IOException;
@@ -47,9 +48,33 @@ public class StructureSummaryWriter implements Summarizer {
     private final Lock lock = new ReentrantLock();
     private final List<Hit> compoundTopHits = new ArrayList<>();
     private final Map<Hit, List<Hit>> compoundTopHitsAdducts = new HashMap<>();
+    @Nullable
+    private final ProjectSpaceManager<?> project;
+    private final int topK;
+
+    public StructureSummaryWriter() {
+        this(null, -1);
+    }
+
+    /**
+     * @param project if given (and topK is set), the summary traversal reads only the scores and the structure
+     *                candidates are read with a {@link FormulaResultProjection}, which parses only the top k candidates.
+     * @param topK    number of structure candidates per formula result written to the compound summaries,
+     *                negative for all.
+     */
+    public StructureSummaryWriter(@Nullable ProjectSpaceManager<?> project, int topK) {
+        this.project = project;
+        this.topK = topK;
+    }
+
+    private boolean projected() {
+        return project != null && topK >= 0;
+    }
 
     @Override
     public List<Class<? extends DataAnnotation>> requiredFormulaResultAnnotations() {
+        if (projected())
+            return List.of(FormulaScoring.class);
         return Arrays.asList(
                 FormulaScoring.class,
                 FBCandidates.class
@@ -64,8 +89,12 @@ public class StructureSummaryWriter implements Summarizer {
 
             final List<Hit> topHits = new ArrayList<>();
 
-            final List<SScored<FormulaResult, ? extends FormulaScore>> results =
-                    FormulaScoring.reRankBy(formulaResults, List.of(SiriusScore.class), true); //sorted by SiriusScore to detect adducts
+            // candidates that are already loaded by the traversal (for another summarizer) are truncated below
+            final List<SScored<FormulaResult, ? extends FormulaScore>> results = projected()
+                    && formulaResults.stream().noneMatch(r -> r.getCandidate().hasAnnotation(FBCandidates.class))
+                    ? FormulaResultProjection.NONE.withTopStructures(topK).readRanked(project.projectSpace(),
+                    FormulaScoring.reRankBy(formulaResults, List.of(SiriusScore.class), true), FBCandidates.class)
+                    : FormulaScoring.reRankBy(formulaResults, List.of(SiriusScore.class), true); //sorted by SiriusScore to detect adducts
 
             if (results.stream().anyMatch(c -> c.getCandidate().hasAnnotation(FBCandidates.class))) {
                 writer.inDirectory(exp.getId().getDirectoryName(), () -> {
@@ -85,7 +114,8 @@ public class StructureSummaryWriter implements Summarizer {
                             preFormula = result.getCandidate().getId().getPrecursorFormula();
 
                             if (result.getCandidate().hasAnnotation(FBCandidates.class)) {
-                                final List<Scored<CompoundCandidate>> frs = result.getCandidate().getAnnotationOrThrow(FBCandidates.class).getResults();
+                                final List<Scored<CompoundCandidate>> allFrs = result.getCandidate().getAnnotationOrThrow(FBCandidates.class).getResults();
+                                final List<Scored<CompoundCandidate>> frs = topK >= 0 && allFrs.size() > topK ? allFrs.subList(0, topK) : allFrs;
 
                                 //create buffer
                                 final StringWriter w = new StringWriter(128);
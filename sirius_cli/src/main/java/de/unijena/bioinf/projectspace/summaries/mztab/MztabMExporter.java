@@ -41,7 +41,9 @@ import de.unijena.bioinf.fingerid.ConfidenceScore;
 import de.unijena.bioinf.fingerid.blast.FBCandidates;
 import de.unijena.bioinf.fingerid.blast.TopCSIScore;
 import de.unijena.bioinf.ms.annotations.DataAnnotation;
+import de.unijena.bioinf.projectspace.FormulaResultProjection;
 import de.unijena.bioinf.projectspace.FormulaScoring;
+import de.unijena.bioinf.projectspace.ProjectSpaceManager;
 import de.unijena.bioinf.projectspace.ProjectWriter;
 import de.unijena.bioinf.projectspace.Summarizer;
 import de.unijena.bioinf.projectspace.fingerid.FingerIdLocations;
@@ -71,6 +73,8 @@ public class MztabMExporter implements Summarizer {
     private int smfID = 0;
     private int smeID = 0;
     private final MzTab mztab;
+    @Nullable
+    private final ProjectSpaceManager<?> project;
 
     private boolean fingerID = false;
 
@@ -78,6 +82,15 @@ public class MztabMExporter implements Summarizer {
 
 
     public MztabMExporter() {
+        this(null);
+    }
+
+    /**
+     * @param project if given, the summary traversal reads only the scores and the tree and the best structure
+     *                candidate are read for the exported formula result only, see {@link FormulaResultProjection}.
+     */
+    public MztabMExporter(@Nullable ProjectSpaceManager<?> project) {
+        this.project = project;
         mztab = new MzTab();
         mztab.setMetadata(
                 buildMTDBlock()
@@ -129,6 +142,7 @@ public class MztabMExporter implements Summarizer {
                         .filter(s -> s.getCandidate().getAnnotationOrThrow(FormulaScoring.class).hasAnnotation(TopCSIScore.class))
                         .map(s -> new SScored<>(s.getCandidate(), s.getCandidate().getAnnotationOrThrow(FormulaScoring.class).getAnnotationOrThrow(TopCSIScore.class)))
                         .sorted().findFirst().map(SScored::getCandidate).orElseThrow();
+                bestHitSource = readBestHitSource(bestHitSource);
 
                 final FormulaResult finalBestHitSource = bestHitSource;
                 bestHit = finalBestHitSource.getAnnotation(FBCandidates.class).map(can -> can.getResults().get(0)).orElseGet(
@@ -140,6 +154,8 @@ public class MztabMExporter implements Summarizer {
 
                 //rerank by structure hit
                 results.stream().map(SScored::getCandidate).collect(Collectors.toList()).indexOf(bestHitSource);
+            } else {
+                bestHitSource = readBestHitSource(bestHitSource);
             }
 
             final SmallMoleculeSummary smlItem = buildSMLItem(exp, bestHitSource, bestHit);
@@ -203,9 +219,18 @@ public class MztabMExporter implements Summarizer {
 
     @Override
     public List<Class<? extends DataAnnotation>> requiredFormulaResultAnnotations() {
+        if (project != null)
+            return List.of(FormulaScoring.class);
         return Arrays.asList(FormulaScoring.class, FTree.class, FBCandidates.class);
     }
 
+    private FormulaResult readBestHitSource(FormulaResult bestHitSource) throws IOException {
+        if (project == null)
+            return bestHitSource;
+        return FormulaResultProjection.NONE.withTopStructures(1)
+                .read(project.projectSpace(), List.of(bestHitSource), FTree.class, FBCandidates.class).get(0);
+    }
+
 
 
     private SmallMoleculeEvidence buildSiriusSMEItem(@NotNull final Ms2Experiment er, @NotNull final FormulaResult bestHitSource, @NotNull final SmallMoleculeFeature smfItem) {
@@ -0,0 +1,181 @@
+package de.unijena.bioinf.ms.frontend.subtools.chemical_noise;
+
+import de.unijena.bioinf.ChemistryBase.jobs.SiriusJobs;
+import de.unijena.bioinf.ChemistryBase.ms.Deviation;
+import de.unijena.bioinf.ChemistryBase.ms.Peak;
+import de.unijena.bioinf.ChemistryBase.ms.utils.SimpleMutableSpectrum;
+import de.unijena.bioinf.ChemistryBase.ms.utils.SimpleSpectrum;
+import de.unijena.bioinf.ChemistryBase.ms.utils.Spectrums;
+import gnu.trove.list.array.TDoubleArrayList;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.zip.Inflater;
+
+import static org.junit.Assert.*;
+
+public class ChemicalNoiseDetectorTest {
+    private static final double[] NOISE = {149.02332, 279.15909, 391.28429, 445.12003, 536.16537};
+    private static final double BIN_SIZE = new Deviation(5).absoluteFor(200);
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testMatchesInMemoryImplementation() throws Exception {
+        for (SyntheticMzML.Encoding encoding : SyntheticMzML.Encoding.values()) {
+            final Path file = tmp.newFile(encoding + ".mzML").toPath();
+            SyntheticMzML.write(file, encoding.ordinal(), 300, 50, NOISE, encoding);
+
+            final double[] expected = referenceTooFrequentMasses(List.of(file), BIN_SIZE, 0.01, 0.2);
+            final double[] actual = new ChemicalNoiseDetector(BIN_SIZE, 0.01, 0.2)
+                    .getTooFrequentMasses(List.of(file), SiriusJobs.getGlobalJobManager());
+
+            assertTrue(encoding + ": noise not detected", expected.length >= NOISE.length);
+            assertArrayEquals(encoding.toString(), expected, actual, 0d);
+        }
+    }
+
+    @Test
+    public void testMultipleFilesAreCountedTogether() throws Exception {
+        final List<Path> files = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            final Path file = tmp.newFile("run" + i + ".mzML").toPath();
+            SyntheticMzML.write(file, 100 + i, 90, 40, NOISE, SyntheticMzML.Encoding.values()[i % 3]);
+            files.add(file);
+        }
+        final double[] expected = referenceTooFrequentMasses(files, BIN_SIZE, 0.01, 0.2);
+        final double[] actual = new ChemicalNoiseDetector(BIN_SIZE, 0.01, 0.2)
+                .getTooFrequentMasses(files, SiriusJobs.getGlobalJobManager());
+        assertArrayEquals(expected, actual, 0d);
+    }
+
+    @Test
+    public void testOnlyMs1SpectraAreReported() throws Exception {
+        final Path file = tmp.newFile("levels.mzML").toPath();
+        SyntheticMzML.write(file, 7, 30, 10, NOISE, SyntheticMzML.Encoding.FLOAT64_ZLIB);
+        try (MzMLScanReader reader = new MzMLScanReader(file)) {
+            assertEquals(10, reader.readSpectra(1, (id, mz, intensities, length) -> assertEquals(10, length)));
+        }
+        try (MzMLScanReader reader = new MzMLScanReader(file)) {
+            assertEquals(30, reader.readSpectra(0, (id, mz, intensities, length) -> {}));
+        }
+    }
+
+    /**
+     * Port of the JAXB based MzMLUtils#getTooFrequentMasses (sirius_utils) that keeps all spectra of all files in memory.
+     * The jmzml model is not on the classpath of this module, so the documents are loaded via DOM instead.
+     */
+    private static double[] referenceTooFrequentMasses(List<Path> files, double mzBinSize, double minRelIntensity, double minOccurrenceRate) throws Exception {
+        final List<double[][]> ms1 = new ArrayList<>();
+        for (Path file : files)
+            ms1.addAll(readMs1(file));
+
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for (double[][] spec : ms1) {
+            for (double d : spec[0]) {
+                if (d < min) min = d;
+                if (d > max) max = d;
+            }
+        }
+
+        final int[] bins = new int[(int) Math.ceil((max - min) / mzBinSize)];
+        for (double[][] spec : ms1) {
+            SimpleMutableSpectrum s = new SimpleMutableSpectrum(new SimpleSpectrum(spec[0], spec[1]));
+            Spectrums.normalizeToMax(s, 1d);
+            for (Peak peak : s) {
+                if (peak.getIntensity() > minRelIntensity)
+                    ++bins[(int) Math.floor((peak.getMass() - min) / mzBinSize)];
+            }
+        }
+
+        TDoubleArrayList frequentMasses = new TDoubleArrayList();
+        for (int i = 0; i < bins.length; i++) {
+            if (bins[i] >= minOccurrenceRate * ms1.size())
+                frequentMasses.add(min + mzBinSize * i + mzBinSize / 2);
+        }
+        return frequentMasses.toArray();
+    }
+
+    private static List<double[][]> readMs1(Path file) throws Exception {
+        final DocumentBuilderFactory f = DocumentBuilderFactory.newInstance();
+        f.setNamespaceAware(true);
+        final Document doc = f.newDocumentBuilder().parse(file.toFile());
+
+        final Map<String, List<Element>> groups = new HashMap<>();
+        final NodeList groupNodes = doc.getElementsByTagNameNS("*", "referenceableParamGroup");
+        for (int i = 0; i < groupNodes.getLength(); i++) {
+            final Element g = (Element) groupNodes.item(i);
+            groups.put(g.getAttribute("id"), children(g, "cvParam"));
+        }
+
+        final List<double[][]> spectra = new ArrayList<>();
+        final NodeList spectrumNodes = doc.getElementsByTagNameNS("*", "spectrum");
+        for (int i = 0; i < spectrumNodes.getLength(); i++) {
+            final Element spectrum = (Element) spectrumNodes.item(i);
+            final Map<String, String> params = params(spectrum, groups);
+            if (!"1".equals(params.get("MS:1000511")))
+                continue;
+            double[] mz = null, intensities = null;
+            for (Element array : children(children(spectrum, "binaryDataArrayList").get(0), "binaryDataArray")) {
+                final Map<String, String> p = params(array, groups);
+                final double[] values = decode(children(array, "binary").get(0).getTextContent(), p);
+                if (p.containsKey("MS:1000514"))
+                    mz = values;
+                else if (p.containsKey("MS:1000515"))
+                    intensities = values;
+            }
+            spectra.add(new double[][]{mz, intensities});
+        }
+        return spectra;
+    }
+
+    private static Map<String, String> params(Element parent, Map<String, List<Element>> groups) {
+        final Map<String, String> params = new HashMap<>();
+        for (Element ref : children(parent, "referenceableParamGroupRef"))
+            groups.get(ref.getAttribute("ref")).forEach(cv -> params.put(cv.getAttribute("accession"), cv.getAttribute("value")));
+        for (Element cv : children(parent, "cvParam"))
+            params.put(cv.getAttribute("accession"), cv.getAttribute("value"));
+        return params;
+    }
+
+    private static List<Element> children(Element parent, String name) {
+        final List<Element> out = new ArrayList<>();
+        for (Node n = parent.getFirstChild(); n != null; n = n.getNextSibling())
+            if (n instanceof Element && name.equals(n.getLocalName()))
+                out.add((Element) n);
+        return out;
+    }
+
+    private static double[] decode(String base64, Map<String, String> params) throws Exception {
+        byte[] bytes = Base64.getMimeDecoder().decode(base64.trim());
+        if (params.containsKey("MS:1000574")) {
+            final Inflater inflater = new Inflater();
+            inflater.setInput(bytes);
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[8192];
+            while (!inflater.finished())
+                out.write(buffer, 0, inflater.inflate(buffer));
+            inflater.end();
+            bytes = out.toByteArray();
+        }
+        final ByteBuffer b = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        final boolean float32 = params.containsKey("MS:1000521");
+        final double[] values = new double[bytes.length / (float32 ? 4 : 8)];
+        for (int i = 0; i < values.length; i++)
+            values[i] = float32 ? b.getFloat() : b.getDouble();
+        return values;
+    }
+}
@@ -0,0 +1,74 @@
+package de.unijena.bioinf.ms.frontend.subtools.chemical_noise;
+
+import de.unijena.bioinf.ChemistryBase.jobs.SiriusJobs;
+import de.unijena.bioinf.ChemistryBase.ms.Deviation;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Generates large synthetic mzML files and reports runtime and peak heap usage of the streaming chemical noise detection.
+ * The peak heap should stay far below the total input size.
+ * Usage: ChemicalNoiseMemoryBenchmark [files] [spectra per file] [peaks per spectrum]
+ */
+public class ChemicalNoiseMemoryBenchmark {
+    public static void main(String[] args) throws Exception {
+        final int numberOfFiles = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        final int spectra = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+        final int peaks = args.length > 2 ? Integer.parseInt(args[2]) : 500;
+        final double[] noise = {149.02332, 279.15909, 391.28429, 445.12003, 536.16537};
+
+        final Path dir = Files.createTempDirectory("chemical-noise-benchmark");
+        try {
+            final List<Path> files = new ArrayList<>();
+            long bytes = 0;
+            for (int i = 0; i < numberOfFiles; i++) {
+                final Path file = dir.resolve("run" + i + ".mzML");
+                SyntheticMzML.write(file, i, spectra, peaks, noise, SyntheticMzML.Encoding.values()[i % 3]);
+                bytes += Files.size(file);
+                files.add(file);
+            }
+            System.out.printf("input: %d files, %.1f MB%n", numberOfFiles, bytes / 1e6);
+
+            final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+            final AtomicLong peakHeap = new AtomicLong();
+            final AtomicBoolean running = new AtomicBoolean(true);
+            System.gc();
+            final long baseline = memory.getHeapMemoryUsage().getUsed();
+            final Thread sampler = new Thread(() -> {
+                while (running.get()) {
+                    peakHeap.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max);
+                    try {
+                        Thread.sleep(5);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            });
+            sampler.setDaemon(true);
+            sampler.start();
+
+            final long start = System.nanoTime();
+            final double[] masses = new ChemicalNoiseDetector(new Deviation(5).absoluteFor(200), 0.01, 0.2)
+                    .getTooFrequentMasses(files, SiriusJobs.getGlobalJobManager());
+            final double seconds = (System.nanoTime() - start) / 1e9;
+            running.set(false);
+            sampler.join();
+
+            System.out.printf("found %d frequent masses in %.2f s (%.1f MB/s)%n", masses.length, seconds, bytes / 1e6 / seconds);
+            System.out.printf("peak heap above baseline: %.1f MB%n", (peakHeap.get() - baseline) / 1e6);
+        } finally {
+            try (Stream<Path> s = Files.walk(dir)) {
+                s.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+            }
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package de.unijena.bioinf.ms.frontend.subtools.chemical_noise;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Random;
+import java.util.zip.Deflater;
+
+/**
+ * Writes synthetic LC-MS/MS runs in mzML format. Spectra are written one by one, so also very large files
+ * can be generated without holding them in memory.
+ */
+class SyntheticMzML {
+    enum Encoding {
+        FLOAT64_ZLIB, FLOAT32, FLOAT64_PARAM_GROUPS
+    }
+
+    /**
+     * @param noiseMasses masses that are contained in most of the MS1 spectra (chemical noise)
+     */
+    static void write(Path file, long seed, int numberOfSpectra, int peaksPerSpectrum, double[] noiseMasses, Encoding encoding) throws IOException {
+        final Random r = new Random(seed);
+        try (BufferedWriter w = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            w.write("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n");
+            w.write("<indexedmzML xmlns=\"http://psi.hupo.org/ms/mzml\">\n<mzML xmlns=\"http://psi.hupo.org/ms/mzml\" version=\"1.1.0\" id=\"synthetic\">\n");
+            if (encoding == Encoding.FLOAT64_PARAM_GROUPS) {
+                w.write("<referenceableParamGroupList count=\"2\">\n");
+                w.write("<referenceableParamGroup id=\"mzArray\">" + cv("MS:1000514", "m/z array", "") + cv("MS:1000523", "64-bit float", "") + cv("MS:1000576", "no compression", "") + "</referenceableParamGroup>\n");
+                w.write("<referenceableParamGroup id=\"intensityArray\">" + cv("MS:1000515", "intensity array", "") + cv("MS:1000523", "64-bit float", "") + cv("MS:1000576", "no compression", "") + "</referenceableParamGroup>\n");
+                w.write("</referenceableParamGroupList>\n");
+            }
+            w.write("<run id=\"run\">\n<spectrumList count=\"" + numberOfSpectra + "\">\n");
+            for (int s = 0; s < numberOfSpectra; s++) {
+                final int msLevel = s % 3 == 0 ? 1 : 2;
+                final double[] mz = new double[peaksPerSpectrum];
+                final double[] intensities = new double[peaksPerSpectrum];
+                for (int i = 0; i < peaksPerSpectrum; i++) {
+                    mz[i] = 50 + r.nextDouble() * 950;
+                    intensities[i] = r.nextDouble() * 1e5;
+                }
+                if (msLevel == 1) {
+                    for (int i = 0; i < noiseMasses.length && i < peaksPerSpectrum; i++) {
+                        if (r.nextDouble() < 0.9) {
+                            mz[i] = noiseMasses[i] + r.nextGaussian() * 1e-5;
+                            intensities[i] = 1e4 + r.nextDouble() * 1e5;
+                        }
+                    }
+                }
+                Arrays.sort(mz);
+
+                w.write("<spectrum index=\"" + s + "\" id=\"scan=" + (s + 1) + "\" defaultArrayLength=\"" + peaksPerSpectrum + "\">\n");
+                w.write(cv("MS:1000511", "ms level", String.valueOf(msLevel)));
+                w.write("<scanList count=\"1\"><scan>" + cv("MS:1000016", "scan start time", String.valueOf(s * 0.1)) + "</scan></scanList>\n");
+                w.write("<binaryDataArrayList count=\"2\">\n");
+                writeArray(w, mz, true, encoding);
+                writeArray(w, intensities, false, encoding);
+                w.write("</binaryDataArrayList>\n</spectrum>\n");
+            }
+            w.write("</spectrumList>\n</run>\n</mzML>\n</indexedmzML>\n");
+        }
+    }
+
+    private static void writeArray(BufferedWriter w, double[] values, boolean mz, Encoding encoding) throws IOException {
+        final byte[] raw;
+        if (encoding == Encoding.FLOAT32) {
+            final ByteBuffer b = ByteBuffer.allocate(values.length * 4).order(ByteOrder.LITTLE_ENDIAN);
+            for (double v : values) b.putFloat((float) v);
+            raw = b.array();
+        } else {
+            final ByteBuffer b = ByteBuffer.allocate(values.length * 8).order(ByteOrder.LITTLE_ENDIAN);
+            for (double v : values) b.putDouble(v);
+            raw = b.array();
+        }
+        final byte[] data = encoding == Encoding.FLOAT64_ZLIB ? deflate(raw) : raw;
+        final String base64 = Base64.getEncoder().encodeToString(data);
+
+        w.write("<binaryDataArray encodedLength=\"" + base64.length() + "\">\n");
+        switch (encoding) {
+            case FLOAT64_ZLIB:
+                w.write(cv("MS:1000523", "64-bit float", "") + cv("MS:1000574", "zlib compression", ""));
+                w.write(mz ? cv("MS:1000514", "m/z array", "") : cv("MS:1000515", "intensity array", ""));
+                break;
+            case FLOAT32:
+                w.write(cv("MS:1000521", "32-bit float", "") + cv("MS:1000576", "no compression", ""));
+                w.write(mz ? cv("MS:1000514", "m/z array", "") : cv("MS:1000515", "intensity array", ""));
+                break;
+            case FLOAT64_PARAM_GROUPS:
+                w.write("<referenceableParamGroupRef ref=\"" + (mz ? "mzArray" : "intensityArray") + "\"/>\n");
+                break;
+        }
+        w.write("<binary>" + base64 + "</binary>\n</binaryDataArray>\n");
+    }
+
+    private static byte[] deflate(byte[] raw) {
+        final Deflater deflater = new Deflater();
+        deflater.setInput(raw);
+        deflater.finish();
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length + 64);
+        final byte[] buffer = new byte[8192];
+        while (!deflater.finished())
+            out.write(buffer, 0, deflater.deflate(buffer));
+        deflater.end();
+        return out.toByteArray();
+    }
+
+    private static String cv(String accession, String name, String value) {
+        return "<cvParam cvRef=\"MS\" accession=\"" + accession + "\" name=\"" + name + "\" value=\"" + value + "\"/>\n";
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ *  This file is part of the SIRIUS Software for analyzing MS and MS/MS data
+ *
+ *  Copyright (C) 2013-2020 Kai Dührkop, Markus Fleischauer, Marcus Ludwig, Martin A. Hoffman, Fleming Kretschmer, Marvin Meusel and Sebastian Böcker,
+ *  Chair of Bioinformatics, Friedrich-Schiller University.
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Affero General Public License
+ *  as published by the Free Software Foundation; either
+ *  version 3 of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License along with SIRIUS.  If not, see <https://www.gnu.org/licenses/agpl-3.0.txt>
+ */
+
+package de.unijena.bioinf.ms.frontend.subtools.config;
+
+import de.unijena.bioinf.ChemistryBase.ms.MutableMs2Experiment;
+import de.unijena.bioinf.ms.annotations.Ms2ExperimentAnnotation;
+import de.unijena.bioinf.ms.properties.ParameterConfig;
+
+/**
+ * Compares the per compound config phase of a project re-run, with rebuilding the layered config of every compound
+ * (old behaviour) vs. the digest check with a shared config (unchanged compounds). The project-space writes saved by
+ * the unchanged path (experiment and config file per compound) are reported but not executed.
+ * Usage: AddConfigsBenchmark [compounds]
+ */
+public class AddConfigsBenchmark {
+    public static void main(String[] args) {
+        final int numberOfCompounds = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        final ParameterConfig computeConfig = ConfigDigestsTest.layered("orbitrap");
+        final ParameterConfig stored = ConfigDigestsTest.layered("orbitrap");
+        final String computeDigest = ConfigDigests.digest(computeConfig);
+        final String storedSourceDigest = ConfigDigests.combine(computeDigest, null);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < numberOfCompounds; i++) {
+            ParameterConfig conf = stored.newIndependentInstance(DefaultParameterConfigLoader.CLI_CONFIG_NAME);
+            conf = conf.newIndependentInstance(computeConfig, true);
+            conf = conf.newIndependentInstance("RUNTIME_CONFIG", true);
+            new MutableMs2Experiment().setAnnotationsFrom(conf, Ms2ExperimentAnnotation.class);
+        }
+        final double rebuildSeconds = (System.nanoTime() - start) / 1e9;
+
+        start = System.nanoTime();
+        for (int i = 0; i < numberOfCompounds; i++) {
+            if (!storedSourceDigest.equals(ConfigDigests.combine(computeDigest, null)))
+                throw new IllegalStateException("Digest mismatch.");
+            final ParameterConfig conf = stored.newIndependentInstance("RUNTIME_CONFIG", true);
+            new MutableMs2Experiment().setAnnotationsFrom(conf, Ms2ExperimentAnnotation.class);
+        }
+        final double unchangedSeconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("%d compounds: rebuild %.2fs (+%d file writes), unchanged %.2fs (0 file writes)%n",
+                numberOfCompounds, rebuildSeconds, 2 * numberOfCompounds, unchangedSeconds);
+    }
+}
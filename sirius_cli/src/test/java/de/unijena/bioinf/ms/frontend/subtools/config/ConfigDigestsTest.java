@@ -0,0 +1,89 @@
+/*
+ *  This file is part of the SIRIUS Software for analyzing MS and MS/MS data
+ *
+ *  Copyright (C) 2013-2020 Kai Dührkop, Markus Fleischauer, Marcus Ludwig, Martin A. Hoffman, Fleming Kretschmer, Marvin Meusel and Sebastian Böcker,
+ *  Chair of Bioinformatics, Friedrich-Schiller University.
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Affero General Public License
+ *  as published by the Free Software Foundation; either
+ *  version 3 of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License along with SIRIUS.  If not, see <https://www.gnu.org/licenses/agpl-3.0.txt>
+ */
+
+package de.unijena.bioinf.ms.frontend.subtools.config;
+
+import de.unijena.bioinf.ChemistryBase.ms.MutableMs2Experiment;
+import de.unijena.bioinf.ms.annotations.Ms2ExperimentAnnotation;
+import de.unijena.bioinf.ms.properties.ParameterConfig;
+import de.unijena.bioinf.ms.properties.PropertyManager;
+import de.unijena.bioinf.ms.properties.SiriusConfigUtils;
+import org.apache.commons.configuration2.PropertiesConfiguration;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class ConfigDigestsTest {
+    private static final String LAYER = "TEST_CONFIG";
+
+    @Test
+    public void testDigestIsStable() {
+        final ParameterConfig a = layered("orbitrap");
+        final ParameterConfig b = layered("orbitrap");
+        assertEquals(ConfigDigests.digest(a), ConfigDigests.digest(b));
+        assertEquals(ConfigDigests.digestLocal(a), ConfigDigests.digestLocal(b));
+        // runtime layers do not contribute to the digest
+        assertEquals(ConfigDigests.digest(a), ConfigDigests.digest(a.newIndependentInstance("RUNTIME_CONFIG", true)));
+    }
+
+    @Test
+    public void testDigestDetectsChanges() {
+        final ParameterConfig orbi = layered("orbitrap");
+        final ParameterConfig qtof = layered("qtof");
+        assertEquals("orbitrap", orbi.getConfigValue("AlgorithmProfile"));
+        assertEquals("qtof", qtof.getConfigValue("AlgorithmProfile"));
+        assertNotEquals(ConfigDigests.digest(orbi), ConfigDigests.digest(qtof));
+        assertNotEquals(ConfigDigests.digestLocal(orbi), ConfigDigests.digestLocal(qtof));
+        assertNotEquals(ConfigDigests.combine("a", "b"), ConfigDigests.combine("ab"));
+        assertNotEquals(ConfigDigests.combine("a", null), ConfigDigests.combine("a"));
+    }
+
+    @Test
+    public void testAnnotationsOfSharedConfigAreIdentical() {
+        // a rebuilt config and a shared (interned) config with the same digest must produce the same annotations
+        final ParameterConfig rebuilt = layered("orbitrap").newIndependentInstance("RUNTIME_CONFIG", true);
+        final ParameterConfig shared = layered("orbitrap");
+        final ParameterConfig fromShared = shared.newIndependentInstance("RUNTIME_CONFIG", true);
+        assertEquals(ConfigDigests.digest(rebuilt), ConfigDigests.digest(fromShared));
+
+        rebuilt.getConfigKeys().forEachRemaining(key -> assertEquals(key, rebuilt.getConfigValue(key), fromShared.getConfigValue(key)));
+
+        final MutableMs2Experiment e1 = new MutableMs2Experiment(), e2 = new MutableMs2Experiment();
+        e1.setAnnotationsFrom(rebuilt, Ms2ExperimentAnnotation.class);
+        e2.setAnnotationsFrom(fromShared, Ms2ExperimentAnnotation.class);
+        assertFalse(annotationTypes(e1).isEmpty());
+        assertEquals(annotationTypes(e1), annotationTypes(e2));
+    }
+
+    private static Set<Class<?>> annotationTypes(MutableMs2Experiment exp) {
+        final Set<Class<?>> types = new HashSet<>();
+        exp.annotations().forEach((k, v) -> types.add(k));
+        return types;
+    }
+
+    static ParameterConfig layered(String profile) {
+        final PropertiesConfiguration layer = SiriusConfigUtils.newConfiguration();
+        layer.setProperty(PropertyManager.DEFAULTS.configRoot + ".AlgorithmProfile", profile);
+        final ParameterConfig config = PropertyManager.DEFAULTS.newIndependentInstance(LAYER);
+        config.updateConfig(LAYER, layer);
+        return config;
+    }
+}
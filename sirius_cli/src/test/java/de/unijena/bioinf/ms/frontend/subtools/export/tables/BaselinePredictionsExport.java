@@ -0,0 +1,208 @@
+/*
+ *
+ *  This file is part of the SIRIUS library for analyzing MS and MS/MS data
+ *
+ *  Copyright (C) 2013-2020 Kai Dührkop, Markus Fleischauer, Marcus Ludwig, Martin A. Hoffman, Fleming Kretschmer and Sebastian Böcker,
+ *  Chair of Bioinformatics, Friedrich-Schilller University.
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 3 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License along with SIRIUS. If not, see <https://www.gnu.org/licenses/lgpl-3.0.txt>
+ */
+
+package de.unijena.bioinf.ms.frontend.subtools.export.tables;
+
+import de.unijena.bioinf.ChemistryBase.fp.*;
+import de.unijena.bioinf.canopus.CanopusResult;
+import de.unijena.bioinf.fingerid.FingerprintResult;
+import de.unijena.bioinf.ms.annotations.DataAnnotation;
+import de.unijena.bioinf.projectspace.FormulaResult;
+import de.unijena.bioinf.projectspace.Instance;
+import de.unijena.bioinf.projectspace.canopus.CanopusCfDataProperty;
+import de.unijena.bioinf.projectspace.canopus.CanopusNpcDataProperty;
+import de.unijena.bioinf.projectspace.fingerid.FingerIdDataProperty;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The sequential prediction export as it was before the single pass export: collects all instances of the polarity
+ * (loading every experiment), then writes one row after another and formats with {@link DecimalFormat}.
+ * Kept as reference for the tests and the benchmark of {@link ExportPredictionsOptions.ExportPredictionJJob}.
+ */
+class BaselinePredictionsExport {
+    private enum X {
+        CLASSYFIRE, NPC, FP, PUBCHEM, MACCS;
+    }
+
+    private final PredictionsOptions options;
+    private final DecimalFormat decimalFormat;
+    private final Class[] components;
+    private final MaskedFingerprintVersion[] versions = new MaskedFingerprintVersion[X.values().length];
+
+    /**
+     * @param digits value of the --digits option, -1 for full length values.
+     */
+    BaselinePredictionsExport(PredictionsOptions options, int digits) {
+        this.options = options;
+        if (digits == 0) {
+            decimalFormat = new DecimalFormat("0");
+        } else if (digits > 0) {
+            decimalFormat = new DecimalFormat("0." + "#".repeat(digits));
+        } else {
+            decimalFormat = null;
+        }
+        ArrayList<Class<? extends DataAnnotation>> comps = new ArrayList<>();
+        if (options.classyfire || options.npc) comps.add(CanopusResult.class);
+        if (options.fingerprints || options.pubchem || options.maccs) comps.add(FingerprintResult.class);
+        this.components = comps.toArray(Class[]::new);
+    }
+
+    /**
+     * @return false if no instance of the polarity was found.
+     */
+    boolean export(int polarity, Iterable<? extends Instance> instances, BufferedWriter writer) throws IOException {
+        boolean headerWritten = false;
+        List<Instance> filtered = new ArrayList<>();
+        for (Instance inst : instances) {
+            final int pol = inst.getExperiment().getPrecursorIonType().getCharge();
+            if (polarity == 0) {
+                polarity = pol;
+            }
+            if (polarity == pol) {
+                filtered.add(inst);
+            }
+        }
+        if (filtered.isEmpty())
+            return false;
+
+        for (Instance inst : filtered) {
+            loadVersions(inst, polarity);
+            if (!headerWritten) {
+                writeHeader(writer);
+                writer.newLine();
+                headerWritten = true;
+            }
+            try {
+                write(writer, inst);
+            } finally {
+                inst.clearCompoundCache();
+                inst.clearFormulaResultsCache();
+            }
+        }
+        return true;
+    }
+
+    private String float2string(double value) {
+        if (decimalFormat == null) return String.valueOf(value);
+        else return decimalFormat.format(value);
+    }
+
+    private void loadVersions(Instance inst, int polarity) {
+        if (versions[X.CLASSYFIRE.ordinal()] == null) {
+            final Optional<CanopusCfDataProperty> ps = inst.getProjectSpaceManager().getProjectSpaceProperty(CanopusCfDataProperty.class);
+            ps.ifPresent(p -> versions[X.CLASSYFIRE.ordinal()] = p.getByCharge(polarity).getFingerprintVersion());
+        }
+        if (versions[X.NPC.ordinal()] == null) {
+            final Optional<CanopusNpcDataProperty> ps = inst.getProjectSpaceManager().getProjectSpaceProperty(CanopusNpcDataProperty.class);
+            ps.ifPresent(p -> versions[X.NPC.ordinal()] = p.getByCharge(polarity).getFingerprintVersion());
+        }
+        if (versions[X.FP.ordinal()] == null) {
+            final Optional<FingerIdDataProperty> ps = inst.getProjectSpaceManager().getProjectSpaceProperty(FingerIdDataProperty.class);
+            if (ps.isPresent()) {
+                versions[X.FP.ordinal()] = ps.get().getByCharge(polarity).getFingerprintVersion();
+                versions[X.PUBCHEM.ordinal()] = versions[X.FP.ordinal()].getIntersection(CdkFingerprintVersion.getComplete().getMaskFor(CdkFingerprintVersion.USED_FINGERPRINTS.PUBCHEM));
+                versions[X.MACCS.ordinal()] = versions[X.FP.ordinal()].getIntersection(CdkFingerprintVersion.getComplete().getMaskFor(CdkFingerprintVersion.USED_FINGERPRINTS.MACCS));
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void write(BufferedWriter writer, Instance inst) throws IOException {
+        Optional<FormulaResult> fid = inst.loadTopFormulaResult(components);
+        if (fid.isPresent()) {
+            final FormulaResult formulaResult = fid.get();
+            writer.write(inst.getID().getDirectoryName());
+            writer.write('\t');
+            writer.write(inst.getID().getCompoundName());
+            writer.write('\t');
+            writer.write(formulaResult.getId().getMolecularFormula().toString());
+            writer.write('\t');
+            writer.write(formulaResult.getId().getIonType().toString());
+            if (options.classyfire)
+                write(writer, versions[X.CLASSYFIRE.ordinal()], formulaResult.getAnnotation(CanopusResult.class).map(CanopusResult::getCanopusFingerprint));
+            if (options.npc)
+                write(writer, versions[X.NPC.ordinal()], formulaResult.getAnnotation(CanopusResult.class).flatMap(CanopusResult::getNpcFingerprint));
+            if (options.fingerprints)
+                write(writer, versions[X.FP.ordinal()], formulaResult.getAnnotation(FingerprintResult.class).map(x -> x.fingerprint));
+            if (options.pubchem)
+                write(writer, versions[X.PUBCHEM.ordinal()], formulaResult.getAnnotation(FingerprintResult.class).map(x -> versions[X.PUBCHEM.ordinal()].mask(x.fingerprint)));
+            if (options.maccs)
+                write(writer, versions[X.MACCS.ordinal()], formulaResult.getAnnotation(FingerprintResult.class).map(x -> versions[X.MACCS.ordinal()].mask(x.fingerprint)));
+            writer.newLine();
+        }
+    }
+
+    private void writeHeader(BufferedWriter writer) throws IOException {
+        writer.write("id\tname\tmolecularFormula\tadduct");
+        if (options.classyfire) {
+            final MaskedFingerprintVersion version = versions[X.CLASSYFIRE.ordinal()];
+            for (int absi : version.allowedIndizes()) {
+                writer.write("\tClassyFire#");
+                writer.write(((ClassyfireProperty) version.getMolecularProperty(absi)).getName());
+            }
+        }
+        if (options.npc) {
+            final MaskedFingerprintVersion version = versions[X.NPC.ordinal()];
+            for (int absi : version.allowedIndizes()) {
+                writer.write("\tNPC#");
+                writer.write(((NPCFingerprintVersion.NPCProperty) version.getMolecularProperty(absi)).getName());
+            }
+        }
+        if (options.fingerprints) {
+            for (int absi : versions[X.FP.ordinal()].allowedIndizes()) {
+                writer.write('\t');
+                writer.write(String.valueOf(absi));
+            }
+        }
+        if (options.pubchem) {
+            int offset = CdkFingerprintVersion.getComplete().getOffsetFor(CdkFingerprintVersion.USED_FINGERPRINTS.PUBCHEM);
+            for (int absi : versions[X.PUBCHEM.ordinal()].allowedIndizes()) {
+                writer.write("\tPubChem#");
+                writer.write(String.valueOf(absi - offset));
+            }
+        }
+        if (options.maccs) {
+            int offset = CdkFingerprintVersion.getComplete().getOffsetFor(CdkFingerprintVersion.USED_FINGERPRINTS.MACCS);
+            for (int absi : versions[X.MACCS.ordinal()].allowedIndizes()) {
+                writer.write("\tMACCS#");
+                writer.write(String.valueOf(absi - offset));
+            }
+        }
+    }
+
+    private void write(BufferedWriter writer, MaskedFingerprintVersion version, Optional<ProbabilityFingerprint> fp) throws IOException {
+        if (fp.isPresent()) {
+            for (FPIter x : fp.get()) {
+                writer.write('\t');
+                writer.write(float2string(x.getProbability()));
+            }
+        } else {
+            for (int i = 0; i < version.size(); ++i) {
+                writer.write("\tN/A");
+            }
+        }
+    }
+}
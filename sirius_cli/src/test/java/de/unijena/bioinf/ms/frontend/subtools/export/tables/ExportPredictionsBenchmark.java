@@ -0,0 +1,84 @@
+/*
+ *
+ *  This file is part of the SIRIUS library for analyzing MS and MS/MS data
+ *
+ *  Copyright (C) 2013-2020 Kai Dührkop, Markus Fleischauer, Marcus Ludwig, Martin A. Hoffman, Fleming Kretschmer and Sebastian Böcker,
+ *  Chair of Bioinformatics, Friedrich-Schilller University.
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 3 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License along with SIRIUS. If not, see <https://www.gnu.org/licenses/lgpl-3.0.txt>
+ */
+
+package de.unijena.bioinf.ms.frontend.subtools.export.tables;
+
+import de.unijena.bioinf.ChemistryBase.jobs.SiriusJobs;
+import de.unijena.bioinf.ChemistryBase.utils.FileUtils;
+import de.unijena.bioinf.projectspace.Instance;
+import de.unijena.bioinf.projectspace.ProjectSpaceManager;
+import de.unijena.bioinf.projectspace.SyntheticProjects;
+import picocli.CommandLine;
+
+import java.io.BufferedWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Exports the fingerprint predictions of a synthetic project, once with the former sequential export
+ * ({@link BaselinePredictionsExport}) and once with {@link ExportPredictionsOptions.ExportPredictionJJob}, and checks
+ * that both tables are byte identical. Each run opens the project freshly, so nothing is cached between the runs.
+ * Usage: ExportPredictionsBenchmark [compounds] [digits]
+ */
+public class ExportPredictionsBenchmark {
+    public static void main(String[] args) throws Exception {
+        final int numberOfCompounds = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        final int digits = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        final Path dir = Files.createTempDirectory("prediction-export");
+        try {
+            final Path location = dir.resolve("project");
+            SyntheticProjects.createProject(location, numberOfCompounds, 5, new Random(42));
+            final int bits = SyntheticProjects.writeFingerprints(location, new Random(43));
+
+            final PredictionsOptions options = new PredictionsOptions();
+            new CommandLine(options).parseArgs("--fingerprints", "--digits", String.valueOf(digits));
+            final Path baseline = dir.resolve("baseline.tsv"), export = dir.resolve("export.tsv");
+
+            long start = System.nanoTime();
+            ProjectSpaceManager<Instance> project = SyntheticProjects.open(location, false);
+            try (BufferedWriter w = Files.newBufferedWriter(baseline)) {
+                new BaselinePredictionsExport(options, digits).export(0, project, w);
+            } finally {
+                project.close();
+            }
+            final double baselineSeconds = (System.nanoTime() - start) / 1e9;
+
+            start = System.nanoTime();
+            project = SyntheticProjects.open(location, false);
+            try {
+                SiriusJobs.getGlobalJobManager().submitJob(new ExportPredictionsOptions.ExportPredictionJJob(
+                        options, 0, project, () -> Files.newBufferedWriter(export))).awaitResult();
+            } finally {
+                project.close();
+            }
+            final double exportSeconds = (System.nanoTime() - start) / 1e9;
+
+            if (!Arrays.equals(Files.readAllBytes(baseline), Files.readAllBytes(export)))
+                throw new IllegalStateException("Exported tables differ!");
+
+            System.out.printf("%d compounds x %d bits, %d digits, %d io threads: sequential export %.2fs, single pass export %.2fs (%d bytes)%n",
+                    numberOfCompounds, bits, digits, SiriusJobs.getGlobalJobManager().getIOThreads(), baselineSeconds, exportSeconds, Files.size(export));
+        } finally {
+            FileUtils.deleteRecursively(dir);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ *
+ *  This file is part of the SIRIUS library for analyzing MS and MS/MS data
+ *
+ *  Copyright (C) 2013-2020 Kai Dührkop, Markus Fleischauer, Marcus Ludwig, Martin A. Hoffman, Fleming Kretschmer and Sebastian Böcker,
+ *  Chair of Bioinformatics, Friedrich-Schilller University.
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 3 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License along with SIRIUS. If not, see <https://www.gnu.org/licenses/lgpl-3.0.txt>
+ */
+
+package de.unijena.bioinf.ms.frontend.subtools.export.tables;
+
+import de.unijena.bioinf.ChemistryBase.jobs.SiriusJobs;
+import de.unijena.bioinf.projectspace.Instance;
+import de.unijena.bioinf.projectspace.ProjectSpaceManager;
+import de.unijena.bioinf.projectspace.SyntheticProjects;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import picocli.CommandLine;
+
+import java.io.BufferedWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ExportPredictionsOptionsTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testOutputEqualsBaselineExport() throws Exception {
+        final Path location = tmp.newFolder().toPath().resolve("project");
+        SyntheticProjects.createProject(location, 40, 3, new Random(5));
+        SyntheticProjects.writeFingerprints(location, new Random(6));
+
+        final ProjectSpaceManager<Instance> project = SyntheticProjects.open(location, false);
+        try {
+            for (int digits : new int[]{-1, 0, 1, 3, 6, 12}) {
+                for (String flags : new String[]{"--fingerprints", "--pubchem --maccs", "--fingerprints --pubchem --maccs"}) {
+                    final PredictionsOptions options = new PredictionsOptions();
+                    new CommandLine(options).parseArgs((flags + " --digits " + digits).split(" "));
+
+                    final Path dir = tmp.newFolder().toPath();
+                    final Path expected = dir.resolve("baseline.tsv"), actual = dir.resolve("export.tsv");
+                    try (BufferedWriter w = Files.newBufferedWriter(expected)) {
+                        assertTrue(new BaselinePredictionsExport(options, digits).export(0, project, w));
+                    }
+                    assertTrue(SiriusJobs.getGlobalJobManager().submitJob(new ExportPredictionsOptions.ExportPredictionJJob(
+                            options, 0, project, () -> Files.newBufferedWriter(actual))).awaitResult());
+
+                    assertEquals(41, Files.readAllLines(actual).size());
+                    assertArrayEquals("digits=" + digits + " " + flags, Files.readAllBytes(expected), Files.readAllBytes(actual));
+                }
+            }
+        } finally {
+            project.close();
+        }
+    }
+
+    @Test
+    public void testOtherPolarityIsEmpty() throws Exception {
+        final Path location = tmp.newFolder().toPath().resolve("project");
+        SyntheticProjects.createProject(location, 5, 2, new Random(5));
+        SyntheticProjects.writeFingerprints(location, new Random(6));
+
+        final ProjectSpaceManager<Instance> project = SyntheticProjects.open(location, false);
+        try {
+            final PredictionsOptions options = new PredictionsOptions();
+            new CommandLine(options).parseArgs("--fingerprints");
+            final Path output = tmp.newFolder().toPath().resolve("export.tsv");
+            try (BufferedWriter w = Files.newBufferedWriter(tmp.newFolder().toPath().resolve("baseline.tsv"))) {
+                assertFalse(new BaselinePredictionsExport(options, -1).export(-1, project, w));
+            }
+            assertFalse(SiriusJobs.getGlobalJobManager().submitJob(new ExportPredictionsOptions.ExportPredictionJJob(
+                    options, -1, project, () -> Files.newBufferedWriter(output))).awaitResult());
+            assertFalse(Files.exists(output));
+        } finally {
+            project.close();
+        }
+    }
+}
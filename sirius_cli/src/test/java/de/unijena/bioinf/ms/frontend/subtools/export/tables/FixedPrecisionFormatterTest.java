@@ -0,0 +1,94 @@
+package de.unijena.bioinf.ms.frontend.subtools.export.tables;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.text.DecimalFormat;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class FixedPrecisionFormatterTest {
+
+    @Test
+    public void testMatchesDecimalFormat() {
+        final Random r = new Random(1337);
+        for (int digits = 0; digits <= 17; ++digits) {
+            final DecimalFormat expected = decimalFormat(digits);
+            final FixedPrecisionFormatter formatter = new FixedPrecisionFormatter(digits);
+            for (int i = 0; i < 50000; ++i) {
+                final double value = r.nextDouble();
+                assertEquals(expected.format(value), formatter.format(value));
+                final float fvalue = r.nextFloat();
+                assertEquals(expected.format(fvalue), formatter.format(fvalue));
+                // masses and values with a few integer digits
+                final double scaled = r.nextDouble() * Math.pow(10, r.nextInt(8));
+                assertEquals("digits=" + digits + " value=" + scaled, expected.format(scaled), formatter.format(scaled));
+                // short decimals and exact ties
+                final double decimal = Math.round(r.nextDouble() * 1e6) / 1e6 * Math.pow(10, r.nextInt(4));
+                assertEquals("digits=" + digits + " value=" + decimal, expected.format(decimal), formatter.format(decimal));
+                final double tie = (r.nextInt(100000) + 0.5) / Math.pow(10, r.nextInt(8));
+                assertEquals("digits=" + digits + " value=" + tie, expected.format(tie), formatter.format(tie));
+            }
+        }
+    }
+
+    @Test
+    public void testEdgeCases() {
+        final double[] values = {0d, -0d, 1d, 0.5, 0.05, 0.125, 0.0625, 0.12345, 0.99999, 1e-12, -0.3, 12.5, 999.9999, 1234.5678,
+                743.214, 524.681, 688.791, 675.935, 123456.789, 1e14, 9.99999999999999e14, 1e15, 1e20,
+                Double.NaN, Double.POSITIVE_INFINITY, Double.MIN_VALUE, Double.MAX_VALUE};
+        for (int digits = 0; digits <= 17; ++digits) {
+            final DecimalFormat expected = decimalFormat(digits);
+            final FixedPrecisionFormatter formatter = new FixedPrecisionFormatter(digits);
+            for (double value : values)
+                assertEquals("digits=" + digits + " value=" + value, expected.format(value), formatter.format(value));
+        }
+    }
+
+    @Test
+    public void testTsvIsByteIdentical() {
+        final Random r = new Random(42);
+        final double[][] rows = new double[500][];
+        for (int i = 0; i < rows.length; ++i) {
+            rows[i] = new double[200];
+            for (int j = 0; j < rows[i].length; ++j) {
+                switch (r.nextInt(4)) {
+                    case 0: rows[i][j] = r.nextDouble(); break;
+                    case 1: rows[i][j] = r.nextInt(3) / 2d; break;
+                    case 2: rows[i][j] = r.nextDouble() * 1e-6; break;
+                    default: rows[i][j] = 100 + 900 * r.nextDouble(); break;
+                }
+            }
+        }
+        for (int digits = -1; digits <= 17; ++digits) {
+            final DecimalFormat decimalFormat = digits < 0 ? null : decimalFormat(digits);
+            final FixedPrecisionFormatter formatter = new FixedPrecisionFormatter(digits);
+            final StringBuilder expected = new StringBuilder(), actual = new StringBuilder();
+            for (int i = 0; i < rows.length; ++i) {
+                expected.append("compound").append(i);
+                actual.append("compound").append(i);
+                for (double value : rows[i]) {
+                    expected.append('\t').append(decimalFormat == null ? String.valueOf(value) : decimalFormat.format(value));
+                    actual.append('\t');
+                    formatter.append(actual, value);
+                }
+                expected.append('\n');
+                actual.append('\n');
+            }
+            assertArrayEquals("digits=" + digits, expected.toString().getBytes(StandardCharsets.UTF_8), actual.toString().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static DecimalFormat decimalFormat(int digits) {
+        return digits == 0 ? new DecimalFormat("0") : new DecimalFormat("0." + "#".repeat(digits));
+    }
+
+    @Test
+    public void testFullLength() {
+        final FixedPrecisionFormatter formatter = new FixedPrecisionFormatter(-1);
+        assertEquals(String.valueOf(0.1d), formatter.format(0.1d));
+        assertEquals(String.valueOf(0.1f), formatter.format(0.1f));
+    }
+}
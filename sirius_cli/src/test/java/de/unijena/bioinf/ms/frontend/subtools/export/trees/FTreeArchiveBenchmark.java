@@ -0,0 +1,61 @@
+/*
+ *  This file is part of the SIRIUS Software for analyzing MS and MS/MS data
+ *
+ *  Copyright (C) 2013-2020 Kai Dührkop, Markus Fleischauer, Marcus Ludwig, Martin A. Hoffman, Fleming Kretschmer, Marvin Meusel and Sebastian Böcker,
+ *  Chair of Bioinformatics, Friedrich-Schiller University.
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Affero General Public License
+ *  as published by the Free Software Foundation; either
+ *  version 3 of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License along with SIRIUS.  If not, see <https://www.gnu.org/licenses/agpl-3.0.txt>
+ */
+
+package de.unijena.bioinf.ms.frontend.subtools.export.trees;
+
+import de.unijena.bioinf.ChemistryBase.utils.FileUtils;
+import de.unijena.bioinf.projectspace.SyntheticProjects;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Exports all trees of a synthetic project with the former sequential loop, with the parallel export as one file
+ * per tree and with the parallel export into a single zip archive.
+ * Usage: FTreeArchiveBenchmark [compounds] [formula results per compound]
+ */
+public class FTreeArchiveBenchmark {
+    public static void main(String[] args) throws Exception {
+        final int numberOfCompounds = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        final int resultsPerCompound = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        final Path dir = Files.createTempDirectory("ftree-export");
+        try {
+            final Path project = dir.resolve("project");
+            SyntheticProjects.createProject(project, numberOfCompounds, resultsPerCompound, new Random(42));
+
+            long start = System.nanoTime();
+            FTreeArchiveTest.exportSequentially(project, dir.resolve("sequential"), true);
+            final double sequentialSeconds = (System.nanoTime() - start) / 1e9;
+
+            start = System.nanoTime();
+            FTreeArchiveTest.export(project, FTreeArchiveTest.options(dir.resolve("trees"), null));
+            final double filesSeconds = (System.nanoTime() - start) / 1e9;
+
+            start = System.nanoTime();
+            FTreeArchiveTest.export(project, FTreeArchiveTest.options(null, dir.resolve("trees.zip")));
+            final double archiveSeconds = (System.nanoTime() - start) / 1e9;
+
+            System.out.printf("%d trees (json + dot): sequential files %.2fs, parallel files %.2fs, archive %.2fs%n",
+                    numberOfCompounds * resultsPerCompound, sequentialSeconds, filesSeconds, archiveSeconds);
+        } finally {
+            FileUtils.deleteRecursively(dir);
+        }
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ *  This file is part of the SIRIUS Software for analyzing MS and MS/MS data
+ *
+ *  Copyright (C) 2013-2020 Kai Dührkop, Markus Fleischauer, Marcus Ludwig, Martin A. Hoffman, Fleming Kretschmer, Marvin Meusel and Sebastian Böcker,
+ *  Chair of Bioinformatics, Friedrich-Schiller University.
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Affero General Public License
+ *  as published by the Free Software Foundation; either
+ *  version 3 of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License along with SIRIUS.  If not, see <https://www.gnu.org/licenses/agpl-3.0.txt>
+ */
+
+package de.unijena.bioinf.ms.frontend.subtools.export.trees;
+
+import de.unijena.bioinf.ChemistryBase.algorithm.scoring.SScored;
+import de.unijena.bioinf.ChemistryBase.ms.ft.FTree;
+import de.unijena.bioinf.babelms.dot.FTDotWriter;
+import de.unijena.bioinf.babelms.json.FTJsonWriter;
+import de.unijena.bioinf.ms.frontend.subtools.PreprocessingJob;
+import de.unijena.bioinf.projectspace.FormulaResult;
+import de.unijena.bioinf.projectspace.Instance;
+import de.unijena.bioinf.projectspace.ProjectSpaceManager;
+import de.unijena.bioinf.projectspace.SyntheticProjects;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class FTreeArchiveTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testArchiveEqualsFileOutput() throws Exception {
+        final Path project = tmp.newFolder().toPath().resolve("project");
+        SyntheticProjects.createProject(project, 40, 5, new Random(42));
+        final Path directory = tmp.newFolder().toPath().resolve("trees");
+        final Path archive = tmp.newFolder().toPath().resolve("trees.zip");
+
+        export(project, options(directory, null));
+        export(project, options(null, archive));
+
+        final Map<String, byte[]> files = readDirectory(directory);
+        final Map<String, byte[]> entries = readArchive(archive);
+        final byte[] index = entries.remove("index.tsv");
+
+        assertEquals(40 * 5 * 2, files.size());
+        assertEquals(files.keySet(), entries.keySet());
+        for (String name : files.keySet())
+            assertArrayEquals(name, files.get(name), entries.get(name));
+
+        final List<String> indexLines = new ArrayList<>(List.of(new String(index, StandardCharsets.UTF_8).split("\n")));
+        assertEquals("file\tid\tformulaResult\tformat", indexLines.remove(0));
+        assertEquals(files.keySet(), indexLines.stream().map(l -> l.split("\t")[0]).collect(Collectors.toCollection(TreeSet::new)));
+    }
+
+    @Test
+    public void testFileOutputEqualsSequentialExport() throws Exception {
+        final Path project = tmp.newFolder().toPath().resolve("project");
+        SyntheticProjects.createProject(project, 40, 5, new Random(43));
+
+        for (boolean allTrees : new boolean[]{true, false}) {
+            final Path expected = tmp.newFolder().toPath().resolve("sequential");
+            final Path actual = tmp.newFolder().toPath().resolve("trees");
+            exportSequentially(project, expected, allTrees);
+            export(project, options(actual, null, allTrees));
+
+            final Map<String, byte[]> expectedFiles = readDirectory(expected);
+            final Map<String, byte[]> actualFiles = readDirectory(actual);
+            assertEquals((allTrees ? 40 * 5 : 40) * 2, expectedFiles.size());
+            assertEquals(expectedFiles.keySet(), actualFiles.keySet());
+            for (String name : expectedFiles.keySet())
+                assertArrayEquals(name, expectedFiles.get(name), actualFiles.get(name));
+        }
+    }
+
+    static FTreeExporterOptions options(Path output, Path archive) {
+        return options(output, archive, true);
+    }
+
+    static FTreeExporterOptions options(Path output, Path archive, boolean allTrees) {
+        final FTreeExporterOptions options = new FTreeExporterOptions();
+        options.exportJson = true;
+        options.exportDot = true;
+        options.exportAllTrees = allTrees;
+        options.output = output;
+        options.archive = archive;
+        return options;
+    }
+
+    static void export(Path project, FTreeExporterOptions options) throws IOException {
+        final ProjectSpaceManager<Instance> space = SyntheticProjects.open(project, false);
+        try {
+            new FTreeExporterWorkflow(new PreprocessingJob<Iterable<Instance>>() {
+                @Override
+                protected Iterable<Instance> compute() {
+                    return space;
+                }
+            }, options, null).run();
+        } finally {
+            space.close();
+        }
+    }
+
+    /**
+     * The export loop as it was before the parallel export: one instance after another, each tree written to its own
+     * json and dot file. Reference for the output of {@link FTreeExporterWorkflow}.
+     */
+    static void exportSequentially(Path project, Path output, boolean allTrees) throws IOException {
+        Files.createDirectories(output);
+        final FTDotWriter dotWriter = new FTDotWriter();
+        final FTJsonWriter jsonWriter = new FTJsonWriter();
+        final ProjectSpaceManager<Instance> space = SyntheticProjects.open(project, false);
+        try {
+            for (Instance inst : space) {
+                try {
+                    final List<FormulaResult> results = allTrees
+                            ? inst.loadFormulaResults(FTree.class).stream().map(SScored::getCandidate).collect(Collectors.toList())
+                            : inst.loadTopFormulaResult(FTree.class).map(List::of).orElse(List.of());
+                    for (FormulaResult res : results) {
+                        final Optional<FTree> tree = res.getAnnotation(FTree.class);
+                        if (tree.isEmpty())
+                            continue;
+                        final String name = inst.getID().getDirectoryName() + "_" + res.getId().fileName();
+                        try (final BufferedWriter writer = Files.newBufferedWriter(output.resolve(name + ".json"))) {
+                            jsonWriter.writeTree(writer, tree.get());
+                        }
+                        try (final BufferedWriter writer = Files.newBufferedWriter(output.resolve(name + ".dot"))) {
+                            dotWriter.writeTree(writer, tree.get());
+                        }
+                    }
+                } finally {
+                    inst.clearCompoundCache();
+                    inst.clearFormulaResultsCache();
+                }
+            }
+        } finally {
+            space.close();
+        }
+    }
+
+    private static Map<String, byte[]> readDirectory(Path directory) throws IOException {
+        final Map<String, byte[]> files = new TreeMap<>();
+        try (Stream<Path> s = Files.list(directory)) {
+            for (Path p : s.collect(Collectors.toList()))
+                files.put(p.getFileName().toString(), Files.readAllBytes(p));
+        }
+        return files;
+    }
+
+    private static Map<String, byte[]> readArchive(Path archive) throws IOException {
+        final Map<String, byte[]> entries = new TreeMap<>();
+        try (ZipInputStream zip = new ZipInputStream(Files.newInputStream(archive))) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null)
+                entries.put(entry.getName(), zip.readAllBytes());
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ *  This file is part of the SIRIUS Software for analyzing MS and MS/MS data
+ *
+ *  Copyright (C) 2013-2020 Kai Dührkop, Markus Fleischauer, Marcus Ludwig, Martin A. Hoffman, Fleming Kretschmer, Marvin Meusel and Sebastian Böcker,
+ *  Chair of Bioinformatics, Friedrich-Schiller University.
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Affero General Public License
+ *  as published by the Free Software Foundation; either
+ *  version 3 of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License along with SIRIUS.  If not, see <https://www.gnu.org/licenses/agpl-3.0.txt>
+ */
+
+package de.unijena.bioinf.ms.frontend.subtools.lcms_align;
+
+import de.unijena.bioinf.ChemistryBase.jobs.SiriusJobs;
+import de.unijena.bioinf.ChemistryBase.ms.Ms2Experiment;
+import de.unijena.bioinf.ChemistryBase.utils.FileUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Writes the same aligned features into a new project once by creating the compounds one after another and once
+ * with sequentially allocated ids and parallel compound writes, as the LC-MS import does it.
+ * Usage: CompoundWriteBenchmark [features]
+ */
+public class CompoundWriteBenchmark {
+    public static void main(String[] args) throws Exception {
+        final int numberOfFeatures = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        final Path dir = Files.createTempDirectory("lcms-compound-write");
+        try {
+            final List<Ms2Experiment> experiments = CompoundWriteTest.experiments(new Random(42), numberOfFeatures);
+
+            long start = System.nanoTime();
+            CompoundWriteTest.writeSequential(dir.resolve("sequential"), experiments);
+            final double sequentialSeconds = (System.nanoTime() - start) / 1e9;
+
+            start = System.nanoTime();
+            CompoundWriteTest.writeParallel(dir.resolve("parallel"), experiments);
+            final double parallelSeconds = (System.nanoTime() - start) / 1e9;
+
+            System.out.printf("%d features on %d io threads: sequential %.2fs, parallel %.2fs%n",
+                    numberOfFeatures, SiriusJobs.getGlobalJobManager().getIOThreads(), sequentialSeconds, parallelSeconds);
+        } finally {
+            FileUtils.deleteRecursively(dir);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ *  This file is part of the SIRIUS Software for analyzing MS and MS/MS data
+ *
+ *  Copyright (C) 2013-2020 Kai Dührkop, Markus Fleischauer, Marcus Ludwig, Martin A. Hoffman, Fleming Kretschmer, Marvin Meusel and Sebastian Böcker,
+ *  Chair of Bioinformatics, Friedrich-Schiller University.
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Affero General Public License
+ *  as published by the Free Software Foundation; either
+ *  version 3 of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License along with SIRIUS.  If not, see <https://www.gnu.org/licenses/agpl-3.0.txt>
+ */
+
+package de.unijena.bioinf.ms.frontend.subtools.lcms_align;
+
+import de.unijena.bioinf.ChemistryBase.chem.PrecursorIonType;
+import de.unijena.bioinf.ChemistryBase.ms.*;
+import de.unijena.bioinf.ChemistryBase.ms.utils.SimpleSpectrum;
+import de.unijena.bioinf.projectspace.CompoundContainerId;
+import de.unijena.bioinf.projectspace.Instance;
+import de.unijena.bioinf.projectspace.ProjectSpaceManager;
+import de.unijena.bioinf.projectspace.SyntheticProjects;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+
+public class CompoundWriteTest {
+    private static final PrecursorIonType[] IONS = {
+            PrecursorIonType.getPrecursorIonType("[M+H]+"),
+            PrecursorIonType.getPrecursorIonType("[M+Na]+"),
+            PrecursorIonType.getPrecursorIonType("[M-H]-")
+    };
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testParallelWriteEqualsSequentialCreation() throws IOException {
+        final Path sequential = tmp.newFolder().toPath().resolve("sequential");
+        final Path parallel = tmp.newFolder().toPath().resolve("parallel");
+
+        writeSequential(sequential, experiments(new Random(42), 80));
+        writeParallel(parallel, experiments(new Random(42), 80));
+
+        final Map<String, String> expected = describe(sequential);
+        assertEquals(80, expected.size());
+        assertEquals(expected, describe(parallel));
+    }
+
+    static void writeSequential(Path location, List<Ms2Experiment> experiments) throws IOException {
+        final ProjectSpaceManager<Instance> space = SyntheticProjects.open(location, true);
+        try {
+            experiments.forEach(space::newCompoundWithUniqueId);
+        } finally {
+            space.close();
+        }
+    }
+
+    static void writeParallel(Path location, List<Ms2Experiment> experiments) throws IOException {
+        final ProjectSpaceManager<Instance> space = SyntheticProjects.open(location, true);
+        try {
+            final List<CompoundContainerId> ids = LcmsAlignSubToolJob.allocateCompoundIds(space, experiments);
+            LcmsAlignSubToolJob.writeCompounds(space, ids, (k, compound) -> compound.setAnnotation(Ms2Experiment.class, experiments.get(k)));
+        } finally {
+            space.close();
+        }
+    }
+
+    static List<Ms2Experiment> experiments(Random r, int n) {
+        final List<Ms2Experiment> experiments = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            final MutableMs2Experiment exp = new MutableMs2Experiment();
+            exp.setName("feature" + i);
+            exp.setPrecursorIonType(IONS[r.nextInt(IONS.length)]);
+            exp.setIonMass(100 + 700 * r.nextDouble());
+            exp.getMs1Spectra().add(spectrum(r, 5 + r.nextInt(20)));
+            for (int k = r.nextInt(4); k >= 0; k--)
+                exp.getMs2Spectra().add(new MutableMs2Spectrum(spectrum(r, 1 + r.nextInt(60)), exp.getIonMass(), CollisionEnergy.none(), 2));
+            experiments.add(exp);
+        }
+        return experiments;
+    }
+
+    private static SimpleSpectrum spectrum(Random r, int peaks) {
+        final double[] mz = new double[peaks], intensity = new double[peaks];
+        for (int i = 0; i < peaks; i++) {
+            mz[i] = 50 + 20 * i + r.nextDouble() * 10;
+            intensity[i] = r.nextDouble() * 1e4;
+        }
+        return new SimpleSpectrum(mz, intensity);
+    }
+
+    /**
+     * @return directory name to ids fields and experiment content of every compound of the given project.
+     */
+    private static Map<String, String> describe(Path location) throws IOException {
+        final ProjectSpaceManager<Instance> space = SyntheticProjects.open(location, false);
+        try {
+            final Map<String, String> compounds = new TreeMap<>();
+            for (Instance inst : space) {
+                final CompoundContainerId id = inst.getID();
+                final Ms2Experiment exp = inst.getExperiment();
+                final StringBuilder buf = new StringBuilder()
+                        .append(id.getCompoundName()).append('|').append(id.getCompoundIndex()).append('|')
+                        .append(id.getIonMass()).append('|').append(id.getIonType()).append('|')
+                        .append(exp.getName()).append('|').append(exp.getIonMass()).append('|').append(exp.getPrecursorIonType());
+                exp.getMs1Spectra().forEach(s -> append(buf.append("|ms1:"), s));
+                exp.getMs2Spectra().forEach(s -> append(buf.append("|ms2:"), s));
+                compounds.put(id.getDirectoryName(), buf.toString());
+            }
+            return compounds;
+        } finally {
+            space.close();
+        }
+    }
+
+    private static void append(StringBuilder buf, Spectrum<?> spectrum) {
+        for (int i = 0; i < spectrum.size(); i++)
+            buf.append(spectrum.getMzAt(i)).append(' ').append(spectrum.getIntensityAt(i)).append(';');
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ *  This file is part of the SIRIUS Software for analyzing MS and MS/MS data
+ *
+ *  Copyright (C) 2013-2020 Kai Dührkop, Markus Fleischauer, Marcus Ludwig, Martin A. Hoffman, Fleming Kretschmer, Marvin Meusel and Sebastian Böcker,
+ *  Chair of Bioinformatics, Friedrich-Schiller University.
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Affero General Public License
+ *  as published by the Free Software Foundation; either
+ *  version 3 of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License along with SIRIUS.  If not, see <https://www.gnu.org/licenses/agpl-3.0.txt>
+ */
+
+package de.unijena.bioinf.ms.frontend.subtools.lcms_align;
+
+import de.unijena.bioinf.ChemistryBase.utils.FileUtils;
+import de.unijena.bioinf.io.lcms.LCMSParsing;
+import de.unijena.bioinf.lcms.MemoryFileStorage;
+import de.unijena.bioinf.lcms.SpectrumStorage;
+import de.unijena.bioinf.model.lcms.LCMSRun;
+import de.unijena.bioinf.model.lcms.Scan;
+
+import java.io.Closeable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * Parses the same synthetic runs into in-memory and disk backed scan storages and reports the heap retained
+ * by the parsed runs and their storages, and the time to read all scans back.
+ * Usage: DiskSpectrumStorageBenchmark [runs] [compounds]
+ */
+public class DiskSpectrumStorageBenchmark {
+    public static void main(String[] args) throws Exception {
+        final int numberOfRuns = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        final int numberOfCompounds = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+        final Path dir = Files.createTempDirectory("lcms-disk-storage");
+        try {
+            final List<Path> runs = new ArrayList<>();
+            for (int k = 0; k < numberOfRuns; ++k) {
+                final Path file = dir.resolve("run_" + k + ".mzML");
+                SyntheticLcmsRun.write(file, SyntheticLcmsRun.compounds(new Random(k), numberOfCompounds, 1800), 1800, 1, 0, true, k);
+                runs.add(file);
+            }
+            measure("memory", runs, MemoryFileStorage::new);
+            measure("disk", runs, () -> {
+                try {
+                    return new DiskSpectrumStorage(dir.toFile());
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            });
+        } finally {
+            FileUtils.deleteRecursively(dir);
+        }
+    }
+
+    private static void measure(String name, List<Path> files, Supplier<SpectrumStorage> storages) throws Exception {
+        final long before = usedHeap();
+        final List<LCMSRun> runs = new ArrayList<>();
+        final List<SpectrumStorage> storage = new ArrayList<>();
+        long start = System.nanoTime();
+        for (Path file : files) {
+            final SpectrumStorage s = storages.get();
+            runs.add(LCMSParsing.parseRun(file.toFile(), s));
+            if (s instanceof DiskSpectrumStorage) {
+                ((DiskSpectrumStorage) s).backOnDisc();
+            } else {
+                ((MemoryFileStorage) s).backOnDisc();
+                ((MemoryFileStorage) s).dropBuffer();
+            }
+            storage.add(s);
+        }
+        final double parseSeconds = (System.nanoTime() - start) / 1e9;
+        final long retained = usedHeap() - before;
+
+        start = System.nanoTime();
+        long peaks = 0;
+        for (int k = 0; k < runs.size(); ++k)
+            for (Scan scan : runs.get(k).getScans())
+                peaks += storage.get(k).getScan(scan).size();
+        final double readSeconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("%s: retained heap %.1f MB, parse %.2fs, read %d peaks %.2fs%n",
+                name, retained / 1024d / 1024d, parseSeconds, peaks, readSeconds);
+        for (SpectrumStorage s : storage)
+            if (s instanceof Closeable) ((Closeable) s).close();
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        final Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; ++i) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
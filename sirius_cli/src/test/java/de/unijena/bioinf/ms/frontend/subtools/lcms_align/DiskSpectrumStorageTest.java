@@ -0,0 +1,128 @@
+/*
+ *  This file is part of the SIRIUS Software for analyzing MS and MS/MS data
+ *
+ *  Copyright (C) 2013-2020 Kai Dührkop, Markus Fleischauer, Marcus Ludwig, Martin A. Hoffman, Fleming Kretschmer, Marvin Meusel and Sebastian Böcker,
+ *  Chair of Bioinformatics, Friedrich-Schiller University.
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Affero General Public License
+ *  as published by the Free Software Foundation; either
+ *  version 3 of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License along with SIRIUS.  If not, see <https://www.gnu.org/licenses/agpl-3.0.txt>
+ */
+
+package de.unijena.bioinf.ms.frontend.subtools.lcms_align;
+
+import de.unijena.bioinf.ChemistryBase.ms.Ms2Experiment;
+import de.unijena.bioinf.ChemistryBase.ms.Spectrum;
+import de.unijena.bioinf.ChemistryBase.ms.lcms.LCMSPeakInformation;
+import de.unijena.bioinf.ChemistryBase.ms.utils.SimpleSpectrum;
+import de.unijena.bioinf.io.lcms.LCMSParsing;
+import de.unijena.bioinf.lcms.MemoryFileStorage;
+import de.unijena.bioinf.model.lcms.LCMSRun;
+import de.unijena.bioinf.model.lcms.Scan;
+import de.unijena.bioinf.projectspace.CompoundContainer;
+import de.unijena.bioinf.projectspace.CompoundContainerId;
+import de.unijena.bioinf.projectspace.Instance;
+import de.unijena.bioinf.projectspace.ProjectSpaceManager;
+import de.unijena.bioinf.projectspace.SyntheticProjects;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class DiskSpectrumStorageTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testScansAreIdenticalToMemoryStorage() throws Exception {
+        final Path file = tmp.newFolder().toPath().resolve("run.mzML");
+        SyntheticLcmsRun.write(file, SyntheticLcmsRun.compounds(new Random(3), 20, 300), 300, 1, 0, true, 3);
+
+        final MemoryFileStorage memory = new MemoryFileStorage();
+        final LCMSRun memoryRun = LCMSParsing.parseRun(file.toFile(), memory);
+        memory.backOnDisc();
+        memory.dropBuffer();
+
+        try (DiskSpectrumStorage disk = new DiskSpectrumStorage(tmp.newFolder())) {
+            final LCMSRun diskRun = LCMSParsing.parseRun(file.toFile(), disk);
+            disk.backOnDisc();
+            assertEquals(memoryRun.getScans().size(), diskRun.getScans().size());
+            final Iterator<Scan> diskScans = diskRun.getScans().iterator();
+            for (Scan scan : memoryRun.getScans())
+                assertSpectrumEquals(memory.getScan(scan), disk.getScan(diskScans.next()));
+        }
+    }
+
+    @Test
+    public void testCloseDeletesScanFile() throws Exception {
+        final Path file = tmp.newFolder().toPath().resolve("run.mzML");
+        SyntheticLcmsRun.write(file, SyntheticLcmsRun.compounds(new Random(5), 5, 120), 120, 1, 0, false, 5);
+        final File storageDir = tmp.newFolder();
+        final DiskSpectrumStorage disk = new DiskSpectrumStorage(storageDir);
+        LCMSParsing.parseRun(file.toFile(), disk);
+        disk.backOnDisc();
+        assertEquals(1, Objects.requireNonNull(storageDir.list()).length);
+        disk.close();
+        assertEquals(0, Objects.requireNonNull(storageDir.list()).length);
+    }
+
+    @Test
+    public void testMixedWorkflowWithDiskStorageEqualsInMemory() throws Exception {
+        final List<SyntheticLcmsRun.Compound> compounds = SyntheticLcmsRun.compounds(new Random(13), 8, 300);
+        final File dir = tmp.newFolder("runs");
+        final String[] pooled = MixedWorkflowTest.writeRuns(dir, "pooled", compounds, 300, 2, true);
+        final String[] files = MixedWorkflowTest.writeRuns(dir, "sample", compounds, 300, 2, false);
+
+        final LcmsAlignOptions diskOptions = new LcmsAlignOptions();
+        diskOptions.diskStorage = true;
+        assertEquals(describe(tmp.newFolder().toPath().resolve("memory"), pooled, files, new LcmsAlignOptions()),
+                describe(tmp.newFolder().toPath().resolve("disk"), pooled, files, diskOptions));
+    }
+
+    private static List<String> describe(Path location, String[] pooled, String[] files, LcmsAlignOptions options) throws Exception {
+        final ProjectSpaceManager<Instance> space = SyntheticProjects.open(location, true);
+        try {
+            final List<String> features = new ArrayList<>();
+            for (CompoundContainerId id : MixedWorkflowTest.runMixed(space, pooled, files, options)) {
+                final CompoundContainer c = space.projectSpace().getCompound(id, Ms2Experiment.class, LCMSPeakInformation.class);
+                final Ms2Experiment exp = c.getAnnotationOrThrow(Ms2Experiment.class);
+                features.add(id.getDirectoryName() + " " + exp.getIonMass() + " " + peaks(exp.getMs1Spectra()) + " " + peaks(exp.getMs2Spectra())
+                        + " " + Arrays.toString(c.getAnnotationOrThrow(LCMSPeakInformation.class).getQuantificationTable().getAsVector()));
+            }
+            return features;
+        } finally {
+            space.close();
+        }
+    }
+
+    private static String peaks(List<? extends Spectrum<?>> spectra) {
+        final StringBuilder buf = new StringBuilder();
+        for (Spectrum<?> spectrum : spectra) {
+            for (int i = 0; i < spectrum.size(); ++i)
+                buf.append(spectrum.getMzAt(i)).append(':').append(spectrum.getIntensityAt(i)).append(',');
+            buf.append(';');
+        }
+        return buf.toString();
+    }
+
+    private static void assertSpectrumEquals(SimpleSpectrum expected, SimpleSpectrum actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); ++i) {
+            assertEquals(Double.doubleToLongBits(expected.getMzAt(i)), Double.doubleToLongBits(actual.getMzAt(i)));
+            assertEquals(Double.doubleToLongBits(expected.getIntensityAt(i)), Double.doubleToLongBits(actual.getIntensityAt(i)));
+        }
+    }
+}
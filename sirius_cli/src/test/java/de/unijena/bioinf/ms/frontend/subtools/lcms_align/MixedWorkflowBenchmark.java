@@ -0,0 +1,74 @@
+/*
+ *  This file is part of the SIRIUS Software for analyzing MS and MS/MS data
+ *
+ *  Copyright (C) 2013-2020 Kai Dührkop, Markus Fleischauer, Marcus Ludwig, Martin A. Hoffman, Fleming Kretschmer, Marvin Meusel and Sebastian Böcker,
+ *  Chair of Bioinformatics, Friedrich-Schiller University.
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Affero General Public License
+ *  as published by the Free Software Foundation; either
+ *  version 3 of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License along with SIRIUS.  If not, see <https://www.gnu.org/licenses/agpl-3.0.txt>
+ */
+
+package de.unijena.bioinf.ms.frontend.subtools.lcms_align;
+
+import de.unijena.bioinf.ChemistryBase.utils.FileUtils;
+import de.unijena.bioinf.projectspace.Instance;
+import de.unijena.bioinf.projectspace.ProjectSpaceManager;
+import de.unijena.bioinf.projectspace.SyntheticProjects;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Imports the same synthetic runs once with the mixed workflow (feature detection and alignment on the pooled runs
+ * only, remapping into the remaining runs) and once by aligning all runs against each other.
+ * Usage: MixedWorkflowBenchmark [pooled runs] [sample runs] [compounds]
+ */
+public class MixedWorkflowBenchmark {
+    private static final double RUN_LENGTH = 900;
+
+    public static void main(String[] args) throws Exception {
+        final int numberOfPooled = args.length > 0 ? Integer.parseInt(args[0]) : 2;
+        final int numberOfSamples = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        final int numberOfCompounds = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+        final Path dir = Files.createTempDirectory("lcms-mixed-workflow");
+        try {
+            final List<SyntheticLcmsRun.Compound> compounds = SyntheticLcmsRun.compounds(new Random(42), numberOfCompounds, RUN_LENGTH);
+            final File runs = Files.createDirectory(dir.resolve("runs")).toFile();
+            final String[] pooled = MixedWorkflowTest.writeRuns(runs, "pooled", compounds, RUN_LENGTH, numberOfPooled, true);
+            final String[] files = MixedWorkflowTest.writeRuns(runs, "sample", compounds, RUN_LENGTH, numberOfSamples, false);
+            final List<String> all = new ArrayList<>(Arrays.asList(pooled));
+            all.addAll(Arrays.asList(files));
+
+            final ProjectSpaceManager<Instance> mixedSpace = SyntheticProjects.open(dir.resolve("mixed"), true);
+            long start = System.nanoTime();
+            final int mixed = MixedWorkflowTest.runMixed(mixedSpace, pooled, files).size();
+            final double mixedSeconds = (System.nanoTime() - start) / 1e9;
+            mixedSpace.close();
+
+            final ProjectSpaceManager<Instance> alignedSpace = SyntheticProjects.open(dir.resolve("aligned"), true);
+            start = System.nanoTime();
+            final int aligned = MixedWorkflowTest.runAlignAll(alignedSpace, all.toArray(String[]::new)).size();
+            final double alignedSeconds = (System.nanoTime() - start) / 1e9;
+            alignedSpace.close();
+
+            System.out.printf("%d pooled + %d sample runs, %d compounds: mixed %.2fs (%d features), align all %.2fs (%d features)%n",
+                    numberOfPooled, numberOfSamples, numberOfCompounds, mixedSeconds, mixed, alignedSeconds, aligned);
+        } finally {
+            FileUtils.deleteRecursively(dir);
+        }
+    }
+}
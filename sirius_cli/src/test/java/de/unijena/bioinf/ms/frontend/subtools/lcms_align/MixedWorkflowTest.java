@@ -0,0 +1,152 @@
+/*
+ *  This file is part of the SIRIUS Software for analyzing MS and MS/MS data
+ *
+ *  Copyright (C) 2013-2020 Kai Dührkop, Markus Fleischauer, Marcus Ludwig, Martin A. Hoffman, Fleming Kretschmer, Marvin Meusel and Sebastian Böcker,
+ *  Chair of Bioinformatics, Friedrich-Schiller University.
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Affero General Public License
+ *  as published by the Free Software Foundation; either
+ *  version 3 of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License along with SIRIUS.  If not, see <https://www.gnu.org/licenses/agpl-3.0.txt>
+ */
+
+package de.unijena.bioinf.ms.frontend.subtools.lcms_align;
+
+import de.unijena.bioinf.ChemistryBase.jobs.SiriusJobs;
+import de.unijena.bioinf.ChemistryBase.ms.Ms2Experiment;
+import de.unijena.bioinf.ChemistryBase.ms.MultipleSources;
+import de.unijena.bioinf.ChemistryBase.ms.lcms.LCMSPeakInformation;
+import de.unijena.bioinf.projectspace.CompoundContainer;
+import de.unijena.bioinf.projectspace.CompoundContainerId;
+import de.unijena.bioinf.projectspace.Instance;
+import de.unijena.bioinf.projectspace.ProjectSpaceManager;
+import de.unijena.bioinf.projectspace.SyntheticProjects;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MixedWorkflowTest {
+    private static final double RUN_LENGTH = 300;
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testMixedWorkflowRecoversAllFeatures() throws Exception {
+        final List<SyntheticLcmsRun.Compound> compounds = SyntheticLcmsRun.compounds(new Random(7), 12, RUN_LENGTH);
+        final File dir = tmp.newFolder("runs");
+        final String[] pooled = writeRuns(dir, "pooled", compounds, RUN_LENGTH, 2, true);
+        final String[] files = writeRuns(dir, "sample", compounds, RUN_LENGTH, 4, false);
+
+        final ProjectSpaceManager<Instance> space = SyntheticProjects.open(tmp.newFolder().toPath().resolve("project"), true);
+        try {
+            final List<CompoundContainerId> imported = runMixed(space, pooled, files);
+            final List<CompoundContainer> features = load(space, imported);
+            for (SyntheticLcmsRun.Compound c : compounds) {
+                final List<CompoundContainer> matches = features.stream()
+                        .filter(f -> Math.abs(f.getAnnotationOrThrow(Ms2Experiment.class).getIonMass() - c.mz) < 0.005)
+                        .collect(Collectors.toList());
+                assertTrue("Feature at m/z " + c.mz + " was not found.", !matches.isEmpty());
+                final LCMSPeakInformation lcms = matches.get(0).getAnnotationOrThrow(LCMSPeakInformation.class);
+                int traces = 0;
+                for (int k = 0; k < lcms.length(); ++k)
+                    if (lcms.getTracesFor(k).isPresent()) ++traces;
+                assertTrue("Feature at m/z " + c.mz + " has traces in " + traces + " runs only.", traces >= files.length);
+            }
+        } finally {
+            space.close();
+        }
+    }
+
+    @Test
+    public void testMixedWorkflowFindsTheSameFeaturesAsAlignment() throws Exception {
+        final List<SyntheticLcmsRun.Compound> compounds = SyntheticLcmsRun.compounds(new Random(11), 8, RUN_LENGTH);
+        final File dir = tmp.newFolder("runs");
+        final String[] pooled = writeRuns(dir, "pooled", compounds, RUN_LENGTH, 2, true);
+        final String[] files = writeRuns(dir, "sample", compounds, RUN_LENGTH, 2, false);
+
+        final ProjectSpaceManager<Instance> mixed = SyntheticProjects.open(tmp.newFolder().toPath().resolve("mixed"), true);
+        final ProjectSpaceManager<Instance> aligned = SyntheticProjects.open(tmp.newFolder().toPath().resolve("aligned"), true);
+        try {
+            final List<String> all = new ArrayList<>(Arrays.asList(pooled));
+            all.addAll(Arrays.asList(files));
+            assertEquals(roundedIonMasses(load(aligned, runAlignAll(aligned, all.toArray(String[]::new)))),
+                    roundedIonMasses(load(mixed, runMixed(mixed, pooled, files))));
+        } finally {
+            mixed.close();
+            aligned.close();
+        }
+    }
+
+    static String[] writeRuns(File dir, String prefix, List<SyntheticLcmsRun.Compound> compounds, double runLength, int n, boolean withMsMs) throws Exception {
+        final String[] files = new String[n];
+        for (int k = 0; k < n; ++k) {
+            final Path file = dir.toPath().resolve(prefix + "_" + k + ".mzML");
+            SyntheticLcmsRun.write(file, compounds, runLength, 0.8 + 0.1 * k, 1.5 * k, withMsMs, 31L * k + prefix.hashCode());
+            files[k] = file.toString();
+        }
+        return files;
+    }
+
+    static List<CompoundContainerId> runMixed(ProjectSpaceManager<?> space, String[] pooled, String[] files) throws Exception {
+        return runMixed(space, pooled, files, new LcmsAlignOptions());
+    }
+
+    static List<CompoundContainerId> runMixed(ProjectSpaceManager<?> space, String[] pooled, String[] files, LcmsAlignOptions options) throws Exception {
+        return run(new LcmsAlignSubToolJob(null, space, null, options) {
+            @Override
+            protected ProjectSpaceManager<?> compute() {
+                importedCompounds.clear();
+                try {
+                    return computeMixedWorkflow(pooled, files);
+                } finally {
+                    closeStorages();
+                }
+            }
+        });
+    }
+
+    static List<CompoundContainerId> runAlignAll(ProjectSpaceManager<?> space, String[] files) throws Exception {
+        return run(new LcmsAlignSubToolJob(null, space, null, new LcmsAlignOptions()) {
+            @Override
+            protected ProjectSpaceManager<?> compute() {
+                importedCompounds.clear();
+                return alignAllRuns(Arrays.stream(files).map(Path::of).collect(Collectors.toList()),
+                        MultipleSources.leastCommonAncestor(Arrays.stream(files).map(File::new).toArray(File[]::new)));
+            }
+        });
+    }
+
+    private static List<CompoundContainerId> run(LcmsAlignSubToolJob job) throws Exception {
+        SiriusJobs.getGlobalJobManager().submitJob(job).awaitResult();
+        return job.getImportedCompounds();
+    }
+
+    private static List<CompoundContainer> load(ProjectSpaceManager<?> space, List<CompoundContainerId> ids) throws Exception {
+        final List<CompoundContainer> containers = new ArrayList<>(ids.size());
+        for (CompoundContainerId id : ids)
+            containers.add(space.projectSpace().getCompound(id, Ms2Experiment.class, LCMSPeakInformation.class));
+        return containers;
+    }
+
+    // ion masses rounded to 0.01 so that small m/z differences of the consensus features do not matter
+    private static SortedSet<Long> roundedIonMasses(List<CompoundContainer> features) {
+        return features.stream().map(f -> Math.round(f.getAnnotationOrThrow(Ms2Experiment.class).getIonMass() * 100))
+                .collect(Collectors.toCollection(TreeSet::new));
+    }
+}
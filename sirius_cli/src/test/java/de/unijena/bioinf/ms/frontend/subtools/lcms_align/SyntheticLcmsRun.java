@@ -0,0 +1,160 @@
+/*
+ *  This file is part of the SIRIUS Software for analyzing MS and MS/MS data
+ *
+ *  Copyright (C) 2013-2020 Kai Dührkop, Markus Fleischauer, Marcus Ludwig, Martin A. Hoffman, Fleming Kretschmer, Marvin Meusel and Sebastian Böcker,
+ *  Chair of Bioinformatics, Friedrich-Schiller University.
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Affero General Public License
+ *  as published by the Free Software Foundation; either
+ *  version 3 of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License along with SIRIUS.  If not, see <https://www.gnu.org/licenses/agpl-3.0.txt>
+ */
+
+package de.unijena.bioinf.ms.frontend.subtools.lcms_align;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Writes centroided, positive mode LC-MS runs as mzML. Every compound elutes as gaussian peak with a two peak isotope
+ * pattern on top of random background peaks. Runs with MS/MS get one MS/MS scan per compound close to its apex.
+ */
+class SyntheticLcmsRun {
+    static final double SCAN_INTERVAL = 0.5; // seconds
+    private static final double ISOTOPE_SHIFT = 1.00336;
+
+    static final class Compound {
+        final double mz, rt, intensity;
+
+        Compound(double mz, double rt, double intensity) {
+            this.mz = mz;
+            this.rt = rt;
+            this.intensity = intensity;
+        }
+    }
+
+    static List<Compound> compounds(Random r, int n, double runLength) {
+        final List<Compound> compounds = new ArrayList<>(n);
+        for (int i = 0; i < n; i++)
+            compounds.add(new Compound(150 + 700 * r.nextDouble(), 20 + (runLength - 40) * r.nextDouble(), 1e5 + 1e6 * r.nextDouble()));
+        return compounds;
+    }
+
+    /**
+     * @param intensityFactor scales the compound intensities of this run
+     * @param rtShift         shift of the compound retention times in this run in seconds
+     * @param withMsMs        add one MS/MS scan per compound
+     */
+    static void write(Path file, List<Compound> compounds, double runLength, double intensityFactor, double rtShift, boolean withMsMs, long seed) throws IOException {
+        final Random r = new Random(seed);
+        final List<Compound> msmsPending = new ArrayList<>(compounds);
+        int index = 0;
+        final StringBuilder spectra = new StringBuilder();
+        for (double rt = 0; rt <= runLength; rt += SCAN_INTERVAL) {
+            final TreeMap<Double, Double> peaks = new TreeMap<>();
+            for (int i = 0; i < 30; i++)
+                peaks.put(100 + 900 * r.nextDouble(), 500 + 2000 * r.nextDouble());
+            for (Compound c : compounds) {
+                final double d = (rt - c.rt - rtShift) / 3d; // sigma of 3 seconds
+                if (Math.abs(d) > 5)
+                    continue;
+                final double apex = c.intensity * intensityFactor * Math.exp(-0.5 * d * d) * (0.95 + 0.1 * r.nextDouble());
+                peaks.put(c.mz + r.nextGaussian() * 1e-4, apex);
+                peaks.put(c.mz + ISOTOPE_SHIFT + r.nextGaussian() * 1e-4, apex * 0.2);
+            }
+            spectrum(spectra, index++, 1, rt, peaks, Double.NaN);
+
+            if (withMsMs) {
+                for (Iterator<Compound> it = msmsPending.iterator(); it.hasNext(); ) {
+                    final Compound c = it.next();
+                    if (rt < c.rt + rtShift)
+                        continue;
+                    final TreeMap<Double, Double> fragments = new TreeMap<>();
+                    final Random fr = new Random(Double.doubleToLongBits(c.mz));
+                    for (int i = 0; i < 15; i++)
+                        fragments.put(50 + (c.mz - 60) * fr.nextDouble(), 100 + 1e4 * fr.nextDouble());
+                    fragments.put(c.mz, 5e3);
+                    spectrum(spectra, index++, 2, rt + 0.1, fragments, c.mz);
+                    it.remove();
+                }
+            }
+        }
+
+        try (BufferedWriter w = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            w.write("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n");
+            w.write("<mzML xmlns=\"http://psi.hupo.org/ms/mzml\" version=\"1.1.0\" id=\"synthetic\">\n");
+            w.write("<cvList count=\"2\">\n<cv id=\"MS\" fullName=\"Proteomics Standards Initiative Mass Spectrometry Ontology\" URI=\"https://raw.githubusercontent.com/HUPO-PSI/psi-ms-CV/master/psi-ms.obo\"/>\n");
+            w.write("<cv id=\"UO\" fullName=\"Unit Ontology\" URI=\"http://ontologies.berkeleybop.org/uo.obo\"/>\n</cvList>\n");
+            w.write("<fileDescription><fileContent>" + cv("MS:1000579", "MS1 spectrum", "") + "</fileContent></fileDescription>\n");
+            w.write("<softwareList count=\"1\"><software id=\"synthetic\" version=\"1\">" + cv("MS:1000799", "custom unreleased software tool", "synthetic") + "</software></softwareList>\n");
+            w.write("<instrumentConfigurationList count=\"1\"><instrumentConfiguration id=\"IC\">" + cv("MS:1000031", "instrument model", "") + "</instrumentConfiguration></instrumentConfigurationList>\n");
+            w.write("<dataProcessingList count=\"1\"><dataProcessing id=\"DP\"><processingMethod order=\"0\" softwareRef=\"synthetic\">" + cv("MS:1000035", "peak picking", "") + "</processingMethod></dataProcessing></dataProcessingList>\n");
+            w.write("<run id=\"" + file.getFileName().toString().replace('.', '_') + "\" defaultInstrumentConfigurationRef=\"IC\">\n");
+            w.write("<spectrumList count=\"" + index + "\" defaultDataProcessingRef=\"DP\">\n");
+            w.write(spectra.toString());
+            w.write("</spectrumList>\n</run>\n</mzML>\n");
+        }
+    }
+
+    private static void spectrum(StringBuilder buf, int index, int msLevel, double rt, TreeMap<Double, Double> peaks, double precursor) {
+        final double[] mz = peaks.keySet().stream().mapToDouble(Double::doubleValue).toArray();
+        final double[] intensities = peaks.values().stream().mapToDouble(Double::doubleValue).toArray();
+        buf.append("<spectrum index=\"").append(index).append("\" id=\"scan=").append(index + 1)
+                .append("\" defaultArrayLength=\"").append(mz.length).append("\">\n");
+        buf.append(cv("MS:1000511", "ms level", String.valueOf(msLevel)));
+        buf.append(msLevel == 1 ? cv("MS:1000579", "MS1 spectrum", "") : cv("MS:1000580", "MSn spectrum", ""));
+        buf.append(cv("MS:1000130", "positive scan", "")).append(cv("MS:1000127", "centroid spectrum", ""));
+        buf.append("<scanList count=\"1\">").append(cv("MS:1000795", "no combination", ""))
+                .append("<scan>").append(cvWithUnit("MS:1000016", "scan start time", String.valueOf(rt), "UO:0000010", "second"))
+                .append("</scan></scanList>\n");
+        if (msLevel > 1) {
+            buf.append("<precursorList count=\"1\"><precursor><isolationWindow>")
+                    .append(cvWithUnit("MS:1000827", "isolation window target m/z", String.valueOf(precursor), "MS:1000040", "m/z"))
+                    .append(cvWithUnit("MS:1000828", "isolation window lower offset", "0.5", "MS:1000040", "m/z"))
+                    .append(cvWithUnit("MS:1000829", "isolation window upper offset", "0.5", "MS:1000040", "m/z"))
+                    .append("</isolationWindow><selectedIonList count=\"1\"><selectedIon>")
+                    .append(cvWithUnit("MS:1000744", "selected ion m/z", String.valueOf(precursor), "MS:1000040", "m/z"))
+                    .append(cv("MS:1000041", "charge state", "1"))
+                    .append("</selectedIon></selectedIonList><activation>")
+                    .append(cv("MS:1000133", "collision-induced dissociation", ""))
+                    .append(cvWithUnit("MS:1000045", "collision energy", "20", "UO:0000266", "electronvolt"))
+                    .append("</activation></precursor></precursorList>\n");
+        }
+        buf.append("<binaryDataArrayList count=\"2\">\n");
+        array(buf, mz, true);
+        array(buf, intensities, false);
+        buf.append("</binaryDataArrayList>\n</spectrum>\n");
+    }
+
+    private static void array(StringBuilder buf, double[] values, boolean mz) {
+        final ByteBuffer b = ByteBuffer.allocate(values.length * 8).order(ByteOrder.LITTLE_ENDIAN);
+        for (double v : values) b.putDouble(v);
+        final String base64 = Base64.getEncoder().encodeToString(b.array());
+        buf.append("<binaryDataArray encodedLength=\"").append(base64.length()).append("\">\n")
+                .append(cv("MS:1000523", "64-bit float", "")).append(cv("MS:1000576", "no compression", ""))
+                .append(mz ? cvWithUnit("MS:1000514", "m/z array", "", "MS:1000040", "m/z") : cvWithUnit("MS:1000515", "intensity array", "", "MS:1000131", "number of detector counts"))
+                .append("<binary>").append(base64).append("</binary>\n</binaryDataArray>\n");
+    }
+
+    private static String cv(String accession, String name, String value) {
+        return "<cvParam cvRef=\"MS\" accession=\"" + accession + "\" name=\"" + name + "\" value=\"" + value + "\"/>\n";
+    }
+
+    private static String cvWithUnit(String accession, String name, String value, String unitAccession, String unitName) {
+        return "<cvParam cvRef=\"MS\" accession=\"" + accession + "\" name=\"" + name + "\" value=\"" + value
+                + "\" unitCvRef=\"" + unitAccession.substring(0, 2) + "\" unitAccession=\"" + unitAccession + "\" unitName=\"" + unitName + "\"/>\n";
+    }
+}
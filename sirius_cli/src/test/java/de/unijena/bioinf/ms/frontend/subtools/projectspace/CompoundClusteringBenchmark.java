@@ -0,0 +1,149 @@
+/*
+ *  This file is part of the SIRIUS Software for analyzing MS and MS/MS data
+ *
+ *  Copyright (C) 2013-2020 Kai Dührkop, Markus Fleischauer, Marcus Ludwig, Martin A. Hoffman, Fleming Kretschmer, Marvin Meusel and Sebastian Böcker,
+ *  Chair of Bioinformatics, Friedrich-Schiller University.
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Affero General Public License
+ *  as published by the Free Software Foundation; either
+ *  version 3 of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License along with SIRIUS.  If not, see <https://www.gnu.org/licenses/agpl-3.0.txt>
+ */
+
+package de.unijena.bioinf.ms.frontend.subtools.projectspace;
+
+import de.unijena.bioinf.ChemistryBase.jobs.SiriusJobs;
+import de.unijena.bioinf.ChemistryBase.ms.Deviation;
+import de.unijena.bioinf.ChemistryBase.ms.utils.SimpleSpectrum;
+import de.unijena.bioinf.jjobs.BasicJJob;
+import de.unijena.bioinf.jjobs.JJob;
+import de.unijena.bioinf.jjobs.JobManager;
+import de.unijena.bionf.spectral_alignment.CosineQuerySpectrum;
+import de.unijena.bionf.spectral_alignment.CosineQueryUtils;
+import de.unijena.bionf.spectral_alignment.IntensityWeightedSpectralAlignment;
+import de.unijena.bionf.spectral_alignment.SpectralSimilarity;
+import gnu.trove.list.array.TIntArrayList;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Near-duplicate merging of synthetic features, once with the former per integer mass bucket pairwise scan, which
+ * builds the query spectrum of the right-hand feature for every comparison, and once with {@link CompoundClustering}
+ * and one query spectrum per feature. About a fifth of the features are noisy copies of another feature within the
+ * m/z and retention time tolerance. The synthetic spectra are already centroided, so the time of the Ms2Preprocessor
+ * (which the former scan also ran for every comparison) is not included.
+ * Usage: CompoundClusteringBenchmark [features] [peaks per spectrum]
+ */
+public class CompoundClusteringBenchmark {
+    private static final Deviation DEV = new Deviation(10);
+    private static final double RT_DIFF = 60;
+    private static final double COSINE = 0.9;
+
+    public static void main(String[] args) {
+        final int numberOfFeatures = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        final int numberOfPeaks = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        final JobManager jobs = SiriusJobs.getGlobalJobManager();
+        final CosineQueryUtils Q = new CosineQueryUtils(new IntensityWeightedSpectralAlignment(DEV));
+
+        final Random r = new Random(42);
+        final double[] mz = new double[numberOfFeatures], rt = new double[numberOfFeatures];
+        final SimpleSpectrum[] spectra = new SimpleSpectrum[numberOfFeatures];
+        for (int i = 0; i < numberOfFeatures; ++i) {
+            if (i > 0 && r.nextInt(5) == 0) {
+                final int k = r.nextInt(i);
+                mz[i] = mz[k] * (1 + (r.nextDouble() - 0.5) * 4e-6);
+                rt[i] = rt[k] + (r.nextDouble() - 0.5) * RT_DIFF;
+                spectra[i] = noisyCopy(spectra[k], r);
+            } else {
+                mz[i] = 100 + 900 * r.nextDouble();
+                rt[i] = 1200 * r.nextDouble();
+                spectra[i] = randomSpectrum(mz[i], numberOfPeaks, r);
+            }
+        }
+
+        // former approach: pairwise scan per integer mass bucket, right-hand query built for every comparison
+        long start = System.nanoTime();
+        final AtomicLong queriesBuilt = new AtomicLong(), bucketMerges = new AtomicLong();
+        final Map<Integer, List<Integer>> buckets = new HashMap<>();
+        for (int i = 0; i < numberOfFeatures; ++i)
+            buckets.computeIfAbsent((int) Math.round(mz[i]), x -> new ArrayList<>()).add(i);
+        final List<BasicJJob<Object>> bucketJobs = new ArrayList<>();
+        for (List<Integer> group : buckets.values()) {
+            bucketJobs.add(jobs.submitJob(new BasicJJob<>(JJob.JobType.CPU) {
+                @Override
+                protected Object compute() {
+                    for (int a = 0; a < group.size(); ++a) {
+                        final int i = group.get(a);
+                        CosineQuerySpectrum left = null;
+                        for (int b = a + 1; b < group.size(); ++b) {
+                            final int j = group.get(b);
+                            if (Math.abs(mz[i] - mz[j]) > DEV.absoluteFor(Math.max(mz[i], mz[j])) || Math.abs(rt[i] - rt[j]) >= RT_DIFF)
+                                continue;
+                            if (left == null) {
+                                left = Q.createQueryWithIntensityTransformationNoLoss(spectra[i], mz[i], true);
+                                queriesBuilt.incrementAndGet();
+                            }
+                            final CosineQuerySpectrum right = Q.createQueryWithIntensityTransformationNoLoss(spectra[j], mz[j], true);
+                            queriesBuilt.incrementAndGet();
+                            if (similar(Q, left, right))
+                                bucketMerges.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }
+            }));
+        }
+        bucketJobs.forEach(JJob::takeResult);
+        final double bucketSeconds = (System.nanoTime() - start) / 1e9;
+
+        // indexed: sweep window, one query per feature, union-find
+        start = System.nanoTime();
+        final TIntArrayList candidates = CompoundClustering.candidatePairs(mz, rt, DEV, RT_DIFF, jobs);
+        final CosineQuerySpectrum[] queries = new CosineQuerySpectrum[numberOfFeatures];
+        final BitSet needed = new BitSet(numberOfFeatures);
+        candidates.forEach(i -> {
+            needed.set(i);
+            return true;
+        });
+        needed.stream().parallel().forEach(i -> queries[i] = Q.createQueryWithIntensityTransformationNoLoss(spectra[i], mz[i], true));
+        final TIntArrayList merged = CompoundClustering.filterPairs(candidates, (i, j) -> similar(Q, queries[i], queries[j]), jobs);
+        final List<int[]> clusters = CompoundClustering.components(numberOfFeatures, merged);
+        final double indexedSeconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("%d features on %d cpu threads: bucket scan %.2fs (%d queries built, %d similar pairs), " +
+                        "indexed %.2fs (%d candidate pairs, %d queries built, %d similar pairs, %d clusters)%n",
+                numberOfFeatures, jobs.getCPUThreads(), bucketSeconds, queriesBuilt.get(), bucketMerges.get(),
+                indexedSeconds, candidates.size() / 2, needed.cardinality(), merged.size() / 2, clusters.size());
+    }
+
+    private static boolean similar(CosineQueryUtils Q, CosineQuerySpectrum left, CosineQuerySpectrum right) {
+        final SpectralSimilarity similarity = Q.cosineProduct(left, right);
+        return similarity.similarity >= COSINE && similarity.shardPeaks >= Math.min(6, Math.min(left.size(), right.size()));
+    }
+
+    private static SimpleSpectrum randomSpectrum(double precursor, int numberOfPeaks, Random r) {
+        final double[] peaks = new double[numberOfPeaks], intensities = new double[numberOfPeaks];
+        for (int k = 0; k < numberOfPeaks; ++k) {
+            peaks[k] = 50 + (precursor - 50) * r.nextDouble();
+            intensities[k] = r.nextDouble();
+        }
+        return new SimpleSpectrum(peaks, intensities);
+    }
+
+    private static SimpleSpectrum noisyCopy(SimpleSpectrum spectrum, Random r) {
+        final double[] peaks = new double[spectrum.size()], intensities = new double[spectrum.size()];
+        for (int k = 0; k < spectrum.size(); ++k) {
+            peaks[k] = spectrum.getMzAt(k) * (1 + (r.nextDouble() - 0.5) * 4e-6);
+            intensities[k] = spectrum.getIntensityAt(k) * (0.9 + 0.2 * r.nextDouble());
+        }
+        return new SimpleSpectrum(peaks, intensities);
+    }
+}
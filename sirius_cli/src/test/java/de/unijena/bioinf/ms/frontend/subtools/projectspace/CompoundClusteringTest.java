@@ -0,0 +1,84 @@
+package de.unijena.bioinf.ms.frontend.subtools.projectspace;
+
+import de.unijena.bioinf.ChemistryBase.jobs.SiriusJobs;
+import de.unijena.bioinf.ChemistryBase.ms.Deviation;
+import gnu.trove.list.array.TIntArrayList;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+
+public class CompoundClusteringTest {
+    private static final Deviation DEV = new Deviation(10);
+    private static final double RT_DIFF = 60;
+
+    @Test
+    public void testBucketBoundaryMasses() {
+        // 100.49999 and 100.50001 round to different integer masses but are within 10 ppm
+        final double[] mz = {100.49999, 100.50001, 300.0, 300.0};
+        final double[] rt = {10, 20, 100, 200};
+        final List<int[]> clusters = cluster(mz, rt, (i, j) -> true);
+        assertEquals(1, clusters.size());
+        assertEquals("[0, 1]", Arrays.toString(clusters.get(0)));
+    }
+
+    @Test
+    public void testMatchesBruteForce() throws Exception {
+        final Random r = new Random(42);
+        final int n = 2000;
+        final double[] mz = new double[n];
+        final double[] rt = new double[n];
+        for (int i = 0; i < n; ++i) {
+            // few distinct masses close to integer + 0.5 to provoke boundary cases
+            mz[i] = 100 + r.nextInt(50) + 0.5 + (r.nextDouble() - 0.5) * 0.002;
+            rt[i] = r.nextInt(600);
+        }
+        final CompoundClustering.PairPredicate similar = (i, j) -> ((i * 31 + j * 17) % 5) != 0;
+
+        final List<int[]> expected = bruteForce(mz, rt, similar);
+        final List<int[]> actual = cluster(mz, rt, similar);
+        assertEquals(expected.size(), actual.size());
+        for (int k = 0; k < expected.size(); ++k)
+            assertEquals(Arrays.toString(expected.get(k)), Arrays.toString(actual.get(k)));
+    }
+
+    private static List<int[]> cluster(double[] mz, double[] rt, CompoundClustering.PairPredicate similar) {
+        final TIntArrayList candidates = CompoundClustering.candidatePairs(mz, rt, DEV, RT_DIFF, SiriusJobs.getGlobalJobManager());
+        final TIntArrayList pairs = CompoundClustering.filterPairs(candidates, similar, SiriusJobs.getGlobalJobManager());
+        return CompoundClustering.components(mz.length, pairs);
+    }
+
+    private static List<int[]> bruteForce(double[] mz, double[] rt, CompoundClustering.PairPredicate similar) throws Exception {
+        final List<Set<Integer>> adjacency = new ArrayList<>();
+        for (int i = 0; i < mz.length; ++i) adjacency.add(new HashSet<>());
+        for (int i = 0; i < mz.length; ++i) {
+            for (int j = i + 1; j < mz.length; ++j) {
+                if (Math.abs(mz[i] - mz[j]) <= DEV.absoluteFor(Math.max(mz[i], mz[j])) && Math.abs(rt[i] - rt[j]) < RT_DIFF && similar.test(i, j)) {
+                    adjacency.get(i).add(j);
+                    adjacency.get(j).add(i);
+                }
+            }
+        }
+        final boolean[] visited = new boolean[mz.length];
+        final List<int[]> clusters = new ArrayList<>();
+        for (int i = 0; i < mz.length; ++i) {
+            if (visited[i]) continue;
+            final TreeSet<Integer> component = new TreeSet<>();
+            final ArrayDeque<Integer> stack = new ArrayDeque<>(List.of(i));
+            visited[i] = true;
+            while (!stack.isEmpty()) {
+                final int v = stack.pop();
+                component.add(v);
+                for (int w : adjacency.get(v))
+                    if (!visited[w]) {
+                        visited[w] = true;
+                        stack.push(w);
+                    }
+            }
+            if (component.size() > 1)
+                clusters.add(component.stream().mapToInt(Integer::intValue).toArray());
+        }
+        return clusters;
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ *  This file is part of the SIRIUS Software for analyzing MS and MS/MS data
+ *
+ *  Copyright (C) 2013-2020 Kai Dührkop, Markus Fleischauer, Marcus Ludwig, Martin A. Hoffman, Fleming Kretschmer, Marvin Meusel and Sebastian Böcker,
+ *  Chair of Bioinformatics, Friedrich-Schiller University.
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Affero General Public License
+ *  as published by the Free Software Foundation; either
+ *  version 3 of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License along with SIRIUS.  If not, see <https://www.gnu.org/licenses/agpl-3.0.txt>
+ */
+
+package de.unijena.bioinf.ms.frontend.subtools.projectspace;
+
+import de.unijena.bioinf.ChemistryBase.algorithm.scoring.SScored;
+import de.unijena.bioinf.ChemistryBase.jobs.SiriusJobs;
+import de.unijena.bioinf.ChemistryBase.utils.FileUtils;
+import de.unijena.bioinf.projectspace.*;
+import de.unijena.bioinf.sirius.scores.SiriusScore;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Filters a synthetic project once by testing a predicate on one instance after another and once with the
+ * parallel {@link InstanceFilter}.
+ * Usage: InstanceFilterBenchmark [compounds] [formula results per compound]
+ */
+public class InstanceFilterBenchmark {
+    public static void main(String[] args) throws Exception {
+        final int numberOfCompounds = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        final int resultsPerCompound = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        final Path dir = Files.createTempDirectory("instance-filter");
+        try {
+            SyntheticProjects.createProject(dir.resolve("project"), numberOfCompounds, resultsPerCompound, new Random(42));
+
+            ProjectSpaceManager<Instance> space = SyntheticProjects.open(dir.resolve("project"), false);
+            long start = System.nanoTime();
+            final int sequential = InstanceFilterTest.unfiltered(space, InstanceFilterTest.cids(space), inst ->
+                    inst.loadFormulaResults(FormulaScoring.class).stream().map(SScored::getCandidate).anyMatch(r ->
+                            r.getAnnotationOrThrow(FormulaScoring.class).getAnnotationOrThrow(SiriusScore.class).score() >= -5)).size();
+            final double sequentialSeconds = (System.nanoTime() - start) / 1e9;
+            space.close();
+
+            // reopen to start with cold caches
+            space = SyntheticProjects.open(dir.resolve("project"), false);
+            start = System.nanoTime();
+            final List<CompoundContainerId> parallel = InstanceFilterTest.anyScoreFilter(-5).filter(space, InstanceFilterTest.cids(space));
+            final double parallelSeconds = (System.nanoTime() - start) / 1e9;
+            space.close();
+
+            System.out.printf("%d compounds on %d io threads: sequential %.2fs (%d kept), instance filter %.2fs (%d kept)%n",
+                    numberOfCompounds, SiriusJobs.getGlobalJobManager().getIOThreads(), sequentialSeconds, sequential, parallelSeconds, parallel.size());
+        } finally {
+            FileUtils.deleteRecursively(dir);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ *  This file is part of the SIRIUS Software for analyzing MS and MS/MS data
+ *
+ *  Copyright (C) 2013-2020 Kai Dührkop, Markus Fleischauer, Marcus Ludwig, Martin A. Hoffman, Fleming Kretschmer, Marvin Meusel and Sebastian Böcker,
+ *  Chair of Bioinformatics, Friedrich-Schiller University.
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Affero General Public License
+ *  as published by the Free Software Foundation; either
+ *  version 3 of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License along with SIRIUS.  If not, see <https://www.gnu.org/licenses/agpl-3.0.txt>
+ */
+
+package de.unijena.bioinf.ms.frontend.subtools.projectspace;
+
+import de.unijena.bioinf.ChemistryBase.algorithm.scoring.SScored;
+import de.unijena.bioinf.projectspace.*;
+import de.unijena.bioinf.sirius.scores.SiriusScore;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class InstanceFilterTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testFilterEqualsPredicateOnEveryInstance() throws Exception {
+        final Path location = tmp.newFolder().toPath().resolve("project");
+        SyntheticProjects.createProject(location, 300, 10, new Random(42));
+        final ProjectSpaceManager<Instance> space = SyntheticProjects.open(location, false);
+        try {
+            final List<CompoundContainerId> cids = cids(space);
+            final List<CompoundContainerId> top = assertSameAsUnfiltered(space, cids, topScoreFilter(-30), inst ->
+                    inst.loadTopFormulaResult(List.of(SiriusScore.class), FormulaScoring.class).map(InstanceFilterTest::siriusScore).orElse(Double.NaN) >= -30);
+            final List<CompoundContainerId> any = assertSameAsUnfiltered(space, cids, anyScoreFilter(-5), inst ->
+                    inst.loadFormulaResults(FormulaScoring.class).stream().map(SScored::getCandidate).anyMatch(r -> siriusScore(r) >= -5));
+            assertSameAsUnfiltered(space, cids, topScoreFilter(-30).and(anyScoreFilter(-5)), inst ->
+                    top.contains(inst.getID()) && any.contains(inst.getID()));
+
+            // make sure the filters are not trivial on this data
+            assertTrue(top.size() > 0 && top.size() < cids.size());
+            assertTrue(any.size() > 0 && any.size() < cids.size());
+        } finally {
+            space.close();
+        }
+    }
+
+    static List<CompoundContainerId> cids(ProjectSpaceManager<?> space) {
+        final List<CompoundContainerId> cids = new ArrayList<>(space.size());
+        space.projectSpace().forEach(cids::add);
+        return cids;
+    }
+
+    static InstanceFilter topScoreFilter(double minScore) {
+        return InstanceFilter.onTopFormulaResult(List.of(SiriusScore.class), r -> siriusScore(r) >= minScore);
+    }
+
+    static InstanceFilter anyScoreFilter(double minScore) {
+        return InstanceFilter.onAnyFormulaResult(r -> siriusScore(r) >= minScore, FormulaScoring.class);
+    }
+
+    /**
+     * Evaluates the given predicate one instance after another, without declared components, like the project-space
+     * tool did before the instance filters were introduced.
+     */
+    static List<CompoundContainerId> unfiltered(ProjectSpaceManager<?> space, List<CompoundContainerId> cids, Predicate<Instance> predicate) {
+        return cids.stream().filter(id -> predicate.test(space.getInstanceFromCompound(id))).collect(Collectors.toList());
+    }
+
+    private static List<CompoundContainerId> assertSameAsUnfiltered(ProjectSpaceManager<?> space, List<CompoundContainerId> cids, InstanceFilter filter, Predicate<Instance> predicate) {
+        final List<CompoundContainerId> expected = unfiltered(space, cids, predicate);
+        final List<CompoundContainerId> actual = filter.filter(space, cids);
+        assertEquals(expected.stream().map(CompoundContainerId::getDirectoryName).collect(Collectors.toList()),
+                actual.stream().map(CompoundContainerId::getDirectoryName).collect(Collectors.toList()));
+        return actual;
+    }
+
+    private static double siriusScore(FormulaResult r) {
+        return r.getAnnotationOrThrow(FormulaScoring.class).getAnnotationOrThrow(SiriusScore.class).score();
+    }
+}
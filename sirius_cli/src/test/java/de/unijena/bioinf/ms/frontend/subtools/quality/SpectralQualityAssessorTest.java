@@ -0,0 +1,248 @@
+/*
+ *  This file is part of the SIRIUS Software for analyzing MS and MS/MS data
+ *
+ *  Copyright (C) 2013-2020 Kai Dührkop, Markus Fleischauer, Marcus Ludwig, Martin A. Hoffman, Fleming Kretschmer, Marvin Meusel and Sebastian Böcker,
+ *  Chair of Bioinformatics, Friedrich-Schiller University.
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Affero General Public License
+ *  as published by the Free Software Foundation; either
+ *  version 3 of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License along with SIRIUS.  If not, see <https://www.gnu.org/licenses/agpl-3.0.txt>
+ */
+
+package de.unijena.bioinf.ms.frontend.subtools.quality;
+
+import de.unijena.bioinf.ChemistryBase.chem.PrecursorIonType;
+import de.unijena.bioinf.ChemistryBase.jobs.SiriusJobs;
+import de.unijena.bioinf.ChemistryBase.ms.CollisionEnergy;
+import de.unijena.bioinf.ChemistryBase.ms.MutableMs2Experiment;
+import de.unijena.bioinf.ChemistryBase.ms.MutableMs2Spectrum;
+import de.unijena.bioinf.ChemistryBase.ms.utils.SimpleSpectrum;
+import de.unijena.bioinf.projectspace.Instance;
+import de.unijena.bioinf.projectspace.ProjectSpaceManager;
+import de.unijena.bioinf.projectspace.SpectralQuality;
+import de.unijena.bioinf.projectspace.SpectralQualityProperty;
+import de.unijena.bioinf.projectspace.SyntheticProjects;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SpectralQualityAssessorTest {
+    private static final double PRECURSOR = 301.1410;
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testGoodQuality() {
+        final SpectralQuality q = assessor().assess(experiment(ms1(PRECURSOR, 1000), ms2(10)), null, null);
+        assertTrue(q.toString(), q.isGoodQuality());
+        assertFalse(q.getPeakShapeQualities().isPresent());
+    }
+
+    @Test
+    public void testFlags() {
+        final SpectralQualityAssessor assessor = assessor();
+        assertEquals(EnumSet.of(SpectralQuality.Flag.NoMS1Peak),
+                assessor.assessSpectra(experiment(ms1(PRECURSOR + 1.5, 1000), ms2(10))));
+        assertEquals(EnumSet.of(SpectralQuality.Flag.FewPeaks),
+                assessor.assessSpectra(experiment(ms1(PRECURSOR, 1000), ms2(3))));
+        assertEquals(EnumSet.of(SpectralQuality.Flag.LowIntensity),
+                assessor.assessSpectra(experiment(ms1(PRECURSOR, 5), ms2(10))));
+        // a second compound in the isolation window, isotope peaks of the precursor do not count
+        final SpectralQualityAssessor wide = new SpectralQualityAssessor(0, 2.5, 0.5);
+        assertEquals(EnumSet.of(SpectralQuality.Flag.Chimeric),
+                wide.assessSpectra(experiment(new SimpleSpectrum(
+                        new double[]{PRECURSOR, PRECURSOR + 0.4, PRECURSOR + 1.00335, 500d},
+                        new double[]{1000, 500, 800, 1000}), ms2(10))));
+        assertEquals(EnumSet.noneOf(SpectralQuality.Flag.class),
+                wide.assessSpectra(experiment(new SimpleSpectrum(
+                        new double[]{PRECURSOR, PRECURSOR + 1.00335, 500d},
+                        new double[]{1000, 800, 1000}), ms2(10))));
+    }
+
+    @Test
+    public void testNoiseIntensity() {
+        final MutableMs2Experiment exp = experiment(ms1(PRECURSOR, 1000), ms2(10));
+        assertFalse(new SpectralQualityAssessor(0, 1, 0).assessSpectra(exp).contains(SpectralQuality.Flag.FewPeaks));
+        assertTrue(new SpectralQualityAssessor(60, 1, 0).assessSpectra(exp).contains(SpectralQuality.Flag.FewPeaks));
+    }
+
+    /**
+     * Boundary cases of the original quality annotators (NoMs1PeakAnnotator, LowIntensityAnnotator with relative
+     * intensity 0.01, FewPeaksAnnotator with 5 peaks above the median noise, ChimericAnnotator with ratios 0.33 and
+     * 1.0) that CompoundQualityUtils configured. The expected flags follow the thresholds of these annotators.
+     */
+    @Test
+    public void testOriginalAnnotatorThresholds() {
+        final SpectralQuality.Flag[] none = {};
+        // precursor search uses 100 ppm (about 0.030 Da at this mass) or 0.005 Da, whatever is larger
+        assertFixture(none, assessor(), spectrum(PRECURSOR + 0.025, 1000), ms2(10));
+        assertFixture(new SpectralQuality.Flag[]{SpectralQuality.Flag.NoMS1Peak}, assessor(), spectrum(PRECURSOR + 0.035, 1000), ms2(10));
+        // relative precursor intensity has to be at least 1% of the most intense MS1 peak
+        assertFixture(none, assessor(), ms1(PRECURSOR, 10), ms2(10));
+        assertFixture(new SpectralQuality.Flag[]{SpectralQuality.Flag.LowIntensity}, assessor(), ms1(PRECURSOR, 9.99), ms2(10));
+        // at least 5 MS/MS peaks strictly above the noise intensity (ms2(k) has intensities 10, 20, ...)
+        assertFixture(none, new SpectralQualityAssessor(50, 1, 0), ms1(PRECURSOR, 1000), ms2(10));
+        assertFixture(new SpectralQuality.Flag[]{SpectralQuality.Flag.FewPeaks}, new SpectralQualityAssessor(60, 1, 0), ms1(PRECURSOR, 1000), ms2(10));
+        assertFixture(new SpectralQuality.Flag[]{SpectralQuality.Flag.FewPeaks}, assessor(), ms1(PRECURSOR, 1000), ms2(4));
+        assertFixture(new SpectralQuality.Flag[]{SpectralQuality.Flag.FewPeaks}, assessor(), ms1(PRECURSOR, 1000), ms2(0));
+        // second most intense peak in the isolation window must not exceed 33% of the precursor
+        assertFixture(none, assessor(), spectrum(PRECURSOR, 1000, PRECURSOR + 0.2, 330), ms2(10));
+        assertFixture(new SpectralQuality.Flag[]{SpectralQuality.Flag.Chimeric}, assessor(), spectrum(PRECURSOR, 1000, PRECURSOR + 0.2, 331), ms2(10));
+        // summed intensity of the other peaks in the window must not exceed the precursor
+        assertFixture(none, assessor(), spectrum(PRECURSOR - 0.3, 300, PRECURSOR - 0.1, 100, PRECURSOR, 1000, PRECURSOR + 0.2, 300, PRECURSOR + 0.4, 300), ms2(10));
+        assertFixture(new SpectralQuality.Flag[]{SpectralQuality.Flag.Chimeric}, assessor(), spectrum(PRECURSOR - 0.3, 300, PRECURSOR - 0.1, 101, PRECURSOR, 1000, PRECURSOR + 0.2, 300, PRECURSOR + 0.4, 300), ms2(10));
+        // peaks outside of the window and isotope peaks of the precursor do not count
+        assertFixture(none, assessor(), spectrum(PRECURSOR - 0.6, 1000, PRECURSOR, 1000, PRECURSOR + 0.6, 1000), ms2(10));
+        assertFixture(none, new SpectralQualityAssessor(0, 2.5, 0), spectrum(PRECURSOR, 1000, PRECURSOR + 1.00335, 900), ms2(10));
+        // no isolation window, no chimeric check
+        assertFixture(none, new SpectralQualityAssessor(0, 0, 0), spectrum(PRECURSOR, 1000, PRECURSOR + 0.2, 900), ms2(10));
+        // several problems at once
+        assertFixture(new SpectralQuality.Flag[]{SpectralQuality.Flag.LowIntensity, SpectralQuality.Flag.Chimeric, SpectralQuality.Flag.FewPeaks},
+                assessor(), spectrum(PRECURSOR, 5, PRECURSOR + 0.2, 1000), ms2(2));
+    }
+
+    private static void assertFixture(SpectralQuality.Flag[] expected, SpectralQualityAssessor assessor, SimpleSpectrum ms1, MutableMs2Spectrum ms2) {
+        final EnumSet<SpectralQuality.Flag> flags = EnumSet.noneOf(SpectralQuality.Flag.class);
+        flags.addAll(Arrays.asList(expected));
+        assertEquals(ms1.toString(), flags, assessor.assessSpectra(experiment(ms1, ms2)));
+    }
+
+    @Test
+    public void testNoiseEstimation() {
+        final MutableMs2Experiment exp = experiment(ms1(PRECURSOR, 1000), ms2(10));
+        exp.getMs2Spectra().add(ms2(0));
+        exp.getMs2Spectra().add(ms2(5));
+        // lower quartile of 10..100 and of 10..50, empty spectra are skipped
+        assertArrayEquals(new double[]{30, 20}, SpectralQualityAssessor.ms2NoiseIntensities(exp), 0d);
+
+        assertEquals(0d, SpectralQualityAssessor.median(new double[0]), 0d);
+        assertEquals(2d, SpectralQualityAssessor.median(new double[]{3, 1, 2}), 0d);
+        assertEquals(2.5d, SpectralQualityAssessor.median(new double[]{4, 1, 3, 2}), 0d);
+    }
+
+    /**
+     * Runs the tool job on a project and compares the stored qualities with a sequential assessment of the reopened
+     * project, including the estimated noise intensity.
+     */
+    @Test
+    public void testJobMatchesSequentialAssessment() throws Exception {
+        final Path dir = tmp.newFolder().toPath().resolve("project");
+        final Random r = new Random(42);
+        ProjectSpaceManager<Instance> project = SyntheticProjects.open(dir, true);
+        try {
+            for (int i = 0; i < 300; i++) {
+                final MutableMs2Experiment exp = randomExperiment(r);
+                exp.setName("compound" + i);
+                exp.setPrecursorIonType(PrecursorIonType.getPrecursorIonType("[M+H]+"));
+                project.newCompoundWithUniqueId(exp);
+            }
+            final int good = SiriusJobs.getGlobalJobManager().submitJob(
+                    new SpectralQualityOptions.SpectralQualityJJob(0, 1, 0, project)).awaitResult();
+            assertTrue(good > 0);
+        } finally {
+            project.close();
+        }
+
+        project = SyntheticProjects.open(dir, false);
+        try {
+            final List<double[]> noise = new ArrayList<>();
+            for (Instance inst : project)
+                noise.add(SpectralQualityAssessor.ms2NoiseIntensities(inst.getExperiment()));
+            final double median = SpectralQualityAssessor.median(noise.stream().flatMapToDouble(Arrays::stream).toArray());
+            assertTrue(median > 0);
+
+            final SpectralQualityProperty settings = project.getProjectSpaceProperty(SpectralQualityProperty.class).orElseThrow();
+            assertEquals(median, settings.medianNoiseIntensity, 0d);
+
+            final SpectralQualityAssessor assessor = new SpectralQualityAssessor(median, 1, 0);
+            final EnumSet<SpectralQuality.Flag> seen = EnumSet.noneOf(SpectralQuality.Flag.class);
+            int compounds = 0;
+            for (Instance inst : project) {
+                final SpectralQuality stored = inst.loadCompoundContainer(SpectralQuality.class).getAnnotationOrThrow(SpectralQuality.class);
+                assertEquals(inst.getID().getDirectoryName(), assessor.assess(inst.getExperiment(), List.of(), null), stored);
+                seen.addAll(stored.getFlags());
+                ++compounds;
+            }
+            assertEquals(300, compounds);
+            assertTrue(seen.toString(), seen.containsAll(EnumSet.of(SpectralQuality.Flag.NoMS1Peak, SpectralQuality.Flag.FewPeaks, SpectralQuality.Flag.Chimeric)));
+        } finally {
+            project.close();
+        }
+    }
+
+    static SpectralQualityAssessor assessor() {
+        return new SpectralQualityAssessor(0, 1, 0);
+    }
+
+    static MutableMs2Experiment randomExperiment(Random r) {
+        final double precursor = 100 + r.nextDouble() * 700;
+        final int n = 5 + r.nextInt(50);
+        final double[] mz = new double[n], intensity = new double[n];
+        for (int i = 0; i < n; i++) {
+            mz[i] = 50 + r.nextDouble() * 900;
+            intensity[i] = r.nextDouble() * 1000;
+        }
+        // occasionally put a second compound in the isolation window or drop the precursor peak
+        if (r.nextInt(5) > 0)
+            mz[0] = precursor;
+        if (r.nextInt(4) == 0)
+            mz[1] = precursor + 0.3;
+        Arrays.sort(mz);
+        return experiment(precursor, new SimpleSpectrum(mz, intensity), ms2(r.nextInt(12)));
+    }
+
+    static MutableMs2Experiment experiment(SimpleSpectrum ms1, MutableMs2Spectrum ms2) {
+        return experiment(PRECURSOR, ms1, ms2);
+    }
+
+    static MutableMs2Experiment experiment(double precursor, SimpleSpectrum ms1, MutableMs2Spectrum ms2) {
+        final MutableMs2Experiment exp = new MutableMs2Experiment();
+        exp.setIonMass(precursor);
+        exp.getMs1Spectra().add(ms1);
+        exp.getMs2Spectra().add(ms2);
+        return exp;
+    }
+
+    private static SimpleSpectrum ms1(double mz, double intensity) {
+        return new SimpleSpectrum(new double[]{mz, 450d}, new double[]{intensity, 1000d});
+    }
+
+    /**
+     * MS1 spectrum from m/z, intensity pairs in ascending m/z order.
+     */
+    private static SimpleSpectrum spectrum(double... mzIntensityPairs) {
+        final double[] mz = new double[mzIntensityPairs.length / 2], intensity = new double[mz.length];
+        for (int i = 0; i < mz.length; i++) {
+            mz[i] = mzIntensityPairs[2 * i];
+            intensity[i] = mzIntensityPairs[2 * i + 1];
+        }
+        return new SimpleSpectrum(mz, intensity);
+    }
+
+    private static MutableMs2Spectrum ms2(int peaks) {
+        final double[] mz = new double[peaks], intensity = new double[peaks];
+        for (int i = 0; i < peaks; i++) {
+            mz[i] = 60 + 20 * i;
+            intensity[i] = 10 + 10 * i;
+        }
+        return new MutableMs2Spectrum(new SimpleSpectrum(mz, intensity), 0d, CollisionEnergy.none(), 2);
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ *  This file is part of the SIRIUS Software for analyzing MS and MS/MS data
+ *
+ *  Copyright (C) 2013-2020 Kai Dührkop, Markus Fleischauer, Marcus Ludwig, Martin A. Hoffman, Fleming Kretschmer, Marvin Meusel and Sebastian Böcker,
+ *  Chair of Bioinformatics, Friedrich-Schiller University.
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Affero General Public License
+ *  as published by the Free Software Foundation; either
+ *  version 3 of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License along with SIRIUS.  If not, see <https://www.gnu.org/licenses/agpl-3.0.txt>
+ */
+
+package de.unijena.bioinf.ms.frontend.subtools.quality;
+
+import de.unijena.bioinf.ChemistryBase.jobs.SiriusJobs;
+import de.unijena.bioinf.ChemistryBase.ms.MutableMs2Experiment;
+import de.unijena.bioinf.jjobs.BasicJJob;
+import de.unijena.bioinf.jjobs.JJob;
+import de.unijena.bioinf.projectspace.SpectralQuality;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares the throughput of a sequential assessment with the per compound assessment on the CPU pool.
+ * Usage: SpectralQualityThroughputBenchmark [compounds] [repetitions]
+ */
+public class SpectralQualityThroughputBenchmark {
+    public static void main(String[] args) throws Exception {
+        final int numberOfCompounds = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        final int repetitions = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        final Random r = new Random(0);
+        final List<MutableMs2Experiment> experiments = new ArrayList<>(numberOfCompounds);
+        for (int i = 0; i < numberOfCompounds; i++)
+            experiments.add(SpectralQualityAssessorTest.randomExperiment(r));
+        final SpectralQualityAssessor assessor = SpectralQualityAssessorTest.assessor();
+
+        for (int rep = 0; rep < repetitions; rep++) {
+            long start = System.nanoTime();
+            final List<SpectralQuality> sequential = new ArrayList<>(numberOfCompounds);
+            for (MutableMs2Experiment exp : experiments)
+                sequential.add(assessor.assess(exp, null, null));
+            final double sequentialSeconds = (System.nanoTime() - start) / 1e9;
+
+            start = System.nanoTime();
+            final List<BasicJJob<SpectralQuality>> jobs = new ArrayList<>(numberOfCompounds);
+            for (MutableMs2Experiment exp : experiments) {
+                jobs.add(SiriusJobs.getGlobalJobManager().submitJob(new BasicJJob<SpectralQuality>(JJob.JobType.CPU) {
+                    @Override
+                    protected SpectralQuality compute() {
+                        return assessor.assess(exp, null, null);
+                    }
+                }));
+            }
+            int good = 0;
+            for (int i = 0; i < jobs.size(); i++) {
+                final SpectralQuality q = jobs.get(i).awaitResult();
+                if (!q.equals(sequential.get(i)))
+                    throw new IllegalStateException("Parallel result differs from sequential result for compound " + i);
+                if (q.isGoodQuality())
+                    ++good;
+            }
+            final double parallelSeconds = (System.nanoTime() - start) / 1e9;
+
+            System.out.printf("sequential: %.0f compounds/s, parallel (%d threads): %.0f compounds/s, good quality: %d/%d%n",
+                    numberOfCompounds / sequentialSeconds, SiriusJobs.getGlobalJobManager().getCPUThreads(),
+                    numberOfCompounds / parallelSeconds, good, numberOfCompounds);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ *  This file is part of the SIRIUS Software for analyzing MS and MS/MS data
+ *
+ *  Copyright (C) 2013-2020 Kai Dührkop, Markus Fleischauer, Marcus Ludwig, Martin A. Hoffman, Fleming Kretschmer, Marvin Meusel and Sebastian Böcker,
+ *  Chair of Bioinformatics, Friedrich-Schiller University.
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Affero General Public License
+ *  as published by the Free Software Foundation; either
+ *  version 3 of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License along with SIRIUS.  If not, see <https://www.gnu.org/licenses/agpl-3.0.txt>
+ */
+
+package de.unijena.bioinf.ms.frontend.subtools.similarity;
+
+import de.unijena.bioinf.ChemistryBase.jobs.SiriusJobs;
+import de.unijena.bioinf.ChemistryBase.ms.ft.FTree;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Computes the ftblast score matrix of random trees against a random library once with one job per pair and once
+ * with one job per query tree and library block.
+ * Usage: FtblastScoresBenchmark [query trees] [library trees]
+ */
+public class FtblastScoresBenchmark {
+    public static void main(String[] args) {
+        final int numberOfTrees = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        final int numberOfLibraryTrees = args.length > 1 ? Integer.parseInt(args[1]) : 5000;
+        final Random r = new Random(42);
+        final FTree[] trees = FtblastScoresTest.trees(r, numberOfTrees);
+        final List<FTree> libTrees = new ArrayList<>(List.of(FtblastScoresTest.trees(r, numberOfLibraryTrees)));
+        libTrees.addAll(List.of(trees));
+
+        long start = System.nanoTime();
+        FtblastScoresTest.pairwiseScores(trees, libTrees);
+        final double pairwiseSeconds = (System.nanoTime() - start) / 1e9;
+
+        start = System.nanoTime();
+        SimilarityMatrixWorkflow.ftblastScores(trees, libTrees);
+        final double blockedSeconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("%d x %d alignments on %d cpu threads: pairwise jobs %.2fs, blocked jobs %.2fs%n",
+                numberOfTrees, libTrees.size(), SiriusJobs.getCPUThreads(), pairwiseSeconds, blockedSeconds);
+    }
+}
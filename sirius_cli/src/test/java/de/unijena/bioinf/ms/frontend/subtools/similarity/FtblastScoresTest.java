@@ -0,0 +1,107 @@
+/*
+ *  This file is part of the SIRIUS Software for analyzing MS and MS/MS data
+ *
+ *  Copyright (C) 2013-2020 Kai Dührkop, Markus Fleischauer, Marcus Ludwig, Martin A. Hoffman, Fleming Kretschmer, Marvin Meusel and Sebastian Böcker,
+ *  Chair of Bioinformatics, Friedrich-Schiller University.
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Affero General Public License
+ *  as published by the Free Software Foundation; either
+ *  version 3 of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License along with SIRIUS.  If not, see <https://www.gnu.org/licenses/agpl-3.0.txt>
+ */
+
+package de.unijena.bioinf.ms.frontend.subtools.similarity;
+
+import de.unijena.bioinf.ChemistryBase.chem.MolecularFormula;
+import de.unijena.bioinf.ChemistryBase.chem.PrecursorIonType;
+import de.unijena.bioinf.ChemistryBase.jobs.SiriusJobs;
+import de.unijena.bioinf.ChemistryBase.ms.ft.FTree;
+import de.unijena.bioinf.ChemistryBase.ms.ft.Fragment;
+import de.unijena.bioinf.ftalign.StandardScoring;
+import de.unijena.bioinf.jjobs.BasicJJob;
+import de.unijena.bioinf.treealign.multijoin.DPMultiJoin;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class FtblastScoresTest {
+    private static final PrecursorIonType ION = PrecursorIonType.getPrecursorIonType("[M+H]+");
+    private static final MolecularFormula[] LOSSES = {
+            MolecularFormula.parseOrThrow("H2O"), MolecularFormula.parseOrThrow("CO"), MolecularFormula.parseOrThrow("CH4"),
+            MolecularFormula.parseOrThrow("NH3"), MolecularFormula.parseOrThrow("C2H2"), MolecularFormula.parseOrThrow("CO2")
+    };
+
+    @Test
+    public void testBlockedScoresEqualPairwiseJobs() {
+        final Random r = new Random(17);
+        final FTree[] trees = trees(r, 25);
+        final List<FTree> libTrees = new ArrayList<>(List.of(trees(r, 300)));
+        libTrees.addAll(List.of(trees));
+
+        final double[][] expected = pairwiseScores(trees, libTrees);
+        final double[][] actual = SimilarityMatrixWorkflow.ftblastScores(trees, libTrees);
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; ++i)
+            for (int j = 0; j < expected[i].length; ++j)
+                assertEquals(Double.doubleToLongBits(expected[i][j]), Double.doubleToLongBits(actual[i][j]));
+    }
+
+    /**
+     * The score matrix as it was computed before alignments were batched: one job per pair, self alignment score of
+     * the library tree computed inside each job.
+     */
+    static double[][] pairwiseScores(FTree[] trees, List<FTree> libTrees) {
+        final double[][] C = new double[trees.length][libTrees.size()];
+        final StandardScoring standardScoring = new StandardScoring(true);
+        final ArrayList<BasicJJob<Double>> jobs = new ArrayList<>();
+        for (int i = 0; i < trees.length; ++i) {
+            final int I = i;
+            final double selfScore = standardScoring.selfAlignScore(trees[i].getRoot());
+            for (int j = 0; j < libTrees.size(); ++j) {
+                final int J = j;
+                jobs.add(SiriusJobs.getGlobalJobManager().submitJob(new BasicJJob<Double>() {
+                    @Override
+                    protected Double compute() throws Exception {
+                        final double score = new DPMultiJoin<>(standardScoring, 2, trees[I].getRoot(), libTrees.get(J).getRoot(), trees[I].treeAdapter()).compute();
+                        C[I][J] = score / Math.sqrt(Math.min(selfScore, standardScoring.selfAlignScore(libTrees.get(J).getRoot())));
+                        return C[I][J];
+                    }
+                }));
+            }
+        }
+        jobs.forEach(BasicJJob::takeResult);
+        return C;
+    }
+
+    /**
+     * Random trees whose fragments are derived from their parents by common neutral losses, so that trees share
+     * fragments and losses.
+     */
+    static FTree[] trees(Random r, int n) {
+        final FTree[] trees = new FTree[n];
+        for (int k = 0; k < n; ++k) {
+            final FTree tree = new FTree(MolecularFormula.parseOrThrow("C" + (10 + r.nextInt(15)) + "H" + (12 + r.nextInt(20)) + "N" + r.nextInt(3) + "O" + (2 + r.nextInt(5))), ION.getIonization());
+            final List<Fragment> fragments = new ArrayList<>(List.of(tree.getRoot()));
+            final int size = 3 + r.nextInt(15);
+            for (int attempts = 0; fragments.size() < size && attempts < 100; ++attempts) {
+                final Fragment parent = fragments.get(r.nextInt(fragments.size()));
+                final MolecularFormula child = parent.getFormula().subtract(LOSSES[r.nextInt(LOSSES.length)]);
+                if (child.isAllPositiveOrZero() && child.getMass() > 40 && fragments.stream().noneMatch(f -> f.getFormula().equals(child)))
+                    fragments.add(tree.addFragment(parent, child, ION.getIonization()));
+            }
+            trees[k] = tree;
+        }
+        return trees;
+    }
+}
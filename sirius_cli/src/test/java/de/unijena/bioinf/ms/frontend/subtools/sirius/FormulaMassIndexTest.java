@@ -0,0 +1,162 @@
+/*
+ *  This file is part of the SIRIUS Software for analyzing MS and MS/MS data
+ *
+ *  Copyright (C) 2013-2020 Kai Dührkop, Markus Fleischauer, Marcus Ludwig, Martin A. Hoffman, Fleming Kretschmer, Marvin Meusel and Sebastian Böcker,
+ *  Chair of Bioinformatics, Friedrich-Schiller University.
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Affero General Public License
+ *  as published by the Free Software Foundation; either
+ *  version 3 of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License along with SIRIUS.  If not, see <https://www.gnu.org/licenses/agpl-3.0.txt>
+ */
+
+package de.unijena.bioinf.ms.frontend.subtools.sirius;
+
+import de.unijena.bioinf.ChemistryBase.chem.MolecularFormula;
+import de.unijena.bioinf.ChemistryBase.chem.PrecursorIonType;
+import de.unijena.bioinf.ChemistryBase.ms.MS1MassDeviation;
+import de.unijena.bioinf.ChemistryBase.ms.MutableMs2Experiment;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class FormulaMassIndexTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testLookupMatchesLinearScan() throws Exception {
+        final List<MolecularFormula> db = database(new Random(42), 5000);
+        final FormulaMassIndex index = index(tmp.newFolder().toPath(), db, new AtomicInteger());
+
+        final Random r = new Random(7);
+        for (int i = 0; i < 500; i++) {
+            final double center = 60 + 700 * r.nextDouble();
+            final double dev = i % 50 == 0 ? 12 : 0.02 * r.nextDouble(); // some windows span segment borders
+            assertEquals(linearScan(db, center - dev, center + dev), sorted(index.lookup(center - dev, center + dev)));
+        }
+    }
+
+    @Test
+    public void testWhitelistMatchesDatabaseQuery() throws Exception {
+        final List<MolecularFormula> db = database(new Random(1), 5000);
+        final FormulaMassIndex index = index(tmp.newFolder().toPath(), db, new AtomicInteger());
+
+        final Random r = new Random(3);
+        for (int i = 0; i < 100; i++) {
+            final MolecularFormula target = db.get(r.nextInt(db.size()));
+            final PrecursorIonType ionType = PrecursorIonType.getPrecursorIonType(i % 2 == 0 ? "[M+H]+" : "[M+Na]+");
+            final MutableMs2Experiment exp = new MutableMs2Experiment();
+            exp.setPrecursorIonType(ionType);
+            exp.setIonMass(ionType.neutralMassToPrecursorMass(target.getMass()));
+
+            // what the per compound database query returns: all formulas within the allowed deviation of the ion mass
+            final double abs = exp.getAnnotationOrDefault(MS1MassDeviation.class).allowedMassDeviation.absoluteFor(exp.getIonMass());
+            final Set<MolecularFormula> expected = db.stream()
+                    .filter(f -> Math.abs(ionType.neutralMassToPrecursorMass(f.getMass()) - exp.getIonMass()) <= abs)
+                    .collect(Collectors.toSet());
+
+            final Set<MolecularFormula> actual = index.whitelist(exp).getNeutralFormulas();
+            assertTrue(actual.contains(target));
+            assertEquals(expected, actual);
+        }
+    }
+
+    @Test
+    public void testSegmentsAreStoredAndReused() throws Exception {
+        final List<MolecularFormula> db = database(new Random(5), 2000);
+        final Path location = tmp.newFolder().toPath();
+        final AtomicInteger queries = new AtomicInteger();
+
+        final List<MolecularFormula> first = index(location, db, queries).lookup(180, 181);
+        assertEquals(1, queries.get());
+
+        // a new index on the same location has to work without asking the database again (e.g. offline)
+        final FormulaMassIndex reopened = new FormulaMassIndex(location, "test", (from, to) -> {
+            throw new IllegalStateException("No database access expected.");
+        }, Duration.ofDays(1));
+        assertEquals(sorted(first), sorted(reopened.lookup(180, 181)));
+
+        // outdated segments are fetched again
+        final FormulaMassIndex outdated = new FormulaMassIndex(location, "test", source(db, queries), Duration.ZERO);
+        assertEquals(sorted(first), sorted(outdated.lookup(180, 181)));
+        assertEquals(2, queries.get());
+    }
+
+    @Test
+    public void testClosedIndexMapsSegmentsAgain() throws Exception {
+        final List<MolecularFormula> db = database(new Random(9), 2000);
+        final AtomicInteger queries = new AtomicInteger();
+        final FormulaMassIndex index = index(tmp.newFolder().toPath(), db, queries);
+
+        final List<MolecularFormula> before = index.lookup(172, 188);
+        assertEquals(2, index.numberOfOpenSegments());
+        index.close();
+        assertEquals(0, index.numberOfOpenSegments());
+        assertEquals(sorted(before), sorted(index.lookup(172, 188)));
+        assertEquals(2, queries.get()); // mapped from disk, not fetched again
+    }
+
+    @Test
+    public void testLastModifiedChangesWithDatabaseContent() throws Exception {
+        final Path dbDir = tmp.newFolder().toPath();
+        final Path data = dbDir.resolve("data.bin");
+        Files.writeString(data, "v1");
+        Files.setLastModifiedTime(data, FileTime.fromMillis(1_000_000));
+        Files.setLastModifiedTime(dbDir, FileTime.fromMillis(1_000_000));
+        final long first = FormulaMassIndex.lastModified(dbDir.toString());
+        assertEquals(first, FormulaMassIndex.lastModified(dbDir.toString()));
+
+        Files.writeString(data, "v2");
+        Files.setLastModifiedTime(data, FileTime.fromMillis(2_000_000));
+        assertNotEquals(first, FormulaMassIndex.lastModified(dbDir.toString()));
+        assertEquals(2_000_000, FormulaMassIndex.lastModified(data.toString()));
+        assertEquals(0, FormulaMassIndex.lastModified(dbDir.resolve("missing").toString()));
+    }
+
+    private static FormulaMassIndex index(Path location, List<MolecularFormula> db, AtomicInteger queries) {
+        return new FormulaMassIndex(location, "test", source(db, queries), Duration.ofDays(1));
+    }
+
+    private static FormulaMassIndex.FormulaSource source(List<MolecularFormula> db, AtomicInteger queries) {
+        return (from, to) -> {
+            queries.incrementAndGet();
+            return db.stream().filter(f -> f.getMass() >= from && f.getMass() < to).collect(Collectors.toList());
+        };
+    }
+
+    private static List<String> linearScan(List<MolecularFormula> db, double min, double max) {
+        return sorted(db.stream().filter(f -> f.getMass() >= min && f.getMass() <= max).collect(Collectors.toList()));
+    }
+
+    private static List<String> sorted(Collection<MolecularFormula> formulas) {
+        return formulas.stream().map(MolecularFormula::toString).sorted().collect(Collectors.toList());
+    }
+
+    static List<MolecularFormula> database(Random r, int size) {
+        final Set<MolecularFormula> formulas = new HashSet<>();
+        while (formulas.size() < size) {
+            final int c = 2 + r.nextInt(40), n = r.nextInt(6), o = r.nextInt(12), s = r.nextInt(10) == 0 ? 1 : 0;
+            final int h = Math.max(1, 2 * c + 2 + n - 2 * r.nextInt(c));
+            formulas.add(MolecularFormula.parseOrThrow("C" + c + "H" + h + (n > 0 ? "N" + n : "") + (o > 0 ? "O" + o : "") + (s > 0 ? "S" : "")));
+        }
+        return new ArrayList<>(formulas);
+    }
+}
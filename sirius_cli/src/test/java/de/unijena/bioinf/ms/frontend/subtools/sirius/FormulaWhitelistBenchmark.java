@@ -0,0 +1,77 @@
+/*
+ *  This file is part of the SIRIUS Software for analyzing MS and MS/MS data
+ *
+ *  Copyright (C) 2013-2020 Kai Dührkop, Markus Fleischauer, Marcus Ludwig, Martin A. Hoffman, Fleming Kretschmer, Marvin Meusel and Sebastian Böcker,
+ *  Chair of Bioinformatics, Friedrich-Schiller University.
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Affero General Public License
+ *  as published by the Free Software Foundation; either
+ *  version 3 of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License along with SIRIUS.  If not, see <https://www.gnu.org/licenses/agpl-3.0.txt>
+ */
+
+package de.unijena.bioinf.ms.frontend.subtools.sirius;
+
+import de.unijena.bioinf.ChemistryBase.chem.FormulaConstraints;
+import de.unijena.bioinf.ChemistryBase.chem.PrecursorIonType;
+import de.unijena.bioinf.ChemistryBase.jobs.SiriusJobs;
+import de.unijena.bioinf.ChemistryBase.ms.MutableMs2Experiment;
+import de.unijena.bioinf.chemdb.custom.CustomDataSources;
+import de.unijena.bioinf.fingerid.FormulaWhiteListJob;
+import de.unijena.bioinf.ms.frontend.core.ApplicationCore;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+/**
+ * Per compound whitelist latency of the database query ({@link FormulaWhiteListJob}) vs. the local formula index
+ * for synthetic [M+H]+ compounds. The first index pass includes building the missing segments, the second pass
+ * shows the steady state of later compounds and runs.
+ * Usage: FormulaWhitelistBenchmark [databases, comma separated] [compounds]
+ */
+public class FormulaWhitelistBenchmark {
+    public static void main(String[] args) throws Exception {
+        final List<CustomDataSources.Source> dbs = Arrays.stream((args.length > 0 ? args[0] : "BIO").split(","))
+                .map(CustomDataSources::getSourceFromName).collect(Collectors.toList());
+        final int numberOfCompounds = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+
+        final Random r = new Random(42);
+        final List<MutableMs2Experiment> compounds = new ArrayList<>(numberOfCompounds);
+        for (int i = 0; i < numberOfCompounds; i++) {
+            final MutableMs2Experiment exp = new MutableMs2Experiment();
+            exp.setPrecursorIonType(PrecursorIonType.getPrecursorIonType("[M+H]+"));
+            exp.setIonMass(150 + 450 * r.nextDouble());
+            compounds.add(exp);
+        }
+        final FormulaConstraints constraints = compounds.get(0).getAnnotationOrDefault(FormulaConstraints.class);
+
+        long start = System.nanoTime();
+        for (MutableMs2Experiment exp : compounds)
+            SiriusJobs.getGlobalJobManager().submitJob(new FormulaWhiteListJob(ApplicationCore.WEB_API.getChemDB(), dbs, exp, true, false)).awaitResult();
+        final double queryMs = (System.nanoTime() - start) / 1e6 / numberOfCompounds;
+
+        final FormulaMassIndex index = FormulaMassIndex.forSearch(dbs, constraints, true);
+        start = System.nanoTime();
+        for (MutableMs2Experiment exp : compounds)
+            index.whitelist(exp);
+        final double firstIndexMs = (System.nanoTime() - start) / 1e6 / numberOfCompounds;
+
+        start = System.nanoTime();
+        for (MutableMs2Experiment exp : compounds)
+            index.whitelist(exp);
+        final double indexMs = (System.nanoTime() - start) / 1e6 / numberOfCompounds;
+
+        System.out.printf("%d compounds on %s: database query %.3f ms/compound, index (incl. build) %.3f ms/compound, index %.3f ms/compound%n",
+                numberOfCompounds, dbs, queryMs, firstIndexMs, indexMs);
+    }
+}
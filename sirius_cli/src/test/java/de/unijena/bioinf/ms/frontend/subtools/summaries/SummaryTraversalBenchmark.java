@@ -0,0 +1,130 @@
+/*
+ *  This file is part of the SIRIUS Software for analyzing MS and MS/MS data
+ *
+ *  Copyright (C) 2013-2020 Kai Dührkop, Markus Fleischauer, Marcus Ludwig, Martin A. Hoffman, Fleming Kretschmer, Marvin Meusel and Sebastian Böcker,
+ *  Chair of Bioinformatics, Friedrich-Schiller University.
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Affero General Public License
+ *  as published by the Free Software Foundation; either
+ *  version 3 of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License along with SIRIUS.  If not, see <https://www.gnu.org/licenses/agpl-3.0.txt>
+ */
+
+package de.unijena.bioinf.ms.frontend.subtools.summaries;
+
+import de.unijena.bioinf.ChemistryBase.algorithm.scoring.FormulaScore;
+import de.unijena.bioinf.ChemistryBase.algorithm.scoring.SScored;
+import de.unijena.bioinf.ChemistryBase.jobs.SiriusJobs;
+import de.unijena.bioinf.ChemistryBase.utils.FileUtils;
+import de.unijena.bioinf.ms.annotations.DataAnnotation;
+import de.unijena.bioinf.ms.frontend.subtools.export.tables.ExportPredictionsOptions;
+import de.unijena.bioinf.ms.frontend.subtools.export.tables.PredictionsOptions;
+import de.unijena.bioinf.projectspace.*;
+import de.unijena.bioinf.projectspace.summaries.PredictionsSummaryWriter;
+import de.unijena.bioinf.projectspace.summaries.SummaryLocations;
+import org.jetbrains.annotations.NotNull;
+import picocli.CommandLine;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compares the separate traversals of the summary (summarizer job + one prediction export per polarity) with the
+ * single traversal that writes the prediction tables as part of the summarizer job. Counts the instance visits,
+ * measures the wall time and checks that both ways produce identical prediction tables.
+ * Usage: SummaryTraversalBenchmark &lt;project-space&gt;
+ */
+public class SummaryTraversalBenchmark {
+    public static void main(String[] args) throws Exception {
+        final PredictionsOptions predictionsOptions = CommandLine.populateCommand(new PredictionsOptions(), "--all");
+        final SiriusProjectSpace space = new ProjectSpaceIO(ProjectSpaceManager.newDefaultConfig()).openExistingProjectSpace(Path.of(args[0]));
+        final ProjectSpaceManager<Instance> project = new ProjectSpaceManagerFactory.Default().create(space);
+        final Path separateOut = Files.createTempDirectory("summary-separate");
+        final Path singleOut = Files.createTempDirectory("summary-single");
+        try {
+            final AtomicInteger separateVisits = new AtomicInteger();
+            long start = System.nanoTime();
+            runSummarizerJob(project, separateOut, null, separateVisits);
+            for (int polarity : new int[]{1, -1}) {
+                final Path table = separateOut.resolve(polarity > 0 ? SummaryLocations.PREDICTIONS : SummaryLocations.PREDICTIONS_NEG);
+                SiriusJobs.getGlobalJobManager().submitJob(new ExportPredictionsOptions.ExportPredictionJJob(
+                        predictionsOptions, polarity, counting(project, separateVisits), () -> Files.newBufferedWriter(table))).awaitResult();
+            }
+            final double separateSeconds = (System.nanoTime() - start) / 1e9;
+
+            final AtomicInteger singleVisits = new AtomicInteger();
+            start = System.nanoTime();
+            final List<CompoundContainerId> order = new ArrayList<>();
+            project.forEach(i -> order.add(i.getID()));
+            runSummarizerJob(project, singleOut, List.of(
+                    new PredictionsSummaryWriter(predictionsOptions, 1, project, order, () -> Files.newBufferedWriter(singleOut.resolve(SummaryLocations.PREDICTIONS))),
+                    new PredictionsSummaryWriter(predictionsOptions, -1, project, order, () -> Files.newBufferedWriter(singleOut.resolve(SummaryLocations.PREDICTIONS_NEG)))
+            ), singleVisits);
+            final double singleSeconds = (System.nanoTime() - start) / 1e9;
+
+            for (String name : List.of(SummaryLocations.PREDICTIONS, SummaryLocations.PREDICTIONS_NEG)) {
+                final Path a = separateOut.resolve(name), b = singleOut.resolve(name);
+                if (Files.exists(a) != Files.exists(b) || (Files.exists(a) && Files.mismatch(a, b) >= 0))
+                    throw new IllegalStateException("Prediction tables differ: " + name);
+            }
+
+            System.out.printf("%d compounds%nseparate traversals: %d instance visits, %.2fs%nsingle traversal: %d instance visits, %.2fs%n",
+                    project.size(), separateVisits.get(), separateSeconds, singleVisits.get(), singleSeconds);
+        } finally {
+            project.close();
+            FileUtils.deleteRecursively(separateOut);
+            FileUtils.deleteRecursively(singleOut);
+        }
+    }
+
+    private static void runSummarizerJob(ProjectSpaceManager<?> project, Path location, List<Summarizer> additional, AtomicInteger visits) throws Exception {
+        final List<Summarizer> summarizers = new ArrayList<>(List.of(ProjectSpaceManager.defaultSummarizer()));
+        if (additional != null)
+            summarizers.addAll(additional);
+        summarizers.add(new Summarizer() {
+            @Override
+            public List<Class<? extends DataAnnotation>> requiredFormulaResultAnnotations() {
+                return List.of();
+            }
+
+            @Override
+            public void addWriteCompoundSummary(ProjectWriter writer, @NotNull CompoundContainer compound, List<? extends SScored<FormulaResult, ? extends FormulaScore>> formulaResults) {
+                visits.incrementAndGet();
+            }
+
+            @Override
+            public void writeProjectSpaceSummary(ProjectWriter writer) {
+            }
+        });
+        SiriusJobs.getGlobalJobManager().submitJob(project.projectSpace().makeSummarizerJob(location, false, null, summarizers.toArray(Summarizer[]::new))).awaitResult();
+    }
+
+    private static Iterable<Instance> counting(ProjectSpaceManager<Instance> project, AtomicInteger visits) {
+        return () -> {
+            final Iterator<Instance> it = project.iterator();
+            return new Iterator<>() {
+                @Override
+                public boolean hasNext() {
+                    return it.hasNext();
+                }
+
+                @Override
+                public Instance next() {
+                    visits.incrementAndGet();
+                    return it.next();
+                }
+            };
+        };
+    }
+}
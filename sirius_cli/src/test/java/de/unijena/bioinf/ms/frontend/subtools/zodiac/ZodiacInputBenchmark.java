@@ -0,0 +1,64 @@
+/*
+ *  This file is part of the SIRIUS Software for analyzing MS and MS/MS data
+ *
+ *  Copyright (C) 2013-2020 Kai Dührkop, Markus Fleischauer, Marcus Ludwig, Martin A. Hoffman, Fleming Kretschmer, Marvin Meusel and Sebastian Böcker,
+ *  Chair of Bioinformatics, Friedrich-Schiller University.
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Affero General Public License
+ *  as published by the Free Software Foundation; either
+ *  version 3 of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License along with SIRIUS.  If not, see <https://www.gnu.org/licenses/agpl-3.0.txt>
+ */
+
+package de.unijena.bioinf.ms.frontend.subtools.zodiac;
+
+import de.unijena.bioinf.ChemistryBase.jobs.SiriusJobs;
+import de.unijena.bioinf.ChemistryBase.utils.FileUtils;
+import de.unijena.bioinf.projectspace.Instance;
+import de.unijena.bioinf.projectspace.ProjectSpaceManager;
+import de.unijena.bioinf.projectspace.SyntheticProjects;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Prepares the ZODIAC input (load trees, intern formulas, evaluate tree quality, limit candidates) of the same
+ * synthetic project once sequentially and once with the parallel preparation of the ZODIAC sub tool.
+ * Usage: ZodiacInputBenchmark [compounds] [formula results per compound]
+ */
+public class ZodiacInputBenchmark {
+    public static void main(String[] args) throws Exception {
+        final int numberOfCompounds = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        final int resultsPerCompound = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        final Path dir = Files.createTempDirectory("zodiac-input");
+        try {
+            SyntheticProjects.createProject(dir.resolve("sequential"), numberOfCompounds, resultsPerCompound, new Random(42));
+            SyntheticProjects.createProject(dir.resolve("parallel"), numberOfCompounds, resultsPerCompound, new Random(42));
+
+            final ProjectSpaceManager<Instance> sequentialSpace = SyntheticProjects.open(dir.resolve("sequential"), false);
+            long start = System.nanoTime();
+            ZodiacInputTest.prepareSequential(ZodiacInputTest.instances(sequentialSpace));
+            final double sequentialSeconds = (System.nanoTime() - start) / 1e9;
+            sequentialSpace.close();
+
+            final ProjectSpaceManager<Instance> parallelSpace = SyntheticProjects.open(dir.resolve("parallel"), false);
+            start = System.nanoTime();
+            ZodiacInputTest.prepareParallel(ZodiacInputTest.instances(parallelSpace));
+            final double parallelSeconds = (System.nanoTime() - start) / 1e9;
+            parallelSpace.close();
+
+            System.out.printf("%d compounds x %d results on %d cpu threads: sequential %.2fs, parallel %.2fs%n",
+                    numberOfCompounds, resultsPerCompound, SiriusJobs.getCPUThreads(), sequentialSeconds, parallelSeconds);
+        } finally {
+            FileUtils.deleteRecursively(dir);
+        }
+    }
+}
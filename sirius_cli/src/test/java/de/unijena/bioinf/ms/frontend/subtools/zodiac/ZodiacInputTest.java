@@ -0,0 +1,161 @@
+/*
+ *  This file is part of the SIRIUS Software for analyzing MS and MS/MS data
+ *
+ *  Copyright (C) 2013-2020 Kai Dührkop, Markus Fleischauer, Marcus Ludwig, Martin A. Hoffman, Fleming Kretschmer, Marvin Meusel and Sebastian Böcker,
+ *  Chair of Bioinformatics, Friedrich-Schiller University.
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Affero General Public License
+ *  as published by the Free Software Foundation; either
+ *  version 3 of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License along with SIRIUS.  If not, see <https://www.gnu.org/licenses/agpl-3.0.txt>
+ */
+
+package de.unijena.bioinf.ms.frontend.subtools.zodiac;
+
+import de.unijena.bioinf.ChemistryBase.algorithm.scoring.SScored;
+import de.unijena.bioinf.ChemistryBase.chem.MolecularFormula;
+import de.unijena.bioinf.ChemistryBase.jobs.SiriusJobs;
+import de.unijena.bioinf.ChemistryBase.ms.CompoundQuality;
+import de.unijena.bioinf.ChemistryBase.ms.Ms2Experiment;
+import de.unijena.bioinf.ChemistryBase.ms.ft.FTree;
+import de.unijena.bioinf.ChemistryBase.ms.ft.Fragment;
+import de.unijena.bioinf.ChemistryBase.ms.ft.Loss;
+import de.unijena.bioinf.GibbsSampling.properties.ZodiacNumberOfConsideredCandidatesAt300Mz;
+import de.unijena.bioinf.GibbsSampling.properties.ZodiacNumberOfConsideredCandidatesAt800Mz;
+import de.unijena.bioinf.GibbsSampling.properties.ZodiacRatioOfConsideredCandidatesPerIonization;
+import de.unijena.bioinf.projectspace.FormulaResult;
+import de.unijena.bioinf.projectspace.FormulaScoring;
+import de.unijena.bioinf.projectspace.Instance;
+import de.unijena.bioinf.projectspace.ProjectSpaceManager;
+import de.unijena.bioinf.projectspace.SyntheticProjects;
+import de.unijena.bioinf.quality_assessment.TreeQualityEvaluator;
+import de.unijena.bioinf.sirius.scores.SiriusScore;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class ZodiacInputTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testParallelPreparationEqualsSequential() throws Exception {
+        final Path sequential = tmp.newFolder().toPath().resolve("sequential");
+        final Path parallel = tmp.newFolder().toPath().resolve("parallel");
+        SyntheticProjects.createProject(sequential, 60, 12, new Random(42));
+        SyntheticProjects.createProject(parallel, 60, 12, new Random(42));
+
+        final ProjectSpaceManager<Instance> sequentialSpace = SyntheticProjects.open(sequential, false);
+        final ProjectSpaceManager<Instance> parallelSpace = SyntheticProjects.open(parallel, false);
+        try {
+            final Map<Ms2Experiment, List<FTree>> expected = prepareSequential(instances(sequentialSpace));
+            final ZodiacSubToolJob.ZodiacInput actual = prepareParallel(instances(parallelSpace));
+            assertEquals(describe(expected), describe(actual.treeCandidates));
+
+            // equal formulas have to be interned into the same object
+            final Map<MolecularFormula, MolecularFormula> interned = new HashMap<>();
+            for (List<FormulaResult> results : actual.formulaResults.values()) {
+                for (FormulaResult r : results) {
+                    final FTree tree = r.getAnnotationOrThrow(FTree.class);
+                    for (Fragment f : tree)
+                        assertSame(interned.computeIfAbsent(f.getFormula(), k -> k), f.getFormula());
+                    for (Loss l : tree.losses())
+                        assertSame(interned.computeIfAbsent(l.getFormula(), k -> k), l.getFormula());
+                }
+            }
+        } finally {
+            sequentialSpace.close();
+            parallelSpace.close();
+        }
+    }
+
+    static List<Instance> instances(ProjectSpaceManager<Instance> space) {
+        final List<Instance> instances = new ArrayList<>();
+        space.forEach(instances::add);
+        instances.sort(Comparator.comparing(i -> i.getID().getDirectoryName()));
+        return instances;
+    }
+
+    static ZodiacSubToolJob.ZodiacInput prepareParallel(List<Instance> instances) throws Exception {
+        final AtomicReference<ZodiacSubToolJob.ZodiacInput> input = new AtomicReference<>();
+        SiriusJobs.getGlobalJobManager().submitJob(new ZodiacSubToolJob(null, SiriusJobs.getGlobalJobManager()) {
+            @Override
+            protected Iterable<Instance> compute() throws Exception {
+                input.set(prepareInput(instances));
+                return instances;
+            }
+        }).awaitResult();
+        return input.get();
+    }
+
+    /**
+     * The input preparation as it was done before it was parallelized: load, intern, evaluate and limit one
+     * instance after another.
+     */
+    static Map<Ms2Experiment, List<FTree>> prepareSequential(List<Instance> instances) throws Exception {
+        final ZodiacSubToolJob job = new ZodiacSubToolJob(null, SiriusJobs.getGlobalJobManager());
+        final Ms2Experiment settings = instances.get(0).getExperiment();
+        job.maxCandidatesAt300 = settings.getAnnotationOrThrow(ZodiacNumberOfConsideredCandidatesAt300Mz.class).value;
+        job.maxCandidatesAt800 = settings.getAnnotationOrThrow(ZodiacNumberOfConsideredCandidatesAt800Mz.class).value;
+        job.forcedCandidatesPerIonizationRatio = settings.getAnnotationOrThrow(ZodiacRatioOfConsideredCandidatesPerIonization.class).value;
+
+        final Map<Ms2Experiment, List<FTree>> trees = new LinkedHashMap<>();
+        for (Instance inst : instances) {
+            final List<FTree> t = inst.loadFormulaResults(List.of(SiriusScore.class), FormulaScoring.class, FTree.class).stream()
+                    .map(SScored::getCandidate).map(r -> r.getAnnotationOrThrow(FTree.class)).collect(Collectors.toList());
+            if (!t.isEmpty())
+                trees.put(inst.getExperiment(), t);
+        }
+        final HashMap<MolecularFormula, MolecularFormula> formulaMap = new HashMap<>();
+        for (List<FTree> t : trees.values()) {
+            for (FTree tree : t) {
+                for (Fragment f : tree) {
+                    formulaMap.putIfAbsent(f.getFormula(), f.getFormula());
+                    f.setFormula(formulaMap.get(f.getFormula()), f.getIonization());
+                }
+                for (Loss l : tree.losses()) {
+                    formulaMap.putIfAbsent(l.getFormula(), l.getFormula());
+                    l.setFormula(formulaMap.get(l.getFormula()));
+                }
+            }
+        }
+        final TreeQualityEvaluator treeQualityEvaluator = new TreeQualityEvaluator(0.8, 5);
+        for (Map.Entry<Ms2Experiment, List<FTree>> e : trees.entrySet()) {
+            final Ms2Experiment experiment = e.getKey();
+            if (SiriusJobs.getGlobalJobManager().submitJob(treeQualityEvaluator.makeIsAllCandidatesPoorlyExplainSpectrumJob(e.getValue())).awaitResult()) {
+                CompoundQuality quality = experiment.getAnnotationOrNull(CompoundQuality.class);
+                if (quality == null) {
+                    quality = new CompoundQuality(CompoundQuality.CompoundQualityFlag.PoorlyExplained);
+                } else if (quality.isNot(CompoundQuality.CompoundQualityFlag.PoorlyExplained)) {
+                    quality = quality.updateQuality(CompoundQuality.CompoundQualityFlag.PoorlyExplained);
+                    experiment.removeAnnotation(CompoundQuality.class);
+                }
+                experiment.setAnnotation(CompoundQuality.class, quality);
+            }
+            e.setValue(job.applyMaxCandidateThreshold(experiment, e.getValue()));
+        }
+        return trees;
+    }
+
+    private static List<String> describe(Map<Ms2Experiment, List<FTree>> trees) {
+        final List<String> lines = new ArrayList<>();
+        trees.forEach((exp, t) -> lines.add(exp.getName() + " " + exp.getAnnotation(CompoundQuality.class).map(Object::toString).orElse("-") + " "
+                + t.stream().map(tree -> tree.getRoot().getFormula() + "/" + tree.numberOfVertices()).collect(Collectors.joining(","))));
+        return lines;
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ *  This file is part of the SIRIUS Software for analyzing MS and MS/MS data
+ *
+ *  Copyright (C) 2013-2020 Kai Dührkop, Markus Fleischauer, Marcus Ludwig, Martin A. Hoffman, Fleming Kretschmer, Marvin Meusel and Sebastian Böcker,
+ *  Chair of Bioinformatics, Friedrich-Schiller University.
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Affero General Public License
+ *  as published by the Free Software Foundation; either
+ *  version 3 of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License along with SIRIUS.  If not, see <https://www.gnu.org/licenses/agpl-3.0.txt>
+ */
+
+package de.unijena.bioinf.ms.frontend.workflow;
+
+import de.unijena.bioinf.ChemistryBase.ms.Ms2Experiment;
+import de.unijena.bioinf.projectspace.CompoundTimings;
+import de.unijena.bioinf.projectspace.Instance;
+import de.unijena.bioinf.projectspace.ProjectSpaceManager;
+import de.unijena.bioinf.projectspace.SyntheticProjects;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class CompoundCostSchedulerTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testReleasesInstancesAndPersistsOnce() throws Exception {
+        final Path location = tmp.newFolder().toPath().resolve("project");
+        SyntheticProjects.createProject(location, 20, 1, new Random(7));
+
+        ProjectSpaceManager<Instance> project = SyntheticProjects.open(location, false);
+        try {
+            final CompoundCostScheduler scheduler = new CompoundCostScheduler(0);
+            final List<Instance> order = new ArrayList<>();
+            for (Iterator<Instance> it = scheduler.schedule(project.iterator()); it.hasNext(); )
+                order.add(it.next());
+            assertEquals(20, order.size());
+            assertEquals(20, scheduler.numberOfScheduled());
+
+            // only every second instance is computed by SIRIUS, all of them finish
+            for (int i = 0; i < order.size(); i++) {
+                if (i % 2 == 0)
+                    scheduler.record(order.get(i), 1_000_000_000L + i);
+                scheduler.release(order.get(i));
+            }
+            assertEquals(0, scheduler.numberOfScheduled());
+            // nothing is written before the end of the run
+            assertFalse(project.getProjectSpaceProperty(CompoundTimings.class).isPresent());
+            scheduler.persist();
+        } finally {
+            project.close();
+        }
+
+        project = SyntheticProjects.open(location, false);
+        try {
+            final CompoundTimings timings = project.getProjectSpaceProperty(CompoundTimings.class).orElseThrow();
+            assertEquals(10, timings.size());
+            timings.getObservations().values().forEach(o -> assertTrue(o.seconds >= 1));
+        } finally {
+            project.close();
+        }
+    }
+
+    @Test
+    public void testKeepsExperimentsOfBoundedLookahead() throws Exception {
+        final Path location = tmp.newFolder().toPath().resolve("project");
+        SyntheticProjects.createProject(location, 10, 1, new Random(7));
+
+        final ProjectSpaceManager<Instance> project = SyntheticProjects.open(location, false);
+        try {
+            // bounded lookahead: the experiment read for the features is reused by the computation
+            for (Iterator<Instance> it = new CompoundCostScheduler(4).schedule(project.iterator()); it.hasNext(); )
+                assertTrue(it.next().loadCompoundContainer().hasAnnotation(Ms2Experiment.class));
+            // whole input read ahead: only the features are kept
+            for (Iterator<Instance> it = new CompoundCostScheduler(0).schedule(project.iterator()); it.hasNext(); )
+                assertFalse(it.next().loadCompoundContainer().hasAnnotation(Ms2Experiment.class));
+        } finally {
+            project.close();
+        }
+    }
+}
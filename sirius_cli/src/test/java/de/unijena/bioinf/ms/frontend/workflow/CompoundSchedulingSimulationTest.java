@@ -0,0 +1,152 @@
+/*
+ *  This file is part of the SIRIUS Software for analyzing MS and MS/MS data
+ *
+ *  Copyright (C) 2013-2020 Kai Dührkop, Markus Fleischauer, Marcus Ludwig, Martin A. Hoffman, Fleming Kretschmer, Marvin Meusel and Sebastian Böcker,
+ *  Chair of Bioinformatics, Friedrich-Schiller University.
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Affero General Public License
+ *  as published by the Free Software Foundation; either
+ *  version 3 of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License along with SIRIUS.  If not, see <https://www.gnu.org/licenses/agpl-3.0.txt>
+ */
+
+package de.unijena.bioinf.ms.frontend.workflow;
+
+import de.unijena.bioinf.projectspace.CompoundTimings;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Deterministic list scheduling simulation with synthetic SIRIUS durations:
+ * longest-expected-first ordering by a {@link CompoundCostModel} fitted on an earlier run
+ * has to finish the batch earlier than input order (FIFO).
+ */
+public class CompoundSchedulingSimulationTest {
+    private static final int WORKERS = 8;
+    private static final int BATCH_SIZE = 150;
+    private static final int RUNS = 10;
+
+    @Test
+    public void testLongestFirstReducesMakespan() {
+        double fifo = 0, ljf = 0;
+        for (long seed = 0; seed < RUNS; seed++) {
+            final Random rnd = new Random(seed);
+            final CompoundCostModel model = new CompoundCostModel(earlierRun(rnd, 300));
+            final List<Job> batch = batch(rnd, BATCH_SIZE);
+
+            final double fifoMakespan = makespan(batch.iterator());
+            final double ljfMakespan = makespan(new CostOrderedIterator<>(batch.iterator(), j -> model.predictSeconds(j.features), 0));
+            final double lowerBound = Math.max(batch.stream().mapToDouble(j -> j.seconds).sum() / WORKERS,
+                    batch.stream().mapToDouble(j -> j.seconds).max().orElse(0));
+            assertTrue("LJF makespan " + ljfMakespan + " far from lower bound " + lowerBound, ljfMakespan < 1.15 * lowerBound);
+
+            fifo += fifoMakespan;
+            ljf += ljfMakespan;
+        }
+        assertTrue("LJF makespan " + ljf + " not clearly smaller than FIFO makespan " + fifo, ljf < 0.9 * fifo);
+    }
+
+    @Test
+    public void testBoundedLookaheadReducesMakespan() {
+        double fifo = 0, ljf = 0;
+        for (long seed = 0; seed < RUNS; seed++) {
+            final Random rnd = new Random(seed);
+            final CompoundCostModel model = new CompoundCostModel(earlierRun(rnd, 300));
+            final List<Job> batch = batch(rnd, BATCH_SIZE);
+
+            fifo += makespan(batch.iterator());
+            ljf += makespan(new CostOrderedIterator<>(batch.iterator(), j -> model.predictSeconds(j.features), 5 * WORKERS));
+        }
+        assertTrue("Windowed LJF makespan " + ljf + " not smaller than FIFO makespan " + fifo, ljf < fifo);
+    }
+
+    @Test
+    public void testOnlineRefinementImprovesPrediction() {
+        final Random rnd = new Random(13);
+        final CompoundCostModel model = new CompoundCostModel();
+        final List<Job> test = batch(rnd, 200);
+
+        final double errorPrior = logError(model, test);
+        for (Job j : batch(rnd, 200))
+            model.observe(j.features.precursorMz, j.features.ms2Peaks, j.features.adducts, j.features.elements, j.seconds);
+        final double errorFitted = logError(model, test);
+
+        assertEquals(200, model.getNumberOfObservations());
+        assertTrue("Prediction error did not decrease: " + errorPrior + " -> " + errorFitted, errorFitted < 0.5 * errorPrior);
+    }
+
+    @Test
+    public void testCostOrderedIterator() {
+        final List<String> items = List.of("a", "bbb", "cc", "dddd", "ee");
+        final List<String> ordered = new ArrayList<>();
+        new CostOrderedIterator<>(items.iterator(), String::length, 0).forEachRemaining(ordered::add);
+        assertEquals(List.of("dddd", "bbb", "cc", "ee", "a"), ordered);
+
+        final List<String> windowed = new ArrayList<>();
+        new CostOrderedIterator<>(items.iterator(), String::length, 2).forEachRemaining(windowed::add);
+        assertEquals(List.of("bbb", "cc", "dddd", "ee", "a"), windowed);
+    }
+
+    private static double makespan(Iterator<Job> order) {
+        final PriorityQueue<Double> freeAt = new PriorityQueue<>();
+        for (int i = 0; i < WORKERS; i++)
+            freeAt.add(0d);
+        double makespan = 0;
+        while (order.hasNext()) {
+            final double end = freeAt.poll() + order.next().seconds;
+            makespan = Math.max(makespan, end);
+            freeAt.add(end);
+        }
+        return makespan;
+    }
+
+    private static double logError(CompoundCostModel model, List<Job> jobs) {
+        return jobs.stream().mapToDouble(j -> {
+            final double d = Math.log(model.predictSeconds(j.features)) - Math.log(j.seconds);
+            return d * d;
+        }).average().orElse(0);
+    }
+
+    private static CompoundTimings earlierRun(Random rnd, int size) {
+        final Map<String, CompoundTimings.Observation> observations = new LinkedHashMap<>();
+        for (Job j : batch(rnd, size))
+            observations.put("earlier_" + observations.size(), new CompoundTimings.Observation(
+                    j.features.precursorMz, j.features.ms2Peaks, j.features.adducts, j.features.elements, j.seconds));
+        return new CompoundTimings(observations);
+    }
+
+    private static List<Job> batch(Random rnd, int size) {
+        final List<Job> jobs = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            // most compounds are small, few are large -> heavy tailed durations
+            final double mz = 100 + 1100 * Math.pow(rnd.nextDouble(), 2);
+            final int peaks = 5 + rnd.nextInt(150);
+            final int adducts = 1 + rnd.nextInt(5);
+            final int elements = 5 + rnd.nextInt(5);
+            final double log = -2 + 2 * (mz / 1000) + 2 * (mz / 1000) * (mz / 1000) + 0.3 * Math.log1p(peaks)
+                    + 0.1 * adducts + 0.15 * elements + 0.3 * rnd.nextGaussian();
+            jobs.add(new Job(new CompoundTimings.Observation(mz, peaks, adducts, elements, Double.NaN), Math.exp(log)));
+        }
+        return jobs;
+    }
+
+    private static class Job {
+        final CompoundTimings.Observation features;
+        final double seconds;
+
+        Job(CompoundTimings.Observation features, double seconds) {
+            this.features = features;
+            this.seconds = seconds;
+        }
+    }
+}
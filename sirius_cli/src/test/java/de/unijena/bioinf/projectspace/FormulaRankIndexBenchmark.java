@@ -0,0 +1,81 @@
+/*
+ *  This file is part of the SIRIUS Software for analyzing MS and MS/MS data
+ *
+ *  Copyright (C) 2013-2020 Kai Dührkop, Markus Fleischauer, Marcus Ludwig, Martin A. Hoffman, Fleming Kretschmer, Marvin Meusel and Sebastian Böcker,
+ *  Chair of Bioinformatics, Friedrich-Schiller University.
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Affero General Public License
+ *  as published by the Free Software Foundation; either
+ *  version 3 of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License along with SIRIUS.  If not, see <https://www.gnu.org/licenses/agpl-3.0.txt>
+ */
+
+package de.unijena.bioinf.projectspace;
+
+import de.unijena.bioinf.ChemistryBase.algorithm.scoring.FormulaScore;
+import de.unijena.bioinf.ChemistryBase.algorithm.scoring.SScored;
+import de.unijena.bioinf.ChemistryBase.utils.FileUtils;
+import de.unijena.bioinf.sirius.scores.SiriusScore;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Looks up the top formula result of every compound of a synthetic project, once by ranking all results (what
+ * loadTopFormulaResult does without rank index) and once from the rank index that has been stored together with the
+ * scores. Every pass uses a freshly opened project, so nothing is served from the instance caches.
+ * Usage: FormulaRankIndexBenchmark [compounds] [results per compound]
+ */
+public class FormulaRankIndexBenchmark {
+    private static final List<Class<? extends FormulaScore>> RANKING = List.of(SiriusScore.class);
+
+    public static void main(String[] args) throws Exception {
+        final int numberOfCompounds = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        final int resultsPerCompound = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        final Path dir = Files.createTempDirectory("formula-rank-index");
+        try {
+            final Path location = dir.resolve("project");
+            SyntheticProjects.createProject(location, numberOfCompounds, resultsPerCompound, new Random(42));
+
+            final double rankedSeconds = pass(location, false);
+            final double indexedSeconds = pass(location, true);
+
+            System.out.printf("%d compounds x %d results: full ranking %.2fs, indexed %.2fs%n",
+                    numberOfCompounds, resultsPerCompound, rankedSeconds, indexedSeconds);
+        } finally {
+            FileUtils.deleteRecursively(dir);
+        }
+    }
+
+    private static double pass(Path location, boolean indexed) throws Exception {
+        final ProjectSpaceManager<Instance> project = SyntheticProjects.open(location, false);
+        try {
+            final long start = System.nanoTime();
+            int found = 0;
+            for (Instance inst : project) {
+                if (indexed) {
+                    if (inst.loadTopFormulaResult(RANKING, FormulaScoring.class).isPresent())
+                        found++;
+                } else {
+                    final List<? extends SScored<FormulaResult, ? extends FormulaScore>> ranked = inst.loadFormulaResults(RANKING);
+                    if (!ranked.isEmpty() && inst.loadFormulaResult(ranked.get(0).getCandidate().getId(), FormulaScoring.class).isPresent())
+                        found++;
+                }
+            }
+            if (found != project.size())
+                throw new IllegalStateException("Missing top results: " + (project.size() - found));
+            return (System.nanoTime() - start) / 1e9;
+        } finally {
+            project.close();
+        }
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ *  This file is part of the SIRIUS Software for analyzing MS and MS/MS data
+ *
+ *  Copyright (C) 2013-2020 Kai Dührkop, Markus Fleischauer, Marcus Ludwig, Martin A. Hoffman, Fleming Kretschmer, Marvin Meusel and Sebastian Böcker,
+ *  Chair of Bioinformatics, Friedrich-Schiller University.
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Affero General Public License
+ *  as published by the Free Software Foundation; either
+ *  version 3 of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License along with SIRIUS.  If not, see <https://www.gnu.org/licenses/agpl-3.0.txt>
+ */
+
+package de.unijena.bioinf.projectspace;
+
+import de.unijena.bioinf.ChemistryBase.algorithm.scoring.FormulaScore;
+import de.unijena.bioinf.ChemistryBase.ms.ft.FTree;
+import de.unijena.bioinf.GibbsSampling.ZodiacScore;
+import de.unijena.bioinf.sirius.scores.SiriusScore;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class FormulaRankIndexTest {
+    private static final List<Class<? extends FormulaScore>> SIRIUS = List.of(SiriusScore.class);
+    private static final List<Class<? extends FormulaScore>> ZODIAC = List.of(ZodiacScore.class, SiriusScore.class);
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testIndexedTopResultsMatchRanking() throws IOException {
+        final Path location = tmp.newFolder().toPath().resolve("project");
+        SyntheticProjects.createProject(location, 30, 10, new Random(42));
+        assertConsistent(location, SIRIUS);
+        // second open reads the persisted index
+        assertConsistent(location, SIRIUS);
+        final ProjectSpaceManager<Instance> project = SyntheticProjects.open(location, false);
+        try {
+            for (Instance inst : project)
+                assertFalse(inst.loadCompoundContainer(FormulaRankIndex.class).getAnnotationOrThrow(FormulaRankIndex.class).isEmpty());
+        } finally {
+            project.close();
+        }
+    }
+
+    @Test
+    public void testIndexFollowsScoreUpdates() throws IOException {
+        final Path location = tmp.newFolder().toPath().resolve("project");
+        SyntheticProjects.createProject(location, 30, 10, new Random(1));
+        assertConsistent(location, SIRIUS);
+
+        // batched score only updates
+        SyntheticProjects.writeZodiacScores(location, new Random(2), Instance::updateFormulaScorings);
+        assertConsistent(location, ZODIAC);
+        // full result updates with different scores
+        SyntheticProjects.writeZodiacScores(location, new Random(3), (inst, results) ->
+                results.forEach(r -> inst.updateFormulaResult(r, FormulaScoring.class)));
+        assertConsistent(location, ZODIAC);
+        assertConsistent(location, SIRIUS);
+
+        // removing results
+        final ProjectSpaceManager<Instance> project = SyntheticProjects.open(location, false);
+        try {
+            for (Instance inst : project) {
+                inst.loadTopFormulaResult(SIRIUS);
+                final List<FormulaResultId> ids = inst.loadFormulaResults(SIRIUS).stream()
+                        .map(s -> s.getCandidate().getId()).collect(Collectors.toList());
+                inst.deleteFormulaResults(ids.subList(0, 3));
+                assertTopEqualsRanking(inst, SIRIUS);
+            }
+        } finally {
+            project.close();
+        }
+        assertConsistent(location, SIRIUS);
+    }
+
+    @Test
+    public void testIndexFollowsRecompute() throws IOException {
+        final Path location = tmp.newFolder().toPath().resolve("project");
+        SyntheticProjects.createProject(location, 20, 10, new Random(6));
+        assertConsistent(location, SIRIUS);
+
+        // recompute the way the SIRIUS sub tool does it, results get the same ids again but reversed scores
+        final Map<String, String> expectedTop = new HashMap<>();
+        ProjectSpaceManager<Instance> project = SyntheticProjects.open(location, false);
+        try {
+            for (Instance inst : project) {
+                final List<FTree> trees = inst.loadFormulaResults(SIRIUS, FTree.class).stream()
+                        .map(s -> s.getCandidate().getAnnotationOrThrow(FTree.class)).collect(Collectors.toList());
+                inst.deleteFormulaResults();
+                for (int i = 0; i < trees.size(); i++) {
+                    final FormulaResult fr = inst.newFormulaResultWithUniqueId(trees.get(i)).orElseThrow();
+                    final FormulaScoring scoring = new FormulaScoring();
+                    scoring.setAnnotation(SiriusScore.class, new SiriusScore(i));
+                    fr.setAnnotation(FormulaScoring.class, scoring);
+                    inst.updateFormulaResult(fr, FormulaScoring.class);
+                    expectedTop.put(inst.getID().getDirectoryName(), fr.getId().fileName());
+                }
+                inst.updateCompoundID();
+            }
+        } finally {
+            project.close();
+        }
+
+        assertConsistent(location, SIRIUS);
+        project = SyntheticProjects.open(location, false);
+        try {
+            for (Instance inst : project)
+                assertEquals(expectedTop.get(inst.getID().getDirectoryName()), inst.loadTopFormulaResult(SIRIUS).map(r -> r.getId().fileName()).orElseThrow());
+        } finally {
+            project.close();
+        }
+    }
+
+    @Test
+    public void testReadsDoNotWriteIndex() throws IOException {
+        final Path location = tmp.newFolder().toPath().resolve("project");
+        SyntheticProjects.createProject(location, 20, 10, new Random(4));
+        SyntheticProjects.writeZodiacScores(location, new Random(5), Instance::updateFormulaScorings);
+        final Map<Path, String> before = rankIndexFiles(location);
+        assertEquals(20, before.size());
+
+        // ranking that is not indexed is sorted in memory
+        assertConsistent(location, SIRIUS);
+        assertEquals(before, rankIndexFiles(location));
+
+        // missing index falls back to the in memory sort and is not rebuilt by reads
+        for (Path file : before.keySet())
+            Files.delete(file);
+        assertConsistent(location, ZODIAC);
+        assertConsistent(location, SIRIUS);
+        assertTrue(rankIndexFiles(location).isEmpty());
+    }
+
+    @Test
+    public void testReadSerializedIndex() throws IOException {
+        final FormulaRankIndex index = FormulaRankIndexSerializer.read(new BufferedReader(new StringReader(
+                "ZodiacScore,SiriusScore\tb\ta\tc\nSiriusScore\ta\tb\tc\n")));
+        assertEquals(Set.of("ZodiacScore,SiriusScore", "SiriusScore"), index.getRankings().keySet());
+        assertEquals(List.of("a", "b", "c"), index.getRankings().get(FormulaRankIndex.key(SIRIUS)));
+        assertTrue(FormulaRankIndex.EMPTY.getRanking(SIRIUS, List.of()).isEmpty());
+    }
+
+    private static Map<Path, String> rankIndexFiles(Path location) throws IOException {
+        try (Stream<Path> files = Files.walk(location)) {
+            final Map<Path, String> contents = new HashMap<>();
+            for (Path file : files.filter(f -> f.getFileName().toString().equals(FormulaRankIndexSerializer.RANK_INDEX)).collect(Collectors.toList()))
+                contents.put(file, Files.readString(file));
+            return contents;
+        }
+    }
+
+    private static void assertConsistent(Path location, List<Class<? extends FormulaScore>> ranking) throws IOException {
+        final ProjectSpaceManager<Instance> project = SyntheticProjects.open(location, false);
+        try {
+            for (Instance inst : project) {
+                assertTopEqualsRanking(inst, ranking);
+                // clear the in memory state, so that the ranking is computed from disk again
+                inst.clearFormulaResultsCache();
+                assertTopEqualsRanking(inst, ranking);
+            }
+        } finally {
+            project.close();
+        }
+    }
+
+    private static void assertTopEqualsRanking(Instance inst, List<Class<? extends FormulaScore>> ranking) {
+        final List<FormulaResultId> expected = inst.loadFormulaResults(ranking, FormulaScoring.class).stream()
+                .map(s -> s.getCandidate().getId()).collect(Collectors.toList());
+        final List<FormulaResultId> actual = inst.loadTopFormulaResults(expected.size(), ranking).stream()
+                .map(FormulaResult::getId).collect(Collectors.toList());
+        assertEquals(inst.getID().getDirectoryName(), expected, actual);
+        assertEquals(expected.stream().findFirst(), inst.loadTopFormulaResult(ranking).map(FormulaResult::getId));
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ *  This file is part of the SIRIUS Software for analyzing MS and MS/MS data
+ *
+ *  Copyright (C) 2013-2020 Kai Dührkop, Markus Fleischauer, Marcus Ludwig, Martin A. Hoffman, Fleming Kretschmer, Marvin Meusel and Sebastian Böcker,
+ *  Chair of Bioinformatics, Friedrich-Schiller University.
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Affero General Public License
+ *  as published by the Free Software Foundation; either
+ *  version 3 of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License along with SIRIUS.  If not, see <https://www.gnu.org/licenses/agpl-3.0.txt>
+ */
+
+package de.unijena.bioinf.projectspace;
+
+import de.unijena.bioinf.ChemistryBase.jobs.SiriusJobs;
+import de.unijena.bioinf.ChemistryBase.utils.FileUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Writes the default summaries of an existing project, once with the summarizers reading all components during the
+ * summary traversal and once with the summarizers reading only what they write via {@link FormulaResultProjection}
+ * (CANOPUS results of the top hits, top k formula and structure candidates).
+ * Every pass uses a freshly opened project and writes to a new temporary location.
+ * Usage: FormulaResultProjectionBenchmark &lt;project&gt; [top k] [repetitions]
+ */
+public class FormulaResultProjectionBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: FormulaResultProjectionBenchmark <project> [top k] [repetitions]");
+            System.exit(1);
+        }
+        final Path location = Path.of(args[0]);
+        final int topK = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+        final int repetitions = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+
+        for (int i = 0; i < repetitions; i++) {
+            final double fullSeconds = pass(location, false, topK);
+            final double projectedSeconds = pass(location, true, topK);
+            System.out.printf("round %d: full %.2fs, projected (top %d) %.2fs%n", i + 1, fullSeconds, topK, projectedSeconds);
+        }
+    }
+
+    private static double pass(Path location, boolean projected, int topK) throws Exception {
+        final ProjectSpaceManager<Instance> project = SyntheticProjects.open(location, false);
+        final Path out = Files.createTempDirectory("summary-projection");
+        try {
+            final Summarizer[] summarizers = projected
+                    ? ProjectSpaceManager.defaultSummarizer(project, topK)
+                    : ProjectSpaceManager.defaultSummarizer();
+            final long start = System.nanoTime();
+            SiriusJobs.getGlobalJobManager().submitJob(project.projectSpace().makeSummarizerJob(out, false, null, summarizers)).awaitResult();
+            return (System.nanoTime() - start) / 1e9;
+        } finally {
+            project.close();
+            FileUtils.deleteRecursively(out);
+        }
+    }
+}
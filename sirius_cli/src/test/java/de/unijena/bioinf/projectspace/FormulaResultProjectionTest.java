@@ -0,0 +1,194 @@
+/*
+ *  This file is part of the SIRIUS Software for analyzing MS and MS/MS data
+ *
+ *  Copyright (C) 2013-2020 Kai Dührkop, Markus Fleischauer, Marcus Ludwig, Martin A. Hoffman, Fleming Kretschmer, Marvin Meusel and Sebastian Böcker,
+ *  Chair of Bioinformatics, Friedrich-Schiller University.
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Affero General Public License
+ *  as published by the Free Software Foundation; either
+ *  version 3 of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License along with SIRIUS.  If not, see <https://www.gnu.org/licenses/agpl-3.0.txt>
+ */
+
+package de.unijena.bioinf.projectspace;
+
+import de.unijena.bioinf.ChemistryBase.algorithm.scoring.FormulaScore;
+import de.unijena.bioinf.ChemistryBase.algorithm.scoring.SScored;
+import de.unijena.bioinf.projectspace.fingerid.FBCandidateNumber;
+import de.unijena.bioinf.projectspace.fingerid.FingerIdLocations;
+import de.unijena.bioinf.sirius.scores.SiriusScore;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class FormulaResultProjectionTest {
+    private static final List<Class<? extends FormulaScore>> SIRIUS = List.of(SiriusScore.class);
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testProjectedProbabilitiesAreSlicesOfFullVector() throws IOException {
+        final Random r = new Random(42);
+        for (int round = 0; round < 20; round++) {
+            final double[] full = randomVector(r, 1 + r.nextInt(5000));
+            final String content = vectorFile(full);
+            assertArrayEquals(full, parseFully(content), 0d);
+
+            final int[] indices = new int[1 + r.nextInt(50)];
+            for (int i = 0; i < indices.length; i++)
+                indices[i] = r.nextInt(full.length);
+            indices[0] = full.length - 1;
+
+            final double[] projected = FormulaResultProjection.readProbabilities(reader(content), indices);
+            for (int i = 0; i < indices.length; i++)
+                assertEquals(full[indices[i]], projected[i], 0d);
+        }
+    }
+
+    @Test
+    public void testMissingProbabilitiesAreNaN() throws IOException {
+        final double[] projected = FormulaResultProjection.readProbabilities(reader(vectorFile(new double[]{0.5, 0.25})), new int[]{1, 7});
+        assertEquals(0.25, projected[0], 0d);
+        assertTrue(Double.isNaN(projected[1]));
+        assertEquals(0, FormulaResultProjection.readProbabilities(reader(""), new int[0]).length);
+    }
+
+    @Test
+    public void testCountRowsMatchesFullParse() throws IOException {
+        final Random r = new Random(7);
+        for (int round = 0; round < 20; round++) {
+            final String table = candidateTable(r, r.nextInt(300));
+            final long parsed = table.lines().skip(1).filter(l -> !l.isBlank()).count();
+            assertEquals(parsed, FormulaResultProjection.countRows(reader(table)));
+        }
+        assertEquals(0, FormulaResultProjection.countRows(reader("")));
+    }
+
+    @Test
+    public void testProjectedReadsFromProject() throws IOException {
+        final Path location = tmp.newFolder().toPath().resolve("project");
+        SyntheticProjects.createProject(location, 10, 5, new Random(42));
+        final Random r = new Random(3);
+        final Map<FormulaResultId, double[]> vectors = new HashMap<>();
+        final Map<FormulaResultId, Integer> counts = new HashMap<>();
+
+        ProjectSpaceManager<Instance> project = SyntheticProjects.open(location, false);
+        try {
+            for (Instance inst : project) {
+                final ProjectWriter writer = project.projectSpace().ioProvider.newWriter(project.projectSpace()::getProjectSpaceProperty);
+                writer.inDirectory(inst.getID().getDirectoryName(), () -> {
+                    for (SScored<FormulaResult, ? extends FormulaScore> s : inst.loadFormulaResults(SIRIUS)) {
+                        final FormulaResultId id = s.getCandidate().getId();
+                        final double[] vector = randomVector(r, 200);
+                        final int rows = r.nextInt(40);
+                        writer.textFile(FormulaResultProjection.Vector.FINGERPRINT.relFilePath.apply(id), w -> w.write(vectorFile(vector)));
+                        writer.textFile(FingerIdLocations.FINGERBLAST.relFilePath(id), w -> w.write(candidateTable(r, rows)));
+                        vectors.put(id, vector);
+                        counts.put(id, rows);
+                    }
+                    return null;
+                });
+            }
+        } finally {
+            project.close();
+        }
+
+        final int[] indices = {0, 17, 199};
+        final FormulaResultProjection projection = FormulaResultProjection.NONE.withStructureCount()
+                .withProbabilities(FormulaResultProjection.Vector.FINGERPRINT, indices);
+        project = SyntheticProjects.open(location, false);
+        try {
+            for (Instance inst : project) {
+                final List<? extends SScored<FormulaResult, ? extends FormulaScore>> full = inst.loadFormulaResults(SIRIUS);
+                final List<? extends SScored<FormulaResult, ? extends FormulaScore>> projected = inst.loadFormulaResults(SIRIUS, projection, FormulaScoring.class);
+                assertEquals(full.size(), projected.size());
+                for (int i = 0; i < full.size(); i++) {
+                    final FormulaResult fr = projected.get(i).getCandidate();
+                    assertEquals(full.get(i).getCandidate().getId(), fr.getId());
+                    assertTrue(fr.getAnnotation(FormulaScoring.class).isPresent());
+
+                    final FormulaResultProjection.Values values = fr.getAnnotationOrThrow(FormulaResultProjection.Values.class);
+                    assertEquals(counts.get(fr.getId()).intValue(), values.getNumberOfStructures().orElseThrow());
+                    final double[] probs = values.getProbabilities(FormulaResultProjection.Vector.FINGERPRINT).orElseThrow();
+                    for (int j = 0; j < indices.length; j++)
+                        assertEquals(vectors.get(fr.getId())[indices[j]], probs[j], 0d);
+                }
+                // projected values never end up in the cache
+                for (SScored<FormulaResult, ? extends FormulaScore> s : inst.loadFormulaResults(SIRIUS, FormulaScoring.class))
+                    assertFalse(s.getCandidate().getAnnotation(FormulaResultProjection.Values.class).isPresent());
+            }
+        } finally {
+            project.close();
+        }
+    }
+
+    @Test
+    public void testCandidateLimitIsNotSetOnSharedId() throws IOException {
+        final Path location = tmp.newFolder().toPath().resolve("project");
+        SyntheticProjects.createProject(location, 3, 4, new Random(5));
+        final FormulaResultProjection projection = FormulaResultProjection.NONE.withTopStructures(1);
+        final ProjectSpaceManager<Instance> project = SyntheticProjects.open(location, false);
+        try {
+            for (Instance inst : project) {
+                for (SScored<FormulaResult, ? extends FormulaScore> s : inst.loadFormulaResults(SIRIUS)) {
+                    final FormulaResultId id = s.getCandidate().getId();
+                    final FormulaResultId readId = projection.readId(id);
+                    assertNotSame(id, readId);
+                    assertEquals(id.fileName(), readId.fileName());
+                    assertEquals(id.getParentId(), readId.getParentId());
+                    assertTrue(readId.getAnnotation(FBCandidateNumber.class).isPresent());
+                    assertFalse(id.getAnnotation(FBCandidateNumber.class).isPresent());
+                }
+            }
+        } finally {
+            project.close();
+        }
+    }
+
+    private static double[] randomVector(Random r, int length) {
+        final double[] v = new double[length];
+        for (int i = 0; i < length; i++)
+            v[i] = r.nextDouble();
+        return v;
+    }
+
+    private static String vectorFile(double[] vector) {
+        final StringBuilder buf = new StringBuilder();
+        for (double v : vector)
+            buf.append(v).append('\n');
+        return buf.toString();
+    }
+
+    private static String candidateTable(Random r, int rows) {
+        final StringBuilder buf = new StringBuilder("inchikey2D\tinchi\tmolecularFormula\trank\tscore\tname\tsmiles\txlogp\tpubchemids\tlinks\tdbflags\n");
+        for (int i = 0; i < rows; i++)
+            buf.append("KEY").append(i).append("\tInChI=1S/C").append(i).append("\tC").append(i + 1)
+                    .append('\t').append(i + 1).append('\t').append(-r.nextDouble() * i)
+                    .append("\tname ").append(i).append("\tC\t\t\t\t0\n");
+        return buf.toString();
+    }
+
+    private static double[] parseFully(String content) {
+        return content.lines().filter(l -> !l.isBlank()).mapToDouble(Double::parseDouble).toArray();
+    }
+
+    private static BufferedReader reader(String content) {
+        return new BufferedReader(new StringReader(content));
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ *  This file is part of the SIRIUS Software for analyzing MS and MS/MS data
+ *
+ *  Copyright (C) 2013-2020 Kai Dührkop, Markus Fleischauer, Marcus Ludwig, Martin A. Hoffman, Fleming Kretschmer, Marvin Meusel and Sebastian Böcker,
+ *  Chair of Bioinformatics, Friedrich-Schiller University.
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Affero General Public License
+ *  as published by the Free Software Foundation; either
+ *  version 3 of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License along with SIRIUS.  If not, see <https://www.gnu.org/licenses/agpl-3.0.txt>
+ */
+
+package de.unijena.bioinf.projectspace;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static de.unijena.bioinf.projectspace.SyntheticProjects.*;
+import static org.junit.Assert.assertEquals;
+
+public class FormulaScoringUpdateTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testScoreOnlyUpdateEqualsFullUpdate() throws IOException {
+        final Path full = tmp.newFolder().toPath().resolve("full");
+        final Path scoreOnly = tmp.newFolder().toPath().resolve("score-only");
+        createProject(full, 50, 12, new Random(42));
+        createProject(scoreOnly, 50, 12, new Random(42));
+
+        writeZodiacScores(full, new Random(7), (inst, results) ->
+                results.forEach(r -> inst.updateFormulaResult(r, FormulaScoring.class)));
+        writeZodiacScores(scoreOnly, new Random(7), Instance::updateFormulaScorings);
+
+        final Map<String, List<String>> expected = readRankings(full);
+        final Map<String, List<String>> actual = readRankings(scoreOnly);
+        assertEquals(50, expected.size());
+        assertEquals(expected, actual);
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ *  This file is part of the SIRIUS Software for analyzing MS and MS/MS data
+ *
+ *  Copyright (C) 2013-2020 Kai Dührkop, Markus Fleischauer, Marcus Ludwig, Martin A. Hoffman, Fleming Kretschmer, Marvin Meusel and Sebastian Böcker,
+ *  Chair of Bioinformatics, Friedrich-Schiller University.
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Affero General Public License
+ *  as published by the Free Software Foundation; either
+ *  version 3 of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License along with SIRIUS.  If not, see <https://www.gnu.org/licenses/agpl-3.0.txt>
+ */
+
+package de.unijena.bioinf.projectspace;
+
+import de.unijena.bioinf.ChemistryBase.jobs.SiriusJobs;
+import de.unijena.bioinf.ChemistryBase.utils.FileUtils;
+import de.unijena.bioinf.GibbsSampling.ZodiacScore;
+import de.unijena.bioinf.jjobs.BasicJJob;
+import de.unijena.bioinf.jjobs.JJob;
+import de.unijena.bioinf.jjobs.Partition;
+import de.unijena.bioinf.sirius.scores.SiriusScore;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+
+/**
+ * Measures the ZODIAC write-back phase (patch the scoring of every formula result and update the ranking score
+ * types) of a synthetic project, once with one full result update per formula result and once with the batched
+ * score-only update per compound. Both runs are parallelized over the IO threads like the ZODIAC sub tool does it
+ * and the persisted rankings are checked for equality.
+ * Usage: FormulaScoringWriteBackBenchmark [compounds] [results per compound]
+ */
+public class FormulaScoringWriteBackBenchmark {
+    public static void main(String[] args) throws Exception {
+        final int numberOfCompounds = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        final int resultsPerCompound = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        final Path dir = Files.createTempDirectory("scoring-write-back");
+        try {
+            final Path full = dir.resolve("full"), scoreOnly = dir.resolve("score-only");
+            SyntheticProjects.createProject(full, numberOfCompounds, resultsPerCompound, new Random(42));
+            SyntheticProjects.createProject(scoreOnly, numberOfCompounds, resultsPerCompound, new Random(42));
+
+            final double fullSeconds = writeBack(full, (inst, results) ->
+                    results.forEach(r -> inst.updateFormulaResult(r, FormulaScoring.class)));
+            final double scoreOnlySeconds = writeBack(scoreOnly, Instance::updateFormulaScorings);
+
+            if (!SyntheticProjects.readRankings(full).equals(SyntheticProjects.readRankings(scoreOnly)))
+                throw new IllegalStateException("Persisted rankings differ!");
+
+            System.out.printf("%d compounds x %d results on %d io threads: full update %.2fs, score-only update %.2fs%n",
+                    numberOfCompounds, resultsPerCompound, SiriusJobs.getGlobalJobManager().getIOThreads(), fullSeconds, scoreOnlySeconds);
+        } finally {
+            FileUtils.deleteRecursively(dir);
+        }
+    }
+
+    private static double writeBack(Path location, BiConsumer<Instance, List<FormulaResult>> update) throws Exception {
+        final ProjectSpaceManager<Instance> project = SyntheticProjects.open(location, false);
+        try {
+            // load everything upfront, only the write-back is measured
+            final List<Instance> instances = new ArrayList<>();
+            final List<List<FormulaResult>> results = new ArrayList<>();
+            final Random r = new Random(7);
+            for (Instance inst : project) {
+                final List<FormulaResult> l = new ArrayList<>();
+                inst.loadFormulaResults(FormulaScoring.class).forEach(s -> l.add(s.getCandidate()));
+                l.forEach(fr -> fr.getAnnotationOrThrow(FormulaScoring.class).setAnnotation(ZodiacScore.class, new ZodiacScore(r.nextDouble())));
+                instances.add(inst);
+                results.add(l);
+            }
+
+            final long start = System.nanoTime();
+            final List<Integer> indices = new ArrayList<>();
+            for (int i = 0; i < instances.size(); i++)
+                indices.add(i);
+            final List<BasicJJob<Boolean>> jobs = Partition.ofNumber(indices, Math.max(1, SiriusJobs.getGlobalJobManager().getIOThreads()))
+                    .stream().map(part -> new BasicJJob<Boolean>(JJob.JobType.IO) {
+                        @Override
+                        protected Boolean compute() {
+                            for (int i : part) {
+                                final Instance inst = instances.get(i);
+                                update.accept(inst, results.get(i));
+                                inst.getID().setRankingScoreTypes(ZodiacScore.class, SiriusScore.class);
+                                inst.updateCompoundID();
+                            }
+                            return true;
+                        }
+                    }).collect(Collectors.toList());
+            jobs.forEach(SiriusJobs.getGlobalJobManager()::submitJob);
+            for (BasicJJob<Boolean> job : jobs)
+                job.awaitResult();
+            return (System.nanoTime() - start) / 1e9;
+        } finally {
+            project.close();
+        }
+    }
+}
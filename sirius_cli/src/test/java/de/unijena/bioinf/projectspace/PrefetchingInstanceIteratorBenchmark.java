@@ -0,0 +1,106 @@
+/*
+ *  This file is part of the SIRIUS Software for analyzing MS and MS/MS data
+ *
+ *  Copyright (C) 2013-2020 Kai Dührkop, Markus Fleischauer, Marcus Ludwig, Martin A. Hoffman, Fleming Kretschmer, Marvin Meusel and Sebastian Böcker,
+ *  Chair of Bioinformatics, Friedrich-Schiller University.
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Affero General Public License
+ *  as published by the Free Software Foundation; either
+ *  version 3 of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License along with SIRIUS.  If not, see <https://www.gnu.org/licenses/agpl-3.0.txt>
+ */
+
+package de.unijena.bioinf.projectspace;
+
+import de.unijena.bioinf.ChemistryBase.jobs.SiriusJobs;
+import de.unijena.bioinf.ChemistryBase.ms.Ms2Experiment;
+import de.unijena.bioinf.ChemistryBase.ms.ft.FTree;
+import de.unijena.bioinf.ChemistryBase.utils.FileUtils;
+import de.unijena.bioinf.ms.annotations.DataAnnotation;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Visits every compound of a synthetic project with its input experiment, formula scorings and trees, once loading
+ * each instance on the consuming thread and once with the {@link PrefetchingInstanceIterator}. Runs on a directory
+ * project and on a zip compressed copy of it. Every pass uses a freshly opened project, so nothing is served from the
+ * instance caches.
+ * Usage: PrefetchingInstanceIteratorBenchmark [compounds] [results per compound]
+ */
+public class PrefetchingInstanceIteratorBenchmark {
+    private static final List<Class<? extends DataAnnotation>> COMPOUND = List.of(Ms2Experiment.class);
+    private static final List<Class<? extends DataAnnotation>> RESULTS = List.of(FormulaScoring.class, FTree.class);
+
+    public static void main(String[] args) throws Exception {
+        final int numberOfCompounds = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        final int resultsPerCompound = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        final Path dir = Files.createTempDirectory("prefetching-iterator");
+        try {
+            final Path directory = dir.resolve("project");
+            final Path zip = dir.resolve("project.sirius");
+            SyntheticProjects.createProject(directory, numberOfCompounds, resultsPerCompound, new Random(42));
+            final ProjectSpaceManager<Instance> source = SyntheticProjects.open(directory, false);
+            try {
+                ProjectSpaceIO.copyProject(source.projectSpace(), zip, false);
+            } finally {
+                source.close();
+            }
+
+            for (Path location : List.of(directory, zip)) {
+                final double plainSeconds = pass(location, false);
+                final double prefetchedSeconds = pass(location, true);
+                System.out.printf("%s, %d compounds x %d results on %d io threads: plain %.2fs, prefetched %.2fs%n",
+                        location.getFileName(), numberOfCompounds, resultsPerCompound,
+                        SiriusJobs.getGlobalJobManager().getIOThreads(), plainSeconds, prefetchedSeconds);
+            }
+        } finally {
+            FileUtils.deleteRecursively(dir);
+        }
+    }
+
+    private static double pass(Path location, boolean prefetched) throws Exception {
+        final ProjectSpaceManager<Instance> project = SyntheticProjects.open(location, false);
+        try {
+            final long start = System.nanoTime();
+            long fragments = 0;
+            if (prefetched) {
+                try (PrefetchingInstanceIterator<Instance> it = project.prefetchingIterator(COMPOUND, RESULTS)) {
+                    while (it.hasNext())
+                        fragments += consume(it.next(), false);
+                }
+            } else {
+                final Iterator<Instance> it = project.iterator();
+                while (it.hasNext())
+                    fragments += consume(it.next(), true);
+            }
+            if (fragments == 0)
+                throw new IllegalStateException("No trees read!");
+            return (System.nanoTime() - start) / 1e9;
+        } finally {
+            project.close();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static long consume(Instance inst, boolean load) {
+        if (load)
+            inst.loadCompoundContainer(COMPOUND.toArray(Class[]::new));
+        final long fragments = inst.loadFormulaResults(RESULTS.toArray(Class[]::new)).stream()
+                .mapToLong(s -> s.getCandidate().getAnnotationOrThrow(FTree.class).numberOfVertices()).sum()
+                + inst.getExperiment().getMs2Spectra().size();
+        inst.clearCompoundCache();
+        inst.clearFormulaResultsCache();
+        return fragments;
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ *  This file is part of the SIRIUS Software for analyzing MS and MS/MS data
+ *
+ *  Copyright (C) 2013-2020 Kai Dührkop, Markus Fleischauer, Marcus Ludwig, Martin A. Hoffman, Fleming Kretschmer, Marvin Meusel and Sebastian Böcker,
+ *  Chair of Bioinformatics, Friedrich-Schiller University.
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Affero General Public License
+ *  as published by the Free Software Foundation; either
+ *  version 3 of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License along with SIRIUS.  If not, see <https://www.gnu.org/licenses/agpl-3.0.txt>
+ */
+
+package de.unijena.bioinf.projectspace;
+
+import de.unijena.bioinf.ChemistryBase.ms.Ms2Experiment;
+import de.unijena.bioinf.ms.annotations.DataAnnotation;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class PrefetchingInstanceIteratorTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testPreservesIterationOrder() throws IOException {
+        final Path location = tmp.newFolder().toPath().resolve("project");
+        SyntheticProjects.createProject(location, 60, 3, new Random(42));
+        final ProjectSpaceManager<Instance> project = SyntheticProjects.open(location, false);
+        try {
+            final List<String> expected = new ArrayList<>();
+            project.forEach(inst -> expected.add(inst.getID().getDirectoryName()));
+            assertEquals(60, expected.size());
+
+            final List<String> actual = new ArrayList<>();
+            try (PrefetchingInstanceIterator<Instance> it = project.prefetchingIterator(8, Long.MAX_VALUE, List.of(Ms2Experiment.class), List.of(FormulaScoring.class))) {
+                while (it.hasNext()) {
+                    final Instance inst = it.next();
+                    actual.add(inst.getID().getDirectoryName());
+                    assertTrue(inst.loadCompoundContainer().hasAnnotation(Ms2Experiment.class));
+                    assertEquals(3, inst.formulaResultCache.size());
+                    inst.formulaResultCache.values().forEach(r -> assertTrue(r.hasAnnotation(FormulaScoring.class)));
+                }
+            }
+            assertEquals(expected, actual);
+
+            // compound id filter is respected
+            project.setCompoundIdFilter(id -> id.getCompoundIndex() % 3 == 0);
+            final List<String> expectedFiltered = new ArrayList<>();
+            project.forEach(inst -> expectedFiltered.add(inst.getID().getDirectoryName()));
+            final List<String> actualFiltered = new ArrayList<>();
+            try (PrefetchingInstanceIterator<Instance> it = project.prefetchingIterator(5, Long.MAX_VALUE, List.of(), List.of())) {
+                it.forEachRemaining(inst -> actualFiltered.add(inst.getID().getDirectoryName()));
+            }
+            assertEquals(20, actualFiltered.size());
+            assertEquals(expectedFiltered, actualFiltered);
+        } finally {
+            project.close();
+        }
+    }
+
+    @Test
+    public void testBufferedInstancesStayWithinBudget() throws Exception {
+        final Path location = tmp.newFolder().toPath().resolve("project");
+        SyntheticProjects.createProject(location, 100, 2, new Random(42));
+        final ProjectSpaceManager<Instance> project = SyntheticProjects.open(location, false);
+        try {
+            final long weight = 1000, budget = 4500;
+            int count = 0;
+            try (PrefetchingInstanceIterator<Instance> it = new PrefetchingInstanceIterator<>(project, project.projectSpace().iterator(),
+                    50, budget, inst -> weight, components(Ms2Experiment.class), components(FormulaScoring.class))) {
+                while (it.hasNext()) {
+                    it.next();
+                    count++;
+                    // slow consumer, so that the loaders could run far ahead
+                    Thread.sleep(2);
+                }
+                assertTrue("Peak of " + it.getPeakBufferedBytes() + " bytes exceeds budget", it.getPeakBufferedBytes() <= budget);
+                assertTrue(it.getPeakBufferedBytes() >= weight);
+            }
+            assertEquals(100, count);
+        } finally {
+            project.close();
+        }
+    }
+
+    @Test
+    public void testCloseStopsIteration() throws IOException {
+        final Path location = tmp.newFolder().toPath().resolve("project");
+        SyntheticProjects.createProject(location, 20, 1, new Random(42));
+        final ProjectSpaceManager<Instance> project = SyntheticProjects.open(location, false);
+        try {
+            final PrefetchingInstanceIterator<Instance> it = project.prefetchingIterator(4, Long.MAX_VALUE, List.of(Ms2Experiment.class), List.of());
+            assertNotNull(it.next());
+            assertNotNull(it.next());
+            it.close();
+            assertFalse(it.hasNext());
+        } finally {
+            project.close();
+        }
+    }
+
+    @SafeVarargs
+    private static Class<? extends DataAnnotation>[] components(Class<? extends DataAnnotation>... components) {
+        return components;
+    }
+}
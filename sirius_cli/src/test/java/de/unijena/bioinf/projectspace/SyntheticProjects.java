@@ -0,0 +1,159 @@
+/*
+ *  This file is part of the SIRIUS Software for analyzing MS and MS/MS data
+ *
+ *  Copyright (C) 2013-2020 Kai Dührkop, Markus Fleischauer, Marcus Ludwig, Martin A. Hoffman, Fleming Kretschmer, Marvin Meusel and Sebastian Böcker,
+ *  Chair of Bioinformatics, Friedrich-Schiller University.
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Affero General Public License
+ *  as published by the Free Software Foundation; either
+ *  version 3 of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License along with SIRIUS.  If not, see <https://www.gnu.org/licenses/agpl-3.0.txt>
+ */
+
+package de.unijena.bioinf.projectspace;
+
+import de.unijena.bioinf.ChemistryBase.algorithm.scoring.FormulaScore;
+import de.unijena.bioinf.ChemistryBase.algorithm.scoring.SScored;
+import de.unijena.bioinf.ChemistryBase.chem.MolecularFormula;
+import de.unijena.bioinf.ChemistryBase.chem.PrecursorIonType;
+import de.unijena.bioinf.ChemistryBase.fp.CdkFingerprintVersion;
+import de.unijena.bioinf.ChemistryBase.fp.MaskedFingerprintVersion;
+import de.unijena.bioinf.ChemistryBase.fp.PredictionPerformance;
+import de.unijena.bioinf.ChemistryBase.fp.ProbabilityFingerprint;
+import de.unijena.bioinf.ChemistryBase.ms.MutableMs2Experiment;
+import de.unijena.bioinf.ChemistryBase.ms.ft.FTree;
+import de.unijena.bioinf.GibbsSampling.ZodiacScore;
+import de.unijena.bioinf.fingerid.FingerprintResult;
+import de.unijena.bioinf.ms.rest.model.fingerid.FingerIdData;
+import de.unijena.bioinf.projectspace.fingerid.FingerIdDataProperty;
+import de.unijena.bioinf.sirius.scores.SiriusScore;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.BiConsumer;
+
+/**
+ * Creates and opens synthetic projects for the project-space tests and benchmarks.
+ */
+public class SyntheticProjects {
+    private static final PrecursorIonType ION = PrecursorIonType.getPrecursorIonType("[M+H]+");
+
+    /**
+     * Creates a project with the given number of compounds, each with the given number of formula results that are
+     * scored by a random {@link SiriusScore} only.
+     */
+    public static void createProject(Path location, int numberOfCompounds, int resultsPerCompound, Random r) throws IOException {
+        final ProjectSpaceManager<Instance> project = open(location, true);
+        try {
+            for (int i = 0; i < numberOfCompounds; i++) {
+                final MutableMs2Experiment exp = new MutableMs2Experiment();
+                exp.setName("compound" + i);
+                exp.setPrecursorIonType(ION);
+                exp.setIonMass(100 + 700 * r.nextDouble());
+                final Instance inst = project.newCompoundWithUniqueId(exp);
+                for (int k = 0; k < resultsPerCompound; k++) {
+                    final FTree tree = new FTree(MolecularFormula.parseOrThrow("C" + (5 + k) + "H" + (4 + 2 * i % 30) + "O" + (1 + k % 4)), ION.getIonization());
+                    tree.setAnnotation(PrecursorIonType.class, ION);
+                    final FormulaResult fr = inst.newFormulaResultWithUniqueId(tree).orElseThrow();
+                    final FormulaScoring scoring = new FormulaScoring();
+                    scoring.setAnnotation(SiriusScore.class, new SiriusScore(-100 * r.nextDouble()));
+                    fr.setAnnotation(FormulaScoring.class, scoring);
+                    inst.updateFormulaResult(fr, FormulaScoring.class);
+                }
+                inst.getID().setRankingScoreTypes(SiriusScore.class);
+                inst.updateCompoundID();
+            }
+        } finally {
+            project.close();
+        }
+    }
+
+    /**
+     * Adds a random {@link ZodiacScore} to every formula result (some left unscored) and persists the scores with the
+     * given update method, the way the ZODIAC sub tool does it.
+     */
+    public static void writeZodiacScores(Path location, Random r, BiConsumer<Instance, List<FormulaResult>> update) throws IOException {
+        final ProjectSpaceManager<Instance> project = open(location, false);
+        try {
+            for (Instance inst : project) {
+                final List<FormulaResult> results = new ArrayList<>();
+                inst.loadFormulaResults(FormulaScoring.class).forEach(s -> results.add(s.getCandidate()));
+                results.sort(Comparator.comparing(fr -> fr.getId().fileName()));
+                for (FormulaResult fr : results)
+                    fr.getAnnotationOrThrow(FormulaScoring.class).setAnnotation(ZodiacScore.class,
+                            r.nextInt(10) == 0 ? FormulaScore.NA(ZodiacScore.class) : new ZodiacScore(r.nextDouble()));
+                update.accept(inst, results);
+                inst.getID().setRankingScoreTypes(ZodiacScore.class, SiriusScore.class);
+                inst.updateCompoundID();
+            }
+        } finally {
+            project.close();
+        }
+    }
+
+    /**
+     * Adds a random {@link FingerprintResult} (over all bits of the default fingerprint version) to every formula
+     * result. Returns the number of bits.
+     */
+    public static int writeFingerprints(Path location, Random r) throws IOException {
+        final MaskedFingerprintVersion version = MaskedFingerprintVersion.allowAll(CdkFingerprintVersion.getDefault());
+        final PredictionPerformance[] performances = new PredictionPerformance[version.size()];
+        Arrays.fill(performances, new PredictionPerformance(1, 1, 1, 1));
+        final FingerIdData data = new FingerIdData(version, performances);
+
+        final ProjectSpaceManager<Instance> project = open(location, false);
+        try {
+            project.setProjectSpaceProperty(FingerIdDataProperty.class, new FingerIdDataProperty(data, data));
+            for (Instance inst : project) {
+                for (SScored<FormulaResult, ? extends FormulaScore> s : inst.loadFormulaResults()) {
+                    final double[] probabilities = new double[version.size()];
+                    for (int i = 0; i < probabilities.length; i++)
+                        probabilities[i] = r.nextInt(4) == 0 ? r.nextInt(2) : r.nextDouble();
+                    s.getCandidate().setAnnotation(FingerprintResult.class, new FingerprintResult(new ProbabilityFingerprint(version, probabilities)));
+                    inst.updateFormulaResult(s.getCandidate(), FingerprintResult.class);
+                }
+            }
+        } finally {
+            project.close();
+        }
+        return version.size();
+    }
+
+    /**
+     * Reads the ranking of each compound from a freshly opened project as "formula result: zodiac score, sirius score".
+     */
+    public static Map<String, List<String>> readRankings(Path location) throws IOException {
+        final ProjectSpaceManager<Instance> project = open(location, false);
+        try {
+            final Map<String, List<String>> rankings = new TreeMap<>();
+            for (Instance inst : project) {
+                final List<String> ranking = new ArrayList<>();
+                for (SScored<FormulaResult, ? extends FormulaScore> s : inst.loadFormulaResults(List.of(ZodiacScore.class, SiriusScore.class), FormulaScoring.class)) {
+                    final FormulaScoring scoring = s.getCandidate().getAnnotationOrThrow(FormulaScoring.class);
+                    ranking.add(s.getCandidate().getId().fileName() + ": "
+                            + scoring.getAnnotationOrThrow(ZodiacScore.class).score() + ", "
+                            + scoring.getAnnotationOrThrow(SiriusScore.class).score());
+                }
+                rankings.put(inst.getID().getDirectoryName(), ranking);
+            }
+            return rankings;
+        } finally {
+            project.close();
+        }
+    }
+
+    public static ProjectSpaceManager<Instance> open(Path location, boolean create) throws IOException {
+        final ProjectSpaceIO io = new ProjectSpaceIO(ProjectSpaceManager.newDefaultConfig());
+        return new ProjectSpaceManagerFactory.Default().create(create
+                ? io.createNewProjectSpace(location, false)
+                : io.openExistingProjectSpace(location));
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ *  This file is part of the SIRIUS Software for analyzing MS and MS/MS data
+ *
+ *  Copyright (C) 2013-2020 Kai Dührkop, Markus Fleischauer, Marcus Ludwig, Martin A. Hoffman, Fleming Kretschmer, Marvin Meusel and Sebastian Böcker,
+ *  Chair of Bioinformatics, Friedrich-Schiller University.
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Affero General Public License
+ *  as published by the Free Software Foundation; either
+ *  version 3 of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License along with SIRIUS.  If not, see <https://www.gnu.org/licenses/agpl-3.0.txt>
+ */
+
+package de.unijena.bioinf.projectspace.summaries;
+
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class OrderedWriterTest {
+
+    @Test
+    public void testConcurrentOutOfOrderWritesKeepOrder() throws Exception {
+        final int n = 100000;
+        final List<Integer> indices = new ArrayList<>(n);
+        for (int i = 0; i < n; i++)
+            indices.add(i);
+        // local shuffles only, like a parallel reader pool that processes compounds roughly in order
+        final Random r = new Random(7);
+        for (int i = 0; i < n; i += 64)
+            Collections.shuffle(indices.subList(i, Math.min(n, i + 64)), r);
+
+        final List<String> written = new ArrayList<>(n);
+        final OrderedWriter<String> writer = new OrderedWriter<>(written::add);
+        final ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                final int offset = t;
+                futures.add(pool.submit(() -> {
+                    for (int i = offset; i < n; i += 4)
+                        writer.write(indices.get(i), "row" + indices.get(i));
+                    return null;
+                }));
+            }
+            for (Future<?> f : futures)
+                f.get();
+        } finally {
+            pool.shutdown();
+        }
+
+        assertEquals(0, writer.getNumberOfPendingItems());
+        assertEquals(n, written.size());
+        for (int i = 0; i < n; i++)
+            assertEquals("row" + i, written.get(i));
+    }
+
+    @Test
+    public void testFlushWritesRemainingInOrder() throws Exception {
+        final List<String> written = new ArrayList<>();
+        final OrderedWriter<String> writer = new OrderedWriter<>(written::add);
+        writer.write(3, "d");
+        writer.write(0, "a");
+        writer.write(5, "f");
+        assertEquals(List.of("a"), written);
+        assertEquals(2, writer.getNumberOfPendingItems());
+
+        // item 1, 2 and 4 never arrive, e.g. because they could not be loaded
+        writer.flush();
+        assertEquals(List.of("a", "d", "f"), written);
+        writer.write(6, "g");
+        assertEquals(List.of("a", "d", "f", "g"), written);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDuplicateIndex() throws Exception {
+        final OrderedWriter<String> writer = new OrderedWriter<>(s -> {});
+        writer.write(0, "a");
+        writer.write(0, "b");
+    }
+}
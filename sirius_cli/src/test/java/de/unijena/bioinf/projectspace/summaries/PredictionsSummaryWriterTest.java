@@ -0,0 +1,88 @@
+/*
+ *  This file is part of the SIRIUS Software for analyzing MS and MS/MS data
+ *
+ *  Copyright (C) 2013-2020 Kai Dührkop, Markus Fleischauer, Marcus Ludwig, Martin A. Hoffman, Fleming Kretschmer, Marvin Meusel and Sebastian Böcker,
+ *  Chair of Bioinformatics, Friedrich-Schiller University.
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Affero General Public License
+ *  as published by the Free Software Foundation; either
+ *  version 3 of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License along with SIRIUS.  If not, see <https://www.gnu.org/licenses/agpl-3.0.txt>
+ */
+
+package de.unijena.bioinf.projectspace.summaries;
+
+import de.unijena.bioinf.ChemistryBase.jobs.SiriusJobs;
+import de.unijena.bioinf.ms.frontend.subtools.export.tables.ExportPredictionsOptions;
+import de.unijena.bioinf.ms.frontend.subtools.export.tables.PredictionsOptions;
+import de.unijena.bioinf.projectspace.CompoundContainerId;
+import de.unijena.bioinf.projectspace.Instance;
+import de.unijena.bioinf.projectspace.ProjectSpaceManager;
+import de.unijena.bioinf.projectspace.SyntheticProjects;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import picocli.CommandLine;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class PredictionsSummaryWriterTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void testTableEqualsExport() throws Exception {
+        final Path location = tmp.newFolder().toPath().resolve("project");
+        SyntheticProjects.createProject(location, 25, 4, new Random(11));
+        SyntheticProjects.writeFingerprints(location, new Random(12));
+
+        final ProjectSpaceManager<Instance> project = SyntheticProjects.open(location, false);
+        try {
+            for (String[] args : List.of(new String[]{"--fingerprints"}, new String[]{"--fingerprints", "--pubchem", "--maccs", "--digits", "3"})) {
+                final PredictionsOptions options = new PredictionsOptions();
+                new CommandLine(options).parseArgs(args);
+
+                // all compounds in the iteration order of the project
+                assertTablesEqual(project, options, null, project, 25);
+
+                // subset in a given order
+                final List<CompoundContainerId> ids = new ArrayList<>(project.compoundIds().subList(5, 20));
+                Collections.reverse(ids);
+                assertTablesEqual(project, options, ids, project.getInstancesFromCompounds(ids), 15);
+            }
+        } finally {
+            project.close();
+        }
+    }
+
+    private void assertTablesEqual(ProjectSpaceManager<Instance> project, PredictionsOptions options, List<CompoundContainerId> ids,
+                                   Iterable<? extends Instance> instances, int expectedRows) throws Exception {
+        final Path dir = tmp.newFolder().toPath();
+        final Path exported = dir.resolve("export.tsv"), summarized = dir.resolve("summary.tsv");
+
+        final ExportPredictionsOptions.ExportPredictionJJob export = new ExportPredictionsOptions.ExportPredictionJJob(
+                options, 1, instances, () -> Files.newBufferedWriter(exported));
+        assertTrue(SiriusJobs.getGlobalJobManager().submitJob(export).awaitResult());
+
+        final PredictionsSummaryWriter summary = new PredictionsSummaryWriter(options, 1, project, ids, () -> Files.newBufferedWriter(summarized));
+        project.writeSummaries(dir.resolve("summary"), ids, summary);
+
+        assertEquals(expectedRows, summary.getNumberOfRows());
+        assertEquals(Files.readAllLines(exported), Files.readAllLines(summarized));
+        assertArrayEquals(Files.readAllBytes(exported), Files.readAllBytes(summarized));
+    }
+}
@@ -24,6 +24,7 @@ package de.unijena.bioinf.ms.gui.actions;
  * 29.01.17.
  */
 
+import de.unijena.bioinf.ms.gui.compute.jjobs.AggregateProgress;
 import de.unijena.bioinf.ms.gui.compute.jjobs.Jobs;
 import de.unijena.bioinf.ms.gui.configs.Icons;
 
@@ -36,11 +37,12 @@ import static de.unijena.bioinf.ms.gui.mainframe.MainFrame.MF;
  * @author Markus Fleischauer (markus.fleischauer@gmail.com)
  */
 public class ShowJobsDialogAction extends AbstractAction {
+    private static final String DESCRIPTION = "Show background jobs and their status";
 
     public ShowJobsDialogAction() {
         super("Jobs");
         putValue(Action.LARGE_ICON_KEY, Icons.FB_LOADER_STOP_32);
-        putValue(Action.SHORT_DESCRIPTION, "Show background jobs and their status");
+        putValue(Action.SHORT_DESCRIPTION, DESCRIPTION);
     }
 
 
@@ -54,6 +56,15 @@ public class ShowJobsDialogAction extends AbstractAction {
         }
     }
 
+    /**
+     * Shows the overall progress of the active runs in the tooltip. Has to be called from the EDT.
+     */
+    public void setProgress(AggregateProgress<?> progress) {
+        final int runs = progress.getNumberOfJobs();
+        putValue(Action.SHORT_DESCRIPTION, runs == 0 ? DESCRIPTION
+                : DESCRIPTION + " (" + runs + (runs == 1 ? " run, " : " runs, ") + Math.round(progress.getFraction() * 100) + "%)");
+    }
+
     @Override
     public void actionPerformed(ActionEvent e) {
         MF.getJobDialog().setVisible(true);
@@ -0,0 +1,100 @@
+/*
+ *  This file is part of the SIRIUS Software for analyzing MS and MS/MS data
+ *
+ *  Copyright (C) 2013-2020 Kai Dührkop, Markus Fleischauer, Marcus Ludwig, Martin A. Hoffman, Fleming Kretschmer, Marvin Meusel and Sebastian Böcker,
+ *  Chair of Bioinformatics, Friedrich-Schiller University.
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Affero General Public License
+ *  as published by the Free Software Foundation; either
+ *  version 3 of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License along with SIRIUS.  If not, see <https://www.gnu.org/licenses/agpl-3.0.txt>
+ */
+
+package de.unijena.bioinf.ms.gui.compute.jjobs;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Overall progress of a changing set of jobs.
+ * Totals are maintained incrementally from per job deltas, so an update costs O(1)
+ * instead of rescanning all jobs.
+ *
+ * @param <K> job identifier
+ */
+public class AggregateProgress<K> {
+    private final Map<K, long[]> jobs = new HashMap<>();
+    private long progress = 0;
+    private long max = 0;
+
+    /**
+     * Sets the current progress of the given job, a new job is added on first update.
+     */
+    public synchronized void update(@NotNull K job, long currentProgress, long maxProgress) {
+        final long[] old = jobs.computeIfAbsent(job, k -> new long[2]);
+        progress += currentProgress - old[0];
+        max += maxProgress - old[1];
+        old[0] = currentProgress;
+        old[1] = maxProgress;
+    }
+
+    /**
+     * Sets the current progress of the given job if it is known, updates of removed jobs are ignored.
+     *
+     * @return true if the job was known
+     */
+    public synchronized boolean updateIfPresent(@NotNull K job, long currentProgress, long maxProgress) {
+        if (!jobs.containsKey(job))
+            return false;
+        update(job, currentProgress, maxProgress);
+        return true;
+    }
+
+    /**
+     * Removes the job and its contribution from the totals.
+     *
+     * @return true if the job was known
+     */
+    public synchronized boolean remove(@NotNull K job) {
+        final long[] old = jobs.remove(job);
+        if (old == null)
+            return false;
+        progress -= old[0];
+        max -= old[1];
+        return true;
+    }
+
+    public synchronized void clear() {
+        jobs.clear();
+        progress = 0;
+        max = 0;
+    }
+
+    public synchronized int getNumberOfJobs() {
+        return jobs.size();
+    }
+
+    public synchronized long getProgress() {
+        return progress;
+    }
+
+    public synchronized long getMaxProgress() {
+        return max;
+    }
+
+    /**
+     * @return overall progress in [0,1] or 0 if no job reports a maximum.
+     */
+    public synchronized double getFraction() {
+        return max <= 0 ? 0d : Math.min(1d, Math.max(0d, (double) progress / (double) max));
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ *  This file is part of the SIRIUS Software for analyzing MS and MS/MS data
+ *
+ *  Copyright (C) 2013-2020 Kai Dührkop, Markus Fleischauer, Marcus Ludwig, Martin A. Hoffman, Fleming Kretschmer, Marvin Meusel and Sebastian Böcker,
+ *  Chair of Bioinformatics, Friedrich-Schiller University.
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Affero General Public License
+ *  as published by the Free Software Foundation; either
+ *  version 3 of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License along with SIRIUS.  If not, see <https://www.gnu.org/licenses/agpl-3.0.txt>
+ */
+
+package de.unijena.bioinf.ms.gui.compute.jjobs;
+
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.LoggerFactory;
+
+import javax.swing.*;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+
+/**
+ * Coalesces high frequency updates (e.g. job progress or compute state changes) from arbitrary threads
+ * into batches that are applied at most once per frame on the Swing EDT.
+ * <p>
+ * Updates are merged per key (latest wins by default) and there is never more than one flush waiting
+ * in the EDT queue per updater, no matter how many updates are submitted.
+ *
+ * @param <K> key that identifies the updated element (e.g. job or compound id)
+ * @param <V> update payload
+ */
+public class CoalescingUpdater<K, V> {
+    public static final long DEFAULT_FRAME_MILLIS = 33;
+
+    private static final ScheduledExecutorService FRAME_TIMER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "EDT-Update-Coalescer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final ConcurrentHashMap<K, V> pending = new ConcurrentHashMap<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+    private final BinaryOperator<V> merger;
+    private final Consumer<Map<K, V>> batchConsumer;
+    private final Consumer<Runnable> dispatcher;
+    private final long frameMillis;
+
+    public CoalescingUpdater(@NotNull Consumer<Map<K, V>> batchConsumer) {
+        this(DEFAULT_FRAME_MILLIS, (o, n) -> n, batchConsumer);
+    }
+
+    public CoalescingUpdater(long frameMillis, @NotNull BinaryOperator<V> merger, @NotNull Consumer<Map<K, V>> batchConsumer) {
+        this(frameMillis, merger, batchConsumer, SwingUtilities::invokeLater);
+    }
+
+    /**
+     * @param frameMillis   minimum time between two batches
+     * @param merger        merges a new update into a not yet applied one for the same key (old, new)
+     * @param batchConsumer applies all updates of one frame, called in the dispatcher thread
+     * @param dispatcher    executes the flush, usually {@link SwingUtilities#invokeLater(Runnable)}
+     */
+    public CoalescingUpdater(long frameMillis, @NotNull BinaryOperator<V> merger, @NotNull Consumer<Map<K, V>> batchConsumer, @NotNull Consumer<Runnable> dispatcher) {
+        this.frameMillis = frameMillis;
+        this.merger = merger;
+        this.batchConsumer = batchConsumer;
+        this.dispatcher = dispatcher;
+    }
+
+    /**
+     * Thread safe and cheap. Schedules a flush if there is none pending yet.
+     */
+    public void submit(@NotNull K key, @NotNull V value) {
+        pending.merge(key, value, merger);
+        if (scheduled.compareAndSet(false, true))
+            FRAME_TIMER.schedule(() -> dispatcher.accept(this::flush), frameMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public boolean hasPendingUpdates() {
+        return !pending.isEmpty();
+    }
+
+    private void flush() {
+        // reset before draining, so that updates arriving during the drain schedule the next frame
+        scheduled.set(false);
+        if (pending.isEmpty())
+            return;
+
+        final Map<K, V> batch = new HashMap<>(pending.size());
+        for (K key : pending.keySet()) {
+            V v = pending.remove(key);
+            if (v != null)
+                batch.put(key, v);
+        }
+
+        try {
+            batchConsumer.accept(batch);
+        } catch (Exception e) {
+            LoggerFactory.getLogger(getClass()).error("Error when applying batched GUI update.", e);
+        }
+    }
+}
@@ -40,7 +40,9 @@ import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.function.Supplier;
 
@@ -57,8 +59,40 @@ public class Jobs {
         return (SwingJobManager) SiriusJobs.getGlobalJobManager();
     }
 
+    /**
+     * Overall progress of all active background runs. Updated incrementally from the progress events of the runs.
+     */
+    public static final AggregateProgress<Integer> RUN_PROGRESS = new AggregateProgress<>();
+    // progress events are fired for every instance step, so we only push them to the EDT once per frame
+    private static final CoalescingUpdater<Boolean, Boolean> RUN_PROGRESS_UPDATER = new CoalescingUpdater<>(batch ->
+            ((ShowJobsDialogAction) SiriusActions.SHOW_JOBS.getInstance()).setProgress(RUN_PROGRESS));
+
+    private static final Map<Integer, JobProgressEventListener> RUN_PROGRESS_LISTENERS = new ConcurrentHashMap<>();
+
     private static final PropertyChangeListener BACKGROUND_RUN_LISTENER = evt -> {
         if (BackgroundRuns.ACTIVE_RUNS_PROPERTY.equals(evt.getPropertyName())) {
+            if (evt instanceof BackgroundRuns.ChangeEvent) {
+                final BackgroundRuns.ChangeEvent e = (BackgroundRuns.ChangeEvent) evt;
+                for (BackgroundRuns.BackgroundRunJob<?, ?> job : e.getEffectedJobs()) {
+                    final int runId = job.getRunId();
+                    if (e.isDeletion()) {
+                        final JobProgressEventListener listener = RUN_PROGRESS_LISTENERS.remove(runId);
+                        if (listener != null)
+                            job.removeJobProgressListener(listener);
+                        RUN_PROGRESS.remove(runId);
+                    } else {
+                        // register the run first, events that arrive after its removal are ignored
+                        RUN_PROGRESS.update(runId, 0, 0);
+                        final JobProgressEventListener listener = pevt -> {
+                            if (RUN_PROGRESS.updateIfPresent(runId, pevt.getProgress() - pevt.getMinValue(), pevt.getMaxValue() - pevt.getMinValue()))
+                                RUN_PROGRESS_UPDATER.submit(Boolean.TRUE, Boolean.TRUE);
+                        };
+                        RUN_PROGRESS_LISTENERS.put(runId, listener);
+                        job.addJobProgressListener(listener);
+                    }
+                }
+                RUN_PROGRESS_UPDATER.submit(Boolean.TRUE, Boolean.TRUE);
+            }
             int size = (int) evt.getNewValue();
             ((ShowJobsDialogAction) SiriusActions.SHOW_JOBS.getInstance()).setComputing(size > 0);
             SiriusActions.SUMMARIZE_WS.getInstance().setEnabled(size == 0);
@@ -88,11 +88,8 @@ public class CandidateCellRenderer extends JPanel implements ListCellRenderer<Fi
     public Component getListCellRendererComponent(JList<? extends FingerprintCandidateBean> list, FingerprintCandidateBean value, int index, boolean isSelected, boolean cellHasFocus) {
 
         image.molecule = value;
-        if (value != null && value.getScore() >= stats.getMax()) {
-            image.backgroundColor = Colors.LIST_LIGHT_GREEN;
-        } else {
-            image.backgroundColor = (index % 2 == 0 ? EVEN : ODD);
-        }
+        image.repaintTarget = list;
+        image.backgroundColor = backgroundFor(value, index);
         setOpaque(true);
         setBackground(image.backgroundColor);
         descriptionPanel.setCompound(value);
@@ -100,6 +97,20 @@ public class CandidateCellRenderer extends JPanel implements ListCellRenderer<Fi
         return this;
     }
 
+    protected Color backgroundFor(FingerprintCandidateBean value, int index) {
+        if (value != null && value.getScore() >= stats.getMax())
+            return Colors.LIST_LIGHT_GREEN;
+        return index % 2 == 0 ? EVEN : ODD;
+    }
+
+    /**
+     * Renders the structure image of the candidate at the given list index into the image cache. Blocks until the
+     * image is rendered, so it should be called from a background thread.
+     */
+    public void prefetchStructureImage(FingerprintCandidateBean value, int index, double scale) {
+        image.prefetch(value, backgroundFor(value, index), scale);
+    }
+
     @Override
     public void paint(Graphics g) {
         super.paint(g);
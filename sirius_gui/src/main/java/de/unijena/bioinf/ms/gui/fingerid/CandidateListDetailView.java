@@ -70,6 +70,10 @@ public class CandidateListDetailView extends CandidateListView implements MouseL
     public static final Color PRIMARY_HIGHLIGHTED_COLOR = new Color(0, 100, 255, 128);
     public static final Color SECONDARY_HIGHLIGHTED_COLOR = new Color(100, 100, 255, 64).brighter();
     protected JList<FingerprintCandidateBean> candidateList;
+    protected CandidateCellRenderer candidateCellRenderer;
+    private LoadMoleculeJob structureImagePrefetcher;
+    // coalesces the viewport changes of one scroll gesture into a single prefetch
+    private final javax.swing.Timer structureImagePrefetchTimer = new javax.swing.Timer(PREFETCH_DELAY_MS, e -> prefetchStructureImages());
     protected StructureSearcher structureSearcher;
     protected Thread structureSearcherThread;
 
@@ -100,10 +104,13 @@ public class CandidateListDetailView extends CandidateListView implements MouseL
         candidateList = new CandidateInnerList(new DefaultEventListModel<>(filteredSource));
 
         ToolTipManager.sharedInstance().registerComponent(candidateList);
-        candidateList.setCellRenderer(new CandidateCellRenderer(sourceList.csiScoreStats, this));
+        candidateCellRenderer = new CandidateCellRenderer(sourceList.csiScoreStats, this);
+        candidateList.setCellRenderer(candidateCellRenderer);
         candidateList.setFixedCellHeight(-1);
         candidateList.setPrototypeCellValue(FingerprintCandidateBean.PROTOTYPE);
         final JScrollPane scrollPane = new JScrollPane(candidateList, ScrollPaneConstants.VERTICAL_SCROLLBAR_ALWAYS, ScrollPaneConstants.HORIZONTAL_SCROLLBAR_AS_NEEDED);
+        structureImagePrefetchTimer.setRepeats(false);
+        scrollPane.getViewport().addChangeListener(e -> structureImagePrefetchTimer.restart());
         addToCenterCard(ActionList.ViewState.DATA, scrollPane);
         showCenterCard(ActionList.ViewState.NOT_COMPUTED);
 
@@ -386,6 +393,36 @@ public class CandidateListDetailView extends CandidateListView implements MouseL
     }
 
 
+    private static final int PREFETCH_ROWS = 5;
+    private static final int PREFETCH_DELAY_MS = 100;
+
+    /**
+     * Renders the structure images of the visible and near-visible rows in background, most likely visible first.
+     */
+    protected void prefetchStructureImages() {
+        final int first = candidateList.getFirstVisibleIndex();
+        final int last = candidateList.getLastVisibleIndex();
+        if (first < 0 || last < 0)
+            return;
+        final ListModel<FingerprintCandidateBean> model = candidateList.getModel();
+        final int from = Math.max(0, first - PREFETCH_ROWS);
+        final int to = Math.min(model.getSize() - 1, last + PREFETCH_ROWS);
+        final Map<FingerprintCandidateBean, Integer> rows = new LinkedHashMap<>();
+        for (int i = first; i <= last; i++)
+            rows.put(model.getElementAt(i), i);
+        for (int i = last + 1; i <= to; i++)
+            rows.put(model.getElementAt(i), i);
+        for (int i = first - 1; i >= from; i--)
+            rows.put(model.getElementAt(i), i);
+
+        final double scale = candidateList.getGraphicsConfiguration() == null ? 1d
+                : candidateList.getGraphicsConfiguration().getDefaultTransform().getScaleX();
+        if (structureImagePrefetcher != null && !structureImagePrefetcher.isFinished())
+            structureImagePrefetcher.cancel();
+        structureImagePrefetcher = Jobs.MANAGER().submitJob(new LoadMoleculeJob(LoadMoleculeJob.JobPriority.NOW, rows.keySet(),
+                c -> candidateCellRenderer.prefetchStructureImage(c, rows.get(c), scale)));
+    }
+
     public class CandidateInnerList extends JList<FingerprintCandidateBean> {
         private final NumberFormat prob = new DecimalFormat("%");
 
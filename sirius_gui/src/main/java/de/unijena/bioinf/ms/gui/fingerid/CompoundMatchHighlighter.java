@@ -28,7 +28,6 @@ import org.openscience.cdk.interfaces.IAtom;
 import org.openscience.cdk.interfaces.IAtomContainer;
 import org.openscience.cdk.interfaces.IBond;
 import org.openscience.cdk.renderer.generators.standard.StandardGenerator;
-import org.openscience.cdk.silent.SilentChemObjectBuilder;
 
 import java.awt.*;
 import java.util.Arrays;
@@ -43,7 +42,6 @@ public class CompoundMatchHighlighter {
         compound.parseAndPrepare();
         // we have to match all fingerprints against this compound
         final IAtomContainer container = compound.getMolecule();
-        final FasterSmartsQueryTool fx = new FasterSmartsQueryTool("CC", SilentChemObjectBuilder.getInstance());
         final TIntDoubleHashMap map = new TIntDoubleHashMap();
         final TIntDoubleHashMap unsureMap = new TIntDoubleHashMap();
         try {
@@ -59,9 +57,8 @@ public class CompoundMatchHighlighter {
                 if (property instanceof SubstructureProperty) {
                     final SubstructureProperty p = (SubstructureProperty) property;
                     final String smarts = p.getSmarts();
-                    fx.setSmarts(smarts);
-                    if (fx.matches(container)) {
-                        final List<List<Integer>> matches = fx.getUniqueMatchingAtoms();
+                    final List<List<Integer>> matches = compound.substructureMatches.getUniqueMatchingAtoms(container, mp.getIndex(), smarts);
+                    if (!matches.isEmpty()) {
                         if (matches.size() <= 3) {
                             final double downscale = matches.size()*matches.size();
                             for (List<Integer> atoms : matches) {
@@ -108,20 +105,31 @@ public class CompoundMatchHighlighter {
             this.match = sure.toArray();
             this.nomatch = no.toArray();
             this.unsure = unsure.toArray();
-            System.out.println(map);
 
         } catch (CDKException e) {
 
         }
     }
 
+    CompoundMatchHighlighter(int[] match, int[] unsure, int[] nomatch) {
+        this.match = match;
+        this.unsure = unsure;
+        this.nomatch = nomatch;
+    }
+
     public void hightlight(FingerprintCandidateBean compound) {
-        final IAtomContainer molecule = compound.getMolecule();
-        for (IAtom atom : molecule.atoms()) atom.removeProperty(StandardGenerator.HIGHLIGHT_COLOR);
-        for (IBond bond : molecule.bonds()) bond.removeProperty(StandardGenerator.HIGHLIGHT_COLOR);
-        highlight(molecule, match, CandidateListDetailView.PRIMARY_HIGHLIGHTED_COLOR);
-        highlight(molecule, unsure, CandidateListDetailView.INVERT_HIGHLIGHTED_COLOR2);
-        highlight(molecule, nomatch, CandidateListDetailView.INVERT_HIGHLIGHTED_COLOR);
+        compound.compoundLock.lock();
+        try {
+            final IAtomContainer molecule = compound.getMolecule();
+            for (IAtom atom : molecule.atoms()) atom.removeProperty(StandardGenerator.HIGHLIGHT_COLOR);
+            for (IBond bond : molecule.bonds()) bond.removeProperty(StandardGenerator.HIGHLIGHT_COLOR);
+            highlight(molecule, match, CandidateListDetailView.PRIMARY_HIGHLIGHTED_COLOR);
+            highlight(molecule, unsure, CandidateListDetailView.INVERT_HIGHLIGHTED_COLOR2);
+            highlight(molecule, nomatch, CandidateListDetailView.INVERT_HIGHLIGHTED_COLOR);
+            compound.updateHighlightKey();
+        } finally {
+            compound.compoundLock.unlock();
+        }
     }
 
     private void highlight(IAtomContainer molecule, int[] mapping, Color primaryHighlightedColor) {
@@ -20,22 +20,12 @@
 package de.unijena.bioinf.ms.gui.fingerid;
 
 import de.unijena.bioinf.ms.gui.configs.Fonts;
-import org.openscience.cdk.exception.CDKException;
-import org.openscience.cdk.interfaces.IAtomContainer;
-import org.openscience.cdk.layout.StructureDiagramGenerator;
-import org.openscience.cdk.renderer.AtomContainerRenderer;
-import org.openscience.cdk.renderer.color.CDK2DAtomColors;
-import org.openscience.cdk.renderer.font.AWTFontManager;
-import org.openscience.cdk.renderer.generators.BasicSceneGenerator;
-import org.openscience.cdk.renderer.generators.IGenerator;
 import org.openscience.cdk.renderer.generators.standard.StandardGenerator;
-import org.openscience.cdk.renderer.visitor.AWTDrawVisitor;
-import org.slf4j.LoggerFactory;
 
 import javax.swing.*;
 import java.awt.*;
 import java.awt.geom.Rectangle2D;
-import java.util.ArrayList;
+import java.awt.image.BufferedImage;
 import java.util.Locale;
 
 /**
@@ -58,9 +48,13 @@ class CompoundStructureImage extends JPanel {
         }
     }
 
+    protected static final int STRUCTURE_X = 7, STRUCTURE_Y = 14, STRUCTURE_WIDTH = 360, STRUCTURE_HEIGHT = 185;
+
     protected FingerprintCandidateBean molecule;
-    protected AtomContainerRenderer renderer;
+    protected final StandardGenerator.HighlightStyle highlightStyle;
     protected Color backgroundColor;
+    // component to repaint when a structure image has been rendered in background, e.g. the list this image is a renderer of
+    protected JComponent repaintTarget;
 
     public CompoundStructureImage() {
         this(StandardGenerator.HighlightStyle.OuterGlow);
@@ -69,18 +63,7 @@ class CompoundStructureImage extends JPanel {
     public CompoundStructureImage(StandardGenerator.HighlightStyle highlightStyle) {
         setOpaque(false);
         setPreferredSize(new Dimension(374, 215));
-        // make generators
-        java.util.List<IGenerator<IAtomContainer>> generators = new ArrayList<IGenerator<IAtomContainer>>();
-        generators.add(new BasicSceneGenerator());
-        generators.add(new StandardGenerator(nameFont));
-
-        // setup the renderer
-        this.renderer = new AtomContainerRenderer(generators, new AWTFontManager());
-
-        renderer.getRenderer2DModel().set(StandardGenerator.Highlighting.class,
-                highlightStyle);
-        renderer.getRenderer2DModel().set(StandardGenerator.AtomColor.class,
-                new CDK2DAtomColors());
+        this.highlightStyle = highlightStyle;
         setVisible(true);
     }
 
@@ -91,19 +74,30 @@ class CompoundStructureImage extends JPanel {
             renderImage((Graphics2D) g);
     }
 
+    protected StructureImageCache.Key imageKey(FingerprintCandidateBean molecule, Color backgroundColor, double scale) {
+        return StructureImageCache.key(molecule.getInChiKey(), molecule.getHighlightKey(), highlightStyle,
+                backgroundColor, STRUCTURE_WIDTH, STRUCTURE_HEIGHT, scale);
+    }
+
+    /**
+     * Renders the structure image of the given candidate into the cache if it is not already cached. Blocks until
+     * the image is rendered, so it should be called from a background thread.
+     */
+    protected void prefetch(FingerprintCandidateBean molecule, Color backgroundColor, double scale) {
+        final StructureImageCache.Key key = imageKey(molecule, backgroundColor, scale);
+        if (StructureImageCache.DEFAULT.get(key) == null)
+            StructureImageCache.DEFAULT.render(molecule, key);
+    }
+
     private void renderImage(final Graphics2D gg) {
         gg.setRenderingHint(RenderingHints.KEY_ANTIALIASING,RenderingHints.VALUE_ANTIALIAS_ON);
-        StructureDiagramGenerator sdg = new StructureDiagramGenerator();
-        sdg.setMolecule(molecule.getMolecule(), false);
-        try {
-            sdg.generateCoordinates();
-        } catch (CDKException e) {
-            LoggerFactory.getLogger(this.getClass()).error(e.getMessage(), e);
-        }
-        renderer.getRenderer2DModel().set(BasicSceneGenerator.BackgroundColor.class, backgroundColor);
-        synchronized (molecule.candidate) {
-            renderer.paint(molecule.getMolecule(), new AWTDrawVisitor(gg),
-                    new Rectangle2D.Double(7, 14, 360, 185), true);
+        final StructureImageCache.Key key = imageKey(molecule, backgroundColor, gg.getTransform().getScaleX());
+        final BufferedImage image = StructureImageCache.DEFAULT.get(key);
+        if (image != null) {
+            gg.drawImage(image, STRUCTURE_X, STRUCTURE_Y, STRUCTURE_WIDTH, STRUCTURE_HEIGHT, null);
+        } else {
+            final JComponent target = repaintTarget != null ? repaintTarget : this;
+            StructureImageCache.DEFAULT.renderInBackground(molecule, key, () -> SwingUtilities.invokeLater(target::repaint));
         }
         if ((molecule.candidate.getName() != null) && (!molecule.candidate.getName().equalsIgnoreCase("null"))) {
             gg.setFont(nameFont);
@@ -208,6 +208,18 @@ public class FasterSmartsQueryTool {
         }
     }
 
+    /**
+     * Create a new SMARTS query tool for an already parsed query, e.g. from {@link SmartsQueryCache}.
+     *
+     * @param query  the parsed SMARTS query
+     * @param smarts SMARTS string of the query
+     */
+    public FasterSmartsQueryTool(QueryAtomContainer query, String smarts) {
+        this.builder = query.getBuilder();
+        this.smarts = smarts;
+        this.query = query;
+    }
+
     /**
      * Set the maximum size of the query cache.
      *
@@ -98,6 +98,10 @@ public class FingerprintCandidateBean implements SiriusPCS, Comparable<Fingerpri
     protected final DatabaseLabel[] labels;
 
     protected boolean atomCoordinatesAreComputed = false;
+    // highlight state of the molecule, see StructureImageCache#highlightKey
+    protected volatile String highlightKey = "";
+    // SMARTS matches of already highlighted fingerprint properties
+    protected final SubstructureMatchMemo substructureMatches = new SubstructureMatchMemo();
     protected ReentrantLock compoundLock = new ReentrantLock();
 
     protected final FormulaResultBean parent;
@@ -269,7 +273,25 @@ public class FingerprintCandidateBean implements SiriusPCS, Comparable<Fingerpri
         return candidate.getFingerprint().isSet(index);
     }
 
+    public String getHighlightKey() {
+        return highlightKey;
+    }
+
     public boolean highlightFingerprint(int absoluteIndex) {
+        final boolean highlighted = highlightFingerprintIntern(absoluteIndex);
+        updateHighlightKey();
+        return highlighted;
+    }
+
+    /**
+     * Has to be called after the highlighting of the molecule has been changed, otherwise cached structure images
+     * of the old highlight state are shown.
+     */
+    void updateHighlightKey() {
+        highlightKey = StructureImageCache.highlightKey(getMolecule());
+    }
+
+    private boolean highlightFingerprintIntern(int absoluteIndex) {
         if (!prepared) parseAndPrepare();
         final FingerprintVersion version = candidate.getFingerprint().getFingerprintVersion();
         final IAtomContainer molecule = getMolecule();
@@ -290,27 +312,24 @@ public class FingerprintCandidateBean implements SiriusPCS, Comparable<Fingerpri
             else minCount = 1;
 
             molecule.setProperty(HighlightGenerator.ID_MAP, Collections.emptyMap());
-            FasterSmartsQueryTool tool = new FasterSmartsQueryTool(smarts, DefaultChemObjectBuilder.getInstance());
             try {
-                if (tool.matches(molecule)) {
-                    final List<List<Integer>> mappings = tool.getUniqueMatchingAtoms();
-                    for (List<Integer> mapping : mappings) {
-                        --minCount;
-                        final HashSet<IAtom> atoms = new HashSet<>(mapping.size());
-                        for (int i : mapping) atoms.add(molecule.getAtom(i));
-                        for (Integer i : mapping) {
-                            if (!colorMap.containsKey(molecule.getAtom(i)))
-                                colorMap.put(molecule.getAtom(i), minCount >= 0 ? 0 : 1);
-                            if (molecule.getAtom(i).getProperty(StandardGenerator.HIGHLIGHT_COLOR) == null)
-                                molecule.getAtom(i).setProperty(StandardGenerator.HIGHLIGHT_COLOR, minCount >= 0 ? CandidateListDetailView.PRIMARY_HIGHLIGHTED_COLOR : CandidateListDetailView.SECONDARY_HIGHLIGHTED_COLOR);
-                            for (IBond b : molecule.getConnectedBondsList(molecule.getAtom(i))) {
-                                if (atoms.contains(b.getAtom(0)) && atoms.contains(b.getAtom(1))) {
-                                    if (b.getProperty(StandardGenerator.HIGHLIGHT_COLOR) == null)
-                                        b.setProperty(StandardGenerator.HIGHLIGHT_COLOR, minCount >= 0 ? CandidateListDetailView.PRIMARY_HIGHLIGHTED_COLOR : CandidateListDetailView.SECONDARY_HIGHLIGHTED_COLOR);
-                                }
+                final List<List<Integer>> mappings = substructureMatches.getUniqueMatchingAtoms(molecule, absoluteIndex, smarts);
+                for (List<Integer> mapping : mappings) {
+                    --minCount;
+                    final HashSet<IAtom> atoms = new HashSet<>(mapping.size());
+                    for (int i : mapping) atoms.add(molecule.getAtom(i));
+                    for (Integer i : mapping) {
+                        if (!colorMap.containsKey(molecule.getAtom(i)))
+                            colorMap.put(molecule.getAtom(i), minCount >= 0 ? 0 : 1);
+                        if (molecule.getAtom(i).getProperty(StandardGenerator.HIGHLIGHT_COLOR) == null)
+                            molecule.getAtom(i).setProperty(StandardGenerator.HIGHLIGHT_COLOR, minCount >= 0 ? CandidateListDetailView.PRIMARY_HIGHLIGHTED_COLOR : CandidateListDetailView.SECONDARY_HIGHLIGHTED_COLOR);
+                        for (IBond b : molecule.getConnectedBondsList(molecule.getAtom(i))) {
+                            if (atoms.contains(b.getAtom(0)) && atoms.contains(b.getAtom(1))) {
+                                if (b.getProperty(StandardGenerator.HIGHLIGHT_COLOR) == null)
+                                    b.setProperty(StandardGenerator.HIGHLIGHT_COLOR, minCount >= 0 ? CandidateListDetailView.PRIMARY_HIGHLIGHTED_COLOR : CandidateListDetailView.SECONDARY_HIGHLIGHTED_COLOR);
                             }
-
                         }
+
                     }
                 }
             } catch (CDKException e) {
@@ -21,11 +21,16 @@ package de.unijena.bioinf.ms.gui.fingerid;
 
 import de.unijena.bioinf.jjobs.BasicJJob;
 
+import org.jetbrains.annotations.Nullable;
+
 import java.util.Arrays;
+import java.util.function.Consumer;
 
 public class LoadMoleculeJob extends BasicJJob<Boolean> {
 
     protected Iterable<FingerprintCandidateBean> compounds;
+    @Nullable
+    protected final Consumer<FingerprintCandidateBean> afterLoad;
 
     public LoadMoleculeJob(Iterable<FingerprintCandidateBean> compounds) {
         this(JobPriority.NOW, compounds);
@@ -40,16 +45,32 @@ public class LoadMoleculeJob extends BasicJJob<Boolean> {
     }
 
     public LoadMoleculeJob(JobPriority prio, Iterable<FingerprintCandidateBean> compounds) {
+        this(prio, compounds, null);
+    }
+
+    /**
+     * @param afterLoad called for each compound after its molecule has been loaded, e.g. to prefetch structure images.
+     */
+    public LoadMoleculeJob(JobPriority prio, Iterable<FingerprintCandidateBean> compounds, @Nullable Consumer<FingerprintCandidateBean> afterLoad) {
         super(JobType.CPU);
         setPriority(prio);
         this.compounds = compounds;
+        this.afterLoad = afterLoad;
     }
 
     @Override
     protected Boolean compute() throws Exception {
         for (FingerprintCandidateBean c : compounds) {
             checkForInterruption();
-            c.getMolecule();
+            c.compoundLock.lock();
+            try {
+                c.getMolecule();
+                c.computeAtomCoordinates();
+            } finally {
+                c.compoundLock.unlock();
+            }
+            if (afterLoad != null)
+                afterLoad.accept(c);
         }
         return true;
     }
@@ -0,0 +1,78 @@
+/*
+ *  This file is part of the SIRIUS Software for analyzing MS and MS/MS data
+ *
+ *  Copyright (C) 2013-2020 Kai Dührkop, Markus Fleischauer, Marcus Ludwig, Martin A. Hoffman, Fleming Kretschmer, Marvin Meusel and Sebastian Böcker,
+ *  Chair of Bioinformatics, Friedrich-Schiller University.
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Affero General Public License
+ *  as published by the Free Software Foundation; either
+ *  version 3 of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License along with SIRIUS.  If not, see <https://www.gnu.org/licenses/agpl-3.0.txt>
+ */
+
+package de.unijena.bioinf.ms.gui.fingerid;
+
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.isomorphism.matchers.QueryAtomContainer;
+import org.openscience.cdk.silent.SilentChemObjectBuilder;
+import org.openscience.cdk.smiles.smarts.parser.SMARTSParser;
+import org.openscience.cdk.smiles.smarts.parser.TokenMgrError;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Thread safe cache of parsed SMARTS queries of fingerprint properties, keyed by the absolute fingerprint index.
+ * The SMARTS string is stored with the query, so a different SMARTS for the same index (e.g. from another
+ * fingerprint version) replaces the cached query instead of returning a wrong one.
+ */
+public final class SmartsQueryCache {
+    private static final ConcurrentHashMap<Integer, Entry> QUERIES = new ConcurrentHashMap<>();
+
+    private SmartsQueryCache() {
+    }
+
+    /**
+     * @throws IllegalArgumentException if the SMARTS string can not be handled
+     */
+    public static QueryAtomContainer getQuery(int absoluteIndex, String smarts) {
+        final Entry entry = QUERIES.get(absoluteIndex);
+        if (entry != null && entry.smarts.equals(smarts))
+            return entry.query;
+        final QueryAtomContainer query = parse(smarts);
+        QUERIES.put(absoluteIndex, new Entry(smarts, query));
+        return query;
+    }
+
+    public static int size() {
+        return QUERIES.size();
+    }
+
+    public static void clear() {
+        QUERIES.clear();
+    }
+
+    static QueryAtomContainer parse(String smarts) {
+        try {
+            return SMARTSParser.parse(smarts, SilentChemObjectBuilder.getInstance());
+        } catch (TokenMgrError | CDKException error) {
+            throw new IllegalArgumentException("Error parsing SMARTS", error);
+        }
+    }
+
+    private static final class Entry {
+        private final String smarts;
+        private final QueryAtomContainer query;
+
+        private Entry(String smarts, QueryAtomContainer query) {
+            this.smarts = smarts;
+            this.query = query;
+        }
+    }
+}
@@ -0,0 +1,262 @@
+/*
+ *  This file is part of the SIRIUS Software for analyzing MS and MS/MS data
+ *
+ *  Copyright (C) 2013-2020 Kai Dührkop, Markus Fleischauer, Marcus Ludwig, Martin A. Hoffman, Fleming Kretschmer, Marvin Meusel and Sebastian Böcker,
+ *  Chair of Bioinformatics, Friedrich-Schiller University.
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Affero General Public License
+ *  as published by the Free Software Foundation; either
+ *  version 3 of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License along with SIRIUS.  If not, see <https://www.gnu.org/licenses/agpl-3.0.txt>
+ */
+
+package de.unijena.bioinf.ms.gui.fingerid;
+
+import de.unijena.bioinf.jjobs.BasicJJob;
+import de.unijena.bioinf.jjobs.JJob;
+import de.unijena.bioinf.ms.gui.compute.jjobs.Jobs;
+import de.unijena.bioinf.ms.gui.configs.Fonts;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.openscience.cdk.interfaces.IAtom;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.interfaces.IBond;
+import org.openscience.cdk.renderer.AtomContainerRenderer;
+import org.openscience.cdk.renderer.color.CDK2DAtomColors;
+import org.openscience.cdk.renderer.font.AWTFontManager;
+import org.openscience.cdk.renderer.generators.BasicSceneGenerator;
+import org.openscience.cdk.renderer.generators.IGenerator;
+import org.openscience.cdk.renderer.generators.standard.StandardGenerator;
+import org.openscience.cdk.renderer.visitor.AWTDrawVisitor;
+
+import java.awt.*;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Bounded cache of rendered structure depictions for the candidate lists.
+ * <p>
+ * Images are keyed by InChIKey, highlight state, highlight style, background color, size and display scale. The cache
+ * is bounded by the number of bytes of the cached images and evicts the least recently used images first. Missing
+ * images are rendered on the CPU pool, the caller gets notified when the image is available. Renderers are reused per
+ * thread.
+ */
+public class StructureImageCache {
+    public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+    public static final StructureImageCache DEFAULT = new StructureImageCache(DEFAULT_MAX_BYTES);
+
+    private static final Font FONT = Fonts.FONT_BOLD != null ? Fonts.FONT_BOLD.deriveFont(13f) : Font.getFont(Font.SANS_SERIF);
+
+    private static final ThreadLocal<Map<StandardGenerator.HighlightStyle, AtomContainerRenderer>> RENDERERS =
+            ThreadLocal.withInitial(() -> new EnumMap<>(StandardGenerator.HighlightStyle.class));
+
+    private final long maxBytes;
+    private long bytes = 0;
+    private final LinkedHashMap<Key, BufferedImage> images = new LinkedHashMap<>(64, .75F, true);
+    private final Map<Key, Boolean> pending = new ConcurrentHashMap<>();
+
+    public StructureImageCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    @Nullable
+    public synchronized BufferedImage get(@NotNull Key key) {
+        return images.get(key);
+    }
+
+    public synchronized void put(@NotNull Key key, @NotNull BufferedImage image) {
+        final BufferedImage old = images.put(key, image);
+        if (old != null)
+            bytes -= sizeOf(old);
+        bytes += sizeOf(image);
+        final Iterator<BufferedImage> it = images.values().iterator();
+        while (bytes > maxBytes && it.hasNext()) {
+            final BufferedImage eldest = it.next();
+            if (eldest == image)
+                break; // never evict the image that was just added
+            bytes -= sizeOf(eldest);
+            it.remove();
+        }
+    }
+
+    public synchronized int size() {
+        return images.size();
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public synchronized void clear() {
+        images.clear();
+        bytes = 0;
+    }
+
+    /**
+     * Renders the image of the given candidate on the CPU pool if it is neither cached nor already pending.
+     *
+     * @param onRendered called (in the rendering thread) after the image has been added to the cache
+     */
+    public void renderInBackground(@NotNull FingerprintCandidateBean candidate, @NotNull Key key, @Nullable Runnable onRendered) {
+        if (get(key) != null || pending.putIfAbsent(key, Boolean.TRUE) != null)
+            return;
+        Jobs.MANAGER().submitJob(new BasicJJob<Boolean>(JJob.JobType.CPU) {
+            @Override
+            protected Boolean compute() {
+                try {
+                    render(candidate, key);
+                } finally {
+                    pending.remove(key);
+                }
+                if (onRendered != null)
+                    onRendered.run();
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Renders the image of the given candidate in the calling thread and adds it to the cache. The image is stored
+     * under the highlight state the molecule has while rendering, which may differ from the one of the given key.
+     * In that case the highlight key of the candidate is updated, so that the next lookup finds the rendered image.
+     */
+    public BufferedImage render(@NotNull FingerprintCandidateBean candidate, @NotNull Key key) {
+        candidate.compoundLock.lock();
+        try {
+            final IAtomContainer molecule = candidate.getMolecule();
+            candidate.computeAtomCoordinates();
+            final Key actualKey = key.withHighlight(highlightKey(molecule));
+            if (!actualKey.highlight.equals(candidate.getHighlightKey()))
+                candidate.highlightKey = actualKey.highlight;
+            final BufferedImage cached = get(actualKey);
+            if (cached != null)
+                return cached;
+            final BufferedImage image = render(molecule, actualKey);
+            put(actualKey, image);
+            return image;
+        } finally {
+            candidate.compoundLock.unlock();
+        }
+    }
+
+    /**
+     * Renders the given molecule with 2D coordinates into a new image of the size given by the key.
+     */
+    public static BufferedImage render(@NotNull IAtomContainer molecule, @NotNull Key key) {
+        final BufferedImage image = new BufferedImage(key.pixelWidth(), key.pixelHeight(), BufferedImage.TYPE_INT_ARGB);
+        final Graphics2D gg = image.createGraphics();
+        try {
+            gg.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            gg.scale(key.scale, key.scale);
+            final AtomContainerRenderer renderer = RENDERERS.get().computeIfAbsent(key.style, StructureImageCache::makeRenderer);
+            renderer.getRenderer2DModel().set(BasicSceneGenerator.BackgroundColor.class, new Color(key.background, true));
+            renderer.paint(molecule, new AWTDrawVisitor(gg), new Rectangle2D.Double(0, 0, key.width, key.height), true);
+        } finally {
+            gg.dispose();
+        }
+        return image;
+    }
+
+    private static AtomContainerRenderer makeRenderer(StandardGenerator.HighlightStyle highlightStyle) {
+        final List<IGenerator<IAtomContainer>> generators = new ArrayList<>();
+        generators.add(new BasicSceneGenerator());
+        generators.add(new StandardGenerator(FONT));
+        final AtomContainerRenderer renderer = new AtomContainerRenderer(generators, new AWTFontManager());
+        renderer.getRenderer2DModel().set(StandardGenerator.Highlighting.class, highlightStyle);
+        renderer.getRenderer2DModel().set(StandardGenerator.AtomColor.class, new CDK2DAtomColors());
+        return renderer;
+    }
+
+    /**
+     * Encodes the highlighted atoms and bonds of the given molecule (see {@link StandardGenerator#HIGHLIGHT_COLOR}).
+     * Molecules without highlighting have the empty key.
+     */
+    @NotNull
+    public static String highlightKey(@NotNull IAtomContainer molecule) {
+        final StringBuilder buf = new StringBuilder();
+        int i = 0;
+        for (IAtom atom : molecule.atoms()) {
+            final Color c = atom.getProperty(StandardGenerator.HIGHLIGHT_COLOR);
+            if (c != null)
+                buf.append('a').append(i).append(':').append(Integer.toHexString(c.getRGB()));
+            ++i;
+        }
+        i = 0;
+        for (IBond bond : molecule.bonds()) {
+            final Color c = bond.getProperty(StandardGenerator.HIGHLIGHT_COLOR);
+            if (c != null)
+                buf.append('b').append(i).append(':').append(Integer.toHexString(c.getRGB()));
+            ++i;
+        }
+        return buf.toString();
+    }
+
+    private static long sizeOf(BufferedImage image) {
+        return 4L * image.getWidth() * image.getHeight();
+    }
+
+    public static Key key(@NotNull String inchiKey, @NotNull String highlight, @NotNull StandardGenerator.HighlightStyle style, @NotNull Color background, int width, int height, double scale) {
+        return new Key(inchiKey, highlight, style, background.getRGB(), width, height, scale);
+    }
+
+    public static final class Key {
+        private final String inchiKey;
+        private final String highlight;
+        private final StandardGenerator.HighlightStyle style;
+        private final int background;
+        private final int width, height;
+        private final double scale;
+
+        private Key(String inchiKey, String highlight, StandardGenerator.HighlightStyle style, int background, int width, int height, double scale) {
+            this.inchiKey = inchiKey;
+            this.highlight = highlight;
+            this.style = style;
+            this.background = background;
+            this.width = width;
+            this.height = height;
+            this.scale = scale;
+        }
+
+        public Key withHighlight(@NotNull String highlight) {
+            return highlight.equals(this.highlight) ? this : new Key(inchiKey, highlight, style, background, width, height, scale);
+        }
+
+        public int pixelWidth() {
+            return Math.max(1, (int) Math.ceil(width * scale));
+        }
+
+        public int pixelHeight() {
+            return Math.max(1, (int) Math.ceil(height * scale));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            final Key key = (Key) o;
+            return background == key.background && width == key.width && height == key.height
+                    && Double.compare(key.scale, scale) == 0 && inchiKey.equals(key.inchiKey)
+                    && highlight.equals(key.highlight) && style == key.style;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(inchiKey, highlight, style, background, width, height, scale);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ *  This file is part of the SIRIUS Software for analyzing MS and MS/MS data
+ *
+ *  Copyright (C) 2013-2020 Kai Dührkop, Markus Fleischauer, Marcus Ludwig, Martin A. Hoffman, Fleming Kretschmer, Marvin Meusel and Sebastian Böcker,
+ *  Chair of Bioinformatics, Friedrich-Schiller University.
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Affero General Public License
+ *  as published by the Free Software Foundation; either
+ *  version 3 of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Affero General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Affero General Public License along with SIRIUS.  If not, see <https://www.gnu.org/licenses/agpl-3.0.txt>
+ */
+
+package de.unijena.bioinf.ms.gui.fingerid;
+
+import org.openscience.cdk.exception.CDKException;
+import org.openscience.cdk.interfaces.IAtomContainer;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Memo of the unique SMARTS matches of fingerprint properties within one molecule, keyed by absolute fingerprint
+ * index. Repeated highlighting of the same property is a lookup. The molecule has to be the same for all calls.
+ */
+public class SubstructureMatchMemo {
+    private final Map<Integer, List<List<Integer>>> matches = new ConcurrentHashMap<>();
+
+    /**
+     * @return the unique atom index mappings of the given fingerprint property's SMARTS in the molecule.
+     * Empty if the SMARTS does not match.
+     */
+    public List<List<Integer>> getUniqueMatchingAtoms(IAtomContainer molecule, int absoluteIndex, String smarts) throws CDKException {
+        List<List<Integer>> m = matches.get(absoluteIndex);
+        if (m == null) {
+            final FasterSmartsQueryTool tool = new FasterSmartsQueryTool(SmartsQueryCache.getQuery(absoluteIndex, smarts), smarts);
+            m = tool.matches(molecule) ? Collections.unmodifiableList(tool.getUniqueMatchingAtoms()) : Collections.emptyList();
+            matches.put(absoluteIndex, m);
+        }
+        return m;
+    }
+
+    public int size() {
+        return matches.size();
+    }
+
+    public void clear() {
+        matches.clear();
+    }
+}
@@ -28,6 +28,7 @@ import de.unijena.bioinf.ChemistryBase.ms.ft.FTree;
 import de.unijena.bioinf.ChemistryBase.ms.utils.SimpleSpectrum;
 import de.unijena.bioinf.ChemistryBase.ms.utils.Spectrums;
 import de.unijena.bioinf.chemdb.CompoundCandidate;
+import de.unijena.bioinf.jjobs.BasicJJob;
 import de.unijena.bioinf.jjobs.BasicMasterJJob;
 import de.unijena.bioinf.jjobs.JJob;
 import de.unijena.bioinf.ms.frontend.core.SiriusProperties;
@@ -40,6 +41,7 @@ import de.unijena.bioinf.ms.gui.fingerid.FingerprintCandidateBean;
 import de.unijena.bioinf.ms.gui.mainframe.result_panel.PanelDescription;
 import de.unijena.bioinf.ms.gui.ms_viewer.InSilicoSelectionBox;
 import de.unijena.bioinf.ms.gui.ms_viewer.InsilicoFragmenter;
+import de.unijena.bioinf.ms.gui.ms_viewer.SpectraPayloadCache;
 import de.unijena.bioinf.ms.gui.ms_viewer.SpectraViewerConnector;
 import de.unijena.bioinf.ms.gui.ms_viewer.WebViewSpectraViewer;
 import de.unijena.bioinf.ms.gui.ms_viewer.data.SiriusIsotopePattern;
@@ -195,7 +197,33 @@ public class SpectraVisualizationPanel
 	private void drawSpectra(InstanceBean experiment, FormulaResultBean sre, SiriusIsotopePattern siriusIsotopePattern, String mode, int ce_index) {
 		if (mode == null)
 			return;
-        jsonSpectra = null;
+		jsonSpectra = cachedJsonSpectra(experiment, sre, siriusIsotopePattern, mode, ce_index);
+
+		if (jsonSpectra != null) {
+			String json = null, svg = null;
+			if (mode.equals(MS2_DISPLAY) && insilicoResult != null) {
+				// only set these when in MS2 mode
+				json = insilicoResult.getJson();
+				svg = insilicoResult.getSvg();
+			}
+			browser.loadData(jsonSpectra, json, svg);
+		}
+	}
+
+	// serialized spectra of recently shown and prefetched (neighbouring) results
+	private final SpectraPayloadCache payloadCache = new SpectraPayloadCache();
+
+	@Nullable
+	private String cachedJsonSpectra(InstanceBean experiment, @Nullable FormulaResultBean sre, @Nullable SiriusIsotopePattern siriusIsotopePattern, String mode, int ce_index) {
+		final FTree ftree = Optional.ofNullable(sre).flatMap(FormulaResultBean::getFragTree).orElse(null);
+		return payloadCache.computeIfAbsent(
+				SpectraPayloadCache.key(experiment.getID().getDirectoryName(), sre == null ? null : sre.getID(), mode, ce_index),
+				() -> makeJsonSpectra(experiment, ftree, siriusIsotopePattern, mode, ce_index),
+				experiment.getExperiment(), ftree);
+	}
+
+	@Nullable
+	private static String makeJsonSpectra(InstanceBean experiment, @Nullable FTree ftree, @Nullable SiriusIsotopePattern siriusIsotopePattern, String mode, int ce_index) {
 		SpectraJSONWriter spectraWriter = new SpectraJSONWriter();
 
 		if (mode.contains(MS1_DISPLAY)) {
@@ -207,50 +235,81 @@ public class SpectraVisualizationPanel
 				if (mode.equals(MS1_DISPLAY)) {
 					SimpleSpectrum isoPattern = siriusIsotopePattern != null ? siriusIsotopePattern.getIsotopePattern()
 							: Spectrums.extractIsotopePattern(spectrum, experiment.getExperiment());
-					jsonSpectra = spectraWriter.ms1JSON(spectrum, isoPattern,
+					return spectraWriter.ms1JSON(spectrum, isoPattern,
 							experiment.getExperiment().getAnnotationOrDefault(MS1MassDeviation.class).massDifferenceDeviation);
 				} else if (mode.equals(MS1_MIRROR_DISPLAY)) {
 					if (siriusIsotopePattern != null) {
-						jsonSpectra = spectraWriter.ms1MirrorJSON(siriusIsotopePattern,
+						return spectraWriter.ms1MirrorJSON(siriusIsotopePattern,
 								experiment.getExperiment().getAnnotationOrDefault(MS1MassDeviation.class).massDifferenceDeviation);
 					} else {
-						LoggerFactory.getLogger(getClass()).warn(MS1_MIRROR_DISPLAY + "was selected but no simulated pattern was available. Can not show mirror plot!");
+						LoggerFactory.getLogger(SpectraVisualizationPanel.class).warn(MS1_MIRROR_DISPLAY + "was selected but no simulated pattern was available. Can not show mirror plot!");
 					}
-
-				} else {
-					return;
 				}
 			}
+			return null;
 		} else if (mode.equals(MS2_DISPLAY)) {
-			if (ce_index == -1){
-				jsonSpectra = spectraWriter.ms2JSON(experiment.getExperiment(), Optional.ofNullable(sre).flatMap(FormulaResultBean::getFragTree).orElse(null));
+			if (ce_index == -1) {
+				return spectraWriter.ms2JSON(experiment.getExperiment(), ftree);
 			} else {
 				MutableMs2Spectrum spectrum = experiment.getMs2Spectra().get(ce_index);
-				FTree ftree = Optional.ofNullable(sre).flatMap(FormulaResultBean::getFragTree).orElse(null);
 				if (ftree != null)
-					jsonSpectra = spectraWriter.ms2JSON(experiment.getExperiment(), spectrum, ftree);
+					return spectraWriter.ms2JSON(experiment.getExperiment(), spectrum, ftree);
 				else
-					jsonSpectra = spectraWriter.ms2JSON(experiment.getExperiment(), spectrum);
+					return spectraWriter.ms2JSON(experiment.getExperiment(), spectrum);
 			}
 		} else {
-			LoggerFactory.getLogger(getClass()).warn("Cannot draw spectra: Mode " + mode + " not (yet) supported!");
-			return;
+			LoggerFactory.getLogger(SpectraVisualizationPanel.class).warn("Cannot draw spectra: Mode " + mode + " not (yet) supported!");
+			return null;
 		}
+	}
 
-		if (jsonSpectra != null) {
-			String json = null, svg = null;
-			if (mode.equals(MS2_DISPLAY) && insilicoResult != null) {
-				// only set these when in MS2 mode
-				json = insilicoResult.getJson();
-				svg = insilicoResult.getSvg();
+	@Nullable
+	private static SiriusIsotopePattern makeIsotopePattern(InstanceBean experiment, FormulaResultBean sre) {
+		SiriusIsotopePattern isotopePattern = SiriusIsotopePattern.create(sre.getFragTree().orElse(null), experiment.getExperiment(), experiment.getMergedMs1Spectrum());
+		if (experiment.getMs1Spectra().size() > 0 && isotopePattern == null)
+			isotopePattern = SiriusIsotopePattern.create(sre.getFragTree().orElse(null), experiment.getExperiment(), experiment.getMs1Spectra().get(0));
+		return isotopePattern;
+	}
+
+	private JJob<Boolean> prefetcher = null;
+
+	/**
+	 * Serializes the spectra of the formula results next to the selected one in the background, so that switching
+	 * to them does not need to wait for the serialization.
+	 */
+	private void prefetchNeighbours(InstanceBean experiment, FormulaResultBean sre, List<FormulaResultBean> resultElements) {
+		final String mode = preferredMode;
+		if (experiment == null || sre == null || resultElements == null || mode == null)
+			return;
+		final int index = resultElements.indexOf(sre);
+		if (index < 0)
+			return;
+		final List<FormulaResultBean> neighbours = new ArrayList<>(2);
+		if (index > 0)
+			neighbours.add(resultElements.get(index - 1));
+		if (index + 1 < resultElements.size())
+			neighbours.add(resultElements.get(index + 1));
+
+		final JJob<Boolean> old = prefetcher;
+		if (old != null && !old.isFinished())
+			old.cancel(false);
+		prefetcher = Jobs.runInBackground(new BasicJJob<>(JJob.JobType.TINY_BACKGROUND) {
+			@Override
+			protected Boolean compute() throws Exception {
+				for (FormulaResultBean neighbour : neighbours) {
+					checkForInterruption();
+					cachedJsonSpectra(experiment, neighbour,
+							mode.equals(MS2_DISPLAY) ? null : makeIsotopePattern(experiment, neighbour), mode, -1);
+				}
+				return true;
 			}
-			browser.loadData(jsonSpectra, json, svg);
-		}
+		});
 	}
 
 	@Override
 	public void resultsChanged(InstanceBean experiment, FormulaResultBean sre, List<FormulaResultBean> resultElements, ListSelectionModel selections) {
 		resultsChanged(experiment, sre, null);
+		prefetchNeighbours(experiment, sre, resultElements);
 	}
 
 	private JJob<Boolean> backgroundLoader = null;
@@ -282,9 +341,7 @@ public class SpectraVisualizationPanel
 							if (experimentParam.getMs1Spectra().size() > 0 || experimentParam.getMergedMs1Spectrum() != null)
 								items.add(MS1_DISPLAY);
 							if (sre != null) {
-								isotopePattern = SiriusIsotopePattern.create(sre.getFragTree().orElse(null), experimentParam.getExperiment(), experimentParam.getMergedMs1Spectrum());
-								if (experimentParam.getMs1Spectra().size() > 0 && isotopePattern == null)
-									isotopePattern = SiriusIsotopePattern.create(sre.getFragTree().orElse(null), experimentParam.getExperiment(), experimentParam.getMs1Spectra().get(0));
+								isotopePattern = makeIsotopePattern(experimentParam, sre);
 								if (isotopePattern != null)
 									items.add(MS1_MIRROR_DISPLAY);
 							}
@@ -331,6 +388,10 @@ public class SpectraVisualizationPanel
 
 					if (experimentParam != null) {
 						final SiriusIsotopePattern finalIsotopePattern = isotopePattern;
+						// serialize the spectra of the preferred mode here, so that the EDT only has to hand them over.
+						if (preferredMode != null)
+							cachedJsonSpectra(experimentParam, sre, finalIsotopePattern, preferredMode, -1);
+						checkForInterruption();
 						Jobs.runEDTAndWait(() -> {
 							boolean preferredPossible = false; // no `contains` for combobox
 							for (int i = 0; i < modesBox.getItemCount(); i++)
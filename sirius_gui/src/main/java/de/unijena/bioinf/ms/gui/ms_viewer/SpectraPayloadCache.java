@@ -0,0 +1,175 @@
+/*
+ *  This file is part of the SIRIUS Software for analyzing MS and MS/MS data
+ *
+ *  Copyright (C) 2013-2020 Kai Dührkop, Markus Fleischauer, Marcus Ludwig, Martin A. Hoffman, Fleming Kretschmer, Marvin Meusel and Sebastian Böcker,
+ *  Chair of Bioinformatics, Friedrich-Schilller University.
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Affero General Public License
+ *  as published by the Free Software Foundation; either
+ *  version 3 of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License along with SIRIUS.  If not, see <https://www.gnu.org/licenses/agpl-3.0.txt>
+ */
+
+package de.unijena.bioinf.ms.gui.ms_viewer;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * Bounded LRU cache of serialized spectra payloads (JSON) for the spectrum viewer.
+ * <p>
+ * Entries are keyed by compound, formula result, view mode and collision energy index. Additionally, each entry
+ * remembers the objects it was computed from (e.g. experiment and fragmentation tree). A lookup with different
+ * source objects is treated as a miss and drops the stale entry, so payloads are invalidated automatically as soon
+ * as a result is recomputed and reloaded.
+ */
+public class SpectraPayloadCache {
+    public static final int DEFAULT_MAX_ENTRIES = 64;
+
+    private final Map<Key, Entry> cache;
+
+    public SpectraPayloadCache() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    public SpectraPayloadCache(final int maxEntries) {
+        cache = new LinkedHashMap<>(maxEntries + 1, .75F, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * @param sources objects the payload is computed from. They are compared by identity.
+     * @return cached payload or null if there is no valid entry for the given key and sources
+     */
+    @Nullable
+    public synchronized String get(@NotNull Key key, Object... sources) {
+        final Entry e = cache.get(key);
+        if (e == null)
+            return null;
+        if (!e.isValidFor(sources)) {
+            cache.remove(key);
+            return null;
+        }
+        return e.payload;
+    }
+
+    public synchronized void put(@NotNull Key key, @Nullable String payload, Object... sources) {
+        if (payload == null)
+            cache.remove(key);
+        else
+            cache.put(key, new Entry(payload, sources));
+    }
+
+    /**
+     * Returns the cached payload or computes and caches it. The payload is computed outside of the lock, so
+     * concurrent calls for the same key may both compute it.
+     */
+    @Nullable
+    public String computeIfAbsent(@NotNull Key key, @NotNull Supplier<String> payloadSupplier, Object... sources) {
+        String payload = get(key, sources);
+        if (payload == null) {
+            payload = payloadSupplier.get();
+            put(key, payload, sources);
+        }
+        return payload;
+    }
+
+    public synchronized boolean contains(@NotNull Key key, Object... sources) {
+        final Entry e = cache.get(key);
+        return e != null && e.isValidFor(sources);
+    }
+
+    /**
+     * Removes all entries of the given compound.
+     */
+    public synchronized void invalidate(@NotNull Object compoundId) {
+        cache.keySet().removeIf(k -> k.compoundId.equals(compoundId));
+    }
+
+    /**
+     * Removes all entries of the given formula result.
+     */
+    public synchronized void invalidate(@NotNull Object compoundId, @Nullable Object formulaId) {
+        cache.keySet().removeIf(k -> k.compoundId.equals(compoundId) && Objects.equals(k.formulaId, formulaId));
+    }
+
+    public synchronized void clear() {
+        cache.clear();
+    }
+
+    public synchronized int size() {
+        return cache.size();
+    }
+
+    public static Key key(@NotNull Object compoundId, @Nullable Object formulaId, @NotNull String mode, int ceIndex) {
+        return new Key(compoundId, formulaId, mode, ceIndex);
+    }
+
+    public static final class Key {
+        private final Object compoundId;
+        private final Object formulaId;
+        private final String mode;
+        private final int ceIndex;
+
+        private Key(@NotNull Object compoundId, @Nullable Object formulaId, @NotNull String mode, int ceIndex) {
+            this.compoundId = compoundId;
+            this.formulaId = formulaId;
+            this.mode = mode;
+            this.ceIndex = ceIndex;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            final Key key = (Key) o;
+            return ceIndex == key.ceIndex && compoundId.equals(key.compoundId)
+                    && Objects.equals(formulaId, key.formulaId) && mode.equals(key.mode);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(compoundId, formulaId, mode, ceIndex);
+        }
+
+        @Override
+        public String toString() {
+            return compoundId + "|" + formulaId + "|" + mode + "|" + ceIndex;
+        }
+    }
+
+    private static final class Entry {
+        private final String payload;
+        private final Object[] sources;
+
+        private Entry(String payload, Object[] sources) {
+            this.payload = payload;
+            this.sources = sources.clone();
+        }
+
+        private boolean isValidFor(Object[] other) {
+            if (sources.length != other.length)
+                return false;
+            for (int i = 0; i < sources.length; i++)
+                if (sources[i] != other[i])
+                    return false;
+            return true;
+        }
+    }
+}
@@ -53,14 +53,10 @@ public class WebViewSpectraViewer extends WebViewPanel {
         cancelTasks();
 
         queueTaskInJFXThread(() -> {
-                // set data
-                JSObject obj = (JSObject) webView.getEngine().executeScript("document.webview = { \"spectrum\": " + json_spectra + ", \"highlight\": " + escapeNull(json_highlight) + ", svg: null};");
-                if (svg!=null) {
-                    obj.setMember("svg", svg);
-                }
-                // load Data
-                webView.getEngine().executeScript(
-                    "main.loadJSONData(document.webview.spectrum, document.webview.highlight, document.webview.svg)");
+                // pass the payload as plain string arguments of a bridge call, so that the JS engine only has to
+                // JSON.parse the data instead of compiling it as part of a script source.
+                final JSObject main = (JSObject) webView.getEngine().executeScript("main");
+                main.call("loadJSONData", json_spectra, json_highlight, svg);
             });
     }
 
@@ -69,11 +65,6 @@ public class WebViewSpectraViewer extends WebViewPanel {
         else return "\""+val+"\"";
     }
 
-    private String escapeNull(String val) {
-        if (val==null) return "null";
-        else return val;
-    }
-
 	public void clear(){
         executeJS("main.clear()");
 	}
@@ -27,9 +27,29 @@ import org.slf4j.LoggerFactory;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Set;
+import java.util.function.Function;
 
 public class SiriusGlazedLists {
 
+    /**
+     * Same as {@link #multiUpdate(EventList, Set)} but selects the elements to update by a key,
+     * so that the caller does not need to resolve the elements itself.
+     */
+    public static <E, K> void multiUpdate(EventList<E> list, Set<K> keysToUpdate, Function<E, K> keyFunction) {
+        try {
+            list.getReadWriteLock().writeLock().lock();
+            final ListEventAssembler<E> eventAssembler = new ListEventAssembler<>(list, list.getPublisher());
+            eventAssembler.beginEvent();
+            for (int i = 0; i < list.size(); i++) {
+                if (keysToUpdate.contains(keyFunction.apply(list.get(i))))
+                    eventAssembler.elementUpdated(i, null, list.get(i));
+            }
+            eventAssembler.commitEvent();
+        } finally {
+            list.getReadWriteLock().writeLock().unlock();
+        }
+    }
+
     public static <E> void multiUpdate(EventList<E> list, Set<E> elementsToUpdate) {
         try {
             list.getReadWriteLock().writeLock().lock();
@@ -28,12 +28,16 @@ import de.unijena.bioinf.lcms.LCMSCompoundSummary;
 import de.unijena.bioinf.projectspace.CompoundContainer;
 import de.unijena.bioinf.projectspace.FormulaResultBean;
 import de.unijena.bioinf.projectspace.InstanceBean;
+import de.unijena.bioinf.projectspace.SpectralQuality;
+import de.unijena.bioinf.projectspace.SpectralQualityProperty;
 
 import java.util.Optional;
 import java.util.Set;
 
 public class CompoundFilterMatcher implements Matcher<InstanceBean> {
     final CompoundFilterModel filterModel;
+    // whether the project has been assessed by the spectral quality tool, looked up once per matcher
+    private volatile Boolean hasSpectralQuality = null;
 
     public CompoundFilterMatcher(CompoundFilterModel filterModel) {
         this.filterModel = filterModel;
@@ -72,6 +76,14 @@ public class CompoundFilterMatcher implements Matcher<InstanceBean> {
     }
 
     private boolean filterByPeakShape(InstanceBean item, CompoundFilterModel filterModel) {
+        // use precomputed peak qualities of the spectral quality tool if available to not load the traces
+        if (hasSpectralQuality(item)) {
+            final Optional<Set<LCMSCompoundSummary.Quality>> precomputed = item.loadCompoundContainer(SpectralQuality.class)
+                    .getAnnotation(SpectralQuality.class).flatMap(SpectralQuality::getPeakShapeQualities);
+            if (precomputed.isPresent())
+                return precomputed.get().stream().anyMatch(filterModel::getPeakShapeQuality);
+        }
+
         final CompoundContainer compoundContainer = item.loadCompoundContainer(LCMSPeakInformation.class);
         final Optional<LCMSPeakInformation> annotation = compoundContainer.getAnnotation(LCMSPeakInformation.class);
         if (annotation.isEmpty()) return false;
@@ -89,6 +101,12 @@ public class CompoundFilterMatcher implements Matcher<InstanceBean> {
         return false;
     }
 
+    private boolean hasSpectralQuality(InstanceBean item) {
+        if (hasSpectralQuality == null)
+            hasSpectralQuality = item.getProjectSpaceManager().getProjectSpaceProperty(SpectralQualityProperty.class).isPresent();
+        return hasSpectralQuality;
+    }
+
     private boolean matchesLipidFilter(InstanceBean item, CompoundFilterModel filterModel) {
         boolean hasAnyLipidHit = item.getResults().stream()
                 .map(FormulaResultBean::getFragTree).flatMap(Optional::stream)
@@ -28,6 +28,7 @@ import de.unijena.bioinf.ms.frontend.subtools.fingerblast.FingerblastOptions;
 import de.unijena.bioinf.ms.frontend.subtools.fingerprint.FingerprintOptions;
 import de.unijena.bioinf.ms.frontend.subtools.lcms_align.LcmsAlignOptions;
 import de.unijena.bioinf.ms.frontend.subtools.lcms_align.LcmsAlignSubToolJob;
+import de.unijena.bioinf.ms.gui.compute.jjobs.CoalescingUpdater;
 import de.unijena.bioinf.ms.gui.compute.jjobs.Jobs;
 import de.unijena.bioinf.ms.gui.dialogs.ExceptionDialog;
 import de.unijena.bioinf.ms.gui.dialogs.QuestionDialog;
@@ -63,6 +64,9 @@ public class GuiProjectSpaceManager extends ProjectSpaceManager<InstanceBean> {
 
     private ContainerListener.Defined createListener;
     private ContainerListener.Defined computeListener;
+    // compute flags change for every instance of a run, so we refresh the compound list at most once per frame
+    private final CoalescingUpdater<CompoundContainerId, Boolean> computeStateUpdater = new CoalescingUpdater<>(batch ->
+            SiriusGlazedLists.multiUpdate(MainFrame.MF.getCompoundList().getCompoundList(), batch.keySet(), InstanceBean::getID));
 
 
     public GuiProjectSpaceManager(@NotNull SiriusProjectSpace space, int maxBufferSize) {
@@ -79,11 +83,14 @@ public class GuiProjectSpaceManager extends ProjectSpaceManager<InstanceBean> {
         this.INSTANCE_LIST = compoundList;
         final ArrayList<InstanceBean> buf = new ArrayList<>(size());
 
-        forEach(it -> {
-            it.clearFormulaResultsCache();
-            it.clearCompoundCache();
-            buf.add((InstanceBean) it);
-        });
+        // the compound containers (id and formula result ids) are read on the IO threads, nothing is loaded here
+        try (PrefetchingInstanceIterator<InstanceBean> instances = prefetchingIterator(List.of(), List.of())) {
+            instances.forEachRemaining(it -> {
+                it.clearFormulaResultsCache();
+                it.clearCompoundCache();
+                buf.add(it);
+            });
+        }
 
         inEDTAndWait(() -> {
             INSTANCE_LIST.clear();
@@ -98,9 +105,7 @@ public class GuiProjectSpaceManager extends ProjectSpaceManager<InstanceBean> {
         computeListener = projectSpace().defineCompoundListener().on(ContainerEvent.EventType.ID_FLAG).thenDo(event -> {
             if (event.getAffectedIDs().isEmpty() || !event.getAffectedIdFlags().contains(CompoundContainerId.Flag.COMPUTING))
                 return;
-            Set<CompoundContainerId> eff = new HashSet<>(event.getAffectedIDs());
-            Set<InstanceBean> upt = INSTANCE_LIST.stream().filter(i -> eff.contains(i.getID())).collect(Collectors.toSet());
-            Jobs.runEDTLater(() -> SiriusGlazedLists.multiUpdate(MainFrame.MF.getCompoundList().getCompoundList(), upt));
+            event.getAffectedIDs().forEach(id -> computeStateUpdater.submit(id, Boolean.TRUE));
         }).register();
     }
 
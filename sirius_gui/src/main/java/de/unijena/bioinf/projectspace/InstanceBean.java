@@ -110,6 +110,11 @@ public class InstanceBean extends Instance implements SiriusPCS {
             changed = unregisterProjectSpaceListeners();
             //load contain methods to ensure that it is available
             final CompoundContainer ccache = loadCompoundContainer();
+            try {
+                invalidateRankIndex();
+            } catch (IOException e) {
+                LoggerFactory.getLogger(getClass()).error("Error when invalidating rank index of '" + getID() + "'.");
+            }
 
             List<FormulaResultId> old = getResults().stream().map(FormulaResultBean::getID).collect(Collectors.toList());
             List<FormulaResultId> nu = new ArrayList<>(old);
@@ -1015,7 +1015,7 @@ class Main {
 
     loadJSONData(data_spectra, data_highlight, data_svg) {
         d3.select("#debug").text("debug div visible?");
-        if (data_highlight !== null && data_svg !== null) {
+        if (data_highlight != null && data_svg != null) {
             if ((typeof data_highlight) == "string") {
                 this.anno_str = JSON.parse(data_highlight);
             } else {
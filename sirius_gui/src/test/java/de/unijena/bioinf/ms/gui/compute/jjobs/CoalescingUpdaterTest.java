@@ -0,0 +1,112 @@
+package de.unijena.bioinf.ms.gui.compute.jjobs;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Headless harness: a single thread executor stands in for the EDT, so we can observe how many
+ * flushes are queued while several producer threads fire millions of progress events.
+ */
+public class CoalescingUpdaterTest {
+    private static final int PRODUCERS = 4;
+    private static final int EVENTS_PER_PRODUCER = 500_000;
+    private static final int JOBS = 1000;
+    private static final long FRAME_MILLIS = 20;
+
+    @Test
+    public void testBoundedQueueAndLatency() throws Exception {
+        final ExecutorService fakeEDT = Executors.newSingleThreadExecutor();
+        final AtomicInteger queued = new AtomicInteger(0);
+        final AtomicInteger maxQueued = new AtomicInteger(0);
+        final AtomicLong maxLatencyNanos = new AtomicLong(0);
+        final AtomicInteger batches = new AtomicInteger(0);
+        final ConcurrentHashMap<Integer, Long> applied = new ConcurrentHashMap<>();
+
+        // value: {nanoTime of the oldest not yet applied event, progress}
+        final CoalescingUpdater<Integer, long[]> updater = new CoalescingUpdater<>(FRAME_MILLIS,
+                (o, n) -> new long[]{o[0], n[1]},
+                batch -> {
+                    final long now = System.nanoTime();
+                    batches.incrementAndGet();
+                    for (Map.Entry<Integer, long[]> e : batch.entrySet()) {
+                        maxLatencyNanos.accumulateAndGet(now - e.getValue()[0], Math::max);
+                        applied.put(e.getKey(), e.getValue()[1]);
+                    }
+                },
+                r -> {
+                    maxQueued.accumulateAndGet(queued.incrementAndGet(), Math::max);
+                    fakeEDT.execute(() -> {
+                        queued.decrementAndGet();
+                        r.run();
+                    });
+                });
+
+        final ExecutorService producers = Executors.newFixedThreadPool(PRODUCERS);
+        final CountDownLatch done = new CountDownLatch(PRODUCERS);
+        for (int p = 0; p < PRODUCERS; p++) {
+            final int offset = p;
+            producers.execute(() -> {
+                for (int i = 0; i < EVENTS_PER_PRODUCER; i++) {
+                    // every producer owns a disjoint set of jobs so the last progress per job is well-defined
+                    final int job = offset + PRODUCERS * (i % (JOBS / PRODUCERS));
+                    updater.submit(job, new long[]{System.nanoTime(), i});
+                }
+                done.countDown();
+            });
+        }
+        Assert.assertTrue(done.await(2, TimeUnit.MINUTES));
+        producers.shutdown();
+
+        final long deadline = System.currentTimeMillis() + 10_000;
+        while ((updater.hasPendingUpdates() || queued.get() > 0) && System.currentTimeMillis() < deadline)
+            Thread.sleep(FRAME_MILLIS);
+        fakeEDT.shutdown();
+        Assert.assertTrue(fakeEDT.awaitTermination(10, TimeUnit.SECONDS));
+
+        Assert.assertFalse(updater.hasPendingUpdates());
+        Assert.assertTrue("More than one flush queued: " + maxQueued.get(), maxQueued.get() <= 1);
+        Assert.assertTrue("Events were not coalesced: " + batches.get() + " batches", batches.get() < PRODUCERS * EVENTS_PER_PRODUCER / 100);
+        Assert.assertTrue("Update latency too high: " + TimeUnit.NANOSECONDS.toMillis(maxLatencyNanos.get()) + "ms",
+                maxLatencyNanos.get() < TimeUnit.SECONDS.toNanos(2));
+
+        Assert.assertEquals(JOBS, applied.size());
+        final int perJob = JOBS / PRODUCERS;
+        for (int job = 0; job < JOBS; job++) {
+            final int slot = job / PRODUCERS;
+            final long lastI = ((EVENTS_PER_PRODUCER - 1 - slot) / perJob) * perJob + slot;
+            Assert.assertEquals(lastI, (long) applied.get(job));
+        }
+    }
+
+    @Test
+    public void testAggregateProgressIsIncremental() {
+        final AggregateProgress<Integer> progress = new AggregateProgress<>();
+        progress.update(1, 5, 10);
+        progress.update(2, 0, 30);
+        Assert.assertEquals(5, progress.getProgress());
+        Assert.assertEquals(40, progress.getMaxProgress());
+
+        progress.update(1, 10, 10);
+        progress.update(2, 15, 30);
+        Assert.assertEquals(25, progress.getProgress());
+        Assert.assertEquals(0.625, progress.getFraction(), 1e-9);
+
+        Assert.assertTrue(progress.remove(1));
+        Assert.assertFalse(progress.remove(1));
+        Assert.assertEquals(1, progress.getNumberOfJobs());
+        Assert.assertEquals(15, progress.getProgress());
+        Assert.assertEquals(30, progress.getMaxProgress());
+
+        // late events of a removed job do not add it again
+        Assert.assertFalse(progress.updateIfPresent(1, 10, 10));
+        Assert.assertTrue(progress.updateIfPresent(2, 20, 30));
+        Assert.assertEquals(1, progress.getNumberOfJobs());
+        Assert.assertEquals(20, progress.getProgress());
+        Assert.assertEquals(30, progress.getMaxProgress());
+    }
+}
@@ -0,0 +1,82 @@
+package de.unijena.bioinf.ms.gui.fingerid;
+
+import de.unijena.bioinf.ChemistryBase.fp.CdkFingerprintVersion;
+import de.unijena.bioinf.ChemistryBase.fp.MolecularProperty;
+import de.unijena.bioinf.ChemistryBase.fp.SubstructureProperty;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.silent.SilentChemObjectBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Micro benchmark: matches all SMARTS fingerprint properties against a candidate set, with a new query tool per
+ * property (as before) vs. the shared query cache and the per candidate match memo (first pass and repeated pass).
+ * Usage: SmartsHighlightBenchmark [repetitions]
+ */
+public class SmartsHighlightBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        final int reps = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        final CdkFingerprintVersion version = CdkFingerprintVersion.getDefault();
+        final List<Integer> indices = new ArrayList<>();
+        final List<String> smarts = new ArrayList<>();
+        for (int i = 0; i < version.size(); i++) {
+            final MolecularProperty prop = version.getMolecularProperty(i);
+            if (prop instanceof SubstructureProperty) {
+                indices.add(i);
+                smarts.add(((SubstructureProperty) prop).getSmarts());
+            }
+        }
+        final List<IAtomContainer> molecules = new ArrayList<>();
+        for (String s : SubstructureMatchMemoTest.SMILES)
+            molecules.add(SubstructureMatchMemoTest.parse(s));
+
+        long matches = 0;
+        long start = System.nanoTime();
+        for (int r = 0; r < reps; r++) {
+            for (IAtomContainer molecule : molecules) {
+                for (String s : smarts) {
+                    try {
+                        final FasterSmartsQueryTool tool = new FasterSmartsQueryTool(s, SilentChemObjectBuilder.getInstance());
+                        if (tool.matches(molecule))
+                            matches += tool.getUniqueMatchingAtoms().size();
+                    } catch (IllegalArgumentException ignored) {
+                    }
+                }
+            }
+        }
+        System.out.printf("uncached: %.1f ms per pass (%d matches)%n", (System.nanoTime() - start) / 1e6 / reps, matches / reps);
+
+        final List<SubstructureMatchMemo> memos = new ArrayList<>();
+        for (int r = 0; r < reps; r++) {
+            memos.clear();
+            matches = 0;
+            start = System.nanoTime();
+            for (IAtomContainer molecule : molecules) {
+                final SubstructureMatchMemo memo = new SubstructureMatchMemo();
+                memos.add(memo);
+                matches += highlightAll(memo, molecule, indices, smarts);
+            }
+            System.out.printf("query cache, new memo: %.1f ms per pass (%d matches)%n", (System.nanoTime() - start) / 1e6, matches);
+        }
+
+        matches = 0;
+        start = System.nanoTime();
+        for (int r = 0; r < reps; r++)
+            for (int m = 0; m < molecules.size(); m++)
+                matches += highlightAll(memos.get(m), molecules.get(m), indices, smarts);
+        System.out.printf("memoized: %.3f ms per pass (%d matches)%n", (System.nanoTime() - start) / 1e6 / reps, matches / reps);
+    }
+
+    private static long highlightAll(SubstructureMatchMemo memo, IAtomContainer molecule, List<Integer> indices, List<String> smarts) throws Exception {
+        long matches = 0;
+        for (int i = 0; i < indices.size(); i++) {
+            try {
+                matches += memo.getUniqueMatchingAtoms(molecule, indices.get(i), smarts.get(i)).size();
+            } catch (IllegalArgumentException ignored) {
+            }
+        }
+        return matches;
+    }
+}
@@ -0,0 +1,136 @@
+package de.unijena.bioinf.ms.gui.fingerid;
+
+import de.unijena.bioinf.ChemistryBase.algorithm.scoring.Scored;
+import de.unijena.bioinf.ChemistryBase.chem.InChIs;
+import de.unijena.bioinf.ChemistryBase.chem.PrecursorIonType;
+import de.unijena.bioinf.ChemistryBase.chem.Smiles;
+import de.unijena.bioinf.ChemistryBase.fp.ArrayFingerprint;
+import de.unijena.bioinf.ChemistryBase.fp.CdkFingerprintVersion;
+import de.unijena.bioinf.chemdb.FingerprintCandidate;
+import org.junit.Assert;
+import org.junit.Test;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.renderer.generators.standard.StandardGenerator;
+import org.openscience.cdk.silent.SilentChemObjectBuilder;
+import org.openscience.cdk.smiles.SmilesParser;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+public class StructureImageCacheTest {
+
+    private static StructureImageCache.Key key(String inchiKey, String highlight) {
+        return StructureImageCache.key(inchiKey, highlight, StandardGenerator.HighlightStyle.OuterGlow, Color.WHITE, 10, 10, 1d);
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsedBySize() {
+        // room for exactly two 10x10 ARGB images
+        final StructureImageCache cache = new StructureImageCache(2 * 4 * 10 * 10);
+        cache.put(key("A", ""), new BufferedImage(10, 10, BufferedImage.TYPE_INT_ARGB));
+        cache.put(key("B", ""), new BufferedImage(10, 10, BufferedImage.TYPE_INT_ARGB));
+        Assert.assertNotNull(cache.get(key("A", "")));
+        cache.put(key("C", ""), new BufferedImage(10, 10, BufferedImage.TYPE_INT_ARGB));
+
+        Assert.assertEquals(2, cache.size());
+        Assert.assertEquals(2 * 4 * 10 * 10, cache.getBytes());
+        Assert.assertNotNull(cache.get(key("A", "")));
+        Assert.assertNull(cache.get(key("B", "")));
+        Assert.assertNotNull(cache.get(key("C", "")));
+    }
+
+    @Test
+    public void testImageLargerThanBudgetIsKept() {
+        final StructureImageCache cache = new StructureImageCache(100);
+        cache.put(key("A", ""), new BufferedImage(10, 10, BufferedImage.TYPE_INT_ARGB));
+        cache.put(key("B", ""), new BufferedImage(10, 10, BufferedImage.TYPE_INT_ARGB));
+        Assert.assertEquals(1, cache.size());
+        Assert.assertNotNull(cache.get(key("B", "")));
+    }
+
+    @Test
+    public void testReplaceUpdatesSize() {
+        final StructureImageCache cache = new StructureImageCache(Long.MAX_VALUE);
+        cache.put(key("A", ""), new BufferedImage(10, 10, BufferedImage.TYPE_INT_ARGB));
+        cache.put(key("A", ""), new BufferedImage(5, 5, BufferedImage.TYPE_INT_ARGB));
+        Assert.assertEquals(1, cache.size());
+        Assert.assertEquals(4 * 5 * 5, cache.getBytes());
+    }
+
+    @Test
+    public void testKeysDistinguishHighlightAndDisplay() {
+        Assert.assertEquals(key("A", "a1:ff"), key("A", "a1:ff"));
+        Assert.assertNotEquals(key("A", ""), key("A", "a1:ff"));
+        Assert.assertNotEquals(key("A", ""),
+                StructureImageCache.key("A", "", StandardGenerator.HighlightStyle.None, Color.WHITE, 10, 10, 1d));
+        Assert.assertNotEquals(key("A", ""),
+                StructureImageCache.key("A", "", StandardGenerator.HighlightStyle.OuterGlow, Color.WHITE, 10, 10, 2d));
+        Assert.assertEquals(20, StructureImageCache.key("A", "", StandardGenerator.HighlightStyle.OuterGlow, Color.WHITE, 10, 10, 2d).pixelWidth());
+    }
+
+    @Test
+    public void testHighlightKeyFollowsHighlightedAtomsAndBonds() throws Exception {
+        final IAtomContainer mol = new SmilesParser(SilentChemObjectBuilder.getInstance()).parseSmiles("CCO");
+        Assert.assertEquals("", StructureImageCache.highlightKey(mol));
+
+        mol.getAtom(2).setProperty(StandardGenerator.HIGHLIGHT_COLOR, CandidateListDetailView.PRIMARY_HIGHLIGHTED_COLOR);
+        final String atomOnly = StructureImageCache.highlightKey(mol);
+        Assert.assertNotEquals("", atomOnly);
+
+        mol.getBond(1).setProperty(StandardGenerator.HIGHLIGHT_COLOR, CandidateListDetailView.PRIMARY_HIGHLIGHTED_COLOR);
+        final String atomAndBond = StructureImageCache.highlightKey(mol);
+        Assert.assertNotEquals(atomOnly, atomAndBond);
+
+        mol.getBond(1).setProperty(StandardGenerator.HIGHLIGHT_COLOR, CandidateListDetailView.SECONDARY_HIGHLIGHTED_COLOR);
+        Assert.assertNotEquals(atomAndBond, StructureImageCache.highlightKey(mol));
+
+        mol.getBond(1).removeProperty(StandardGenerator.HIGHLIGHT_COLOR);
+        Assert.assertEquals(atomOnly, StructureImageCache.highlightKey(mol));
+    }
+
+    private static FingerprintCandidateBean glucose() {
+        final FingerprintCandidate candidate = new FingerprintCandidate(
+                InChIs.newInChI("WQZGKKKJIJFFOK-GASJEMHNSA-N", "InChI=1S/C6H12O6/c7-1-2-3(8)4(9)5(10)6(11)12-2/h2-11H,1H2/t2-,3-,4+,5-,6?/m1/s1"),
+                new ArrayFingerprint(CdkFingerprintVersion.getDefault(), new short[]{1, 2, 3}));
+        candidate.setSmiles(new Smiles("OC[C@H]1OC(O)[C@H](O)[C@@H](O)[C@@H]1O").smiles);
+        return new FingerprintCandidateBean(1, null, new Scored<>(candidate, 0d), PrecursorIonType.getPrecursorIonType("[M+H]+"), null);
+    }
+
+    @Test
+    public void testRerenderAfterMatchHighlighting() {
+        final StructureImageCache cache = new StructureImageCache(Long.MAX_VALUE);
+        final CompoundStructureImage image = new CompoundStructureImage();
+        final FingerprintCandidateBean bean = glucose();
+        bean.getMolecule();
+
+        final StructureImageCache.Key plain = image.imageKey(bean, Color.WHITE, 1d);
+        cache.render(bean, plain);
+        Assert.assertNotNull(cache.get(plain));
+
+        new CompoundMatchHighlighter(new int[]{0, 1}, new int[0], new int[]{5}).hightlight(bean);
+        Assert.assertEquals(StructureImageCache.highlightKey(bean.getMolecule()), bean.getHighlightKey());
+        final StructureImageCache.Key highlighted = image.imageKey(bean, Color.WHITE, 1d);
+        Assert.assertNotEquals(plain, highlighted);
+        Assert.assertNull(cache.get(highlighted));
+
+        // the image is stored under the key the next paint looks up, so the cell does not request it again
+        cache.render(bean, highlighted);
+        Assert.assertNotNull(cache.get(image.imageKey(bean, Color.WHITE, 1d)));
+    }
+
+    @Test
+    public void testRenderUpdatesStaleHighlightKey() {
+        final StructureImageCache cache = new StructureImageCache(Long.MAX_VALUE);
+        final CompoundStructureImage image = new CompoundStructureImage();
+        final FingerprintCandidateBean bean = glucose();
+
+        // recolor without updating the key of the bean
+        bean.getMolecule().getAtom(0).setProperty(StandardGenerator.HIGHLIGHT_COLOR, CandidateListDetailView.PRIMARY_HIGHLIGHTED_COLOR);
+        final StructureImageCache.Key stale = image.imageKey(bean, Color.WHITE, 1d);
+        cache.render(bean, stale);
+
+        final StructureImageCache.Key next = image.imageKey(bean, Color.WHITE, 1d);
+        Assert.assertNotEquals(stale, next);
+        Assert.assertNotNull(cache.get(next));
+    }
+}
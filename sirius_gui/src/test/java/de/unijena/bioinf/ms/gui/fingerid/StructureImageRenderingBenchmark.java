@@ -0,0 +1,84 @@
+package de.unijena.bioinf.ms.gui.fingerid;
+
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.layout.StructureDiagramGenerator;
+import org.openscience.cdk.renderer.generators.standard.StandardGenerator;
+import org.openscience.cdk.silent.SilentChemObjectBuilder;
+import org.openscience.cdk.smiles.SmilesParser;
+import org.openscience.cdk.tools.manipulator.AtomContainerManipulator;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Headless throughput benchmark for structure depictions, single threaded and with one renderer per thread.
+ * Usage: StructureImageRenderingBenchmark [repetitions] [threads]
+ */
+public class StructureImageRenderingBenchmark {
+    private static final String[] SMILES = {
+            "OC[C@H]1OC(O)[C@H](O)[C@@H](O)[C@@H]1O",
+            "CN1C=NC2=C1C(=O)N(C(=O)N2C)C",
+            "CC(=O)OC1=CC=CC=C1C(=O)O",
+            "CC(C)CC1=CC=C(C=C1)C(C)C(=O)O",
+            "C1=CC(=C(C=C1C2=C(C(=O)C3=C(C=C(C=C3O2)O)O)O)O)O",
+            "CC12CCC3C(C1CCC2O)CCC4=CC(=O)CCC34C",
+            "CCCCCCCCCCCCCCCC(=O)OCC(COP(=O)(O)OCCN)OC(=O)CCCCCCCC=CCCCCCCCC"
+    };
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+        final int reps = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        final int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+        final List<IAtomContainer> molecules = new ArrayList<>();
+        final SmilesParser parser = new SmilesParser(SilentChemObjectBuilder.getInstance());
+        for (String smiles : SMILES) {
+            final IAtomContainer mol = parser.parseSmiles(smiles);
+            AtomContainerManipulator.percieveAtomTypesAndConfigureAtoms(mol);
+            final StructureDiagramGenerator sdg = new StructureDiagramGenerator();
+            sdg.setMolecule(mol, false);
+            sdg.generateCoordinates();
+            molecules.add(mol);
+        }
+        final StructureImageCache.Key key = StructureImageCache.key("benchmark", "", StandardGenerator.HighlightStyle.OuterGlow,
+                Color.WHITE, 360, 185, 1d);
+
+        // warm up
+        for (IAtomContainer mol : molecules)
+            StructureImageCache.render(mol, key);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < reps; i++)
+            StructureImageCache.render(molecules.get(i % molecules.size()), key);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("single thread: %.1f images/s%n", reps / seconds);
+
+        // molecules are not thread safe, so every thread renders its own copies
+        final ExecutorService pool = Executors.newFixedThreadPool(threads);
+        final List<Future<?>> futures = new ArrayList<>();
+        start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            futures.add(pool.submit(() -> {
+                final List<IAtomContainer> own = new ArrayList<>();
+                for (IAtomContainer mol : molecules) {
+                    try {
+                        own.add(mol.clone());
+                    } catch (CloneNotSupportedException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+                for (int i = 0; i < reps; i++)
+                    StructureImageCache.render(own.get(i % own.size()), key);
+            }));
+        }
+        for (Future<?> f : futures)
+            f.get();
+        seconds = (System.nanoTime() - start) / 1e9;
+        pool.shutdown();
+        System.out.printf("%d threads: %.1f images/s%n", threads, (reps * (double) threads) / seconds);
+    }
+}
@@ -0,0 +1,65 @@
+package de.unijena.bioinf.ms.gui.fingerid;
+
+import de.unijena.bioinf.ChemistryBase.fp.CdkFingerprintVersion;
+import de.unijena.bioinf.ChemistryBase.fp.MolecularProperty;
+import de.unijena.bioinf.ChemistryBase.fp.SubstructureProperty;
+import org.junit.Assert;
+import org.junit.Test;
+import org.openscience.cdk.interfaces.IAtomContainer;
+import org.openscience.cdk.silent.SilentChemObjectBuilder;
+import org.openscience.cdk.smiles.SmilesParser;
+import org.openscience.cdk.tools.manipulator.AtomContainerManipulator;
+
+import java.util.List;
+
+public class SubstructureMatchMemoTest {
+    static final String[] SMILES = {
+            "OC[C@H]1OC(O)[C@H](O)[C@@H](O)[C@@H]1O",
+            "CN1C=NC2=C1C(=O)N(C(=O)N2C)C",
+            "CC(=O)OC1=CC=CC=C1C(=O)O",
+            "C1=CC(=C(C=C1C2=C(C(=O)C3=C(C=C(C=C3O2)O)O)O)O)O",
+            "CCCCCCCCCCCCCCCC(=O)OCC(COP(=O)(O)OCCN)OC(=O)CCCCCCCC=CCCCCCCCC",
+            "ClC1=CC=C(Br)C=C1S(=O)(=O)N"
+    };
+
+    static IAtomContainer parse(String smiles) throws Exception {
+        final IAtomContainer c = new SmilesParser(SilentChemObjectBuilder.getInstance()).parseSmiles(smiles);
+        AtomContainerManipulator.percieveAtomTypesAndConfigureAtoms(c);
+        return c;
+    }
+
+    @Test
+    public void testMatchesEqualUncachedComputation() throws Exception {
+        // not masked, so relative and absolute indices are the same
+        final CdkFingerprintVersion version = CdkFingerprintVersion.getDefault();
+        for (String smiles : SMILES) {
+            final IAtomContainer molecule = parse(smiles);
+            final SubstructureMatchMemo memo = new SubstructureMatchMemo();
+            for (int i = 0; i < version.size(); i++) {
+                final MolecularProperty prop = version.getMolecularProperty(i);
+                if (!(prop instanceof SubstructureProperty))
+                    continue;
+                final String smarts = ((SubstructureProperty) prop).getSmarts();
+                final FasterSmartsQueryTool uncached;
+                try {
+                    uncached = new FasterSmartsQueryTool(smarts, SilentChemObjectBuilder.getInstance());
+                } catch (IllegalArgumentException e) {
+                    continue;
+                }
+                final List<List<Integer>> expected = uncached.matches(molecule) ? uncached.getUniqueMatchingAtoms() : List.of();
+                Assert.assertEquals(smiles + " / " + smarts, expected, memo.getUniqueMatchingAtoms(molecule, i, smarts));
+                // second call is a lookup
+                Assert.assertSame(memo.getUniqueMatchingAtoms(molecule, i, smarts), memo.getUniqueMatchingAtoms(molecule, i, smarts));
+            }
+        }
+    }
+
+    @Test
+    public void testQueryCacheReplacesQueryForOtherSmarts() {
+        SmartsQueryCache.clear();
+        final Object ccQuery = SmartsQueryCache.getQuery(Integer.MAX_VALUE, "CC");
+        Assert.assertSame(ccQuery, SmartsQueryCache.getQuery(Integer.MAX_VALUE, "CC"));
+        Assert.assertNotSame(ccQuery, SmartsQueryCache.getQuery(Integer.MAX_VALUE, "CO"));
+        Assert.assertEquals(1, SmartsQueryCache.size());
+    }
+}
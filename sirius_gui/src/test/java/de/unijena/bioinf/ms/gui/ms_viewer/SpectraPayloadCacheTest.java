@@ -0,0 +1,68 @@
+package de.unijena.bioinf.ms.gui.ms_viewer;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SpectraPayloadCacheTest {
+
+    @Test
+    public void testHitWithSameSources() {
+        final SpectraPayloadCache cache = new SpectraPayloadCache();
+        final Object experiment = new Object(), tree = new Object();
+        final SpectraPayloadCache.Key key = SpectraPayloadCache.key("c1", "f1", "MS2", -1);
+        cache.put(key, "{}", experiment, tree);
+        Assert.assertEquals("{}", cache.get(SpectraPayloadCache.key("c1", "f1", "MS2", -1), experiment, tree));
+        Assert.assertNull(cache.get(SpectraPayloadCache.key("c1", "f1", "MS2", 0), experiment, tree));
+        Assert.assertNull(cache.get(SpectraPayloadCache.key("c1", "f1", "MS1", -1), experiment, tree));
+    }
+
+    @Test
+    public void testInvalidatedWhenResultChanges() {
+        final SpectraPayloadCache cache = new SpectraPayloadCache();
+        final Object experiment = new Object();
+        final SpectraPayloadCache.Key key = SpectraPayloadCache.key("c1", "f1", "MS2", -1);
+        cache.put(key, "old", experiment, new Object());
+
+        // a recomputed result comes with a new tree instance
+        final Object newTree = new Object();
+        Assert.assertNull(cache.get(key, experiment, newTree));
+        Assert.assertEquals(0, cache.size());
+
+        Assert.assertEquals("new", cache.computeIfAbsent(key, () -> "new", experiment, newTree));
+        Assert.assertEquals("new", cache.computeIfAbsent(key, () -> "other", experiment, newTree));
+
+        // tree removed
+        Assert.assertNull(cache.get(key, experiment, null));
+    }
+
+    @Test
+    public void testExplicitInvalidation() {
+        final SpectraPayloadCache cache = new SpectraPayloadCache();
+        final Object experiment = new Object();
+        cache.put(SpectraPayloadCache.key("c1", "f1", "MS2", -1), "a", experiment);
+        cache.put(SpectraPayloadCache.key("c1", "f2", "MS2", -1), "b", experiment);
+        cache.put(SpectraPayloadCache.key("c2", "f1", "MS2", -1), "c", experiment);
+
+        cache.invalidate("c1", "f1");
+        Assert.assertFalse(cache.contains(SpectraPayloadCache.key("c1", "f1", "MS2", -1), experiment));
+        Assert.assertTrue(cache.contains(SpectraPayloadCache.key("c1", "f2", "MS2", -1), experiment));
+
+        cache.invalidate("c1");
+        Assert.assertEquals(1, cache.size());
+        Assert.assertTrue(cache.contains(SpectraPayloadCache.key("c2", "f1", "MS2", -1), experiment));
+    }
+
+    @Test
+    public void testBounded() {
+        final SpectraPayloadCache cache = new SpectraPayloadCache(2);
+        final Object experiment = new Object();
+        cache.put(SpectraPayloadCache.key("c1", null, "MS1", -1), "a", experiment);
+        cache.put(SpectraPayloadCache.key("c2", null, "MS1", -1), "b", experiment);
+        cache.get(SpectraPayloadCache.key("c1", null, "MS1", -1), experiment);
+        cache.put(SpectraPayloadCache.key("c3", null, "MS1", -1), "c", experiment);
+
+        Assert.assertEquals(2, cache.size());
+        Assert.assertTrue(cache.contains(SpectraPayloadCache.key("c1", null, "MS1", -1), experiment));
+        Assert.assertFalse(cache.contains(SpectraPayloadCache.key("c2", null, "MS1", -1), experiment));
+    }
+}
@@ -0,0 +1,74 @@
+package de.unijena.bioinf.ms.gui.ms_viewer;
+
+import de.unijena.bioinf.ChemistryBase.ms.Deviation;
+import de.unijena.bioinf.ChemistryBase.ms.utils.SimpleSpectrum;
+import de.unijena.bioinf.ms.gui.ms_viewer.data.SpectraJSONWriter;
+import javafx.application.Platform;
+import javafx.concurrent.Worker;
+import javafx.embed.swing.JFXPanel;
+import javafx.scene.web.WebView;
+import netscape.javascript.JSObject;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Manual timing harness for the spectrum viewer payloads: serialization, cache lookup and the transfer into the
+ * WebView by script concatenation vs. bridge call. Usage: SpectraPayloadTimingMain [numberOfPeaks] [repetitions]
+ */
+public class SpectraPayloadTimingMain {
+
+    public static void main(String[] args) throws Exception {
+        final int peaks = args.length > 0 ? Integer.parseInt(args[0]) : 50000;
+        final int reps = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+        final Random r = new Random(42);
+        final double[] mz = new double[peaks], intensities = new double[peaks];
+        for (int i = 0; i < peaks; i++) {
+            mz[i] = 50 + i * (1500d / peaks);
+            intensities[i] = r.nextDouble();
+        }
+        final SimpleSpectrum spectrum = new SimpleSpectrum(mz, intensities);
+        final Deviation dev = new Deviation(10);
+
+        String json = null;
+        long start = System.nanoTime();
+        for (int i = 0; i < reps; i++)
+            json = new SpectraJSONWriter().ms1JSON(spectrum, null, dev);
+        System.out.printf("serialize: %.2f ms (%d chars)%n", (System.nanoTime() - start) / 1e6 / reps, json.length());
+
+        final SpectraPayloadCache cache = new SpectraPayloadCache();
+        final SpectraPayloadCache.Key key = SpectraPayloadCache.key("compound", "formula", "MS1", -1);
+        cache.put(key, json, spectrum);
+        start = System.nanoTime();
+        for (int i = 0; i < reps; i++)
+            cache.get(SpectraPayloadCache.key("compound", "formula", "MS1", -1), spectrum);
+        System.out.printf("cache hit: %.4f ms%n", (System.nanoTime() - start) / 1e6 / reps);
+
+        new JFXPanel(); // starts the JavaFX runtime
+        final String payload = json;
+        final CountDownLatch done = new CountDownLatch(1);
+        Platform.runLater(() -> {
+            final WebView webView = new WebView();
+            webView.getEngine().getLoadWorker().stateProperty().addListener((ov, oldState, newState) -> {
+                if (newState != Worker.State.SUCCEEDED)
+                    return;
+                long t = System.nanoTime();
+                for (int i = 0; i < reps; i++)
+                    webView.getEngine().executeScript("main.load(" + payload + ");");
+                System.out.printf("transfer by script concatenation: %.2f ms%n", (System.nanoTime() - t) / 1e6 / reps);
+
+                final JSObject main = (JSObject) webView.getEngine().executeScript("main");
+                t = System.nanoTime();
+                for (int i = 0; i < reps; i++)
+                    main.call("load", payload);
+                System.out.printf("transfer by bridge call: %.2f ms%n", (System.nanoTime() - t) / 1e6 / reps);
+                done.countDown();
+            });
+            webView.getEngine().loadContent("<html><body><script>var main = {load: function(d) {"
+                    + " if ((typeof d) == 'string') d = JSON.parse(d); return d.spectra.length; }};</script></body></html>");
+        });
+        done.await();
+        Platform.exit();
+    }
+}
@@ -45,7 +45,7 @@ import de.unijena.bioinf.projectspace.CompoundContainerId;
 import de.unijena.bioinf.projectspace.FormulaScoring;
 import de.unijena.bioinf.projectspace.Instance;
 import de.unijena.bioinf.projectspace.ProjectSpaceManager;
-import de.unijena.bioinf.projectspace.fingerid.FBCandidateNumber;
+import de.unijena.bioinf.projectspace.FormulaResultProjection;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.LoggerFactory;
@@ -198,9 +198,8 @@ public class CompoundController extends BaseApiController {
 
 
     private CompoundAnnotation asCompoundSummary(Instance inst) {
-        return inst.loadTopFormulaResult(List.of(TopCSIScore.class)).map(de.unijena.bioinf.projectspace.FormulaResult::getId).flatMap(frid -> {
-            frid.setAnnotation(FBCandidateNumber.class, new FBCandidateNumber(1));
-            return inst.loadFormulaResult(frid, FormulaScoring.class, FTree.class, FBCandidates.class, CanopusResult.class)
+        return inst.loadTopFormulaResult(List.of(TopCSIScore.class)).map(de.unijena.bioinf.projectspace.FormulaResult::getId).flatMap(frid ->
+            inst.loadFormulaResult(frid, FormulaResultProjection.NONE.withTopStructures(1), FormulaScoring.class, FTree.class, FBCandidates.class, CanopusResult.class)
                     .map(topHit -> {
                         final CompoundAnnotation cSum = new CompoundAnnotation();
 //
@@ -218,8 +217,8 @@ public class CompoundController extends BaseApiController {
                                 ifPresent(cSum::setCompoundClassAnnotation);
                         return cSum;
 
-                    });
-        }).orElseGet(CompoundAnnotation::new);
+                    })
+        ).orElseGet(CompoundAnnotation::new);
     }
 
     private MsData asCompoundMsData(Instance instance) {
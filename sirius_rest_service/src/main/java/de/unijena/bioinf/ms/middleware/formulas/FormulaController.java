@@ -38,7 +38,6 @@ import de.unijena.bioinf.ms.middleware.compute.model.ComputeContext;
 import de.unijena.bioinf.ms.middleware.formulas.model.*;
 import de.unijena.bioinf.ms.middleware.spectrum.AnnotatedSpectrum;
 import de.unijena.bioinf.projectspace.*;
-import de.unijena.bioinf.projectspace.fingerid.FBCandidateNumber;
 import de.unijena.bioinf.sirius.Sirius;
 import io.swagger.v3.oas.annotations.Hidden;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -144,8 +143,8 @@ public class FormulaController extends BaseApiController {
         List<Class<? extends DataAnnotation>> para = (fingerprint ? List.of(FormulaScoring.class, FBCandidates.class, FBCandidateFingerprints.class) : List.of(FormulaScoring.class, FBCandidates.class));
         Instance instance = loadInstance(projectId, compoundId);
         FormulaResultId fidObj = parseFID(instance, formulaId);
-        fidObj.setAnnotation(FBCandidateNumber.class, topK <= 0 ? FBCandidateNumber.ALL : new FBCandidateNumber(topK));
-        FormulaResult fr = instance.loadFormulaResult(fidObj, (Class<? extends DataAnnotation>[]) para.toArray(Class[]::new)).orElseThrow();
+        FormulaResultProjection projection = topK <= 0 ? FormulaResultProjection.NONE : FormulaResultProjection.NONE.withTopStructures(topK);
+        FormulaResult fr = instance.loadFormulaResult(fidObj, projection, (Class<? extends DataAnnotation>[]) para.toArray(Class[]::new)).orElseThrow();
         return fr.getAnnotation(FBCandidates.class).map(FBCandidates::getResults).map(l -> {
             List<StructureCandidate> candidates = new ArrayList();
             Iterator<Scored<CompoundCandidate>> it = l.iterator();
@@ -194,8 +193,7 @@ public class FormulaController extends BaseApiController {
         Instance instance = loadInstance(projectId, compoundId);
 
         return instance.loadTopFormulaResult(List.of(TopCSIScore.class)).flatMap(fr -> {
-            fr.getId().setAnnotation(FBCandidateNumber.class, new FBCandidateNumber(1));
-            return instance.loadFormulaResult(fr.getId(), (Class<? extends DataAnnotation>[]) para.toArray(Class[]::new))
+            return instance.loadFormulaResult(fr.getId(), FormulaResultProjection.NONE.withTopStructures(1), (Class<? extends DataAnnotation>[]) para.toArray(Class[]::new))
                     .flatMap(fr2 -> fr2.getAnnotation(FBCandidates.class).map(FBCandidates::getResults)
                             .filter(l -> !l.isEmpty()).map(r -> r.get(0))
                             .map(sc -> StructureCandidate.of(sc, fingerprint